@@ -0,0 +1,33 @@
+package benchmark;
+
+/**
+ * A single benchmark: setUp prepares the state, and run performs one
+ * operation on it. BenchmarkRunner calls run repeatedly, after warm-up,
+ * and reports time and bytes allocated per operation.
+ */
+public abstract class Benchmark {
+    private final String name;
+
+    /**
+     * @param name  name used in reports and for filtering, e.g. "sudoku.getProblem:3"
+     */
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Prepare state for run; called once before warm-up
+     */
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Perform one operation.
+     * @return the result of the operation, so that it cannot be optimized away
+     */
+    public abstract Object run() throws Exception;
+}
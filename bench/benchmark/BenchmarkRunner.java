@@ -0,0 +1,100 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import sat.search.SolverStatistics;
+
+/**
+ * Runs the benchmark suite and prints one line per benchmark: mean and
+ * standard deviation of the time per operation over the measurement
+ * iterations, and bytes allocated per operation (the equivalent of JMH's
+ * gc profiler, from the per-thread allocation counter).
+ *
+ * Each benchmark gets warm-up iterations first, so that JIT compilation
+ * is not part of the measurement. Run with assertions disabled, since
+ * several rep invariant checks are expensive.
+ *
+ * Usage: BenchmarkRunner [-wi warmups] [-i iterations] [-t millis] [regex]
+ *     -wi  warm-up iterations per benchmark (default 5)
+ *     -i   measurement iterations per benchmark (default 5)
+ *     -t   minimum duration of one iteration in ms (default 500)
+ *     regex  run only the benchmarks whose names contain a match
+ */
+public class BenchmarkRunner {
+    // results are folded into this field so that the JIT cannot drop them
+    private static volatile int sink;
+
+    public static void main(String[] args) throws Exception {
+        int warmups = 5;
+        int iterations = 5;
+        long iterationMillis = 500;
+        Pattern filter = null;
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("-wi")) warmups = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-i")) iterations = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-t")) iterationMillis = Long.parseLong(args[++i]);
+            else filter = Pattern.compile(args[i]);
+        }
+
+        List<Benchmark> suite = new ArrayList<Benchmark>();
+        suite.addAll(SudokuBenchmarks.all());
+        suite.addAll(FormulaBenchmarks.all());
+        suite.addAll(ImmutableBenchmarks.all());
+
+        System.out.println(String.format("%-40s %14s %12s %14s", "Benchmark", "ns/op", "+-", "B/op"));
+        for (Benchmark b : suite) {
+            if (filter != null && !filter.matcher(b.getName()).find()) continue;
+            b.setUp();
+            for (int i = 0; i < warmups; ++i)
+                iterate(b, iterationMillis);
+            double[] nanosPerOp = new double[iterations];
+            double bytesPerOp = 0;
+            for (int i = 0; i < iterations; ++i) {
+                long allocatedBefore = SolverStatistics.threadAllocatedBytes();
+                long[] result = iterate(b, iterationMillis);
+                long allocatedAfter = SolverStatistics.threadAllocatedBytes();
+                nanosPerOp[i] = (double) result[1] / result[0];
+                if (allocatedBefore >= 0)
+                    bytesPerOp += (double) (allocatedAfter - allocatedBefore) / result[0] / iterations;
+            }
+            double mean = 0;
+            for (double x : nanosPerOp)
+                mean += x / iterations;
+            double variance = 0;
+            for (double x : nanosPerOp)
+                variance += (x - mean) * (x - mean) / Math.max(iterations - 1, 1);
+            System.out.println(String.format("%-40s %14.1f %12.1f %14.0f",
+                    b.getName(), mean, Math.sqrt(variance), bytesPerOp));
+        }
+    }
+
+    /**
+     * Run b until at least millis have passed. Operations run in batches
+     * that double in size up to about 10ms, so that reading the clock does
+     * not dominate fast operations.
+     * @return { operations, elapsed nanos }
+     */
+    private static long[] iterate(Benchmark b, long millis) throws Exception {
+        long deadline = millis * 1000000L;
+        long ops = 0;
+        long batch = 1;
+        long started = System.nanoTime();
+        long elapsed;
+        int accumulated = 0;
+        do {
+            long batchStarted = System.nanoTime();
+            for (long i = 0; i < batch; ++i) {
+                Object result = b.run();
+                accumulated += result == null ? 0 : System.identityHashCode(result);
+            }
+            ops += batch;
+            long now = System.nanoTime();
+            elapsed = now - started;
+            if (now - batchStarted < 10000000L) batch *= 2;
+        } while (elapsed < deadline);
+        sink += accumulated;
+        return new long[] { ops, elapsed };
+    }
+}
@@ -0,0 +1,59 @@
+package benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import sudoku.BatchSolver;
+import sudoku.Generator;
+import sudoku.SolveCoordinator;
+import sudoku.Sudoku;
+
+/**
+ * Load test for SolveCoordinator: starts a coordinator on a free local
+ * port and the given number of worker processes on this machine, solves a
+ * corpus of generated puzzles through them several times, and prints the
+ * throughput beside that of a BatchSolver in this process.
+ *
+ * Usage: ClusterLoad [workers] [puzzles] [batch] [rounds]
+ */
+public class ClusterLoad {
+    public static void main(String[] args) throws Exception {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int batch = args.length > 2 ? Integer.parseInt(args[2]) : SolveCoordinator.DEFAULT_BATCH_SIZE;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        Sudoku[] puzzles = new Generator(3, 26, Generator.Pattern.NONE).generate(0, count, workers)
+                .toArray(new Sudoku[0]);
+
+        BatchSolver local = new BatchSolver();
+        for (int r = 0; r < rounds; ++r) {
+            long started = System.nanoTime();
+            local.solve(puzzles);
+            report("in process", count, started);
+        }
+
+        SolveCoordinator coordinator = new SolveCoordinator(new InetSocketAddress("127.0.0.1", 0));
+        coordinator.setBatchSize(batch);
+        coordinator.start();
+        List<Process> processes = new ArrayList<Process>();
+        for (int w = 0; w < workers; ++w)
+            processes.add(coordinator.launchWorker());
+        if (!coordinator.awaitWorkers(workers, 60000)) throw new IllegalStateException("workers did not connect");
+        for (int r = 0; r < rounds; ++r) {
+            long started = System.nanoTime();
+            coordinator.solve(puzzles);
+            report(workers + " workers", count, started);
+        }
+        coordinator.stop();
+        for (Process process : processes)
+            process.waitFor();
+    }
+
+    private static void report(String label, int count, long started) {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%s: %d puzzles in %.0fms, %.0f puzzles/s%n", label, count, seconds * 1000,
+                count / seconds);
+    }
+}
@@ -0,0 +1,167 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sat.formula.Clause;
+import sat.formula.Formula;
+import sat.formula.Literal;
+import sat.formula.PosLiteral;
+
+/**
+ * Benchmarks for clauses, literal interning and formula composition.
+ */
+public class FormulaBenchmarks {
+    public static List<Benchmark> all() {
+        List<Benchmark> result = new ArrayList<Benchmark>();
+        for (int size : new int[] { 2, 9, 81 }) {
+            result.add(clauseAdd(size));
+            result.add(clauseReduce(size));
+        }
+        for (int allocated : new int[] { 100, 1000 })
+            result.add(literalMake(allocated));
+        for (int clauses : new int[] { 10, 100 }) {
+            result.add(formulaAnd(clauses));
+            result.add(formulaOr(clauses));
+        }
+        result.add(formulaNot(8));
+        return result;
+    }
+
+    static Literal[] literals(String prefix, int n) {
+        Literal[] result = new Literal[n];
+        for (int i = 0; i < n; ++i)
+            result[i] = PosLiteral.make(prefix + i);
+        return result;
+    }
+
+    static Clause clause(Literal[] lits, int from, int to) {
+        Clause c = new Clause();
+        for (int i = from; i < to; ++i)
+            c = c.add(lits[i]);
+        return c;
+    }
+
+    /**
+     * @return a formula of n binary clauses over 2n fresh literals
+     */
+    static Formula formula(String prefix, int n) {
+        Literal[] lits = literals(prefix, 2 * n);
+        Formula f = new Formula();
+        for (int i = 0; i < n; ++i)
+            f = f.addClause(clause(lits, 2 * i, 2 * i + 2));
+        return f;
+    }
+
+    // building a clause of size literals one add at a time
+    private static Benchmark clauseAdd(final int size) {
+        return new Benchmark("clause.add:" + size) {
+            private Literal[] lits;
+
+            @Override
+            public void setUp() {
+                lits = literals("add", size);
+            }
+
+            @Override
+            public Object run() {
+                return clause(lits, 0, size);
+            }
+        };
+    }
+
+    // reducing a clause of size literals by each of its negated literals
+    private static Benchmark clauseReduce(final int size) {
+        return new Benchmark("clause.reduce:" + size) {
+            private Literal[] lits;
+            private Clause clause;
+
+            @Override
+            public void setUp() {
+                lits = literals("reduce", size);
+                clause = clause(lits, 0, size);
+            }
+
+            @Override
+            public Object run() {
+                Clause result = clause;
+                for (Literal l : lits)
+                    result = clause.reduce(l.getNegation());
+                return result;
+            }
+        };
+    }
+
+    // looking up an existing literal by name with allocated literals interned
+    private static Benchmark literalMake(final int allocated) {
+        return new Benchmark("posLiteral.make:" + allocated) {
+            private String[] names;
+            private int next = 0;
+
+            @Override
+            public void setUp() {
+                names = new String[allocated];
+                for (int i = 0; i < allocated; ++i) {
+                    names[i] = "make" + allocated + "_" + i;
+                    PosLiteral.make(names[i]);
+                }
+            }
+
+            @Override
+            public Object run() {
+                next = (next + 1) % allocated;
+                return PosLiteral.make(names[next]);
+            }
+        };
+    }
+
+    private static Benchmark formulaAnd(final int clauses) {
+        return new Benchmark("formula.and:" + clauses) {
+            private Formula left, right;
+
+            @Override
+            public void setUp() {
+                left = formula("andL" + clauses + "_", clauses);
+                right = formula("andR" + clauses + "_", clauses);
+            }
+
+            @Override
+            public Object run() {
+                return left.and(right);
+            }
+        };
+    }
+
+    private static Benchmark formulaOr(final int clauses) {
+        return new Benchmark("formula.or:" + clauses) {
+            private Formula left, right;
+
+            @Override
+            public void setUp() {
+                left = formula("orL" + clauses + "_", clauses);
+                right = formula("orR" + clauses + "_", 2);
+            }
+
+            @Override
+            public Object run() {
+                return left.or(right);
+            }
+        };
+    }
+
+    private static Benchmark formulaNot(final int clauses) {
+        return new Benchmark("formula.not:" + clauses) {
+            private Formula formula;
+
+            @Override
+            public void setUp() {
+                formula = formula("not" + clauses + "_", clauses);
+            }
+
+            @Override
+            public Object run() {
+                return formula.not();
+            }
+        };
+    }
+}
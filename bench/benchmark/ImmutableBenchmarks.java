@@ -0,0 +1,74 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import immutable.ImListMap;
+import immutable.ImMap;
+
+/**
+ * Benchmarks for the association-list map.
+ */
+public class ImmutableBenchmarks {
+    public static List<Benchmark> all() {
+        List<Benchmark> result = new ArrayList<Benchmark>();
+        for (int size : new int[] { 10, 100, 1000 }) {
+            result.add(mapGet(size));
+            result.add(mapPut(size));
+        }
+        return result;
+    }
+
+    static ImMap<Integer, Integer> map(int size) {
+        ImMap<Integer, Integer> m = new ImListMap<Integer, Integer>();
+        for (int i = 0; i < size; ++i)
+            m = m.put(i, i);
+        return m;
+    }
+
+    // get of each key in turn
+    private static Benchmark mapGet(final int size) {
+        return new Benchmark("imListMap.get:" + size) {
+            private ImMap<Integer, Integer> map;
+            private Integer[] keys;
+            private int next = 0;
+
+            @Override
+            public void setUp() {
+                map = map(size);
+                keys = new Integer[size];
+                for (int i = 0; i < size; ++i)
+                    keys[i] = i;
+            }
+
+            @Override
+            public Object run() {
+                next = (next + 1) % size;
+                return map.get(keys[next]);
+            }
+        };
+    }
+
+    // put replacing each key in turn
+    private static Benchmark mapPut(final int size) {
+        return new Benchmark("imListMap.put:" + size) {
+            private ImMap<Integer, Integer> map;
+            private Integer[] keys;
+            private int next = 0;
+
+            @Override
+            public void setUp() {
+                map = map(size);
+                keys = new Integer[size];
+                for (int i = 0; i < size; ++i)
+                    keys[i] = i;
+            }
+
+            @Override
+            public Object run() {
+                next = (next + 1) % size;
+                return map.put(keys[next], next);
+            }
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+
+import sudoku.Generator;
+import sudoku.SolveServer;
+import sudoku.Sudoku;
+
+/**
+ * Load test for SolveServer: starts a server on a free local port, has
+ * each of several client threads post a number of requests of a few
+ * puzzles each, and prints the client-side throughput and the server's
+ * /metrics.
+ *
+ * Usage: ServerLoad [clients] [requests] [batch] [workers]
+ */
+public class ServerLoad {
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        final int requests = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int batch = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int workers = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        Generator generator = new Generator(3, 26, Generator.Pattern.ROTATIONAL);
+        StringBuilder body = new StringBuilder();
+        for (Sudoku puzzle : generator.generate(0, batch, workers)) {
+            for (int i = 0; i < 9; ++i)
+                for (int j = 0; j < 9; ++j)
+                    body.append(puzzle.getSquare(i, j) == 0 ? '.' : (char) ('0' + puzzle.getSquare(i, j)));
+            body.append('\n');
+        }
+        final byte[] payload = body.toString().getBytes("UTF-8");
+
+        SolveServer server = new SolveServer(new InetSocketAddress("127.0.0.1", 0), workers);
+        server.start();
+        final URL url = new URL("http://127.0.0.1:" + server.getPort() + "/solve");
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long started = System.nanoTime();
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int c = 0; c < clients; ++c) {
+            results.add(pool.submit(new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    int lines = 0;
+                    for (int r = 0; r < requests; ++r)
+                        lines += post(url, payload);
+                    return lines;
+                }
+            }));
+        }
+        int lines = 0;
+        for (Future<Integer> f : results)
+            lines += f.get();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        pool.shutdown();
+        System.out.printf("%d clients x %d requests x %d puzzles: %.0f requests/s, %.0f puzzles/s%n",
+                clients, requests, batch, clients * requests / seconds, lines / seconds);
+        System.out.print(server.getMetrics());
+        server.stop(0);
+    }
+
+    private static int post(URL url, byte[] payload) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        OutputStream out = connection.getOutputStream();
+        out.write(payload);
+        out.close();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
+        int lines = 0;
+        while (reader.readLine() != null)
+            ++lines;
+        reader.close();
+        return lines;
+    }
+}
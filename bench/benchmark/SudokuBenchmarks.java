@@ -0,0 +1,287 @@
+package benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import sat.SATSolver;
+import sat.formula.Formula;
+import sat.search.CubeAndConquer;
+import sudoku.BatchSolver;
+import sudoku.CompactEncoding;
+import sudoku.EncodingOptions;
+import sudoku.Generator;
+import sudoku.Regions;
+import sudoku.Sudoku;
+
+/**
+ * Benchmarks for encoding Sudoku puzzles and solving the samples.
+ */
+public class SudokuBenchmarks {
+    /**
+     * @return Sudoku.getProblem for blank puzzles of dim 2 to 4,
+     *         SATSolver.solve on the formula of every samples/*.txt, and
+     *         CompactEncoding for blank puzzles and for solving puzzles with
+     *         BLANK_PERCENT of the squares blank, for dim 2 to 8 and for
+     *         classic, diagonal, jigsaw and killer puzzles of dim 3, and
+     *         SATSolver.solve on blank grids of dim 3 and 4 and on the evil
+     *         sample encoded with and without each EncodingOptions option,
+     *         and BatchSolver against its scalar path on CORPUS_SIZE
+     *         generated 9x9 puzzles, and CubeAndConquer on the blank grid
+     *         of dim 4 and the evil sample with 1, 2 and 4 workers
+     */
+    public static List<Benchmark> all() {
+        List<Benchmark> result = new ArrayList<Benchmark>();
+        for (int dim = 2; dim <= 4; ++dim)
+            result.add(getProblem(dim));
+        for (int dim = 2; dim <= 8; ++dim)
+            result.add(compactEncode(dim));
+        for (int dim = 2; dim <= 8; ++dim)
+            result.add(compactSolve(dim));
+        for (String kind : new String[] { "classic", "diagonal", "jigsaw", "killer" })
+            result.add(variantSolve(kind));
+        for (String workload : new String[] { "blank3", "blank4", "evil" })
+            for (String option : new String[] { "none", "symmetry", "cells", "intersections", "all" })
+                result.add(optionsSolve(workload, option));
+        result.add(batchSolve(true));
+        result.add(batchSolve(false));
+        for (String workload : new String[] { "blank4", "evil" })
+            for (int workers = 1; workers <= 4; workers *= 2)
+                result.add(cubeSolve(workload, workers));
+        File[] samples = new File("samples").listFiles();
+        if (samples != null) {
+            Arrays.sort(samples);
+            for (File f : samples)
+                if (f.getName().endsWith(".txt")) result.add(solve(f));
+        }
+        return result;
+    }
+
+    private static Benchmark getProblem(final int dim) {
+        return new Benchmark("sudoku.getProblem:" + dim) {
+            private Sudoku sudoku;
+
+            @Override
+            public void setUp() {
+                sudoku = new Sudoku(dim);
+            }
+
+            @Override
+            public Object run() {
+                return sudoku.getProblem();
+            }
+        };
+    }
+
+    private static Benchmark optionsSolve(final String workload, final String option) {
+        return new Benchmark("sudoku.optionsSolve:" + workload + ":" + option) {
+            private Formula formula;
+
+            @Override
+            public void setUp() throws Exception {
+                Sudoku sudoku = workload.equals("blank3") ? new Sudoku(3)
+                        : workload.equals("blank4") ? new Sudoku(4)
+                        : Sudoku.fromFile(3, "samples/sudoku_" + workload + ".txt");
+                EncodingOptions options = option.equals("all") ? EncodingOptions.all()
+                        : new EncodingOptions().setSymmetryBreaking(option.equals("symmetry"))
+                                .setCellClauses(option.equals("cells"))
+                                .setIntersectionClauses(option.equals("intersections"));
+                formula = sudoku.getProblem(options);
+            }
+
+            @Override
+            public Object run() {
+                return SATSolver.solve(formula);
+            }
+        };
+    }
+
+    // CubeAndConquer with the given number of workers and its default depth
+    private static Benchmark cubeSolve(final String workload, final int workers) {
+        return new Benchmark("sudoku.cubeSolve:" + workload + ":" + workers) {
+            private Formula formula;
+
+            @Override
+            public void setUp() throws Exception {
+                Sudoku sudoku = workload.equals("blank4") ? new Sudoku(4)
+                        : Sudoku.fromFile(3, "samples/sudoku_" + workload + ".txt");
+                formula = sudoku.getProblem();
+            }
+
+            @Override
+            public Object run() {
+                CubeAndConquer solver = new CubeAndConquer(formula);
+                solver.setParallelism(workers);
+                return solver.solve();
+            }
+        };
+    }
+
+    static final int CORPUS_SIZE = 256;
+
+    // BatchSolver.solve on CORPUS_SIZE puzzles if batch, else solveEach
+    private static Benchmark batchSolve(final boolean batch) {
+        return new Benchmark("sudoku." + (batch ? "batchSolve:" : "scalarSolve:") + CORPUS_SIZE) {
+            private Sudoku[] puzzles;
+            private final BatchSolver solver = new BatchSolver();
+
+            @Override
+            public void setUp() {
+                puzzles = new Generator(3, 26, Generator.Pattern.NONE).generate(1, CORPUS_SIZE, 1)
+                        .toArray(new Sudoku[0]);
+            }
+
+            @Override
+            public Object run() {
+                return batch ? solver.solve(puzzles) : solver.solveEach(puzzles);
+            }
+        };
+    }
+
+    private static Benchmark solve(final File file) {
+        return new Benchmark("sat.solve:" + file.getName()) {
+            private Formula formula;
+
+            @Override
+            public void setUp() throws Exception {
+                formula = readSample(file).getProblem();
+            }
+
+            @Override
+            public Object run() {
+                return SATSolver.solve(formula);
+            }
+        };
+    }
+
+    // share of blank squares in the puzzles of compactSolve; with many more,
+    // puzzles of dim 7 and 8 are often beyond the search
+    static final int BLANK_PERCENT = 30;
+
+    private static Benchmark compactEncode(final int dim) {
+        return new Benchmark("sudoku.compactEncode:" + dim) {
+            private Sudoku sudoku;
+
+            @Override
+            public void setUp() {
+                sudoku = new Sudoku(dim);
+            }
+
+            @Override
+            public Object run() {
+                return new CompactEncoding(sudoku);
+            }
+        };
+    }
+
+    private static Benchmark compactSolve(final int dim) {
+        return new Benchmark("sudoku.compactSolve:" + dim) {
+            private Sudoku sudoku;
+
+            @Override
+            public void setUp() {
+                sudoku = patternPuzzle(dim, new Random(dim));
+            }
+
+            @Override
+            public Object run() {
+                return new CompactEncoding(sudoku).solve();
+            }
+        };
+    }
+
+    private static Benchmark variantSolve(final String kind) {
+        return new Benchmark("sudoku.variantSolve:" + kind) {
+            private Sudoku sudoku;
+
+            @Override
+            public void setUp() {
+                sudoku = variantPuzzle(kind, new Random(3));
+            }
+
+            @Override
+            public Object run() {
+                return new CompactEncoding(sudoku).solve();
+            }
+        };
+    }
+
+    // jigsaw regions of dim 3: the middle and bottom blocks trade squares
+    private static final int[] JIGSAW_SHAPE = {
+        0, 0, 0, 1, 1, 1, 2, 2, 2,
+        0, 0, 0, 1, 1, 1, 2, 2, 2,
+        0, 0, 0, 1, 1, 1, 2, 2, 2,
+        3, 3, 4, 4, 4, 4, 5, 5, 5,
+        3, 3, 3, 3, 4, 4, 5, 5, 5,
+        3, 6, 3, 7, 4, 4, 5, 5, 5,
+        6, 6, 3, 7, 7, 4, 8, 8, 8,
+        6, 6, 7, 7, 7, 7, 8, 8, 8,
+        6, 6, 6, 6, 7, 7, 8, 8, 8 };
+
+    /**
+     * A puzzle of dim 3 of the given kind, made from a solution of a blank
+     * grid with BLANK_PERCENT of its squares blanked at random; a killer
+     * puzzle has cages of two squares side by side along each row
+     */
+    static Sudoku variantPuzzle(String kind, Random random) {
+        Regions regions = Regions.classic(3);
+        if (kind.equals("diagonal")) regions = Regions.diagonal(3);
+        else if (kind.equals("jigsaw")) regions = Regions.jigsaw(3, JIGSAW_SHAPE);
+        int[] squares = new int[81];
+        new CompactEncoding(new Sudoku(regions, squares)).solve().getSquares(squares);
+        if (kind.equals("killer")) {
+            int[][] cages = new int[36][];
+            int[] sums = new int[36];
+            for (int c = 0; c < 36; ++c) {
+                int p = (c / 4) * 9 + 2 * (c % 4);
+                cages[c] = new int[] { p, p + 1 };
+                sums[c] = squares[p] + squares[p + 1];
+            }
+            regions = Regions.killer(3, cages, sums);
+        }
+        for (int p = 0; p < squares.length; ++p)
+            if (random.nextInt(100) < BLANK_PERCENT) squares[p] = 0;
+        return new Sudoku(regions, squares);
+    }
+
+    /**
+     * A puzzle made from a patterned solution of dim dim, its digits
+     * relabelled and BLANK_PERCENT of its squares blanked at random
+     */
+    static Sudoku patternPuzzle(int dim, Random random) {
+        int size = dim * dim;
+        int[] label = new int[size];
+        for (int d = 0; d < size; ++d)
+            label[d] = d + 1;
+        for (int d = size - 1; d > 0; --d) {
+            int e = random.nextInt(d + 1);
+            int t = label[d];
+            label[d] = label[e];
+            label[e] = t;
+        }
+        int[] squares = new int[size * size];
+        for (int i = 0; i < size; ++i)
+            for (int j = 0; j < size; ++j)
+                if (random.nextInt(100) >= BLANK_PERCENT)
+                    squares[i * size + j] = label[((i % dim) * dim + i / dim + j) % size];
+        return new Sudoku(dim, squares);
+    }
+
+    /**
+     * Read a sample puzzle, taking its dimension from its number of rows
+     */
+    static Sudoku readSample(File file) throws Exception {
+        int rows = 0;
+        java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.FileReader(file));
+        try {
+            while (reader.readLine() != null)
+                ++rows;
+        } finally {
+            reader.close();
+        }
+        int dim = (int) Math.round(Math.sqrt(rows));
+        return Sudoku.fromFile(dim, file.getPath());
+    }
+}
@@ -0,0 +1,208 @@
+package immutable;
+
+import java.util.Arrays;
+
+/**
+ * Implementation of immutable generic map as a hash array mapped trie. See
+ * ImMap for specification.
+ *
+ * Each node covers 5 bits of the key's hash and holds a bitmap of the
+ * slots in use, with only those slots in its array, so get and put take
+ * time logarithmic (base 32) in the size of the map, and put copies only
+ * the nodes on the path to the key. Keys must implement hashCode
+ * consistently with equals.
+ */
+public class ImHashMap<K, V> implements ImMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    private final int size;
+
+    /*
+     * Rep invariant:
+     *     root != null, size == number of keys in root
+     *     no key or value is null; no key appears twice
+     *     a key with hash h is reached from the root by the successive
+     *     5-bit chunks of h, low bits first
+     */
+
+    public ImHashMap() {
+        this(BitmapNode.EMPTY, 0);
+    }
+
+    private ImHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    // spread the high bits of the hash code into the low ones
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    public boolean containsKey(Object k) {
+        return get(k) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object k) {
+        return (V) root.get(k, hash(k), 0);
+    }
+
+    public ImMap<K, V> put(K key, V value) {
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(key, value, hash(key), 0, added);
+        if (newRoot == root) return this;
+        return new ImHashMap<K, V>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        root.append(result);
+        if (size > 0) result.setLength(result.length() - 1);
+        return result.append("]").toString();
+    }
+
+    private static abstract class Node {
+        /**
+         * @return the value of key, which has hash hash, or null
+         */
+        abstract Object get(Object key, int hash, int shift);
+
+        /**
+         * @return this node with key bound to value, setting added[0] if
+         *         key was not bound; this itself if nothing changed
+         */
+        abstract Node put(Object key, Object value, int hash, int shift, boolean[] added);
+
+        /**
+         * Append "key->value," for each binding
+         */
+        abstract void append(StringBuilder result);
+    }
+
+    /**
+     * A node whose array holds, for each set bit of bitmap in order, either
+     * a key and its value, or null and a child node
+     */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        Object get(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return null;
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[i];
+            if (k == null) return ((Node) array[i + 1]).get(key, hash, shift + BITS);
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        Node put(Object key, Object value, int hash, int shift, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, i);
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy(array, i, newArray, i + 2, array.length - i);
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).put(key, value, hash, shift + BITS, added);
+                return child == v ? this : with(i, null, child);
+            }
+            if (key.equals(k)) return v == value ? this : with(i, k, value);
+            added[0] = true;
+            return with(i, null, pair(k, v, hash(k), key, value, hash, shift + BITS));
+        }
+
+        private BitmapNode with(int i, Object key, Object value) {
+            Object[] newArray = array.clone();
+            newArray[i] = key;
+            newArray[i + 1] = value;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        void append(StringBuilder result) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) ((Node) array[i + 1]).append(result);
+                else result.append(array[i]).append("->").append(array[i + 1]).append(",");
+            }
+        }
+    }
+
+    /**
+     * A node holding keys whose hashes are all hash, as keys and values
+     * alternately
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        Object get(Object key, int hash, int shift) {
+            for (int i = 0; i < array.length; i += 2)
+                if (key.equals(array[i])) return array[i + 1];
+            return null;
+        }
+
+        Node put(Object key, Object value, int hash, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                // push this node one level down, beside the new key
+                int bit = 1 << ((this.hash >>> shift) & MASK);
+                return new BitmapNode(bit, new Object[] { null, this }).put(key, value, hash, shift, added);
+            }
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    if (array[i + 1] == value) return this;
+                    Object[] newArray = array.clone();
+                    newArray[i + 1] = value;
+                    return new CollisionNode(hash, newArray);
+                }
+            }
+            added[0] = true;
+            Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            return new CollisionNode(hash, newArray);
+        }
+
+        void append(StringBuilder result) {
+            for (int i = 0; i < array.length; i += 2)
+                result.append(array[i]).append("->").append(array[i + 1]).append(",");
+        }
+    }
+
+    // a node holding two keys, from the given shift down
+    private static Node pair(Object k1, Object v1, int h1, Object k2, Object v2, int h2, int shift) {
+        if (h1 == h2) return new CollisionNode(h1, new Object[] { k1, v1, k2, v2 });
+        boolean[] added = new boolean[1];
+        return BitmapNode.EMPTY.put(k1, v1, h1, shift, added).put(k2, v2, h2, shift, added);
+    }
+}
@@ -0,0 +1,66 @@
+package immutable;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ImHashMapTest {
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void putAndGetTest() {
+        ImMap<Integer, String> empty = new ImHashMap<Integer, String>();
+        ImMap<Integer, String> map = empty;
+        for (int i = 0; i < 10000; ++i)
+            map = map.put(i * 7919, "v" + i);
+        assertEquals(10000, map.size());
+        assertTrue(empty.isEmpty());
+        for (int i = 0; i < 10000; ++i)
+            assertEquals("v" + i, map.get(i * 7919));
+        assertNull(map.get(1));
+
+        ImMap<Integer, String> replaced = map.put(7919, "new");
+        assertEquals(10000, replaced.size());
+        assertEquals("new", replaced.get(7919));
+        assertEquals("v1", map.get(7919));
+    }
+
+    // keys with equal hash codes
+    private static final class Collider {
+        final int id;
+        final int hash;
+
+        Collider(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Collider && ((Collider) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    @Test
+    public void collisionTest() {
+        ImMap<Collider, Integer> map = new ImHashMap<Collider, Integer>();
+        for (int i = 0; i < 100; ++i)
+            map = map.put(new Collider(i, i % 3 == 0 ? 42 : i), i);
+        map = map.put(new Collider(3, 42), -3);
+        assertEquals(100, map.size());
+        for (int i = 0; i < 100; ++i)
+            assertEquals(i == 3 ? -3 : i, (int) map.get(new Collider(i, i % 3 == 0 ? 42 : i)));
+        assertFalse(map.containsKey(new Collider(100, 42)));
+    }
+}
@@ -9,21 +9,52 @@ import sat.formula.Formula;
 import sat.formula.Literal;
 import sat.formula.NegLiteral;
 import sat.formula.PosLiteral;
+import sat.preprocess.Preprocessor;
+import sat.search.Phase;
+import sat.search.SearchEngine;
+import sat.search.SolveOptions;
+import sat.search.SolveResult;
+import sat.search.SolverStatistics;
 
 /**
- * A simple DPLL SAT solver. See http://en.wikipedia.org/wiki/DPLL_algorithm
+ * A SAT solver front end. solve uses the conflict-driven search of
+ * sat.search.SearchEngine; solveRecursive keeps the original simple DPLL
+ * (see http://en.wikipedia.org/wiki/DPLL_algorithm) as a reference.
  */
 public class SATSolver {
     /**
-     * Solve the problem using a simple version of DPLL with backtracking and
-     * unit propagation. The returned environment binds literals of class
-     * bool.Variable rather than the special literals used in clausification of
-     * class clausal.Literal, so that clients can more readily use it.
+     * Solve the problem using conflict-driven clause learning. The returned
+     * environment binds literals of class bool.Variable rather than the
+     * special literals used in clausification of class clausal.Literal, so
+     * that clients can more readily use it.
      * 
      * @return an environment for which the problem evaluates to Bool.TRUE, or
      *         null if no such environment exists.
      */
     public static Environment solve(Formula formula) {
+        return new SearchEngine(formula).solve();
+    }
+
+    /**
+     * As solve(formula), but stop with SolveResult.Status.UNKNOWN when a
+     * limit of options is reached or its cancellation token is cancelled.
+     * 
+     * @return SAT with an environment for which the problem evaluates to
+     *         Bool.TRUE, UNSAT, or UNKNOWN with the reason and the
+     *         statistics so far
+     */
+    public static SolveResult solve(Formula formula, SolveOptions options) {
+        return new SearchEngine(formula).solve(options);
+    }
+
+    /**
+     * Solve the problem using a simple version of DPLL with backtracking and
+     * unit propagation, working directly on the immutable clause lists.
+     * 
+     * @return an environment for which the problem evaluates to Bool.TRUE, or
+     *         null if no such environment exists.
+     */
+    public static Environment solveRecursive(Formula formula) {
         Environment environment = new Environment();
 
         ImList<Clause> clauses = formula.getClauses();
@@ -31,6 +62,59 @@ public class SATSolver {
         return solution;
     }
 
+    /**
+     * Simplify the problem with a Preprocessor, solve the simplified
+     * problem, and extend its solution to the variables that the
+     * preprocessor removed.
+     * 
+     * @return an environment for which the problem evaluates to Bool.TRUE, or
+     *         null if no such environment exists.
+     */
+    public static Environment solveWithPreprocessing(Formula formula) {
+        return solveWithPreprocessing(formula, new SolverStatistics());
+    }
+
+    /**
+     * As solveWithPreprocessing(formula), recording in statistics the search
+     * counters, the clause counts before and after preprocessing, the bytes
+     * allocated, and the time spent in Phase.PREPROCESS and Phase.SEARCH.
+     * 
+     * @return an environment for which the problem evaluates to Bool.TRUE, or
+     *         null if no such environment exists.
+     */
+    public static Environment solveWithPreprocessing(Formula formula, SolverStatistics statistics) {
+        return solveWithPreprocessing(formula, new SolveOptions(), statistics).getEnvironment();
+    }
+
+    /**
+     * As solveWithPreprocessing(formula, statistics), with the search held
+     * to the limits of options. Preprocessing is bounded by its own budgets
+     * and is not counted against the timeout.
+     * 
+     * @return SAT with an environment for which the problem evaluates to
+     *         Bool.TRUE, UNSAT, or UNKNOWN with the reason
+     */
+    public static SolveResult solveWithPreprocessing(Formula formula, SolveOptions options,
+            SolverStatistics statistics) {
+        long allocatedBefore = SolverStatistics.threadAllocatedBytes();
+        long started = statistics.beginPhase(Phase.PREPROCESS);
+        Preprocessor preprocessor = new Preprocessor(formula);
+        Formula simplified = preprocessor.simplify();
+        statistics.endPhase(Phase.PREPROCESS, started);
+        statistics.setPreprocessedClauses(formula.getSize(), simplified.getSize());
+
+        SearchEngine engine = new SearchEngine(simplified);
+        engine.setStatistics(statistics);
+        SolveResult result = engine.solve(options);
+        if (result.getStatus() == SolveResult.Status.SAT)
+            result = SolveResult.sat(preprocessor.extend(result.getEnvironment()), statistics);
+
+        long allocatedAfter = SolverStatistics.threadAllocatedBytes();
+        if (allocatedBefore >= 0 && allocatedAfter >= 0)
+            statistics.addBytesAllocated(allocatedAfter - allocatedBefore);
+        return result;
+    }
+
     /**
      * Takes a partial assignment of variables to values, and recursively
      * searches for a complete satisfying assignment.
@@ -1,11 +1,26 @@
 package sat;
 
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
 import org.junit.Test;
 
+import sat.env.Bool;
+import sat.env.Environment;
 import sat.formula.Clause;
 import sat.formula.Formula;
 import sat.formula.Literal;
 import sat.formula.PosLiteral;
+import sat.search.Phase;
+import sat.search.CancellationToken;
+import sat.search.ClauseArena;
+import sat.search.CubeAndConquer;
+import sat.search.SearchEngine;
+import sat.search.SolveOptions;
+import sat.search.SolveResult;
+import sat.search.SolverListener;
+import sat.search.SolverStatistics;
 
 public class SATSolverTest {
     Literal a = PosLiteral.make("a");
@@ -74,6 +89,193 @@ public class SATSolverTest {
     	System.out.println(formula);
     	System.out.println(SATSolver.solve(formula));
     }
-    
-    
-}
\ No newline at end of file
+
+    @Test
+    public void unsatTest() {
+        Formula formula = new Formula(new Clause(a));
+        formula = formula.addClause(new Clause(na).add(b));
+        formula = formula.addClause(new Clause(nb).add(c));
+        formula = formula.addClause(new Clause(nc).add(na));
+        assertNull(SATSolver.solve(formula));
+        assertNull(SATSolver.solveRecursive(formula));
+    }
+
+    @Test
+    public void randomFormulasAgreeWithRecursiveTest() {
+        Random random = new Random(7);
+        // one arena for every solve, reset by each engine
+        ClauseArena arena = new ClauseArena(64);
+        Literal[] vars = new Literal[20];
+        for (int i = 0; i < vars.length; ++i)
+            vars[i] = PosLiteral.make("v" + i);
+        for (int round = 0; round < 100; ++round) {
+            Formula formula = new Formula();
+            int clauses = 40 + random.nextInt(60);
+            for (int i = 0; i < clauses; ++i) {
+                Clause clause = new Clause();
+                int width = 2 + random.nextInt(2);
+                for (int k = 0; k < width && clause != null; ++k) {
+                    Literal l = vars[random.nextInt(vars.length)];
+                    clause = clause.add(random.nextBoolean() ? l : l.getNegation());
+                }
+                if (clause != null) formula = formula.addClause(clause);
+            }
+            Environment expected = SATSolver.solveRecursive(formula);
+            for (int mode = 0; mode < 4; ++mode) {
+                SearchEngine engine = new SearchEngine(formula);
+                engine.setBinaryImplications(mode % 2 == 0);
+                if (mode >= 2) engine.setClauseArena(arena);
+                Environment e = engine.solve();
+                assertEquals(expected == null, e == null);
+                if (e != null) assertSatisfies(formula, e);
+            }
+        }
+    }
+
+    @Test
+    public void clauseArenaTest() {
+        // enough conflicts to delete learned clauses and compact the arena
+        ClauseArena arena = new ClauseArena(16);
+        SearchEngine engine = new SearchEngine(pigeonhole(7));
+        engine.setClauseArena(arena);
+        assertEquals(SolveResult.Status.UNSAT, engine.solve(new SolveOptions()).getStatus());
+        assertTrue(engine.getConflicts() > 2000);
+        assertTrue(arena.getUsedBytes() <= arena.getCapacityBytes());
+        arena.reset();
+        assertEquals(0, arena.getUsedBytes());
+    }
+
+    @Test
+    public void cubeAndConquerAgreesWithRecursiveTest() {
+        Random random = new Random(11);
+        Literal[] vars = new Literal[20];
+        for (int i = 0; i < vars.length; ++i)
+            vars[i] = PosLiteral.make("v" + i);
+        for (int round = 0; round < 60; ++round) {
+            Formula formula = new Formula();
+            int clauses = 40 + random.nextInt(60);
+            for (int i = 0; i < clauses; ++i) {
+                Clause clause = new Clause();
+                for (int k = 0; k < 3 && clause != null; ++k) {
+                    Literal l = vars[random.nextInt(vars.length)];
+                    clause = clause.add(random.nextBoolean() ? l : l.getNegation());
+                }
+                if (clause != null) formula = formula.addClause(clause);
+            }
+            Environment expected = SATSolver.solveRecursive(formula);
+            CubeAndConquer solver = new CubeAndConquer(formula);
+            solver.setParallelism(1 + round % 3);
+            solver.setCubeDepth(round % 5);
+            Environment e = solver.solve();
+            assertEquals(expected == null, e == null);
+            if (e != null) assertSatisfies(formula, e);
+            assertTrue(solver.getCubes() <= 1 << (round % 5));
+        }
+    }
+
+    @Test
+    public void cubeAndConquerUnsatTest() {
+        CubeAndConquer solver = new CubeAndConquer(pigeonhole(6));
+        solver.setParallelism(4);
+        SolveResult result = solver.solve(new SolveOptions());
+        assertEquals(SolveResult.Status.UNSAT, result.getStatus());
+        assertEquals(solver.getCubes(), solver.getSearchedCubes());
+        assertTrue(solver.getCubes() + solver.getRefutedCubes() > 1);
+        assertTrue(result.getStatistics().getPhaseNanos(Phase.LOOKAHEAD) > 0);
+
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        result = new CubeAndConquer(pigeonhole(6)).solve(new SolveOptions().setCancellation(token));
+        assertEquals(SolveResult.Reason.CANCELLED, result.getReason());
+
+        assertNull(new CubeAndConquer(new Formula(new Clause())).solve());
+        assertNotNull(new CubeAndConquer(new Formula()).solve());
+    }
+
+    @Test
+    public void statisticsTest() {
+        final StringBuilder events = new StringBuilder();
+        SolverStatistics statistics = new SolverStatistics();
+        statistics.setListener(new SolverListener() {
+            public void phaseStarted(Phase phase) {
+                events.append("+" + phase);
+            }
+            public void phaseFinished(Phase phase, long nanos) {
+                events.append("-" + phase);
+            }
+            public void searchProgress(SolverStatistics s) {
+            }
+        });
+        Formula formula = new Formula(new Clause(a).add(b));
+        formula = formula.addClause(new Clause(na).add(c));
+        formula = formula.addClause(new Clause(nb).add(nc));
+        Environment e = SATSolver.solveWithPreprocessing(formula, statistics);
+        assertSatisfies(formula, e);
+        assertEquals("+PREPROCESS-PREPROCESS+SEARCH-SEARCH", events.toString());
+        assertEquals(3, statistics.getClausesBeforePreprocessing());
+        assertTrue(statistics.getClausesAfterPreprocessing() <= 3);
+    }
+
+    @Test
+    public void limitsTest() {
+        Formula formula = pigeonhole(7);
+        SolveResult result = SATSolver.solve(formula, new SolveOptions().setConflictLimit(10));
+        assertEquals(SolveResult.Status.UNKNOWN, result.getStatus());
+        assertEquals(SolveResult.Reason.CONFLICT_LIMIT, result.getReason());
+        assertEquals(10, result.getStatistics().getConflicts());
+        assertNull(result.getEnvironment());
+
+        result = SATSolver.solve(formula, new SolveOptions().setDecisionLimit(3));
+        assertEquals(SolveResult.Reason.DECISION_LIMIT, result.getReason());
+        assertEquals(3, result.getStatistics().getDecisions());
+
+        result = SATSolver.solve(formula, new SolveOptions().setTimeoutMillis(0));
+        assertEquals(SolveResult.Reason.TIMEOUT, result.getReason());
+
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        result = SATSolver.solve(formula, new SolveOptions().setCancellation(token));
+        assertEquals(SolveResult.Reason.CANCELLED, result.getReason());
+
+        result = SATSolver.solve(formula, new SolveOptions().setTimeoutMillis(60000));
+        assertEquals(SolveResult.Status.UNSAT, result.getStatus());
+        result = SATSolver.solve(new Formula(new Clause(a).add(b)), new SolveOptions());
+        assertEquals(SolveResult.Status.SAT, result.getStatus());
+        assertNotNull(result.getEnvironment());
+    }
+
+    /**
+     * @return the unsatisfiable formula placing holes+1 pigeons in holes
+     *         holes, at most one pigeon per hole
+     */
+    private static Formula pigeonhole(int holes) {
+        Literal[][] in = new Literal[holes + 1][holes];
+        for (int p = 0; p <= holes; ++p)
+            for (int h = 0; h < holes; ++h)
+                in[p][h] = PosLiteral.make("pigeon" + p + "_" + h);
+        Formula formula = new Formula();
+        for (int p = 0; p <= holes; ++p) {
+            Clause somewhere = new Clause();
+            for (int h = 0; h < holes; ++h)
+                somewhere = somewhere.add(in[p][h]);
+            formula = formula.addClause(somewhere);
+        }
+        for (int h = 0; h < holes; ++h)
+            for (int p = 0; p <= holes; ++p)
+                for (int q = p + 1; q <= holes; ++q)
+                    formula = formula.addClause(new Clause(in[p][h].getNegation()).add(in[q][h].getNegation()));
+        return formula;
+    }
+
+    private static void assertSatisfies(Formula formula, Environment e) {
+        for (Clause clause : formula.getClauses()) {
+            boolean satisfied = false;
+            for (Literal l : clause) {
+                Bool value = e.get(l.getVariable());
+                if (l instanceof PosLiteral ? value == Bool.TRUE : value == Bool.FALSE)
+                    satisfied = true;
+            }
+            assertTrue("unsatisfied " + clause, satisfied);
+        }
+    }
+}
@@ -5,7 +5,7 @@
  * (c) 2008, MIT and Daniel Jackson
  */
 package sat.env;
-import immutable.ImListMap;
+import immutable.ImHashMap;
 import immutable.ImMap;
 
 /**
@@ -31,7 +31,7 @@ public class Environment {
     }
 
     public Environment() {
-        this (new ImListMap<Variable, Bool> ());
+        this (new ImHashMap<Variable, Bool> ());
     }
 
     /**
@@ -5,77 +5,84 @@
  * (c) 2008, MIT and Daniel Jackson
  */
 package sat.formula;
-import immutable.EmptyImList;
-import immutable.ImList;
-import immutable.NonEmptyImList;
-
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * A class for clauses in a CNF representation of a logic formula.
  * A clause is an immutable set of literals that does not contain
  * a literal and its negation.
  * 
+ * The literals are held as a sorted array of literal codes (see
+ * Literal.getCode), so membership is a binary search, merge and reduce
+ * are linear, and equality is a single array comparison. Because the
+ * order is canonical, equal clauses can be shared through intern().
+ * 
  * Note: reduce returns null; a questionnable design decision
  */
 public class Clause implements Iterable<Literal> {
-    private final ImList<Literal> literals;
+    private final int[] codes;
+    private final long hash;
+
+    // canonical instances returned by intern()
+    private static final ClauseTable internTable = new ClauseTable();
     /*
      * Rep invariant:
-     *       literals is non null but may be empty 
-     *       contains no duplicate literals
-     *    contains no literal and its negation
-     *       contains no null elements
+     *       codes is non null but may be empty
+     *       codes is sorted in strictly ascending order (so contains no duplicate literals)
+     *       contains no literal and its negation; since the codes of l and ~l
+     *          differ only in the lowest bit, this means no two adjacent
+     *          elements c, c^1
+     *       every element is the code of some allocated literal
+     *       hash == hash(codes)
      * 
      * Abstraction function:
-     *     The list of literals l1,l2,...,ln represents 
-     *     the boolean formula (l1 or l2 or ... or ln)
+     *     The array of codes c1,c2,...,cn represents 
+     *     the boolean formula (l1 or l2 or ... or ln), where li is
+     *     Literal.fromCode(ci)
      *     
-     *     For example, if the list contains a,b,!c,d, then the
+     *     For example, if the array holds the codes of a,b,!c,d, then the
      *     corresponding formula is (a or b or !c or d).
      */
 
     void checkRep () {
-        // check whether assertions are turned on.
-        // if they're not on, we want to avoid all the recursive
-        // traversal that checkRep(literals) would do.
-        try {
-            assert false;
-        } catch (AssertionError e) {
-            checkRep (literals);
+        assert codes != null : "Clause, Rep invariant: codes non-null";
+        assert hash == hash(codes) : "Clause, Rep invariant: cached hash";
+        for (int i = 1; i < codes.length; ++i) {
+            assert codes[i - 1] < codes[i] : "Clause, Rep invariant: sorted, no dups";
+            assert (codes[i - 1] ^ 1) != codes[i] : "Clause, Rep invariant: no literal and its negation";
         }
     }
-    void checkRep (ImList<Literal> ls) {
-        assert ls != null : "Clause, Rep invariant: literals non-null"; 
-        if (!ls.isEmpty()) {
-            Literal first = ls.first();
-            assert first != null : "Clause, Rep invariant: no null elements";
-            ImList<Literal> rest = ls.rest();
-            assert !rest.contains(first) : "Clause, Rep invariant: no dups";
-            assert !rest.contains(first.getNegation()) : "Clause, Rep invariant: no literal and its negation";
-            checkRep (rest);
-        }        
-    }
 
-    private Clause(ImList<Literal> literals) {
-        this.literals = literals;
+    private Clause(int[] codes) {
+        this.codes = codes;
+        this.hash = hash(codes);
         checkRep();
     }
 
+    // 64-bit hash of a code array, mixed so that the high bits are usable
+    private static long hash(int[] codes) {
+        long h = codes.length;
+        for (int code : codes)
+            h = (h ^ code) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+
     /**
      * @return a clause contain a single literal
      */
     public Clause(Literal literal) {
-        this(new NonEmptyImList<Literal>(literal));
-        checkRep();
+        this(new int[] { literal.getCode() });
     }
 
     /**
      * @return an empty clause
      */
     public Clause() {
-        this(new EmptyImList<Literal>());
-        checkRep();
+        this(new int[0]);
     }
 
     /**
@@ -84,7 +91,7 @@ public class Clause implements Iterable<Literal> {
      * @return a literal belonging to the clause
      */
     public Literal chooseLiteral() {
-        return literals.first();
+        return Literal.fromCode(codes[0]);
     }
 
     /**
@@ -105,7 +112,7 @@ public class Clause implements Iterable<Literal> {
      * @return number of literals in this clause
      */
     public int size() {
-        return literals.size();
+        return codes.length;
     }
 
     /**
@@ -114,7 +121,7 @@ public class Clause implements Iterable<Literal> {
      * @return true iff this contains the literal l
      */
     public boolean contains(Literal l) {
-        return literals.contains(l);
+        return Arrays.binarySearch(codes, l.getCode()) >= 0;
     }
 
     /**
@@ -124,9 +131,16 @@ public class Clause implements Iterable<Literal> {
      * @return the new clause with the literal added, or null
      */
     public Clause add(Literal l) {
-        if (literals.contains(l)) return this;
-        if (literals.contains(l.getNegation())) return null;
-        return new Clause(literals.add(l));
+        int code = l.getCode();
+        int pos = Arrays.binarySearch(codes, code);
+        if (pos >= 0) return this;
+        if (Arrays.binarySearch(codes, code ^ 1) >= 0) return null;
+        int insert = -pos - 1;
+        int[] newCodes = new int[codes.length + 1];
+        System.arraycopy(codes, 0, newCodes, 0, insert);
+        newCodes[insert] = code;
+        System.arraycopy(codes, insert, newCodes, insert + 1, codes.length - insert);
+        return new Clause(newCodes);
     }
 
     /**
@@ -138,12 +152,23 @@ public class Clause implements Iterable<Literal> {
      * @return the merge of this clause and c
      */
     public Clause merge (Clause c) {
-        Clause result = this;
-        for (Literal l: c) {
-            result = result.add(l);
-            if (result == null) return null;
+        int[] a = codes;
+        int[] b = c.codes;
+        int[] merged = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j == b.length || (i < a.length && a[i] < b[j])) next = a[i++];
+            else if (i == a.length || b[j] < a[i]) next = b[j++];
+            else { next = a[i++]; j++; }
+            // a literal and its negation have adjacent codes, so a clash
+            // always shows up between consecutive elements of the merge
+            if (n > 0 && (merged[n - 1] ^ 1) == next) return null;
+            merged[n++] = next;
         }
-        return result;
+        if (n == a.length) return this;
+        if (n == b.length) return c;
+        return new Clause(Arrays.copyOf(merged, n));
     }
 
     /**
@@ -151,7 +176,22 @@ public class Clause implements Iterable<Literal> {
      * in an arbitrary order
      */
     public Iterator<Literal> iterator() {
-        return literals.iterator();
+        return new Iterator<Literal>() {
+            private int next = 0;
+
+            public boolean hasNext() {
+                return next < codes.length;
+            }
+
+            public Literal next() {
+                if (next >= codes.length) throw new NoSuchElementException();
+                return Literal.fromCode(codes[next++]);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("Clause is immutable");
+            }
+        };
     }
 
     /**
@@ -160,26 +200,23 @@ public class Clause implements Iterable<Literal> {
      * or null if the entire clause becomes true
      */
     public Clause reduce(Literal literal) {
-        ImList<Literal> reducedLiterals = reduce(literals, literal);
-        if (reducedLiterals == null) return null;
-        else return new Clause(reducedLiterals);
-    }
-
-    private static ImList<Literal> reduce(ImList<Literal> literals, Literal l) {
-        if (literals.isEmpty()) return literals;
-        Literal first = literals.first();
-        ImList<Literal> rest = literals.rest();
-        if (first.equals(l)) return null;
-        else if (first.equals(l.getNegation())) return rest;
-        else {
-            ImList<Literal> restR = reduce(rest, l);
-            if (restR == null) return null;
-            return restR.add(first);
-        }
+        int code = literal.getCode();
+        if (Arrays.binarySearch(codes, code) >= 0) return null;
+        int pos = Arrays.binarySearch(codes, code ^ 1);
+        if (pos < 0) return this;
+        int[] newCodes = new int[codes.length - 1];
+        System.arraycopy(codes, 0, newCodes, 0, pos);
+        System.arraycopy(codes, pos + 1, newCodes, pos, codes.length - pos - 1);
+        return new Clause(newCodes);
     }
 
     public String toString() {
-        return "Clause" + literals;
+        StringBuilder result = new StringBuilder("Clause[");
+        for (int i = 0; i < codes.length; ++i) {
+            if (i > 0) result.append(", ");
+            result.append(Literal.fromCode(codes[i]));
+        }
+        return result.append("]").toString();
     }
     
     @Override
@@ -187,9 +224,29 @@ public class Clause implements Iterable<Literal> {
         if (this == that) return true;
         if (!(that instanceof Clause)) return false;
         Clause c = (Clause) that;
-        if (size() != c.size()) return false;
-        for (Literal l: literals)
-            if (!(c.contains(l))) return false;
-        return true;
+        return hash == c.hash && Arrays.equals(codes, c.codes);
+    }
+
+    @Override
+    public int hashCode () {
+        return (int) hash;
+    }
+
+    /**
+     * @return a 64-bit hash of this clause; equal clauses have equal hashes
+     */
+    public long longHash () {
+        return hash;
+    }
+
+    /**
+     * Return the canonical instance of this clause: for equal clauses
+     * c1 and c2, c1.intern() == c2.intern(). Canonical instances are
+     * weakly held, so interning does not keep unused clauses alive.
+     * Safe to call from multiple threads.
+     * @return a clause equal to this
+     */
+    public Clause intern () {
+        return internTable.intern(this);
     }
 }
@@ -0,0 +1,118 @@
+package sat.formula;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * A concurrent intern table for clauses, used by Clause.intern.
+ * Clauses are held by weak references, so an interned clause that is no
+ * longer used elsewhere can be garbage collected; its entry is removed the
+ * next time its segment is modified.
+ *
+ * The table is split into segments, selected by the high bits of the
+ * clause's 64-bit hash, each guarded by its own lock.
+ */
+final class ClauseTable {
+    private static final int SEGMENT_BITS = 4;
+    private final Segment[] segments;
+
+    /*
+     * Rep invariant:
+     *     segments.length == 1 << SEGMENT_BITS, no element null
+     *     an entry for hash h is only in segments[h >>> (64 - SEGMENT_BITS)]
+     *     no segment holds two entries whose live clauses are equal
+     */
+
+    ClauseTable() {
+        segments = new Segment[1 << SEGMENT_BITS];
+        for (int i = 0; i < segments.length; ++i)
+            segments[i] = new Segment();
+    }
+
+    /**
+     * @return the clause in the table equal to c, adding c if there is none
+     */
+    Clause intern(Clause c) {
+        long hash = c.longHash();
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))].intern(c, hash);
+    }
+
+    /**
+     * @return number of live and not yet expunged clauses in the table
+     */
+    int size() {
+        int size = 0;
+        for (Segment s : segments)
+            size += s.size();
+        return size;
+    }
+
+    private static final class Entry extends WeakReference<Clause> {
+        final long hash;
+        Entry next;
+
+        Entry(Clause c, long hash, ReferenceQueue<Clause> queue, Entry next) {
+            super(c, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    private static final class Segment {
+        private Entry[] table = new Entry[16];
+        private int count = 0;
+        private final ReferenceQueue<Clause> queue = new ReferenceQueue<Clause>();
+
+        synchronized Clause intern(Clause c, long hash) {
+            expunge();
+            int index = (int) hash & (table.length - 1);
+            for (Entry e = table[index]; e != null; e = e.next) {
+                if (e.hash != hash) continue;
+                Clause existing = e.get();
+                if (existing != null && existing.equals(c)) return existing;
+            }
+            table[index] = new Entry(c, hash, queue, table[index]);
+            if (++count > table.length - (table.length >>> 2))
+                resize();
+            return c;
+        }
+
+        synchronized int size() {
+            expunge();
+            return count;
+        }
+
+        private void resize() {
+            Entry[] old = table;
+            table = new Entry[2 * old.length];
+            for (Entry head : old) {
+                Entry e = head;
+                while (e != null) {
+                    Entry next = e.next;
+                    int index = (int) e.hash & (table.length - 1);
+                    e.next = table[index];
+                    table[index] = e;
+                    e = next;
+                }
+            }
+        }
+
+        // remove entries whose clauses have been collected
+        private void expunge() {
+            Object ref;
+            while ((ref = queue.poll()) != null) {
+                Entry dead = (Entry) ref;
+                int index = (int) dead.hash & (table.length - 1);
+                Entry prev = null;
+                for (Entry e = table[index]; e != null; prev = e, e = e.next) {
+                    if (e == dead) {
+                        if (prev == null) table[index] = e.next;
+                        else prev.next = e.next;
+                        --count;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
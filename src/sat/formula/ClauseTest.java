@@ -39,6 +39,54 @@ public class ClauseTest {
         }
     }
 
+    @Test
+    public void testAddAndContains() {
+        assertTrue(cpq.contains(p));
+        assertTrue(cpq.contains(q));
+        assertFalse(cpq.contains(r));
+        assertFalse(cpq.contains(np));
+        assertSame(cpq, cpq.add(q));
+        assertNull(cpq.add(nq));
+        assertEquals(3, cpq.add(r).size());
+    }
+
+    @Test
+    public void testMerge() {
+        assertEquals(cpqr, cpq.merge(cr));
+        assertEquals(cpqr, cr.merge(cpq));
+        assertEquals(cpq, cpq.merge(cp));
+        assertEquals(cpq, empty.merge(cpq));
+        assertNull(cpq.merge(cnq));
+        assertNull(cpnq.merge(cq));
+    }
+
+    @Test
+    public void testReduce() {
+        assertNull(cpq.reduce(p));
+        assertEquals(cq, cpq.reduce(np));
+        assertEquals(cpq, cpq.reduce(r));
+        assertTrue(cp.reduce(np).isEmpty());
+    }
+
+    @Test
+    public void testEqualsIgnoresOrder() {
+        Clause c1 = make(r, nq, p);
+        Clause c2 = make(p, r, nq);
+        assertEquals(c1, c2);
+        assertEquals(c1.hashCode(), c2.hashCode());
+        assertFalse(c1.equals(cpqr));
+    }
+
+    @Test
+    public void testIterator() {
+        int count = 0;
+        for (Literal l : cpnq) {
+            assertTrue(l == p || l == nq);
+            ++count;
+        }
+        assertEquals(2, count);
+    }
+
     private Clause make(Literal... e) {
         Clause c = new Clause();
         for (int i = 0; i < e.length; ++i) {
@@ -11,6 +11,7 @@ import immutable.ImList;
 import immutable.ImListIterator;
 import immutable.NonEmptyImList;
 
+import java.util.HashSet;
 import java.util.Iterator;
 
 import sat.env.Variable;
@@ -22,13 +23,22 @@ import sat.env.Variable;
  */
 public class Formula {
     private final ImList<Clause> clauses;
+    // index of the clauses, shared along a chain of addClause calls
+    private final ClauseIndex index;
+    // number of clauses dropped as duplicates while building this formula
+    private final int duplicatesRemoved;
     // Rep invariant:
     //      clauses != null
     //      clauses contains no null elements (ensured by spec of ImList)
+    //      clauses contains no two equal clauses, and every clause is interned
+    //      if index.tip == clauses, then index.members is exactly the set of clauses
     //
-    // Note: although a formula is intended to be a set,  
-    // the list may include duplicate clauses without any problems. 
-    // The cost of ensuring that the list has no duplicates is not worth paying.
+    // Note: although a formula is intended to be a set, and adding clauses
+    // keeps it one, the list is not hashed until the first clause is added
+    // to it. Each formula derived by addClause from the most recent formula
+    // in a chain takes over its index, so building a formula clause by clause
+    // costs O(1) expected time per clause; adding to an older formula copies
+    // the index first.
     //
     //    
     //    Abstraction function:
@@ -42,6 +52,21 @@ public class Formula {
         assert this.clauses != null : "SATProblem, Rep invariant: clauses non-null";
     }
 
+    /**
+     * A hash set of clauses, valid for the formula whose clause list is tip.
+     * Guarded by its own lock, since formulas may be shared between threads.
+     */
+    private static final class ClauseIndex {
+        final HashSet<Clause> members = new HashSet<Clause>();
+        ImList<Clause> tip;
+
+        ClauseIndex(ImList<Clause> clauses) {
+            for (Clause c : clauses)
+                members.add(c);
+            tip = clauses;
+        }
+    }
+
     /**
      * Create a new problem for solving that contains no clauses (that is the
      * vacuously true problem)
@@ -49,7 +74,7 @@ public class Formula {
      * @return the true problem
      */
     public Formula() {
-    	this.clauses = new EmptyImList<Clause> ();
+    	this(new EmptyImList<Clause> (), null, 0);
     }
 
     /**
@@ -59,9 +84,7 @@ public class Formula {
      * @return the problem with a single clause containing the literal l
      */
     public Formula(Variable l) {
-    	Literal literal = PosLiteral.make(l);
-    	Clause clause = new Clause(literal);
-        this.clauses = new NonEmptyImList<Clause> (clause);
+    	this(new Clause(PosLiteral.make(l)));
     }
     
     /**
@@ -69,8 +92,10 @@ public class Formula {
      * 
      * @return the problem with the given set of clauses
      */
-    private Formula(ImList<Clause> clauses) {
+    private Formula(ImList<Clause> clauses, ClauseIndex index, int duplicatesRemoved) {
     	this.clauses = clauses;
+    	this.index = index;
+    	this.duplicatesRemoved = duplicatesRemoved;
     }
 
     /**
@@ -79,18 +104,41 @@ public class Formula {
      * @return the problem with a single clause c
      */
     public Formula(Clause c) {
-        this.clauses = new NonEmptyImList<Clause> (c);
+        this(new NonEmptyImList<Clause> (c.intern()), null, 0);
     }
 
     /**
-     * Add a clause to this problem
+     * Add a clause to this problem. If this already contains a clause equal
+     * to c, c is dropped: the new problem has the same clauses as this, and
+     * its getDuplicatesRemoved is one more than this one's.
      * 
-     * @return a new problem with the clauses of this, but c added
+     * @return a new problem with the clauses of this, and c added unless it
+     *         duplicates one of them
      */
     public Formula addClause(Clause c) {
-    	ImList<Clause> clauses = this.getClauses();
-    	ImList<Clause> newClauses = clauses.add(c);
-        return new Formula(newClauses);
+    	c = c.intern();
+    	ClauseIndex idx = index;
+    	if (idx == null) idx = new ClauseIndex(clauses);
+    	synchronized (idx) {
+    		if (idx.tip != clauses) {
+    			idx = new ClauseIndex(clauses);
+    		}
+    		if (idx.members.contains(c))
+    			return new Formula(clauses, idx, duplicatesRemoved + 1);
+    		ImList<Clause> newClauses = clauses.add(c);
+    		idx.members.add(c);
+    		idx.tip = newClauses;
+    		return new Formula(newClauses, idx, duplicatesRemoved);
+    	}
+    }
+
+    /**
+     * @return number of clauses that were dropped because they duplicated
+     *         a clause already present, over all the addClause and and calls
+     *         that built this formula
+     */
+    public int getDuplicatesRemoved() {
+        return duplicatesRemoved;
     }
 
     /**
@@ -116,14 +164,15 @@ public class Formula {
      * @return a new problem corresponding to the conjunction of this and p
      */
     public Formula and(Formula p) {
-    	ImList<Clause> finalClauses = this.getClauses();
+    	Formula result = this;
         Iterator<Clause> formulaIterator = p.iterator();
         while (formulaIterator.hasNext()) {
         	Clause nextClause = formulaIterator.next();
-        	finalClauses = finalClauses.add(nextClause); // Append the clause lists
+        	result = result.addClause(nextClause); // Append the clause lists
         }
         
-        return new Formula(finalClauses);
+        return new Formula(result.clauses, result.index,
+        		result.duplicatesRemoved + p.duplicatesRemoved);
     }
 
     /**
@@ -133,7 +182,7 @@ public class Formula {
         // Hint: you'll need to use the distributive law to preserve conjunctive normal form, i.e.:
         //   to do (a & b) .or (c & d),
         //   you'll need to make (a | d) & (a | c) & (b | c) & (b | d)  
-    	ImList<Clause> clauses = new EmptyImList<Clause> ();
+    	Formula result = new Formula();
         for (Clause clause1 : this.clauses) {
         	for (Clause clause2 : p.clauses) {
         		Iterator<Literal> literalIterator1 = clause1.iterator();
@@ -146,13 +195,13 @@ public class Formula {
         				Clause newClause = new Clause(literal1);
         				newClause = newClause.add(literal2);
         				if (newClause != null)
-                			clauses = clauses.add(newClause);
+                			result = result.addClause(newClause);
         			}
         		}
         		
         	}
         }
-        return new Formula(clauses);
+        return result;
     }
 
     /**
@@ -169,13 +218,13 @@ public class Formula {
     	ImList<Formula> formulae = new EmptyImList<Formula> ();
         for (Clause clause : this.clauses) {
         	Iterator<Literal> literalIterator = clause.iterator();
-        	ImList<Clause> clauses = new EmptyImList<Clause> ();
+        	Formula negated = new Formula();
         	while (literalIterator.hasNext()) {
         		Literal literal = literalIterator.next();
         		Literal negationLiteral = literal.getNegation();
-        		clauses = clauses.add(new Clause(negationLiteral));
+        		negated = negated.addClause(new Clause(negationLiteral));
         	}
-        	formulae = formulae.add(new Formula(clauses));
+        	formulae = formulae.add(negated);
         }
         Formula finalFormula = formulae.first();
         ImList<Formula> rest = formulae.rest();
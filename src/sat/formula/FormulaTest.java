@@ -1,5 +1,7 @@
 package sat.formula;
 
+import static org.junit.Assert.*;
+
 import org.junit.Test;
 
 public class FormulaTest {    
@@ -68,13 +70,42 @@ public class FormulaTest {
 
     
     
+    @Test
+    public void duplicatesRemovedTest() {
+        Formula formula = new Formula(make(a, b));
+        formula = formula.addClause(make(b, a));
+        formula = formula.addClause(make(c));
+        assertEquals(2, formula.getSize());
+        assertEquals(1, formula.getDuplicatesRemoved());
+
+        Formula both = formula.and(formula);
+        assertEquals(2, both.getSize());
+        assertEquals(4, both.getDuplicatesRemoved());
+
+        // adding to an older formula must not see clauses added after it
+        Formula older = new Formula(make(a, b));
+        Formula newer = older.addClause(make(c));
+        Formula branch = older.addClause(make(c));
+        assertEquals(2, newer.getSize());
+        assertEquals(2, branch.getSize());
+        assertEquals(0, branch.getDuplicatesRemoved());
+    }
+
+    @Test
+    public void internTest() {
+        Clause c1 = make(a, nb, c);
+        Clause c2 = make(c, a, nb);
+        assertNotSame(c1, c2);
+        assertSame(c1.intern(), c2.intern());
+        assertEquals(c1.longHash(), c2.longHash());
+    }
+
     // Helper function for constructing a clause.  Takes
     // a variable number of arguments, e.g.
     //  clause(a, b, c) will make the clause (a or b or c)
     // @param e,...   literals in the clause
     // @return clause containing e,...
-    @SuppressWarnings("unused")
-	private Clause make(Literal... e) {
+    private Clause make(Literal... e) {
         Clause c = new Clause();
         for (int i = 0; i < e.length; ++i) {
             c = c.add(e[i]);
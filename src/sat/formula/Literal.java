@@ -21,10 +21,15 @@ public abstract class Literal {
     // not private, so it can be set in PosLiteral's factory method
     Literal negation;
 
+    // dense integer code, also set in PosLiteral's factory method:
+    // 2*i for the ith positive literal allocated, 2*i+1 for its negation
+    int code;
+
     /* Rep invariant:
      *   this.negation.negation == this
      *   this.name != null (part of rep of superclass)
      *   this.negation.name.equals (this.name)
+     *   this.negation.code == (this.code ^ 1)
      * Invariant is established only when factory method in PosLiteral has completed,
      * so checkRep is called there rather than in constructor here.
      * 
@@ -36,6 +41,7 @@ public abstract class Literal {
     void checkRep () {
         assert this.getNegation().getNegation() == this : "Variable, Rep invariant: negation of negation";
         assert this.getNegation().var.getName().equals(var.getName()) : "Variable, Rep invariant: names match";
+        assert this.getNegation().code == (code ^ 1) : "Variable, Rep invariant: codes complementary";
     }
 
     Literal (String name) {
@@ -60,6 +66,24 @@ public abstract class Literal {
         return negation;
     }
 
+    /**
+     * @return a small non-negative integer that uniquely identifies this
+     *         literal; the codes of a literal and its negation differ only in
+     *         the lowest bit, and the positive literal has the even code
+     */
+    public int getCode () {
+        return code;
+    }
+
+    /**
+     * Requires: code was obtained from getCode() of some literal
+     * @return the literal whose code is code
+     */
+    public static Literal fromCode (int code) {
+        PosLiteral literal = PosLiteral.fromIndex(code >>> 1);
+        return (code & 1) == 0 ? literal : literal.negation;
+    }
+
     /**
      * @return true iff literal corresponds to the negation of this
      */
@@ -7,8 +7,10 @@
 package sat.formula;
 
 import sat.env.Variable;
-import immutable.ImListMap;
-import immutable.ImMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Class representing positive literals.
@@ -17,10 +19,20 @@ import immutable.ImMap;
  */
 public class PosLiteral extends Literal {
     /* 
-     * Mapping of positive literals that have already been allocated, keyed on their names
-     * Invariant: non null, and no key or value is null
+     * Mapping of positive literals that have already been allocated, keyed on their names;
+     * a hash table, since a 64x64 Sudoku alone interns a quarter million literals
+     * Invariant: non null, and no key or value is null; guarded by the class lock
+     */
+    private static final Map<String,PosLiteral> allocatedPosLiterals = new HashMap<String,PosLiteral>();
+    /*
+     * Positive literals in order of allocation, so that byIndex[i].code == 2*i
+     * Invariant: the first allocatedCount elements are non null
+     * Written only by make, under the class lock, and republished after
+     * every allocation, so that fromIndex can read it without locking:
+     * clause iteration calls fromIndex on every literal, from every thread
      */
-    static ImMap<String,PosLiteral> allocatedPosLiterals = new ImListMap<String,PosLiteral>();
+    private static volatile PosLiteral[] byIndex = new PosLiteral[64];
+    private static int allocatedCount = 0;
 
     private PosLiteral (String name) {
         super (name);
@@ -35,19 +47,35 @@ public class PosLiteral extends Literal {
      * will exist to represent a literal of a given name. 
      * @return the positive literal with the given name
      */
-    public static PosLiteral make (String name) {
+    public static synchronized PosLiteral make (String name) {
         PosLiteral literal = allocatedPosLiterals.get(name);
         if (literal==null) {
             literal = new PosLiteral(name);
             NegLiteral negated = new NegLiteral(name);
             literal.negation = negated;
             negated.negation = literal;
-            allocatedPosLiterals = allocatedPosLiterals.put(name, literal);
+            PosLiteral[] table = byIndex;
+            if (allocatedCount == table.length)
+                table = Arrays.copyOf(table, 2 * allocatedCount);
+            literal.code = 2 * allocatedCount;
+            negated.code = literal.code + 1;
+            table[allocatedCount++] = literal;
+            // the volatile write publishes the new element and its fields
+            byIndex = table;
+            allocatedPosLiterals.put(name, literal);
         }
         literal.checkRep(); 
         return literal;
     }
 
+    /**
+     * Requires: 0 <= index < number of positive literals allocated so far
+     * @return the positive literal whose code is 2*index
+     */
+    static PosLiteral fromIndex (int index) {
+        return byIndex[index];
+    }
+
     public String toString () {
         return var.toString();
     }
@@ -0,0 +1,393 @@
+package sat.preprocess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import sat.env.Bool;
+import sat.env.Environment;
+import sat.env.Variable;
+import sat.formula.Clause;
+import sat.formula.Formula;
+import sat.formula.Literal;
+
+/**
+ * A mutable clause store used by the preprocessing passes. Clauses are
+ * sorted arrays of literal codes (see Literal.getCode), indexed by
+ * per-literal occurrence lists, and carry a 64-bit signature of their
+ * variables for cheap subset filtering.
+ *
+ * Unit clauses are never stored: they are propagated immediately, fixing
+ * the literal, deleting the clauses it satisfies and strengthening the
+ * clauses that contain its negation.
+ *
+ * Every change that does not preserve equivalence with the original
+ * formula pushes an entry onto the extension stack, so that a model of
+ * the simplified formula can be extended to a model of the original one.
+ */
+final class ClauseDatabase {
+    // clauses[c] is the sorted codes of clause c, or null if c was removed
+    private int[][] clauses;
+    private long[] signatures;
+    private int clauseCount;
+    private int liveClauses;
+    private long liveLiterals;
+    // occurs[l] lists the live clauses containing the literal with code l
+    private IntVec[] occurs;
+    // values[v] is the value fixed for variable v, or UNDEFINED
+    private Bool[] values;
+    // used[v] is true iff variable v occurs in the original formula
+    private boolean[] used;
+    private boolean unsat;
+    private final IntVec pendingUnits = new IntVec();
+    // clauses whose literals changed since the last drainTouched()
+    private final IntVec touched = new IntVec();
+    private boolean[] isTouched;
+    // extension stack: the clause extensionClauses[i] must be made true by
+    // setting extensionWitnesses[i] when it is not already satisfied
+    private final ArrayList<int[]> extensionClauses = new ArrayList<int[]>();
+    private final IntVec extensionWitnesses = new IntVec();
+
+    /*
+     * Rep invariant:
+     *     for every live clause c, clauses[c] is sorted, has at least two
+     *        literals, contains no literal and its negation and no literal
+     *        of a fixed variable
+     *     c is in occurs[l] iff clauses[c] != null and clauses[c] contains l
+     *     signatures[c] == signature(clauses[c]) for live c
+     *     liveClauses and liveLiterals count the live clauses and their literals
+     *
+     * Abstraction function:
+     *     if unsat, the false formula; otherwise the conjunction of the live
+     *     clauses and a unit clause for every fixed variable
+     */
+
+    /**
+     * Create a database holding the clauses of formula, with all unit
+     * clauses already propagated.
+     */
+    ClauseDatabase(Formula formula) {
+        int maxCode = 1;
+        for (Clause c : formula.getClauses())
+            for (Literal l : c)
+                maxCode = Math.max(maxCode, l.getCode() | 1);
+        int vars = (maxCode >>> 1) + 1;
+        occurs = new IntVec[2 * vars];
+        values = new Bool[vars];
+        Arrays.fill(values, Bool.UNDEFINED);
+        used = new boolean[vars];
+        int n = formula.getSize();
+        clauses = new int[Math.max(n, 1)][];
+        signatures = new long[clauses.length];
+        isTouched = new boolean[clauses.length];
+        for (Clause c : formula.getClauses()) {
+            int[] codes = new int[c.size()];
+            int i = 0;
+            for (Literal l : c) {
+                codes[i++] = l.getCode();
+                used[l.getCode() >>> 1] = true;
+            }
+            addClause(codes);
+        }
+        propagate();
+    }
+
+    /**
+     * @return number of variable indices (literal codes are below twice this)
+     */
+    int numVars() {
+        return values.length;
+    }
+
+    /**
+     * @return number of clause slots, live or removed
+     */
+    int capacity() {
+        return clauseCount;
+    }
+
+    int liveClauses() {
+        return liveClauses;
+    }
+
+    long liveLiterals() {
+        return liveLiterals;
+    }
+
+    boolean isUnsat() {
+        return unsat;
+    }
+
+    /**
+     * @return the literals of clause c, or null if c was removed.
+     * Clients must not modify the returned array.
+     */
+    int[] clause(int c) {
+        return clauses[c];
+    }
+
+    long signature(int c) {
+        return signatures[c];
+    }
+
+    /**
+     * @return the live clauses containing literal code lit. Clients must
+     * copy the list before removing or strengthening clauses.
+     */
+    IntVec occurrences(int lit) {
+        IntVec occ = occurs[lit];
+        if (occ == null) {
+            occ = new IntVec();
+            occurs[lit] = occ;
+        }
+        return occ;
+    }
+
+    /**
+     * @return number of live clauses containing literal code lit
+     */
+    int occurrenceCount(int lit) {
+        return occurs[lit] == null ? 0 : occurs[lit].size();
+    }
+
+    /**
+     * @return value fixed for variable v, or UNDEFINED
+     */
+    Bool value(int v) {
+        return values[v];
+    }
+
+    /**
+     * @return true iff variable v occurred in the original formula
+     */
+    boolean isUsed(int v) {
+        return used[v];
+    }
+
+    /**
+     * @return signature of a sorted clause: one bit per variable, modulo 64
+     */
+    static long signature(int[] lits) {
+        long sig = 0;
+        for (int lit : lits)
+            sig |= 1L << ((lit >>> 1) & 63);
+        return sig;
+    }
+
+    /**
+     * Add a clause, given as a sorted array of codes containing no literal
+     * and its negation. Literals of fixed variables are simplified away;
+     * a resulting unit is queued for propagation by propagate().
+     * @return index of the new clause, or -1 if it was not stored
+     */
+    int addClause(int[] lits) {
+        int kept = 0;
+        for (int lit : lits) {
+            Bool v = litValue(lit);
+            if (v == Bool.TRUE) return -1;
+            if (v == Bool.UNDEFINED) ++kept;
+        }
+        if (kept != lits.length) {
+            int[] reduced = new int[kept];
+            int i = 0;
+            for (int lit : lits)
+                if (litValue(lit) == Bool.UNDEFINED) reduced[i++] = lit;
+            lits = reduced;
+        }
+        if (lits.length == 0) {
+            unsat = true;
+            return -1;
+        }
+        if (lits.length == 1) {
+            pendingUnits.add(lits[0]);
+            return -1;
+        }
+        if (clauseCount == clauses.length) {
+            int capacity = 2 * clauseCount;
+            clauses = Arrays.copyOf(clauses, capacity);
+            signatures = Arrays.copyOf(signatures, capacity);
+            isTouched = Arrays.copyOf(isTouched, capacity);
+        }
+        int c = clauseCount++;
+        clauses[c] = lits;
+        signatures[c] = signature(lits);
+        for (int lit : lits)
+            occurrences(lit).add(c);
+        ++liveClauses;
+        liveLiterals += lits.length;
+        touch(c);
+        return c;
+    }
+
+    /**
+     * Requires: c is live
+     * Remove clause c from the database
+     */
+    void removeClause(int c) {
+        int[] lits = clauses[c];
+        for (int lit : lits)
+            occurs[lit].removeValue(c);
+        clauses[c] = null;
+        --liveClauses;
+        liveLiterals -= lits.length;
+    }
+
+    /**
+     * Requires: c is live and contains lit
+     * Remove lit from clause c; queues a resulting unit for propagation.
+     */
+    void strengthen(int c, int lit) {
+        int[] lits = clauses[c];
+        if (lits.length == 2) {
+            int other = lits[0] == lit ? lits[1] : lits[0];
+            removeClause(c);
+            pendingUnits.add(other);
+            return;
+        }
+        int[] reduced = new int[lits.length - 1];
+        int i = 0;
+        for (int l : lits)
+            if (l != lit) reduced[i++] = l;
+        occurs[lit].removeValue(c);
+        clauses[c] = reduced;
+        signatures[c] = signature(reduced);
+        --liveLiterals;
+        touch(c);
+    }
+
+    /**
+     * Queue the literal with code lit to be fixed true by propagate()
+     */
+    void enqueueUnit(int lit) {
+        pendingUnits.add(lit);
+    }
+
+    /**
+     * Fix all queued units, removing the clauses they satisfy and
+     * strengthening the clauses containing their negations, until no
+     * units remain or a conflict is found.
+     * @return false iff the database is unsatisfiable
+     */
+    boolean propagate() {
+        while (!unsat && !pendingUnits.isEmpty()) {
+            int lit = pendingUnits.pop();
+            Bool v = litValue(lit);
+            if (v == Bool.TRUE) continue;
+            if (v == Bool.FALSE) {
+                unsat = true;
+                break;
+            }
+            values[lit >>> 1] = (lit & 1) == 0 ? Bool.TRUE : Bool.FALSE;
+            pushExtension(new int[] { lit }, lit);
+            int[] satisfied = occurrences(lit).toArray();
+            for (int c : satisfied)
+                removeClause(c);
+            int[] falsified = occurrences(lit ^ 1).toArray();
+            for (int c : falsified)
+                strengthen(c, lit ^ 1);
+        }
+        pendingUnits.clear();
+        return !unsat;
+    }
+
+    /**
+     * Mark the database as unsatisfiable
+     */
+    void setUnsat() {
+        unsat = true;
+    }
+
+    /**
+     * Record that, when extending a model, clause must be satisfied by
+     * setting witness true if no other literal of it is true.
+     * Requires: witness is in clause
+     */
+    void pushExtension(int[] clause, int witness) {
+        extensionClauses.add(clause);
+        extensionWitnesses.add(witness);
+    }
+
+    /**
+     * Remove all clauses marked as touched since the last call, and
+     * return them
+     */
+    int[] drainTouched() {
+        int[] result = touched.toArray();
+        for (int c : result)
+            isTouched[c] = false;
+        touched.clear();
+        return result;
+    }
+
+    private void touch(int c) {
+        if (!isTouched[c]) {
+            isTouched[c] = true;
+            touched.add(c);
+        }
+    }
+
+    private Bool litValue(int lit) {
+        Bool v = values[lit >>> 1];
+        return (lit & 1) == 0 ? v : v.not();
+    }
+
+    /**
+     * @return the formula represented by this database: the live clauses
+     * only, since fixed variables are recovered by extend
+     */
+    Formula toFormula() {
+        Formula formula = new Formula();
+        if (unsat) return formula.addClause(new Clause());
+        for (int c = 0; c < clauseCount; ++c) {
+            int[] lits = clauses[c];
+            if (lits == null) continue;
+            Clause clause = new Clause();
+            for (int lit : lits)
+                clause = clause.add(Literal.fromCode(lit));
+            formula = formula.addClause(clause);
+        }
+        return formula;
+    }
+
+    /**
+     * Extend a model of toFormula() to a model of the original formula.
+     * Variables of the original formula left unconstrained are set false.
+     * Requires: model satisfies toFormula()
+     */
+    Environment extend(Environment model) {
+        int vars = numVars();
+        Bool[] modelValues = new Bool[vars];
+        boolean[] changed = new boolean[vars];
+        for (int v = 0; v < vars; ++v) {
+            if (!used[v]) continue;
+            Bool b = model.get(variable(v));
+            if (b == Bool.UNDEFINED) {
+                b = Bool.FALSE;
+                changed[v] = true;
+            }
+            modelValues[v] = b;
+        }
+        for (int i = extensionClauses.size() - 1; i >= 0; --i) {
+            boolean satisfied = false;
+            for (int lit : extensionClauses.get(i)) {
+                Bool b = modelValues[lit >>> 1];
+                if ((lit & 1) == 0 ? b == Bool.TRUE : b == Bool.FALSE) {
+                    satisfied = true;
+                    break;
+                }
+            }
+            if (!satisfied) {
+                int witness = extensionWitnesses.get(i);
+                modelValues[witness >>> 1] = (witness & 1) == 0 ? Bool.TRUE : Bool.FALSE;
+                changed[witness >>> 1] = true;
+            }
+        }
+        Environment result = model;
+        for (int v = 0; v < vars; ++v)
+            if (changed[v]) result = result.put(variable(v), modelValues[v]);
+        return result;
+    }
+
+    private static Variable variable(int v) {
+        return Literal.fromCode(2 * v).getVariable();
+    }
+}
@@ -0,0 +1,202 @@
+package sat.preprocess;
+
+import java.util.Arrays;
+
+import sat.env.Bool;
+
+/**
+ * Equivalent-literal substitution over a ClauseDatabase.
+ *
+ * Each binary clause (a | b) gives two edges, ~a -> b and ~b -> a, of the
+ * binary implication graph. All literals in one strongly connected
+ * component of that graph are equivalent, so each is replaced by a single
+ * representative. A component containing a literal and its negation
+ * makes the formula unsatisfiable.
+ *
+ * The graph is held in compressed (offset/target) arrays and the
+ * components are found by an iterative version of Tarjan's algorithm, so
+ * neither recursion depth nor per-edge objects grow with the formula.
+ */
+final class EquivalentLiterals {
+    // substitution rounds; each round can create new binary clauses
+    static final int MAX_ROUNDS = 4;
+
+    private final ClauseDatabase db;
+    private final PreprocessorStats stats;
+    private final Subsumption subsumption;
+
+    EquivalentLiterals(ClauseDatabase db, PreprocessorStats stats) {
+        this.db = db;
+        this.stats = stats;
+        this.subsumption = new Subsumption(db, stats);
+    }
+
+    /**
+     * Substitute equivalent literals until a round finds none
+     */
+    void run() {
+        long started = System.nanoTime();
+        for (int round = 0; round < MAX_ROUNDS && !db.isUnsat(); ++round) {
+            int[] representative = components();
+            if (representative == null || !substitute(representative)) break;
+        }
+        stats.equivalenceNanos += System.nanoTime() - started;
+    }
+
+    /**
+     * Find the strongly connected components of the binary implication graph.
+     * @return repr such that repr[l] is the representative of literal code l,
+     *         with repr[l ^ 1] == repr[l] ^ 1; or null if no two literals are
+     *         equivalent or the database became unsatisfiable
+     */
+    int[] components() {
+        int nodes = 2 * db.numVars();
+        // build the graph in compressed form: the successors of literal l
+        // are targets[offsets[l]] .. targets[offsets[l+1]-1]
+        int[] offsets = new int[nodes + 1];
+        for (int c = 0; c < db.capacity(); ++c) {
+            int[] lits = db.clause(c);
+            if (lits == null || lits.length != 2) continue;
+            ++offsets[(lits[0] ^ 1) + 1];
+            ++offsets[(lits[1] ^ 1) + 1];
+        }
+        for (int l = 0; l < nodes; ++l)
+            offsets[l + 1] += offsets[l];
+        if (offsets[nodes] == 0) return null;
+        int[] targets = new int[offsets[nodes]];
+        int[] fill = Arrays.copyOf(offsets, nodes);
+        for (int c = 0; c < db.capacity(); ++c) {
+            int[] lits = db.clause(c);
+            if (lits == null || lits.length != 2) continue;
+            targets[fill[lits[0] ^ 1]++] = lits[1];
+            targets[fill[lits[1] ^ 1]++] = lits[0];
+        }
+
+        int[] index = new int[nodes];     // discovery order + 1; 0 if unvisited
+        int[] low = new int[nodes];
+        boolean[] onStack = new boolean[nodes];
+        int[] stack = new int[nodes];      // Tarjan's component stack
+        int stackSize = 0;
+        int[] callNode = new int[nodes];   // explicit DFS call stack
+        int[] callEdge = new int[nodes];
+        int[] repr = new int[nodes];
+        for (int l = 0; l < nodes; ++l)
+            repr[l] = l;
+        int[] component = new int[nodes]; // component number + 1; 0 if none yet
+        int components = 0;
+        int counter = 0;
+        boolean found = false;
+
+        for (int root = 0; root < nodes; ++root) {
+            if (index[root] != 0 || offsets[root] == offsets[root + 1]) continue;
+            int depth = 0;
+            callNode[0] = root;
+            callEdge[0] = offsets[root];
+            index[root] = low[root] = ++counter;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                int node = callNode[depth];
+                if (callEdge[depth] < offsets[node + 1]) {
+                    int next = targets[callEdge[depth]++];
+                    if (index[next] == 0) {
+                        index[next] = low[next] = ++counter;
+                        stack[stackSize++] = next;
+                        onStack[next] = true;
+                        ++depth;
+                        callNode[depth] = next;
+                        callEdge[depth] = offsets[next];
+                    } else if (onStack[next] && index[next] < low[node]) {
+                        low[node] = index[next];
+                    }
+                    continue;
+                }
+                // all successors done: node is finished
+                if (low[node] == index[node]) {
+                    // pop the component; its representative is the literal
+                    // of the least variable, so that the mirrored component
+                    // of negations picks the negated representative
+                    int start = stackSize;
+                    int best = node;
+                    do {
+                        int member = stack[--start];
+                        if ((member >>> 1) < (best >>> 1)) best = member;
+                    } while (stack[start] != node);
+                    ++components;
+                    for (int i = start; i < stackSize; ++i)
+                        component[stack[i]] = components;
+                    for (int i = start; i < stackSize; ++i) {
+                        int member = stack[i];
+                        onStack[member] = false;
+                        if (component[member ^ 1] == components) {
+                            // member and its negation are equivalent
+                            db.setUnsat();
+                            return null;
+                        }
+                        repr[member] = best;
+                        if (member != best) found = true;
+                    }
+                    stackSize = start;
+                }
+                --depth;
+                if (depth >= 0) {
+                    int parent = callNode[depth];
+                    if (low[node] < low[parent]) low[parent] = low[node];
+                }
+            }
+        }
+        if (!found) return null;
+        for (int l = 0; l < nodes; ++l)
+            assert repr[l ^ 1] == (repr[l] ^ 1) : "EquivalentLiterals: mirrored representatives";
+        return repr;
+    }
+
+    /**
+     * Replace every literal by its representative, rewriting the clauses
+     * that change, and record the equivalences on the extension stack.
+     * @return true iff some literal was substituted
+     */
+    private boolean substitute(int[] repr) {
+        boolean changed = false;
+        for (int v = 0; v < db.numVars(); ++v) {
+            int lit = 2 * v;
+            int r = repr[lit];
+            if (r == lit || db.value(v) != Bool.UNDEFINED) continue;
+            changed = true;
+            ++stats.equivalentLiterals;
+            // v == r; on extension v takes the value of r
+            db.pushExtension(new int[] { lit, r ^ 1 }, lit);
+            db.pushExtension(new int[] { lit ^ 1, r }, lit ^ 1);
+            int[] affected = IntVec.concat(db.occurrences(lit), db.occurrences(lit ^ 1));
+            for (int c : affected) {
+                int[] lits = db.clause(c);
+                if (lits == null) continue;
+                db.removeClause(c);
+                int[] rewritten = rewrite(lits, repr);
+                if (rewritten != null) db.addClause(rewritten);
+            }
+        }
+        if (changed && db.propagate())
+            subsumption.backward(db.drainTouched());
+        return changed;
+    }
+
+    /**
+     * @return the sorted clause with each literal replaced by its
+     *         representative and duplicates removed, or null if the result
+     *         is a tautology
+     */
+    private static int[] rewrite(int[] lits, int[] repr) {
+        int[] result = new int[lits.length];
+        for (int i = 0; i < lits.length; ++i)
+            result[i] = repr[lits[i]];
+        Arrays.sort(result);
+        int n = 0;
+        for (int i = 0; i < result.length; ++i) {
+            if (n > 0 && result[n - 1] == result[i]) continue;
+            if (n > 0 && (result[n - 1] ^ 1) == result[i]) return null;
+            result[n++] = result[i];
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+}
@@ -0,0 +1,106 @@
+package sat.preprocess;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints, used for occurrence lists and work queues
+ * so that the preprocessor does not box every clause index.
+ * This datatype is mutable.
+ */
+final class IntVec {
+    private int[] elements;
+    private int size;
+    // Rep invariant:
+    //     elements != null
+    //     0 <= size <= elements.length
+    // Abstraction function:
+    //     the list elements[0], ..., elements[size-1]
+
+    IntVec() {
+        this(4);
+    }
+
+    IntVec(int capacity) {
+        elements = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Append x to the end of this list
+     */
+    void add(int x) {
+        if (size == elements.length)
+            elements = Arrays.copyOf(elements, 2 * size);
+        elements[size++] = x;
+    }
+
+    /**
+     * Requires: 0 <= i < size()
+     * @return the ith element
+     */
+    int get(int i) {
+        return elements[i];
+    }
+
+    /**
+     * Requires: 0 <= i < size()
+     * Replace the ith element with x
+     */
+    void set(int i, int x) {
+        elements[i] = x;
+    }
+
+    /**
+     * @return number of elements in this list
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Requires: list is non-empty
+     * Remove and return the last element
+     */
+    int pop() {
+        return elements[--size];
+    }
+
+    /**
+     * Remove one occurrence of x, if present, by moving the last element
+     * into its place; the order of the remaining elements is not preserved.
+     * @return true iff an occurrence of x was removed
+     */
+    boolean removeValue(int x) {
+        for (int i = 0; i < size; ++i) {
+            if (elements[i] == x) {
+                elements[i] = elements[--size];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return the elements of a followed by the elements of b
+     */
+    static int[] concat(IntVec a, IntVec b) {
+        int[] result = new int[a.size + b.size];
+        System.arraycopy(a.elements, 0, result, 0, a.size);
+        System.arraycopy(b.elements, 0, result, a.size, b.size);
+        return result;
+    }
+
+    /**
+     * @return a copy of the elements of this list, in order
+     */
+    int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
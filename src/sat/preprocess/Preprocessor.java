@@ -0,0 +1,123 @@
+package sat.preprocess;
+
+import sat.env.Bool;
+import sat.env.Environment;
+import sat.formula.Clause;
+import sat.formula.Formula;
+
+/**
+ * Simplifies a formula before it is handed to the SAT solver, and maps
+ * models of the simplified formula back to models of the original.
+ *
+ * Typical use:
+ *     Preprocessor p = new Preprocessor(formula);
+ *     Formula simplified = p.simplify();
+ *     Environment e = SATSolver.solve(simplified);
+ *     if (e != null) e = p.extend(e);
+ *
+ * A Preprocessor is mutable: options may be set before simplify, which
+ * may be called once.
+ */
+public class Preprocessor {
+    private final ClauseDatabase db;
+    private final PreprocessorStats stats = new PreprocessorStats();
+    private boolean simplified = false;
+    private boolean subsumption = true;
+    private boolean equivalences = true;
+    private boolean probing = true;
+    private int eliminationGrowth = 0;
+
+    /**
+     * Create a preprocessor for formula. Unit clauses of formula are
+     * propagated immediately.
+     */
+    public Preprocessor(Formula formula) {
+        long started = System.nanoTime();
+        stats.clausesBefore = formula.getSize();
+        for (Clause c : formula.getClauses())
+            stats.literalsBefore += c.size();
+        db = new ClauseDatabase(formula);
+        stats.totalNanos += System.nanoTime() - started;
+    }
+
+    /**
+     * Enable or disable subsumption and self-subsuming resolution
+     * (enabled by default)
+     */
+    public void setSubsumption(boolean enabled) {
+        this.subsumption = enabled;
+    }
+
+    /**
+     * Enable or disable equivalent-literal substitution (enabled by default)
+     */
+    public void setEquivalences(boolean enabled) {
+        this.equivalences = enabled;
+    }
+
+    /**
+     * Enable or disable failed-literal probing and pure-literal elimination
+     * (enabled by default)
+     */
+    public void setProbing(boolean enabled) {
+        this.probing = enabled;
+    }
+
+    /**
+     * Set how many clauses eliminating a single variable may add: a variable
+     * is eliminated only if the number of resolvents is at most the number
+     * of clauses containing it plus growth. The default is 0; a negative
+     * value disables variable elimination.
+     */
+    public void setEliminationGrowth(int growth) {
+        this.eliminationGrowth = growth;
+    }
+
+    /**
+     * Run the enabled preprocessing passes, in order: unit propagation
+     * (always), subsumption and self-subsuming resolution, equivalent-literal
+     * substitution, failed-literal probing and pure-literal elimination, and
+     * bounded variable elimination.
+     * Requires: simplify has not been called before on this
+     * @return a formula that is satisfiable iff the original formula is,
+     *         whose models extend to models of the original by extend()
+     */
+    public Formula simplify() {
+        assert !simplified : "Preprocessor.simplify called twice";
+        simplified = true;
+        long started = System.nanoTime();
+        if (subsumption && !db.isUnsat())
+            new Subsumption(db, stats).run();
+        if (equivalences && !db.isUnsat())
+            new EquivalentLiterals(db, stats).run();
+        if (probing && !db.isUnsat())
+            new Probing(db, stats).run();
+        if (eliminationGrowth >= 0 && !db.isUnsat())
+            new VariableElimination(db, stats, eliminationGrowth).run();
+        Formula result = db.toFormula();
+        stats.clausesAfter = db.isUnsat() ? 1 : db.liveClauses();
+        stats.literalsAfter = db.isUnsat() ? 0 : db.liveLiterals();
+        for (int v = 0; v < db.numVars(); ++v)
+            if (db.value(v) != Bool.UNDEFINED) ++stats.fixedVariables;
+        stats.totalNanos += System.nanoTime() - started;
+        return result;
+    }
+
+    /**
+     * Requires: simplify has been called, and model satisfies the formula it
+     * returned
+     * @return an environment that satisfies the original formula and agrees
+     *         with model on every variable of the simplified formula
+     */
+    public Environment extend(Environment model) {
+        assert simplified : "Preprocessor.extend called before simplify";
+        return db.extend(model);
+    }
+
+    /**
+     * @return statistics for the passes run so far
+     */
+    public PreprocessorStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,208 @@
+package sat.preprocess;
+
+/**
+ * Counters and timings collected while preprocessing a formula.
+ * Fields are updated by the passes in this package; clients read them
+ * through the getters once preprocessing has finished.
+ */
+public class PreprocessorStats {
+    int clausesBefore;
+    long literalsBefore;
+    int clausesAfter;
+    long literalsAfter;
+    int fixedVariables;
+
+    int subsumedClauses;
+    long subsumedLiterals;
+    long strengthenedLiterals;
+    long subsumptionNanos;
+
+    int eliminatedVariables;
+    int eliminatedClauses;
+    long eliminatedLiterals;
+    int resolventsAdded;
+    long eliminationNanos;
+
+    int equivalentLiterals;
+    long equivalenceNanos;
+
+    int probes;
+    int failedLiterals;
+    int commonImplied;
+    int pureLiterals;
+    long probingNanos;
+
+    long totalNanos;
+
+    /**
+     * @return number of clauses in the formula given to the preprocessor
+     */
+    public int getClausesBefore() {
+        return clausesBefore;
+    }
+
+    /**
+     * @return total number of literals over all clauses of the original formula
+     */
+    public long getLiteralsBefore() {
+        return literalsBefore;
+    }
+
+    /**
+     * @return number of clauses in the simplified formula
+     */
+    public int getClausesAfter() {
+        return clausesAfter;
+    }
+
+    /**
+     * @return total number of literals over all clauses of the simplified formula
+     */
+    public long getLiteralsAfter() {
+        return literalsAfter;
+    }
+
+    /**
+     * @return number of variables fixed by unit clauses
+     */
+    public int getFixedVariables() {
+        return fixedVariables;
+    }
+
+    /**
+     * @return number of clauses removed because another clause subsumed them
+     */
+    public int getSubsumedClauses() {
+        return subsumedClauses;
+    }
+
+    /**
+     * @return number of literals in the clauses removed by subsumption
+     */
+    public long getSubsumedLiterals() {
+        return subsumedLiterals;
+    }
+
+    /**
+     * @return number of literals removed by self-subsuming resolution
+     */
+    public long getStrengthenedLiterals() {
+        return strengthenedLiterals;
+    }
+
+    /**
+     * @return time spent in subsumption and self-subsumption, in nanoseconds
+     */
+    public long getSubsumptionNanos() {
+        return subsumptionNanos;
+    }
+
+    /**
+     * @return number of variables removed by bounded variable elimination
+     */
+    public int getEliminatedVariables() {
+        return eliminatedVariables;
+    }
+
+    /**
+     * @return number of clauses removed by variable elimination
+     */
+    public int getEliminatedClauses() {
+        return eliminatedClauses;
+    }
+
+    /**
+     * @return number of literals in the clauses removed by variable elimination
+     */
+    public long getEliminatedLiterals() {
+        return eliminatedLiterals;
+    }
+
+    /**
+     * @return number of resolvents added by variable elimination
+     */
+    public int getResolventsAdded() {
+        return resolventsAdded;
+    }
+
+    /**
+     * @return time spent in variable elimination, in nanoseconds
+     */
+    public long getEliminationNanos() {
+        return eliminationNanos;
+    }
+
+    /**
+     * @return number of variables replaced by an equivalent literal
+     */
+    public int getEquivalentLiterals() {
+        return equivalentLiterals;
+    }
+
+    /**
+     * @return time spent in equivalent-literal substitution, in nanoseconds
+     */
+    public long getEquivalenceNanos() {
+        return equivalenceNanos;
+    }
+
+    /**
+     * @return number of literals tentatively assigned by failed-literal probing
+     */
+    public int getProbes() {
+        return probes;
+    }
+
+    /**
+     * @return number of probed literals whose propagation led to a conflict
+     */
+    public int getFailedLiterals() {
+        return failedLiterals;
+    }
+
+    /**
+     * @return number of literals fixed because both polarities of a probed
+     * variable imply them
+     */
+    public int getCommonImplied() {
+        return commonImplied;
+    }
+
+    /**
+     * @return number of pure literals fixed
+     */
+    public int getPureLiterals() {
+        return pureLiterals;
+    }
+
+    /**
+     * @return time spent in probing and pure-literal elimination, in nanoseconds
+     */
+    public long getProbingNanos() {
+        return probingNanos;
+    }
+
+    /**
+     * @return total preprocessing time, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Preprocessor: clauses " + clausesBefore + " -> " + clausesAfter
+            + ", literals " + literalsBefore + " -> " + literalsAfter
+            + ", fixed " + fixedVariables
+            + "\n  subsumption: " + subsumedClauses + " clauses (" + subsumedLiterals + " literals) removed, "
+            + strengthenedLiterals + " literals strengthened, " + subsumptionNanos / 1000000 + "ms"
+            + "\n  elimination: " + eliminatedVariables + " variables, " + eliminatedClauses + " clauses ("
+            + eliminatedLiterals + " literals) removed, " + resolventsAdded + " resolvents added, "
+            + eliminationNanos / 1000000 + "ms"
+            + "\n  equivalences: " + equivalentLiterals + " variables substituted, "
+            + equivalenceNanos / 1000000 + "ms"
+            + "\n  probing: " + probes + " probes, " + failedLiterals + " failed, " + commonImplied
+            + " common implied, " + pureLiterals + " pure, " + probingNanos / 1000000 + "ms"
+            + "\n  total: " + totalNanos / 1000000 + "ms";
+    }
+}
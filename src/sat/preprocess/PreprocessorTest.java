@@ -0,0 +1,205 @@
+package sat.preprocess;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import sat.SATSolver;
+import sat.env.Bool;
+import sat.env.Environment;
+import sat.formula.Clause;
+import sat.formula.Formula;
+import sat.formula.Literal;
+import sat.formula.PosLiteral;
+import sudoku.Sudoku;
+
+public class PreprocessorTest {
+    Literal a = PosLiteral.make("a");
+    Literal b = PosLiteral.make("b");
+    Literal c = PosLiteral.make("c");
+    Literal d = PosLiteral.make("d");
+    Literal na = a.getNegation();
+    Literal nb = b.getNegation();
+    Literal nc = c.getNegation();
+    Literal nd = d.getNegation();
+
+    // make sure assertions are turned on!  
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void testDuplicatesAndSubsumedRemoved() {
+        Formula f = formula(make(a, b), make(b, a), make(a, b, c), make(c, d));
+        assertEquals(3, f.getSize());
+        Preprocessor p = new Preprocessor(f);
+        p.setProbing(false);
+        p.setEliminationGrowth(-1);
+        Formula simplified = p.simplify();
+        assertEquals(2, simplified.getSize());
+        assertEquals(1, p.getStats().getSubsumedClauses());
+    }
+
+    @Test
+    public void testSelfSubsumption() {
+        // (a | b | c) and (~a | b) resolve to (b | c), which replaces the first
+        Formula f = formula(make(a, b, c), make(na, b));
+        Preprocessor p = new Preprocessor(f);
+        p.setProbing(false);
+        p.setEliminationGrowth(-1);
+        Formula simplified = p.simplify();
+        assertEquals(1, p.getStats().getStrengthenedLiterals());
+        boolean found = false;
+        for (Clause clause : simplified.getClauses())
+            found |= clause.equals(make(b, c));
+        assertTrue(found);
+    }
+
+    @Test
+    public void testUnsatDetected() {
+        Formula f = formula(make(a, b), make(a, nb), make(na, c), make(na, nc));
+        Formula simplified = new Preprocessor(f).simplify();
+        assertNull(SATSolver.solve(simplified));
+        assertNull(SATSolver.solveWithPreprocessing(f));
+    }
+
+    @Test
+    public void testModelExtended() {
+        Formula f = formula(make(a), make(na, b), make(nb, c, d), make(nc, d));
+        Environment e = SATSolver.solveWithPreprocessing(f);
+        assertNotNull(e);
+        assertSatisfies(f, e);
+    }
+
+    @Test
+    public void testVariableElimination() {
+        // b occurs in two clauses with one resolvent (a | c), so it is eliminated
+        Formula f = formula(make(a, b), make(nb, c), make(na, nc, d));
+        Preprocessor p = new Preprocessor(f);
+        p.setProbing(false);
+        Formula simplified = p.simplify();
+        assertTrue(p.getStats().getEliminatedVariables() > 0);
+        Environment e = SATSolver.solve(simplified);
+        assertSatisfies(f, p.extend(e));
+    }
+
+    @Test
+    public void testEquivalentLiterals() {
+        // a -> b -> c -> a, so all three are replaced by one representative;
+        // then (a | d) and (~a | ~d) make d equivalent to ~a
+        Formula f = formula(make(na, b), make(nb, c), make(nc, a), make(a, d), make(nb, nd), make(c, d));
+        Preprocessor p = new Preprocessor(f);
+        p.setSubsumption(false);
+        p.setProbing(false);
+        p.setEliminationGrowth(-1);
+        Formula simplified = p.simplify();
+        assertEquals(3, p.getStats().getEquivalentLiterals());
+        assertSatisfies(f, p.extend(SATSolver.solve(simplified)));
+    }
+
+    @Test
+    public void testEquivalentToNegationIsUnsat() {
+        // a -> b -> ~a -> ~b -> a
+        Formula f = formula(make(na, b), make(nb, na), make(a, nb), make(b, a));
+        Preprocessor p = new Preprocessor(f);
+        p.setSubsumption(false);
+        assertNull(SATSolver.solve(p.simplify()));
+    }
+
+    @Test
+    public void testFailedLiteral() {
+        // a implies b and ~b, so a is a failed literal and ~a is fixed
+        Formula f = formula(make(na, b), make(na, nb), make(a, c, d), make(nc, d), make(c, nd));
+        Preprocessor p = new Preprocessor(f);
+        p.setSubsumption(false);
+        p.setEquivalences(false);
+        p.setEliminationGrowth(-1);
+        Formula simplified = p.simplify();
+        assertTrue(p.getStats().getFailedLiterals() > 0);
+        assertSatisfies(f, p.extend(SATSolver.solve(simplified)));
+    }
+
+    @Test
+    public void testPureLiteral() {
+        Formula f = formula(make(a, b), make(a, c), make(nb, nc));
+        Preprocessor p = new Preprocessor(f);
+        p.setSubsumption(false);
+        p.setEquivalences(false);
+        p.setEliminationGrowth(-1);
+        Formula simplified = p.simplify();
+        assertTrue(p.getStats().getPureLiterals() > 0);
+        assertSatisfies(f, p.extend(SATSolver.solve(simplified)));
+    }
+
+    @Test
+    public void testRandomFormulasAgreeWithSolver() {
+        Random random = new Random(42);
+        Literal[] vars = new Literal[8];
+        for (int i = 0; i < vars.length; ++i)
+            vars[i] = PosLiteral.make("r" + i);
+        for (int round = 0; round < 200; ++round) {
+            Formula f = new Formula();
+            int clauses = 10 + random.nextInt(30);
+            for (int i = 0; i < clauses; ++i) {
+                Clause clause = new Clause();
+                int width = 1 + random.nextInt(3);
+                for (int k = 0; k < width && clause != null; ++k) {
+                    Literal l = vars[random.nextInt(vars.length)];
+                    clause = clause.add(random.nextBoolean() ? l : l.getNegation());
+                }
+                if (clause != null) f = f.addClause(clause);
+            }
+            Environment plain = SATSolver.solve(f);
+            Environment preprocessed = SATSolver.solveWithPreprocessing(f);
+            assertEquals(plain == null, preprocessed == null);
+            if (preprocessed != null) assertSatisfies(f, preprocessed);
+        }
+    }
+
+    @Test
+    public void testSudokuSolutionUnchanged() {
+        Sudoku s = new Sudoku(2, new int[][] {
+                    new int[] { 0, 1, 0, 4 },
+                    new int[] { 0, 0, 0, 0 },
+                    new int[] { 2, 0, 3, 0 },
+                    new int[] { 0, 0, 0, 0 },
+        });
+        Formula f = s.getProblem();
+        Environment e = SATSolver.solveWithPreprocessing(f);
+        assertSatisfies(f, e);
+        assertEquals(s.interpretSolution(SATSolver.solve(f)).toString(),
+                s.interpretSolution(e).toString());
+    }
+
+    static void assertSatisfies(Formula f, Environment e) {
+        for (Clause clause : f.getClauses()) {
+            boolean satisfied = false;
+            for (Literal l : clause) {
+                Bool value = e.get(l.getVariable());
+                if (l instanceof PosLiteral ? value == Bool.TRUE : value == Bool.FALSE)
+                    satisfied = true;
+            }
+            assertTrue("unsatisfied " + clause, satisfied);
+        }
+    }
+
+    static Formula formula(Clause... clauses) {
+        Formula f = new Formula();
+        for (Clause clause : clauses)
+            f = f.addClause(clause);
+        return f;
+    }
+
+    static Clause make(Literal... e) {
+        Clause c = new Clause();
+        for (int i = 0; i < e.length; ++i) {
+            c = c.add(e[i]);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,197 @@
+package sat.preprocess;
+
+import java.util.Arrays;
+
+import sat.env.Bool;
+
+/**
+ * Failed-literal probing and pure-literal elimination over a ClauseDatabase.
+ *
+ * Probing a literal l assigns it tentatively and runs unit propagation. If
+ * propagation reaches a conflict, l is a failed literal and ~l is fixed.
+ * If both l and ~l propagate without conflict, every literal implied by
+ * both is fixed too.
+ *
+ * A pure literal, whose negation occurs in no clause, is fixed true; this
+ * only removes clauses, and the extension stack records the choice.
+ */
+final class Probing {
+    // default limit on clause visits during propagation, over all probes
+    static final long DEFAULT_BUDGET = 20000000L;
+
+    private final ClauseDatabase db;
+    private final PreprocessorStats stats;
+    private long budget;
+    // tentative values: assigned[l] is true iff literal code l is true
+    private boolean[] assigned;
+    private final IntVec trail = new IntVec();
+    // marks[l] == stamp iff l was implied by the first probe of a variable
+    private int[] marks;
+    private int stamp = 0;
+
+    Probing(ClauseDatabase db, PreprocessorStats stats) {
+        this(db, stats, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Requires: budget >= 0
+     */
+    Probing(ClauseDatabase db, PreprocessorStats stats, long budget) {
+        this.db = db;
+        this.stats = stats;
+        this.budget = budget;
+        this.assigned = new boolean[2 * db.numVars()];
+        this.marks = new int[2 * db.numVars()];
+    }
+
+    /**
+     * Probe candidate variables until a round fixes nothing or the budget is
+     * exhausted, then eliminate pure literals.
+     */
+    void run() {
+        long started = System.nanoTime();
+        boolean progress = true;
+        while (progress && budget > 0 && !db.isUnsat()) {
+            progress = false;
+            for (int v : candidates()) {
+                if (budget <= 0 || db.isUnsat()) break;
+                if (db.value(v) != Bool.UNDEFINED) continue;
+                if (probeVariable(v)) progress = true;
+            }
+        }
+        eliminatePureLiterals();
+        stats.probingNanos += System.nanoTime() - started;
+    }
+
+    /**
+     * Fix pure literals until none remain. Removing the clauses of one pure
+     * literal may make others pure.
+     */
+    void eliminatePureLiterals() {
+        boolean progress = true;
+        while (progress && !db.isUnsat()) {
+            progress = false;
+            for (int v = 0; v < db.numVars(); ++v) {
+                if (db.value(v) != Bool.UNDEFINED) continue;
+                int pos = db.occurrenceCount(2 * v);
+                int neg = db.occurrenceCount(2 * v + 1);
+                if (pos + neg == 0 || (pos > 0 && neg > 0)) continue;
+                db.enqueueUnit(neg == 0 ? 2 * v : 2 * v + 1);
+                ++stats.pureLiterals;
+                progress = true;
+            }
+            db.propagate();
+        }
+    }
+
+    /**
+     * @return the unfixed variables that occur in some binary clause, most
+     * binary occurrences first: these are the probes most likely to imply
+     * many literals
+     */
+    private int[] candidates() {
+        int n = db.numVars();
+        long[] keyed = new long[n];
+        int count = 0;
+        for (int v = 0; v < n; ++v) {
+            if (db.value(v) != Bool.UNDEFINED) continue;
+            int binary = binaryOccurrences(2 * v) + binaryOccurrences(2 * v + 1);
+            if (binary == 0) continue;
+            // sort on descending count in the high word, variable in the low word
+            keyed[count++] = ((long) (Integer.MAX_VALUE - binary) << 32) | v;
+        }
+        Arrays.sort(keyed, 0, count);
+        int[] result = new int[count];
+        for (int i = 0; i < count; ++i)
+            result[i] = (int) keyed[i];
+        return result;
+    }
+
+    private int binaryOccurrences(int lit) {
+        IntVec occ = db.occurrences(lit);
+        int count = 0;
+        for (int k = 0; k < occ.size(); ++k)
+            if (db.clause(occ.get(k)).length == 2) ++count;
+        return count;
+    }
+
+    /**
+     * Probe both polarities of v, fixing failed literals and literals
+     * implied by both.
+     * @return true iff some variable was fixed
+     */
+    private boolean probeVariable(int v) {
+        int pos = 2 * v;
+        ++stats.probes;
+        int[] posImplied = propagate(pos);
+        if (posImplied == null) {
+            ++stats.failedLiterals;
+            db.enqueueUnit(pos ^ 1);
+            db.propagate();
+            return true;
+        }
+        ++stats.probes;
+        int[] negImplied = propagate(pos ^ 1);
+        if (negImplied == null) {
+            ++stats.failedLiterals;
+            db.enqueueUnit(pos);
+            db.propagate();
+            return true;
+        }
+        ++stamp;
+        for (int lit : posImplied)
+            marks[lit] = stamp;
+        boolean fixed = false;
+        for (int lit : negImplied) {
+            if (marks[lit] == stamp) {
+                ++stats.commonImplied;
+                db.enqueueUnit(lit);
+                fixed = true;
+            }
+        }
+        db.propagate();
+        return fixed;
+    }
+
+    /**
+     * Tentatively assign lit and run unit propagation, then undo.
+     * @return the literals implied by lit (excluding lit itself), or null
+     *         if propagation found a conflict
+     */
+    private int[] propagate(int lit) {
+        trail.clear();
+        assigned[lit] = true;
+        trail.add(lit);
+        boolean conflict = false;
+        for (int head = 0; head < trail.size() && !conflict; ++head) {
+            IntVec occ = db.occurrences(trail.get(head) ^ 1);
+            for (int k = 0; k < occ.size() && !conflict; ++k) {
+                int[] lits = db.clause(occ.get(k));
+                --budget;
+                int unassigned = -1;
+                int open = 0;
+                boolean satisfied = false;
+                for (int l : lits) {
+                    if (assigned[l]) {
+                        satisfied = true;
+                        break;
+                    }
+                    if (!assigned[l ^ 1]) {
+                        ++open;
+                        unassigned = l;
+                    }
+                }
+                if (satisfied) continue;
+                if (open == 0) conflict = true;
+                else if (open == 1) {
+                    assigned[unassigned] = true;
+                    trail.add(unassigned);
+                }
+            }
+        }
+        int[] implied = conflict ? null : Arrays.copyOfRange(trail.toArray(), 1, trail.size());
+        for (int i = 0; i < trail.size(); ++i)
+            assigned[trail.get(i)] = false;
+        return implied;
+    }
+}
@@ -0,0 +1,183 @@
+package sat.preprocess;
+
+/**
+ * Subsumption and self-subsuming resolution over a ClauseDatabase,
+ * following the SatELite preprocessor.
+ *
+ * A clause C subsumes D if every literal of C is in D; D is then redundant
+ * and is removed. C self-subsumes D on literal l if C contains l, D contains
+ * ~l, and C without l subsumes D without ~l; the resolvent of C and D is
+ * then D without ~l, so ~l can be removed from D (D is strengthened).
+ * Both steps preserve equivalence, so they need no model extension.
+ */
+final class Subsumption {
+    // result of subsumes() when c is a subset of d
+    static final int SUBSUMES = -1;
+    // result of subsumes() when neither subsumption nor self-subsumption holds
+    static final int NONE = -2;
+
+    private final ClauseDatabase db;
+    private final PreprocessorStats stats;
+
+    Subsumption(ClauseDatabase db, PreprocessorStats stats) {
+        this.db = db;
+        this.stats = stats;
+    }
+
+    /**
+     * Requires: c and d are sorted arrays of literal codes
+     * @return SUBSUMES if c is a subset of d; the code of the literal of d
+     *         to remove if c self-subsumes d; NONE otherwise
+     */
+    static int subsumes(int[] c, int[] d) {
+        if (c.length > d.length) return NONE;
+        int flip = NONE;
+        int j = 0;
+        for (int i = 0; i < c.length; ++i) {
+            // a literal and its negation have adjacent codes, so comparing
+            // variables finds either polarity in one scan
+            int var = c[i] >>> 1;
+            while (j < d.length && (d[j] >>> 1) < var) ++j;
+            if (j == d.length || (d[j] >>> 1) != var) return NONE;
+            if (d[j] != c[i]) {
+                if (flip != NONE) return NONE;
+                flip = d[j];
+            }
+            ++j;
+        }
+        return flip == NONE ? SUBSUMES : flip;
+    }
+
+    /**
+     * Run forward subsumption over all clauses, then backward subsumption
+     * and self-subsuming resolution until no clause changes.
+     */
+    void run() {
+        long started = System.nanoTime();
+        forward();
+        // clauses added by forward() are all touched; backward() starts
+        // from every remaining clause
+        int[] queue = db.drainTouched();
+        backward(queue);
+        stats.subsumptionNanos += System.nanoTime() - started;
+    }
+
+    /**
+     * Remove every clause that is subsumed by another live clause.
+     * Equal clauses are ordered by index, so a set of duplicates keeps
+     * exactly its first member.
+     */
+    private void forward() {
+        int n = db.capacity();
+        int maxSize = 0;
+        for (int c = 0; c < n; ++c)
+            if (db.clause(c) != null) maxSize = Math.max(maxSize, db.clause(c).length);
+        // counting sort of clause indices by length
+        int[] start = new int[maxSize + 2];
+        for (int c = 0; c < n; ++c)
+            if (db.clause(c) != null) ++start[db.clause(c).length + 1];
+        for (int s = 1; s < start.length; ++s)
+            start[s] += start[s - 1];
+        int[] order = new int[start[maxSize + 1]];
+        for (int c = 0; c < n; ++c)
+            if (db.clause(c) != null) order[start[db.clause(c).length]++] = c;
+
+        for (int i = order.length - 1; i >= 0; --i) {
+            int d = order[i];
+            if (db.clause(d) != null && isSubsumed(d)) {
+                ++stats.subsumedClauses;
+                stats.subsumedLiterals += db.clause(d).length;
+                db.removeClause(d);
+            }
+        }
+    }
+
+    /**
+     * @return true iff some other live clause subsumes clause d. A clause
+     * equal to d subsumes it only if it has the smaller index.
+     */
+    private boolean isSubsumed(int d) {
+        int[] lits = db.clause(d);
+        long sig = db.signature(d);
+        for (int lit : lits) {
+            IntVec occ = db.occurrences(lit);
+            for (int k = 0; k < occ.size(); ++k) {
+                int c = occ.get(k);
+                if (c == d) continue;
+                int[] other = db.clause(c);
+                if (other.length > lits.length || (db.signature(c) & ~sig) != 0) continue;
+                if (other.length == lits.length && c > d) continue;
+                if (subsumes(other, lits) == SUBSUMES) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forward subsumption check for a clause that is not (yet) in the
+     * database, such as a resolvent.
+     * Requires: lits is sorted
+     * @return true iff some live clause subsumes lits
+     */
+    boolean isSubsumed(int[] lits) {
+        long sig = ClauseDatabase.signature(lits);
+        for (int lit : lits) {
+            IntVec occ = db.occurrences(lit);
+            for (int k = 0; k < occ.size(); ++k) {
+                int c = occ.get(k);
+                int[] other = db.clause(c);
+                if (other.length > lits.length || (db.signature(c) & ~sig) != 0) continue;
+                if (subsumes(other, lits) == SUBSUMES) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Use each queued clause to remove the clauses it subsumes and to
+     * strengthen the clauses it self-subsumes. Strengthened clauses are
+     * queued again, since they may now subsume others.
+     */
+    void backward(int[] initial) {
+        IntVec queue = new IntVec(initial.length);
+        for (int i = initial.length - 1; i >= 0; --i)
+            queue.add(initial[i]);
+        while (!queue.isEmpty() && !db.isUnsat()) {
+            int c = queue.pop();
+            int[] lits = db.clause(c);
+            if (lits == null) continue;
+            long sig = db.signature(c);
+
+            // every candidate contains the variable of each literal of c, so
+            // scan the occurrences of the variable with the fewest
+            int best = lits[0];
+            for (int lit : lits) {
+                if (db.occurrenceCount(lit) + db.occurrenceCount(lit ^ 1)
+                        < db.occurrenceCount(best) + db.occurrenceCount(best ^ 1))
+                    best = lit;
+            }
+            int[] candidates = IntVec.concat(db.occurrences(best), db.occurrences(best ^ 1));
+            for (int d : candidates) {
+                if (d == c) continue;
+                int[] other = db.clause(d);
+                if (other == null || other.length < lits.length || (sig & ~db.signature(d)) != 0)
+                    continue;
+                int result = subsumes(lits, other);
+                if (result == SUBSUMES) {
+                    ++stats.subsumedClauses;
+                    stats.subsumedLiterals += other.length;
+                    db.removeClause(d);
+                } else if (result != NONE) {
+                    ++stats.strengthenedLiterals;
+                    db.strengthen(d, result);
+                }
+            }
+            // strengthened clauses, including those shrunk by fixing any
+            // resulting units, are queued through the touched list
+            if (!db.propagate()) break;
+            for (int t : db.drainTouched())
+                queue.add(t);
+        }
+        db.drainTouched();
+    }
+}
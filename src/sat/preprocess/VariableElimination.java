@@ -0,0 +1,164 @@
+package sat.preprocess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import sat.env.Bool;
+
+/**
+ * Bounded variable elimination by clause distribution, following the
+ * SatELite preprocessor.
+ *
+ * Eliminating variable v replaces every clause containing v or ~v with all
+ * non-tautological resolvents on v. This is done only when the number of
+ * resolvents exceeds the number of clauses removed by at most a growth
+ * bound (0 by default, so the formula never grows).
+ *
+ * The removed clauses are kept on the database's extension stack with v or
+ * ~v as witness, so a model of the result extends to the original formula.
+ */
+final class VariableElimination {
+    // variables with more occurrences than this (both polarities together)
+    // are not tried, since the number of resolvents is quadratic
+    static final int DEFAULT_OCCURRENCE_LIMIT = 32;
+    // resolvents longer than this make an elimination be rejected
+    static final int DEFAULT_RESOLVENT_LIMIT = 20;
+
+    private final ClauseDatabase db;
+    private final PreprocessorStats stats;
+    private final Subsumption subsumption;
+    private final int growth;
+    private final int occurrenceLimit;
+    private final int resolventLimit;
+
+    /**
+     * Requires: growth >= 0
+     */
+    VariableElimination(ClauseDatabase db, PreprocessorStats stats, int growth) {
+        this(db, stats, growth, DEFAULT_OCCURRENCE_LIMIT, DEFAULT_RESOLVENT_LIMIT);
+    }
+
+    VariableElimination(ClauseDatabase db, PreprocessorStats stats, int growth,
+            int occurrenceLimit, int resolventLimit) {
+        this.db = db;
+        this.stats = stats;
+        this.subsumption = new Subsumption(db, stats);
+        this.growth = growth;
+        this.occurrenceLimit = occurrenceLimit;
+        this.resolventLimit = resolventLimit;
+    }
+
+    /**
+     * Repeatedly try to eliminate every unfixed variable, cheapest first,
+     * until a round eliminates nothing.
+     */
+    void run() {
+        long started = System.nanoTime();
+        boolean[] eliminated = new boolean[db.numVars()];
+        boolean progress = true;
+        while (progress && !db.isUnsat()) {
+            progress = false;
+            for (int v : candidates(eliminated)) {
+                if (db.isUnsat()) break;
+                if (db.value(v) != Bool.UNDEFINED) continue;
+                if (tryEliminate(v)) {
+                    eliminated[v] = true;
+                    ++stats.eliminatedVariables;
+                    progress = true;
+                }
+            }
+        }
+        stats.eliminationNanos += System.nanoTime() - started;
+    }
+
+    /**
+     * @return unfixed, not yet eliminated variables that occur in some clause,
+     * in increasing order of occ(v) * occ(~v)
+     */
+    private int[] candidates(boolean[] eliminated) {
+        int n = db.numVars();
+        long[] keyed = new long[n];
+        int count = 0;
+        for (int v = 0; v < n; ++v) {
+            if (eliminated[v] || db.value(v) != Bool.UNDEFINED) continue;
+            int pos = db.occurrenceCount(2 * v);
+            int neg = db.occurrenceCount(2 * v + 1);
+            if (pos + neg == 0 || pos + neg > occurrenceLimit) continue;
+            // sort on cost in the high word, variable in the low word
+            keyed[count++] = ((long) pos * neg << 32) | v;
+        }
+        Arrays.sort(keyed, 0, count);
+        int[] result = new int[count];
+        for (int i = 0; i < count; ++i)
+            result[i] = (int) keyed[i];
+        return result;
+    }
+
+    /**
+     * Eliminate v if the bound allows it.
+     * @return true iff v was eliminated
+     */
+    private boolean tryEliminate(int v) {
+        int pos = 2 * v;
+        int neg = pos + 1;
+        int[] posClauses = db.occurrences(pos).toArray();
+        int[] negClauses = db.occurrences(neg).toArray();
+        if (posClauses.length + negClauses.length > occurrenceLimit) return false;
+
+        int limit = posClauses.length + negClauses.length + growth;
+        ArrayList<int[]> resolvents = new ArrayList<int[]>();
+        for (int p : posClauses) {
+            for (int q : negClauses) {
+                int[] r = resolve(db.clause(p), db.clause(q), v);
+                if (r == null) continue;
+                if (r.length > resolventLimit || resolvents.size() == limit) return false;
+                resolvents.add(r);
+            }
+        }
+
+        // a variable occurring in one polarity only is pure, and the witness
+        // on the stack sets it to satisfy every removed clause
+        for (int p : posClauses) {
+            db.pushExtension(db.clause(p), pos);
+            stats.eliminatedLiterals += db.clause(p).length;
+            db.removeClause(p);
+        }
+        for (int q : negClauses) {
+            db.pushExtension(db.clause(q), neg);
+            stats.eliminatedLiterals += db.clause(q).length;
+            db.removeClause(q);
+        }
+        stats.eliminatedClauses += posClauses.length + negClauses.length;
+        for (int[] r : resolvents) {
+            if (subsumption.isSubsumed(r)) continue;
+            db.addClause(r);
+            ++stats.resolventsAdded;
+        }
+        // fix any unit resolvents, and let the new clauses subsume and
+        // strengthen the clauses around them
+        if (db.propagate())
+            subsumption.backward(db.drainTouched());
+        return true;
+    }
+
+    /**
+     * Requires: p contains 2*v, q contains 2*v+1, both sorted
+     * @return the sorted resolvent of p and q on v, or null if it is a
+     *         tautology
+     */
+    static int[] resolve(int[] p, int[] q, int v) {
+        int[] result = new int[p.length + q.length - 2];
+        int i = 0, j = 0, n = 0;
+        while (i < p.length || j < q.length) {
+            int next;
+            if (j == q.length || (i < p.length && p[i] < q[j])) next = p[i++];
+            else if (i == p.length || q[j] < p[i]) next = q[j++];
+            else { next = p[i++]; j++; }
+            if ((next >>> 1) == v) continue;
+            // complementary literals are adjacent in code order
+            if (n > 0 && (result[n - 1] ^ 1) == next) return null;
+            result[n++] = next;
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+}
@@ -0,0 +1,26 @@
+package sat.search;
+
+/**
+ * A flag through which one thread asks a running solve to stop. The search
+ * loop polls it cooperatively and returns SolveResult.Status.UNKNOWN with
+ * reason SolveResult.Reason.CANCELLED; nothing is interrupted.
+ * This datatype is mutable and safe to share between threads. Once
+ * cancelled, a token stays cancelled.
+ */
+public class CancellationToken {
+    private volatile boolean cancelled = false;
+
+    /**
+     * Ask every solve using this token to stop
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true iff cancel has been called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
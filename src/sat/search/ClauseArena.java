@@ -0,0 +1,152 @@
+package sat.search;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Off-heap storage for the clauses of a SearchEngine: a direct buffer of
+ * ints in which each clause is a header holding its length followed by its
+ * literals. A clause is known by the offset of its header. An engine made
+ * from a ClauseList also puts the implication lists of its binary clauses
+ * here, one block of ints per literal, ahead of the clauses.
+ *
+ * The engine then keeps no Java object per clause, only an int offset and
+ * a flag, so the heap used by a solve grows with the number of variables
+ * rather than with the number of clauses, and large problems put less
+ * work on the garbage collector. The engine resets the arena when it
+ * loads its problem and compacts it when it deletes learned clauses; the
+ * arena belongs to its caller, who can hand it to the next engine, so a
+ * process that solves one problem after another allocates clause memory
+ * once instead of once per solve. The buffer grows by doubling when full.
+ *
+ * A ClauseArena is mutable and may be used by one engine at a time.
+ */
+public final class ClauseArena {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private IntBuffer ints;
+    // offset of the first free int
+    private int top = 0;
+
+    /**
+     * Make an arena of DEFAULT_CAPACITY ints.
+     */
+    public ClauseArena() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Make an arena that holds capacity ints before it first grows.
+     * Requires: capacity > 0
+     */
+    public ClauseArena(int capacity) {
+        this.ints = allocate(capacity);
+    }
+
+    private static IntBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(4 * capacity).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * Discard every clause, keeping the memory for the next ones.
+     */
+    public void reset() {
+        top = 0;
+    }
+
+    /**
+     * @return bytes of memory held, outside the Java heap
+     */
+    public long getCapacityBytes() {
+        return 4L * ints.capacity();
+    }
+
+    /**
+     * @return bytes taken by the clauses stored since the last reset
+     */
+    public long getUsedBytes() {
+        return 4L * top;
+    }
+
+    /**
+     * Store the clause of the first n literals of lits.
+     * @return its offset
+     */
+    int add(int[] lits, int n) {
+        if (top + n + 1 > ints.capacity()) grow(top + n + 1);
+        int offset = top;
+        ints.put(offset, n);
+        for (int i = 0; i < n; ++i)
+            ints.put(offset + 1 + i, lits[i]);
+        top += n + 1;
+        return offset;
+    }
+
+    /**
+     * Set aside n ints, to be used through read and write.
+     * @return the offset of the first
+     */
+    int reserve(int n) {
+        if (top + n > ints.capacity()) grow(top + n);
+        int offset = top;
+        top += n;
+        return offset;
+    }
+
+    int read(int offset) {
+        return ints.get(offset);
+    }
+
+    void write(int offset, int value) {
+        ints.put(offset, value);
+    }
+
+    private void grow(int needed) {
+        IntBuffer bigger = allocate(Math.max(2 * ints.capacity(), needed));
+        IntBuffer used = ints.duplicate();
+        used.position(0).limit(top);
+        bigger.put(used);
+        ints = bigger;
+    }
+
+    /**
+     * @return number of literals of the clause at offset
+     */
+    int length(int offset) {
+        return ints.get(offset);
+    }
+
+    /**
+     * @return literal i of the clause at offset
+     */
+    int get(int offset, int i) {
+        return ints.get(offset + 1 + i);
+    }
+
+    /**
+     * Make lit literal i of the clause at offset.
+     */
+    void set(int offset, int i, int lit) {
+        ints.put(offset + 1 + i, lit);
+    }
+
+    /**
+     * Move the clause at from down to to, overwriting what was there.
+     * Requires: to <= from
+     * @return the offset just past the moved clause
+     */
+    int move(int from, int to) {
+        int n = ints.get(from) + 1;
+        for (int k = 0; k < n; ++k)
+            ints.put(to + k, ints.get(from + k));
+        return to + n;
+    }
+
+    /**
+     * Forget everything from offset top on.
+     */
+    void truncate(int top) {
+        this.top = top;
+    }
+}
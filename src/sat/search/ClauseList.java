@@ -0,0 +1,112 @@
+package sat.search;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of clauses over numbered variables, for encoders that
+ * build large problems directly for a SearchEngine instead of through
+ * Formula and Clause objects.
+ *
+ * Literals are codes as in Literal.getCode: variable v has positive
+ * literal 2v and negative literal 2v+1. All clauses are kept in one int
+ * array with a second array of start offsets, so a binary clause costs 12
+ * bytes. This datatype is mutable.
+ */
+public class ClauseList {
+    private int[] literals = new int[1024];
+    private int literalCount = 0;
+    // starts[c] is the offset of clause c; starts[size] == literalCount
+    private int[] starts = new int[257];
+    private int size = 0;
+    private int variables = 0;
+
+    /*
+     * Rep invariant:
+     *     0 = starts[0] <= starts[1] <= ... <= starts[size] = literalCount
+     *     every literal l in literals[0..literalCount) has l >>> 1 < variables
+     */
+
+    /**
+     * @return a new variable, numbered one more than the last
+     */
+    public int newVariable() {
+        return variables++;
+    }
+
+    /**
+     * Make variables 0..n-1 available, if they are not already.
+     */
+    public void ensureVariables(int n) {
+        variables = Math.max(variables, n);
+    }
+
+    /**
+     * @return number of variables
+     */
+    public int getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return number of clauses
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add the unit clause (a).
+     */
+    public void add(int a) {
+        begin(1);
+        literals[literalCount++] = a;
+        end();
+    }
+
+    /**
+     * Add the binary clause (a | b).
+     */
+    public void add(int a, int b) {
+        begin(2);
+        literals[literalCount++] = a;
+        literals[literalCount++] = b;
+        end();
+    }
+
+    /**
+     * Add the clause of the first n literals of lits.
+     */
+    public void add(int[] lits, int n) {
+        begin(n);
+        System.arraycopy(lits, 0, literals, literalCount, n);
+        literalCount += n;
+        end();
+    }
+
+    private void begin(int n) {
+        if (literalCount + n > literals.length)
+            literals = Arrays.copyOf(literals, Math.max(2 * literals.length, literalCount + n));
+        if (size + 2 > starts.length)
+            starts = Arrays.copyOf(starts, 2 * starts.length);
+    }
+
+    private void end() {
+        starts[++size] = literalCount;
+    }
+
+    /**
+     * Requires: 0 <= c < size()
+     * @return number of literals of clause c
+     */
+    public int length(int c) {
+        return starts[c + 1] - starts[c];
+    }
+
+    /**
+     * Requires: 0 <= c < size(), 0 <= i < length(c)
+     * @return literal i of clause c
+     */
+    public int get(int c, int i) {
+        return literals[starts[c] + i];
+    }
+}
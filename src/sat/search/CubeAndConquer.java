@@ -0,0 +1,346 @@
+package sat.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import sat.env.Environment;
+import sat.env.Variable;
+import sat.formula.Clause;
+import sat.formula.Formula;
+import sat.formula.Literal;
+
+/**
+ * A parallel SAT solver in two phases. First a lookahead solver splits the
+ * formula into cubes, partial assignments that together cover every model
+ * (see Lookahead), timed as Phase.LOOKAHEAD. Then each cube is solved by
+ * its own SearchEngine, with the cube's literals as unit clauses, on a
+ * pool of worker threads that steal work from each other: each worker
+ * keeps a deque of ranges of cubes it has yet to start, halving the range
+ * it takes until one cube is left and pushing the other halves onto the
+ * head of its deque; an idle worker takes from the tail of another's
+ * deque, where the largest ranges are. Cubes that turn out hard are thus
+ * balanced among the workers without any tuning. The
+ * first cube found satisfiable cancels the others; the formula is
+ * unsatisfiable once every cube is.
+ *
+ * Cubes should outnumber the workers several times over so that stealing
+ * can even out their costs; by default the split is deep enough for about
+ * eight cubes per worker. The engines share the clauses read from the
+ * formula but nothing else: no learned clauses pass between cubes.
+ *
+ * This class is mutable; the getters describe the last solve.
+ */
+public class CubeAndConquer {
+    /**
+     * Cube depth chosen from the parallelism, the default
+     */
+    public static final int AUTOMATIC = -1;
+    // how long a worker with nothing to steal waits before looking again
+    private static final long IDLE_NANOS = 100000;
+
+    private final Formula formula;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int cubeDepth = AUTOMATIC;
+
+    private int cubes = 0;
+    private int refutedCubes = 0;
+    private int failedLiterals = 0;
+    private int searchedCubes = 0;
+
+    /**
+     * Create a solver for formula
+     */
+    public CubeAndConquer(Formula formula) {
+        this.formula = formula;
+    }
+
+    /**
+     * Solve cubes on this many worker threads; by default, one per processor.
+     * Requires: parallelism > 0
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Branch at most depth times on the way to each cube, for at most 2^depth
+     * cubes, or choose the depth from the parallelism if depth is AUTOMATIC.
+     * Depth 0 solves the formula as a single cube.
+     * Requires: depth >= 0 or depth == AUTOMATIC
+     */
+    public void setCubeDepth(int depth) {
+        this.cubeDepth = depth;
+    }
+
+    /**
+     * Search for a satisfying assignment, without limits.
+     * @return an environment binding every variable of the formula, for which
+     *         the formula evaluates to Bool.TRUE, or null if it is unsatisfiable
+     */
+    public Environment solve() {
+        return solve(new SolveOptions()).getEnvironment();
+    }
+
+    /**
+     * Search for a satisfying assignment within the limits of options. The
+     * timeout, heap limit and cancellation apply to the search as a whole;
+     * the conflict and decision limits apply to each cube. The lookahead
+     * is bounded by the cube depth and not held to the limits. The result's
+     * statistics sum the counters of every cube searched.
+     * @return SAT with an environment binding every variable of the formula,
+     *         for which the formula evaluates to Bool.TRUE; UNSAT; or UNKNOWN
+     *         if a limit was reached or the search was cancelled first
+     */
+    public SolveResult solve(SolveOptions options) {
+        SolverStatistics statistics = new SolverStatistics();
+        cubes = refutedCubes = failedLiterals = searchedCubes = 0;
+
+        long started = statistics.beginPhase(Phase.LOOKAHEAD);
+        ClauseList clauses = new ClauseList();
+        boolean empty = false;
+        for (Clause c : formula.getClauses()) {
+            int[] lits = new int[c.size()];
+            int i = 0;
+            for (Literal l : c) {
+                lits[i] = l.getCode();
+                clauses.ensureVariables((lits[i] >>> 1) + 1);
+                ++i;
+            }
+            if (lits.length == 0) empty = true;
+            clauses.add(lits, lits.length);
+        }
+        List<int[]> split = null;
+        if (!empty) {
+            Lookahead lookahead = new Lookahead(clauses);
+            split = lookahead.split(cubeDepth == AUTOMATIC ? automaticDepth() : cubeDepth);
+            refutedCubes = lookahead.getRefuted();
+            failedLiterals = lookahead.getFailedLiterals();
+            cubes = split.size();
+        }
+        statistics.endPhase(Phase.LOOKAHEAD, started);
+        if (empty || split.isEmpty()) return SolveResult.unsat(statistics);
+
+        started = statistics.beginPhase(Phase.SEARCH);
+        Conquest conquest = new Conquest(clauses, split, options, statistics);
+        conquest.run(parallelism);
+        statistics.endPhase(Phase.SEARCH, started);
+        searchedCubes = conquest.searched;
+
+        SearchEngine winner = conquest.winner.get();
+        if (winner != null) return SolveResult.sat(model(clauses, winner), statistics);
+        if (conquest.stopReason != null) return SolveResult.unknown(conquest.stopReason, statistics);
+        // cubes left unsearched can only have been skipped for the caller's token
+        if (searchedCubes < split.size()) return SolveResult.unknown(SolveResult.Reason.CANCELLED, statistics);
+        return SolveResult.unsat(statistics);
+    }
+
+    /**
+     * @return number of cubes the last solve split the formula into
+     */
+    public int getCubes() {
+        return cubes;
+    }
+
+    /**
+     * @return number of cubes the last lookahead dropped because
+     *         propagation refuted them; these are not counted in getCubes
+     */
+    public int getRefutedCubes() {
+        return refutedCubes;
+    }
+
+    /**
+     * @return number of failed literals the last lookahead found
+     */
+    public int getFailedLiterals() {
+        return failedLiterals;
+    }
+
+    /**
+     * @return number of cubes the last solve searched to the end or to a
+     *         limit, before a satisfiable cube stopped the others
+     */
+    public int getSearchedCubes() {
+        return searchedCubes;
+    }
+
+    // about eight cubes per worker
+    private int automaticDepth() {
+        return 32 - Integer.numberOfLeadingZeros(8 * parallelism - 1);
+    }
+
+    /**
+     * @return environment binding each variable of clauses to its value in
+     *         engine's model
+     */
+    private static Environment model(ClauseList clauses, SearchEngine engine) {
+        boolean[] used = new boolean[clauses.getVariables()];
+        for (int c = 0; c < clauses.size(); ++c)
+            for (int i = 0; i < clauses.length(c); ++i)
+                used[clauses.get(c, i) >>> 1] = true;
+        Environment env = new Environment();
+        for (int v = 0; v < used.length; ++v) {
+            if (!used[v]) continue;
+            Variable var = Literal.fromCode(2 * v).getVariable();
+            env = engine.isTrue(v) ? env.putTrue(var) : env.putFalse(var);
+        }
+        return env;
+    }
+
+    /**
+     * A token cancelled by the first satisfiable cube or by the caller's
+     * token, if any.
+     */
+    private static final class Stop extends CancellationToken {
+        private final CancellationToken caller;
+
+        Stop(CancellationToken caller) {
+            this.caller = caller;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return super.isCancelled() || (caller != null && caller.isCancelled());
+        }
+    }
+
+    /**
+     * The state of the conquer phase of one solve, shared by its workers.
+     */
+    private static final class Conquest {
+        private final ClauseList clauses;
+        private final List<int[]> split;
+        private final SolveOptions options;
+        private final SolverStatistics statistics;
+        private final Stop stop;
+        private final long deadline;
+        private final AtomicReference<SearchEngine> winner = new AtomicReference<SearchEngine>();
+        // deques.get(w): ranges {first, last} of cubes worker w has yet to
+        // start; the owner takes from the head, thieves from the tail
+        private final List<LinkedBlockingDeque<int[]>> deques = new ArrayList<LinkedBlockingDeque<int[]>>();
+        // cubes neither solved nor skipped
+        private final AtomicInteger unfinished;
+        // guarded by this
+        private SolveResult.Reason stopReason = null;
+        private int searched = 0;
+
+        Conquest(ClauseList clauses, List<int[]> split, SolveOptions options, SolverStatistics statistics) {
+            this.clauses = clauses;
+            this.split = split;
+            this.options = options;
+            this.statistics = statistics;
+            this.stop = new Stop(options.getCancellation());
+            this.deadline = System.nanoTime() + options.getTimeoutMillis() * 1000000L;
+            this.unfinished = new AtomicInteger(split.size());
+        }
+
+        void solveCube(int[] cube) {
+            SolveOptions cubeOptions = new SolveOptions()
+                    .setConflictLimit(options.getConflictLimit())
+                    .setDecisionLimit(options.getDecisionLimit())
+                    .setMemoryLimitBytes(options.getMemoryLimitBytes())
+                    .setCancellation(stop);
+            if (options.getTimeoutMillis() != SolveOptions.UNLIMITED)
+                cubeOptions.setTimeoutMillis(Math.max(0, (deadline - System.nanoTime()) / 1000000L));
+            SearchEngine engine = new SearchEngine(clauses);
+            engine.setAssumptions(cube);
+            SolveResult result = engine.solve(cubeOptions);
+            synchronized (this) {
+                statistics.addCounters(result.getStatistics());
+                ++searched;
+            }
+            switch (result.getStatus()) {
+            case SAT:
+                if (winner.compareAndSet(null, engine)) stop.cancel();
+                break;
+            case UNKNOWN:
+                if (winner.get() != null) break;
+                synchronized (this) {
+                    if (stopReason == null) stopReason = result.getReason();
+                }
+                // time, heap and cancellation bind every cube alike
+                if (result.getReason() != SolveResult.Reason.CONFLICT_LIMIT
+                        && result.getReason() != SolveResult.Reason.DECISION_LIMIT)
+                    stop.cancel();
+                break;
+            default:
+                break;
+            }
+        }
+
+        /**
+         * Solve every cube, or stop early, on parallelism worker threads.
+         */
+        void run(int parallelism) {
+            for (int w = 0; w < parallelism; ++w)
+                deques.add(new LinkedBlockingDeque<int[]>());
+            deques.get(0).add(new int[] { 0, split.size() });
+            ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+            try {
+                List<Future<?>> workers = new ArrayList<Future<?>>();
+                for (int w = 0; w < parallelism; ++w) {
+                    final int self = w;
+                    workers.add(pool.submit(new Runnable() {
+                        public void run() {
+                            work(self);
+                        }
+                    }));
+                }
+                for (Future<?> worker : workers) {
+                    try {
+                        worker.get();
+                    } catch (ExecutionException e) {
+                        stop.cancel();
+                        throw new RuntimeException(e.getCause());
+                    } catch (InterruptedException e) {
+                        // stop the workers and report the cubes left as cancelled
+                        stop.cancel();
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        // take ranges from the own deque, else steal, until no cube is left
+        private void work(int self) {
+            LinkedBlockingDeque<int[]> own = deques.get(self);
+            while (unfinished.get() > 0) {
+                int[] range = own.pollFirst();
+                if (range == null) range = steal(self);
+                if (range == null) {
+                    // the cubes left are being solved by other workers
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                int first = range[0], last = range[1];
+                while (last - first > 1) {
+                    int middle = (first + last) >>> 1;
+                    own.addFirst(new int[] { middle, last });
+                    last = middle;
+                }
+                if (!stop.isCancelled()) solveCube(split.get(first));
+                unfinished.decrementAndGet();
+            }
+        }
+
+        // the largest range another worker has yet to start, or null
+        private int[] steal(int self) {
+            for (int k = 1; k < deques.size(); ++k) {
+                int[] range = deques.get((self + k) % deques.size()).pollLast();
+                if (range != null) return range;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package sat.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The splitting phase of CubeAndConquer: a lookahead solver that divides
+ * the search space of a ClauseList into cubes, partial assignments whose
+ * disjunction covers every model.
+ *
+ * At each node of the split the solver probes candidate variables: it
+ * assigns each literal in turn, runs unit propagation, and counts the
+ * literals implied. A literal whose propagation fails is a failed literal,
+ * so its negation is forced at this node and added to the cube; when both
+ * literals of a variable fail, the node has no model and is dropped. Of
+ * the variables left, the one that maximizes the product of the implied
+ * counts of its two literals (plus one each) is the branch variable: both
+ * of its subtrees are then smaller, which is the usual estimate that a
+ * cube is getting easier. Splitting stops at a fixed depth, or early at a
+ * node where no candidate is left.
+ *
+ * Propagation counts true and false literals per clause over occurrence
+ * lists rather than watching two literals, since lookahead assigns and
+ * undoes far more often than it searches. A Lookahead is mutable and used
+ * once, by one thread.
+ */
+final class Lookahead {
+    private static final byte UNASSIGNED = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = -1;
+
+    /**
+     * Number of unassigned variables probed at each node, taken in order of
+     * how many clauses they occur in
+     */
+    static final int CANDIDATES = 32;
+
+    private final ClauseList clauses;
+    private final int numVars;
+    // occurrences[l]: the clauses that contain literal l
+    private final int[][] occurrences;
+    // per clause: number of its literals that propagation has made true, false
+    private final int[] trueCount;
+    private final int[] falseCount;
+    private final byte[] value;
+    private final int[] trail;
+    private int trailSize = 0;
+    // literals trail[0..propagated) have been counted in their clauses
+    private int propagated = 0;
+    // variables by decreasing number of occurrences
+    private final int[] order;
+    // literals decided or forced on the path to the current node
+    private final int[] cube;
+    private int cubeSize = 0;
+
+    private final List<int[]> cubes = new ArrayList<int[]>();
+    private int refuted = 0;
+    private int failedLiterals = 0;
+
+    /**
+     * Requires: clauses is not changed while this is used, and contains no
+     *           empty clause
+     */
+    Lookahead(ClauseList clauses) {
+        this.clauses = clauses;
+        this.numVars = Math.max(clauses.getVariables(), 1);
+        int literals = 2 * numVars;
+        int[] counts = new int[literals];
+        for (int c = 0; c < clauses.size(); ++c)
+            for (int i = 0; i < clauses.length(c); ++i)
+                ++counts[clauses.get(c, i)];
+        occurrences = new int[literals][];
+        for (int l = 0; l < literals; ++l)
+            occurrences[l] = new int[counts[l]];
+        int[] filled = new int[literals];
+        for (int c = 0; c < clauses.size(); ++c)
+            for (int i = 0; i < clauses.length(c); ++i) {
+                int l = clauses.get(c, i);
+                occurrences[l][filled[l]++] = c;
+            }
+        trueCount = new int[clauses.size()];
+        falseCount = new int[clauses.size()];
+        value = new byte[literals];
+        trail = new int[numVars];
+        cube = new int[numVars];
+
+        final int[] occurs = new int[numVars];
+        List<Integer> byCount = new ArrayList<Integer>();
+        for (int v = 0; v < numVars; ++v) {
+            occurs[v] = counts[2 * v] + counts[2 * v + 1];
+            if (occurs[v] > 0) byCount.add(v);
+        }
+        Collections.sort(byCount, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return occurs[b] - occurs[a];
+            }
+        });
+        order = new int[byCount.size()];
+        for (int i = 0; i < order.length; ++i)
+            order[i] = byCount.get(i);
+    }
+
+    /**
+     * Split the search space into cubes, branching at most depth times on
+     * the way to each.
+     * Requires: depth >= 0; split has not been called before on this
+     * @return the cubes, each an array of literal codes; every model of the
+     *         clauses satisfies at least one of them, so the clauses are
+     *         unsatisfiable if there are none
+     */
+    List<int[]> split(int depth) {
+        boolean consistent = true;
+        for (int c = 0; c < clauses.size() && consistent; ++c) {
+            if (clauses.length(c) != 1) continue;
+            int l = clauses.get(c, 0);
+            if (value[l] == FALSE) consistent = false;
+            else if (value[l] == UNASSIGNED) assign(l);
+        }
+        if (consistent && propagate()) branch(depth);
+        else ++refuted;
+        return cubes;
+    }
+
+    /**
+     * @return number of nodes found to have no model, whose cubes were
+     *         dropped instead of searched
+     */
+    int getRefuted() {
+        return refuted;
+    }
+
+    /**
+     * @return number of failed literals found while probing
+     */
+    int getFailedLiterals() {
+        return failedLiterals;
+    }
+
+    /**
+     * Probe the current node, then emit it as a cube or branch below it.
+     */
+    private void branch(int depth) {
+        if (depth == 0) {
+            cubes.add(Arrays.copyOf(cube, cubeSize));
+            return;
+        }
+        int mark = trailSize, cubeMark = cubeSize;
+        int decision = -1;
+        boolean forced = true;
+        probing:
+        while (forced) {
+            // probe again after forcing a literal, since the counts change
+            forced = false;
+            decision = -1;
+            long bestScore = -1;
+            int tried = 0;
+            for (int i = 0; i < order.length && tried < CANDIDATES; ++i) {
+                int v = order[i];
+                if (value[2 * v] != UNASSIGNED) continue;
+                ++tried;
+                int positive = probe(2 * v), negative = probe(2 * v + 1);
+                if (positive < 0 && negative < 0) {
+                    decision = -2;
+                    break probing;
+                }
+                if (positive < 0 || negative < 0) {
+                    ++failedLiterals;
+                    int l = positive < 0 ? 2 * v + 1 : 2 * v;
+                    assign(l);
+                    cube[cubeSize++] = l;
+                    if (!propagate()) {
+                        decision = -2;
+                        break probing;
+                    }
+                    forced = true;
+                    continue;
+                }
+                long score = (long) (positive + 1) * (negative + 1);
+                if (score > bestScore) {
+                    bestScore = score;
+                    // the side that implies less keeps more freedom, so try it first
+                    decision = positive <= negative ? 2 * v : 2 * v + 1;
+                }
+            }
+        }
+        if (decision == -2) {
+            ++refuted;
+        } else if (decision < 0) {
+            cubes.add(Arrays.copyOf(cube, cubeSize));
+        } else {
+            for (int l : new int[] { decision, decision ^ 1 }) {
+                int before = trailSize;
+                assign(l);
+                cube[cubeSize++] = l;
+                if (propagate()) branch(depth - 1);
+                else ++refuted;
+                undo(before);
+                --cubeSize;
+            }
+        }
+        undo(mark);
+        cubeSize = cubeMark;
+    }
+
+    /**
+     * Assign lit, propagate, and undo.
+     * @return the number of literals assigned, lit included, or -1 if
+     *         propagation failed
+     */
+    private int probe(int lit) {
+        int mark = trailSize;
+        assign(lit);
+        boolean ok = propagate();
+        int implied = trailSize - mark;
+        undo(mark);
+        return ok ? implied : -1;
+    }
+
+    private void assign(int lit) {
+        value[lit] = TRUE;
+        value[lit ^ 1] = FALSE;
+        trail[trailSize++] = lit;
+    }
+
+    /**
+     * Count the literals on the trail in their clauses, assigning the last
+     * literal of any clause whose others are all false.
+     * @return false iff some clause has every literal false
+     */
+    private boolean propagate() {
+        while (propagated < trailSize) {
+            int lit = trail[propagated];
+            for (int c : occurrences[lit])
+                ++trueCount[c];
+            boolean conflict = false;
+            for (int c : occurrences[lit ^ 1]) {
+                int n = clauses.length(c);
+                int f = ++falseCount[c];
+                if (trueCount[c] > 0 || f < n - 1) continue;
+                if (f == n) {
+                    conflict = true;
+                    continue;
+                }
+                for (int i = 0; i < n; ++i) {
+                    int l = clauses.get(c, i);
+                    if (value[l] == UNASSIGNED) {
+                        assign(l);
+                        break;
+                    }
+                }
+            }
+            // lit is fully counted, so undo can uncount it
+            ++propagated;
+            if (conflict) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Unassign the literals of the trail from mark on.
+     */
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            int lit = trail[--trailSize];
+            if (trailSize < propagated) {
+                for (int c : occurrences[lit])
+                    --trueCount[c];
+                for (int c : occurrences[lit ^ 1])
+                    --falseCount[c];
+            }
+            value[lit] = value[lit ^ 1] = UNASSIGNED;
+        }
+        propagated = Math.min(propagated, mark);
+    }
+}
@@ -0,0 +1,17 @@
+package sat.search;
+
+/**
+ * The phases of solving a problem, timed separately in SolverStatistics.
+ */
+public enum Phase {
+    // building the formula, e.g. Sudoku.getProblem
+    ENCODE,
+    // simplifying the formula with sat.preprocess.Preprocessor
+    PREPROCESS,
+    // splitting the formula into cubes for CubeAndConquer
+    LOOKAHEAD,
+    // conflict-driven search
+    SEARCH,
+    // turning the model back into a problem-level answer, e.g. Sudoku.interpretSolution
+    INTERPRET
+}
@@ -0,0 +1,939 @@
+package sat.search;
+
+import java.util.Arrays;
+
+import sat.env.Environment;
+import sat.env.Variable;
+import sat.formula.Clause;
+import sat.formula.Formula;
+import sat.formula.Literal;
+
+/**
+ * A conflict-driven clause learning (CDCL) SAT solver over primitive arrays.
+ *
+ * Literals are the codes of Literal.getCode: variable v has positive
+ * literal 2v and negative literal 2v+1. Clauses of three or more literals
+ * are watched on their first two literals. Binary clauses are kept apart
+ * in per-literal implication arrays and propagated before the watch lists,
+ * so that an implied literal costs no clause dereference; this path can be
+ * turned off with setBinaryImplications, in which case binary clauses are
+ * watched like the others.
+ *
+ * Search uses first-UIP conflict analysis, activity-based variable
+ * selection with phase saving, Luby restarts and periodic deletion of the
+ * longer half of the learned clauses.
+ *
+ * The limits of a SolveOptions are checked in the search loop: conflict
+ * and decision counts at every conflict and decision, and time, heap and
+ * cancellation every CHECK_INTERVAL conflicts and decisions, so that the
+ * checks cost little.
+ *
+ * An engine is made from a Formula, or from a ClauseList for encoders that
+ * build problems too large to hold as Clause objects; the clause arrays of
+ * the search are the same either way. With setClauseArena, clauses of three
+ * or more literals are kept off the heap in a ClauseArena instead of one
+ * int array each.
+ *
+ * A SearchEngine is mutable and solves a single formula once.
+ */
+public class SearchEngine {
+    private static final byte TRUE = 1;
+    private static final byte FALSE = -1;
+    private static final byte UNASSIGNED = 0;
+
+    // reason of a decision or of a literal fixed before search
+    private static final int NO_REASON = -1;
+    // propagate() result when no conflict was found
+    private static final int NO_CONFLICT = -1;
+    // propagate() result for a conflict on the binary clause in binaryConflict
+    private static final int BINARY_CONFLICT = -2;
+
+    private static final int RESTART_UNIT = 64;
+    private static final double VAR_DECAY = 0.95;
+    // conflicts and decisions between checks of time, heap and cancellation
+    static final int CHECK_INTERVAL = 256;
+
+    // exactly one of formula and clauseList is non-null
+    private final Formula formula;
+    private final ClauseList clauseList;
+    private boolean binaryImplications = true;
+    // when non-null, clauses live here and clauses[] is not used
+    private ClauseArena arena = null;
+    // literals assumed true, as unit clauses of the problem
+    private int[] assumptions = new int[0];
+    private SolverStatistics statistics = null;
+    private SolveOptions options;
+    // System.nanoTime() at which the timeout expires, if there is one
+    private long deadline;
+    private int untilCheck;
+    private SolveResult.Reason stopReason;
+
+    private int numVars;
+    // value[l] for literal code l; value[l ^ 1] == -value[l]
+    private byte[] value;
+    private int[] level;
+    // reason[v]: index of the clause that implied v; -2-f if implied by the
+    // binary clause (v's literal | f); NO_REASON for decisions and level-0 units
+    private int[] reason;
+    private int[] trail;
+    private int trailSize;
+    private int[] trailLimits;
+    private int decisionLevel;
+    private int propagateHead;
+
+    // long clauses (and binary clauses when the binary path is off); null
+    // once deleted. With an arena, clauseStart[c] is instead the offset of
+    // clause c in it, -1 once deleted, and clauses is null
+    private int[][] clauses;
+    private int[] clauseStart;
+    // scratch arrays of learn: the clause being learned, the literals of a
+    // binary reason, and (with an arena) those of a longer reason
+    private int[] learnBuffer = new int[16];
+    private int[] reasonPair = new int[2];
+    private int[] reasonBuffer = new int[16];
+    private boolean[] learnt;
+    private int clauseCount;
+    private int learntCount;
+    // watches[l]: clauses whose first or second literal is l
+    private int[][] watches;
+    private int[] watchCount;
+    // with an arena and a ClauseList: the arena ints from inputImplications[l]
+    // to inputImplications[l+1] are literals implied when l becomes false,
+    // one per binary clause of the input; implications then holds only the
+    // learned ones
+    private int[] inputImplications;
+    // with an arena: offset at which the clauses start, after the implication lists
+    private int clausesStart;
+    // implications[l]: literals implied when l becomes false, one per binary clause
+    private int[][] implications;
+    private int[] implicationCount;
+    private int[] binaryConflict = new int[2];
+
+    private double[] activity;
+    private double activityIncrement = 1.0;
+    private int[] heap;
+    private int heapSize;
+    // heapIndex[v] is the position of v in heap, or -1 if absent
+    private int[] heapIndex;
+    private byte[] savedPhase;
+    private boolean[] seen;
+    private boolean[] used;
+
+    private long decisions;
+    private long propagations;
+    private long conflicts;
+    private long restarts;
+    private int maxDecisionLevel;
+    private long searchNanos;
+
+    /*
+     * Rep invariant (between calls to propagate):
+     *     the literals trail[0..trailSize) are exactly those with value TRUE
+     *     for every live watched clause c, c is in watches[clauses[c][0]]
+     *        and watches[clauses[c][1]] (read from the arena if there is one)
+     *     heap is a max-heap on activity, heapIndex is its inverse
+     *
+     * Abstraction function:
+     *     the conjunction of the clauses of formula, with the learned
+     *     clauses (which it implies) added
+     */
+
+    /**
+     * Create an engine for solving formula
+     */
+    public SearchEngine(Formula formula) {
+        this.formula = formula;
+        this.clauseList = null;
+    }
+
+    /**
+     * Create an engine for solving the conjunction of clauses. The result
+     * of solve then has an empty environment; read the model with isTrue.
+     * Requires: no clause holds a literal twice, or a literal and its
+     *           negation; clauses is not changed while the engine is used
+     */
+    public SearchEngine(ClauseList clauses) {
+        this.formula = null;
+        this.clauseList = clauses;
+    }
+
+    /**
+     * Choose whether binary clauses are propagated through dedicated
+     * implication arrays (the default) or watched like longer clauses.
+     * Requires: solve has not been called
+     */
+    public void setBinaryImplications(boolean enabled) {
+        this.binaryImplications = enabled;
+    }
+
+    /**
+     * Keep clauses of three or more literals (and binary clauses when the
+     * binary path is off) in arena rather than in an int array each, and
+     * for an engine made from a ClauseList the implication lists of its
+     * binary clauses too. Learned binary clauses stay on the heap. The
+     * engine resets arena when solve starts; it may be given to another
+     * engine once this one's solve has returned.
+     * Requires: solve has not been called; no other engine is using arena
+     */
+    public void setClauseArena(ClauseArena arena) {
+        this.arena = arena;
+    }
+
+    /**
+     * Solve the problem with the given literal codes as extra unit clauses,
+     * e.g. the cube of a CubeAndConquer.
+     * Requires: solve has not been called
+     */
+    void setAssumptions(int[] literals) {
+        this.assumptions = literals.clone();
+    }
+
+    /**
+     * Record counters in statistics when search ends, time the search as
+     * Phase.SEARCH, and report progress to its listener, if any.
+     * Requires: solve has not been called
+     */
+    public void setStatistics(SolverStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Search for a satisfying assignment, without limits.
+     * Requires: solve has not been called before on this
+     * @return an environment binding every variable of the formula, for which
+     *         the formula evaluates to Bool.TRUE, or null if it is unsatisfiable
+     */
+    public Environment solve() {
+        return solve(new SolveOptions()).getEnvironment();
+    }
+
+    /**
+     * Search for a satisfying assignment within the limits of options.
+     * The result's statistics are those given to setStatistics, or fresh
+     * ones if none were given.
+     * Requires: solve has not been called before on this
+     * @return SAT with an environment binding every variable of the formula,
+     *         for which the formula evaluates to Bool.TRUE; UNSAT; or UNKNOWN
+     *         if a limit was reached or the search was cancelled first
+     */
+    public SolveResult solve(SolveOptions options) {
+        this.options = options;
+        if (statistics == null) statistics = new SolverStatistics();
+        long phaseStarted = statistics.beginPhase(Phase.SEARCH);
+        long started = System.nanoTime();
+        deadline = started + options.getTimeoutMillis() * 1000000L;
+        untilCheck = 0;
+        SolveResult.Status status = SolveResult.Status.UNSAT;
+        if (load() && propagate() == NO_CONFLICT) status = search();
+        searchNanos = System.nanoTime() - started;
+        publish();
+        statistics.endPhase(Phase.SEARCH, phaseStarted);
+        switch (status) {
+        case SAT:
+            return SolveResult.sat(formula == null ? new Environment() : model(), statistics);
+        case UNSAT:
+            return SolveResult.unsat(statistics);
+        default:
+            return SolveResult.unknown(stopReason, statistics);
+        }
+    }
+
+    /**
+     * Requires: solve returned SAT, 0 <= variable < number of variables
+     * @return the value of variable in the model found; false for a
+     *         variable that occurs in no clause
+     */
+    public boolean isTrue(int variable) {
+        return value[2 * variable] == TRUE;
+    }
+
+    /**
+     * @return number of decisions made
+     */
+    public long getDecisions() {
+        return decisions;
+    }
+
+    /**
+     * @return number of literals assigned and propagated
+     */
+    public long getPropagations() {
+        return propagations;
+    }
+
+    /**
+     * @return number of conflicts found
+     */
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * @return number of restarts
+     */
+    public long getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * @return the deepest decision level reached
+     */
+    public int getMaxDecisionLevel() {
+        return maxDecisionLevel;
+    }
+
+    /**
+     * @return time spent loading the formula and searching, in nanoseconds;
+     *         excludes building the returned environment
+     */
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * Build the solver's arrays from the formula and enqueue its unit clauses.
+     * @return false iff the formula contains an empty clause or conflicting units
+     */
+    private boolean load() {
+        int clauseCapacity;
+        if (formula != null) {
+            int maxCode = 1;
+            for (Clause c : formula.getClauses())
+                for (Literal l : c)
+                    maxCode = Math.max(maxCode, l.getCode() | 1);
+            numVars = (maxCode >>> 1) + 1;
+            clauseCapacity = formula.getSize();
+        } else {
+            numVars = Math.max(clauseList.getVariables(), 1);
+            clauseCapacity = clauseList.size();
+        }
+        int literals = 2 * numVars;
+        value = new byte[literals];
+        level = new int[numVars];
+        reason = new int[numVars];
+        trail = new int[numVars];
+        trailLimits = new int[numVars + 1];
+        watches = new int[literals][];
+        watchCount = new int[literals];
+        implications = new int[literals][];
+        implicationCount = new int[literals];
+        activity = new double[numVars];
+        heap = new int[numVars];
+        heapIndex = new int[numVars];
+        Arrays.fill(heapIndex, -1);
+        savedPhase = new byte[numVars];
+        Arrays.fill(savedPhase, FALSE);
+        seen = new boolean[numVars];
+        used = new boolean[numVars];
+        if (arena == null) {
+            clauses = new int[Math.max(clauseCapacity, 16)][];
+        } else {
+            arena.reset();
+            clauseStart = new int[Math.max(clauseCapacity, 16)];
+        }
+        learnt = new boolean[Math.max(clauseCapacity, 16)];
+
+        if (formula != null) {
+            for (Clause c : formula.getClauses()) {
+                int[] lits = new int[c.size()];
+                int i = 0;
+                for (Literal l : c)
+                    lits[i++] = l.getCode();
+                if (!loadClause(lits)) return false;
+            }
+        } else {
+            if (arena != null && binaryImplications) loadArenaImplications();
+            for (int c = 0; c < clauseList.size(); ++c) {
+                int n = clauseList.length(c);
+                if (n == 2 && binaryImplications && inputImplications != null) continue;
+                if (n == 2 && binaryImplications) {
+                    // straight onto the implication arrays, without an array per clause
+                    int a = clauseList.get(c, 0), b = clauseList.get(c, 1);
+                    used[a >>> 1] = used[b >>> 1] = true;
+                    implications[a] = push(implications[a], implicationCount[a]++, b);
+                    implications[b] = push(implications[b], implicationCount[b]++, a);
+                    continue;
+                }
+                int[] lits = new int[n];
+                for (int i = 0; i < n; ++i)
+                    lits[i] = clauseList.get(c, i);
+                if (!loadClause(lits)) return false;
+            }
+        }
+        for (int lit : assumptions)
+            if (!loadClause(new int[] { lit })) return false;
+        for (int v = 0; v < numVars; ++v)
+            if (used[v]) heapInsert(v);
+        return true;
+    }
+
+    /**
+     * Lay out the binary clauses of clauseList in the arena as one block of
+     * implied literals per literal, ahead of the clauses.
+     */
+    private void loadArenaImplications() {
+        int literals = 2 * numVars;
+        inputImplications = new int[literals + 1];
+        for (int c = 0; c < clauseList.size(); ++c) {
+            if (clauseList.length(c) != 2) continue;
+            ++inputImplications[clauseList.get(c, 0) + 1];
+            ++inputImplications[clauseList.get(c, 1) + 1];
+        }
+        for (int l = 0; l < literals; ++l)
+            inputImplications[l + 1] += inputImplications[l];
+        int base = arena.reserve(inputImplications[literals]);
+        for (int l = 0; l <= literals; ++l)
+            inputImplications[l] += base;
+        clausesStart = inputImplications[literals];
+        int[] filled = Arrays.copyOf(inputImplications, literals);
+        for (int c = 0; c < clauseList.size(); ++c) {
+            if (clauseList.length(c) != 2) continue;
+            int a = clauseList.get(c, 0), b = clauseList.get(c, 1);
+            used[a >>> 1] = used[b >>> 1] = true;
+            arena.write(filled[a]++, b);
+            arena.write(filled[b]++, a);
+        }
+    }
+
+    /**
+     * Add a clause of the input, or enqueue it if it is a unit.
+     * @return false iff the clause is empty or a unit already falsified
+     */
+    private boolean loadClause(int[] lits) {
+        for (int l : lits)
+            used[l >>> 1] = true;
+        if (lits.length == 0) return false;
+        if (lits.length == 1) {
+            byte v = value[lits[0]];
+            if (v == FALSE) return false;
+            if (v == UNASSIGNED) assign(lits[0], NO_REASON);
+        } else {
+            addClause(lits, lits.length, false);
+        }
+        return true;
+    }
+
+    /**
+     * Add a clause of at least two literals, watching its first two.
+     * @return the clause index, or -1 for a binary clause on the binary path
+     */
+    private int addClause(int[] lits, int n, boolean isLearnt) {
+        if (n == 2 && binaryImplications) {
+            implications[lits[0]] = push(implications[lits[0]], implicationCount[lits[0]]++, lits[1]);
+            implications[lits[1]] = push(implications[lits[1]], implicationCount[lits[1]]++, lits[0]);
+            return -1;
+        }
+        if (clauseCount == learnt.length) {
+            if (arena == null) clauses = Arrays.copyOf(clauses, 2 * clauseCount);
+            else clauseStart = Arrays.copyOf(clauseStart, 2 * clauseCount);
+            learnt = Arrays.copyOf(learnt, 2 * clauseCount);
+        }
+        int c = clauseCount++;
+        if (arena == null) clauses[c] = lits;
+        else clauseStart[c] = arena.add(lits, n);
+        learnt[c] = isLearnt;
+        if (isLearnt) ++learntCount;
+        watch(lits[0], c);
+        watch(lits[1], c);
+        return c;
+    }
+
+    private void watch(int lit, int c) {
+        watches[lit] = push(watches[lit], watchCount[lit]++, c);
+    }
+
+    // store x at position i of list, growing it if needed
+    private static int[] push(int[] list, int i, int x) {
+        if (list == null) list = new int[4];
+        else if (i == list.length) list = Arrays.copyOf(list, 2 * i);
+        list[i] = x;
+        return list;
+    }
+
+    private void assign(int lit, int why) {
+        int v = lit >>> 1;
+        value[lit] = TRUE;
+        value[lit ^ 1] = FALSE;
+        level[v] = decisionLevel;
+        reason[v] = why;
+        trail[trailSize++] = lit;
+    }
+
+    /**
+     * Propagate all enqueued literals.
+     * @return NO_CONFLICT, BINARY_CONFLICT, or the index of a falsified clause
+     */
+    private int propagate() {
+        while (propagateHead < trailSize) {
+            int p = trail[propagateHead++];
+            int falseLit = p ^ 1;
+            ++propagations;
+
+            // binary clauses first: each implied literal is read straight
+            // from the implication array
+            if (inputImplications != null) {
+                for (int i = inputImplications[falseLit], end = inputImplications[falseLit + 1]; i < end; ++i) {
+                    int q = arena.read(i);
+                    byte v = value[q];
+                    if (v == TRUE) continue;
+                    if (v == FALSE) {
+                        binaryConflict[0] = falseLit;
+                        binaryConflict[1] = q;
+                        return BINARY_CONFLICT;
+                    }
+                    assign(q, -2 - falseLit);
+                }
+            }
+            int[] implied = implications[falseLit];
+            int n = implicationCount[falseLit];
+            for (int i = 0; i < n; ++i) {
+                int q = implied[i];
+                byte v = value[q];
+                if (v == TRUE) continue;
+                if (v == FALSE) {
+                    binaryConflict[0] = falseLit;
+                    binaryConflict[1] = q;
+                    return BINARY_CONFLICT;
+                }
+                assign(q, -2 - falseLit);
+            }
+
+            int conflict = arena == null ? propagateWatches(falseLit) : propagateArenaWatches(falseLit);
+            if (conflict != NO_CONFLICT) return conflict;
+        }
+        return NO_CONFLICT;
+    }
+
+    /**
+     * Visit the clauses watching falseLit, which just became false: move
+     * each watch to a literal not false, or assign the clause's other
+     * watched literal, or stop at a conflict.
+     * @return NO_CONFLICT or the index of a falsified clause
+     */
+    private int propagateWatches(int falseLit) {
+        int[] ws = watches[falseLit];
+        int n = watchCount[falseLit];
+        int kept = 0;
+        for (int i = 0; i < n; ++i) {
+            int c = ws[i];
+            int[] lits = clauses[c];
+            if (lits == null) continue; // deleted: drop the watch
+            if (lits[0] == falseLit) {
+                lits[0] = lits[1];
+                lits[1] = falseLit;
+            }
+            if (value[lits[0]] == TRUE) {
+                ws[kept++] = c;
+                continue;
+            }
+            boolean moved = false;
+            for (int k = 2; k < lits.length; ++k) {
+                if (value[lits[k]] != FALSE) {
+                    lits[1] = lits[k];
+                    lits[k] = falseLit;
+                    watch(lits[1], c);
+                    moved = true;
+                    break;
+                }
+            }
+            if (moved) continue;
+            ws[kept++] = c;
+            if (value[lits[0]] == FALSE) {
+                while (++i < n)
+                    ws[kept++] = ws[i];
+                watchCount[falseLit] = kept;
+                propagateHead = trailSize;
+                return c;
+            }
+            assign(lits[0], c);
+        }
+        watchCount[falseLit] = kept;
+        return NO_CONFLICT;
+    }
+
+    // propagateWatches for clauses in the arena
+    private int propagateArenaWatches(int falseLit) {
+        int[] ws = watches[falseLit];
+        int n = watchCount[falseLit];
+        int kept = 0;
+        for (int i = 0; i < n; ++i) {
+            int c = ws[i];
+            int at = clauseStart[c];
+            if (at < 0) continue; // deleted: drop the watch
+            int first = arena.get(at, 0);
+            if (first == falseLit) {
+                first = arena.get(at, 1);
+                arena.set(at, 0, first);
+                arena.set(at, 1, falseLit);
+            }
+            if (value[first] == TRUE) {
+                ws[kept++] = c;
+                continue;
+            }
+            boolean moved = false;
+            for (int k = 2, length = arena.length(at); k < length; ++k) {
+                int lit = arena.get(at, k);
+                if (value[lit] != FALSE) {
+                    arena.set(at, 1, lit);
+                    arena.set(at, k, falseLit);
+                    watch(lit, c);
+                    moved = true;
+                    break;
+                }
+            }
+            if (moved) continue;
+            ws[kept++] = c;
+            if (value[first] == FALSE) {
+                while (++i < n)
+                    ws[kept++] = ws[i];
+                watchCount[falseLit] = kept;
+                propagateHead = trailSize;
+                return c;
+            }
+            assign(first, c);
+        }
+        watchCount[falseLit] = kept;
+        return NO_CONFLICT;
+    }
+
+    /**
+     * Run CDCL until a model is found, the empty clause is learned, or a
+     * limit is reached.
+     * @return SAT, UNSAT, or UNKNOWN with stopReason set
+     */
+    private SolveResult.Status search() {
+        long conflictsUntilRestart = RESTART_UNIT * luby(0);
+        int maxLearnts = Math.max(clauseCount / 3, 1000);
+        while (true) {
+            if (--untilCheck < 0 && limitReached()) return SolveResult.Status.UNKNOWN;
+            int conflict = propagate();
+            if (conflict != NO_CONFLICT) {
+                ++conflicts;
+                if (decisionLevel == 0) return SolveResult.Status.UNSAT;
+                if (conflicts == options.getConflictLimit()) {
+                    stopReason = SolveResult.Reason.CONFLICT_LIMIT;
+                    return SolveResult.Status.UNKNOWN;
+                }
+                if (conflicts % SolverStatistics.PROGRESS_INTERVAL == 0)
+                    reportProgress();
+                learn(conflict);
+                decayActivities();
+                if (--conflictsUntilRestart <= 0) {
+                    ++restarts;
+                    conflictsUntilRestart = RESTART_UNIT * luby(restarts);
+                    backtrack(0);
+                }
+                if (learntCount > maxLearnts + trailSize) {
+                    reduceLearnts();
+                    maxLearnts += maxLearnts / 10;
+                }
+                continue;
+            }
+            int next = pickBranchVariable();
+            if (next < 0) return SolveResult.Status.SAT;
+            if (decisions == options.getDecisionLimit()) {
+                stopReason = SolveResult.Reason.DECISION_LIMIT;
+                return SolveResult.Status.UNKNOWN;
+            }
+            ++decisions;
+            trailLimits[decisionLevel++] = trailSize;
+            if (decisionLevel > maxDecisionLevel) maxDecisionLevel = decisionLevel;
+            assign(2 * next + (savedPhase[next] == TRUE ? 0 : 1), NO_REASON);
+        }
+    }
+
+    /**
+     * Check the time, heap and cancellation limits, and schedule the next
+     * check.
+     * @return true iff a limit is reached, setting stopReason
+     */
+    private boolean limitReached() {
+        untilCheck = CHECK_INTERVAL;
+        CancellationToken token = options.getCancellation();
+        if (token != null && token.isCancelled()) stopReason = SolveResult.Reason.CANCELLED;
+        else if (options.getTimeoutMillis() != SolveOptions.UNLIMITED && System.nanoTime() - deadline >= 0)
+            stopReason = SolveResult.Reason.TIMEOUT;
+        else if (options.getMemoryLimitBytes() != SolveOptions.UNLIMITED) {
+            Runtime runtime = Runtime.getRuntime();
+            if (runtime.totalMemory() - runtime.freeMemory() > options.getMemoryLimitBytes())
+                stopReason = SolveResult.Reason.MEMORY_LIMIT;
+        }
+        return stopReason != null;
+    }
+
+    // copy the search counters into statistics
+    private void publish() {
+        statistics.decisions = decisions;
+        statistics.propagations = propagations;
+        statistics.conflicts = conflicts;
+        statistics.restarts = restarts;
+        statistics.maxDepth = maxDecisionLevel;
+    }
+
+    private void reportProgress() {
+        SolverListener listener = statistics.getListener();
+        if (listener == null) return;
+        publish();
+        listener.searchProgress(statistics);
+    }
+
+    /**
+     * Analyze a conflict to a first-UIP clause, backjump, and assert it.
+     */
+    private void learn(int conflict) {
+        int[] learned = learnBuffer;
+        int size = 1; // learned[0] is filled with the asserting literal
+        int pathCount = 0;
+        int p = -1;
+        int index = trailSize - 1;
+        int[] reasonLits;
+        if (conflict == BINARY_CONFLICT) {
+            reasonLits = reasonPair;
+            reasonPair[0] = binaryConflict[0];
+            reasonPair[1] = binaryConflict[1];
+        } else {
+            reasonLits = literals(conflict);
+        }
+        int reasonLength = conflict == BINARY_CONFLICT ? 2 : length(conflict);
+        while (true) {
+            for (int r = 0; r < reasonLength; ++r) {
+                int q = reasonLits[r];
+                if (q == p) continue;
+                int v = q >>> 1;
+                if (seen[v] || level[v] == 0) continue;
+                seen[v] = true;
+                bumpActivity(v);
+                if (level[v] >= decisionLevel) {
+                    ++pathCount;
+                } else {
+                    if (size == learned.length) learned = learnBuffer = Arrays.copyOf(learned, 2 * size);
+                    learned[size++] = q;
+                }
+            }
+            while (!seen[trail[index] >>> 1])
+                --index;
+            p = trail[index--];
+            int v = p >>> 1;
+            seen[v] = false;
+            if (--pathCount == 0) break;
+            int why = reason[v];
+            if (why >= 0) {
+                reasonLits = literals(why);
+                reasonLength = length(why);
+            } else {
+                reasonLits = reasonPair;
+                reasonPair[0] = p;
+                reasonPair[1] = -2 - why;
+                reasonLength = 2;
+            }
+        }
+        learned[0] = p ^ 1;
+        for (int i = 1; i < size; ++i)
+            seen[learned[i] >>> 1] = false;
+        // the arena copies the clause, so the buffer itself will do
+        int[] lits = arena == null ? Arrays.copyOf(learned, size) : learned;
+
+        int backjump = 0;
+        if (size > 1) {
+            // watch the literal of the highest remaining level second
+            int best = 1;
+            for (int i = 2; i < size; ++i)
+                if (level[lits[i] >>> 1] > level[lits[best] >>> 1]) best = i;
+            int t = lits[1];
+            lits[1] = lits[best];
+            lits[best] = t;
+            backjump = level[lits[1] >>> 1];
+        }
+        backtrack(backjump);
+        if (size == 1) {
+            assign(lits[0], NO_REASON);
+        } else {
+            int c = addClause(lits, size, true);
+            assign(lits[0], c >= 0 ? c : -2 - lits[1]);
+        }
+    }
+
+    /**
+     * @return an array whose first length(c) elements are the literals of
+     *         clause c: the clause itself, or a buffer copied from the arena
+     */
+    private int[] literals(int c) {
+        if (arena == null) return clauses[c];
+        int at = clauseStart[c], n = arena.length(at);
+        if (reasonBuffer.length < n) reasonBuffer = new int[Math.max(n, 2 * reasonBuffer.length)];
+        for (int i = 0; i < n; ++i)
+            reasonBuffer[i] = arena.get(at, i);
+        return reasonBuffer;
+    }
+
+    // number of literals of live clause c
+    private int length(int c) {
+        return arena == null ? clauses[c].length : arena.length(clauseStart[c]);
+    }
+
+    // false once clause c is deleted
+    private boolean live(int c) {
+        return arena == null ? clauses[c] != null : clauseStart[c] >= 0;
+    }
+
+    private void backtrack(int target) {
+        if (decisionLevel <= target) return;
+        for (int i = trailSize - 1; i >= trailLimits[target]; --i) {
+            int lit = trail[i];
+            int v = lit >>> 1;
+            savedPhase[v] = (lit & 1) == 0 ? TRUE : FALSE;
+            value[lit] = UNASSIGNED;
+            value[lit ^ 1] = UNASSIGNED;
+            if (heapIndex[v] < 0) heapInsert(v);
+        }
+        trailSize = trailLimits[target];
+        propagateHead = trailSize;
+        decisionLevel = target;
+    }
+
+    /**
+     * Delete the longer half of the learned clauses that are not the
+     * reason for a current assignment. Their watches are dropped lazily by
+     * propagate.
+     */
+    private void reduceLearnts() {
+        int[] candidates = new int[learntCount];
+        int n = 0;
+        for (int c = 0; c < clauseCount; ++c) {
+            if (!live(c) || !learnt[c]) continue;
+            int first = arena == null ? clauses[c][0] : arena.get(clauseStart[c], 0);
+            boolean locked = value[first] == TRUE && reason[first >>> 1] == c;
+            if (!locked && length(c) > 2) candidates[n++] = c;
+        }
+        // order by length, longest first, keeping index order among equals
+        long[] keyed = new long[n];
+        for (int i = 0; i < n; ++i)
+            keyed[i] = ((long) (Integer.MAX_VALUE - length(candidates[i])) << 32) | candidates[i];
+        Arrays.sort(keyed);
+        for (int i = 0; i < n / 2; ++i) {
+            if (arena == null) clauses[(int) keyed[i]] = null;
+            else clauseStart[(int) keyed[i]] = -1;
+            --learntCount;
+        }
+        if (arena != null) compactArena();
+    }
+
+    /**
+     * Slide the live clauses of the arena down over the deleted ones.
+     * Clauses are stored in index order, so offsets stay in that order.
+     */
+    private void compactArena() {
+        int top = clausesStart;
+        for (int c = 0; c < clauseCount; ++c) {
+            if (clauseStart[c] < 0) continue;
+            int from = clauseStart[c];
+            clauseStart[c] = top;
+            top = arena.move(from, top);
+        }
+        arena.truncate(top);
+    }
+
+    /**
+     * @return the unassigned variable of highest activity, or -1 if all
+     *         variables are assigned
+     */
+    private int pickBranchVariable() {
+        while (heapSize > 0) {
+            int v = heapRemoveMax();
+            if (value[2 * v] == UNASSIGNED) return v;
+        }
+        return -1;
+    }
+
+    private void bumpActivity(int v) {
+        activity[v] += activityIncrement;
+        if (activity[v] > 1e100) {
+            for (int i = 0; i < numVars; ++i)
+                activity[i] *= 1e-100;
+            activityIncrement *= 1e-100;
+        }
+        if (heapIndex[v] >= 0) siftUp(heapIndex[v]);
+    }
+
+    private void decayActivities() {
+        activityIncrement /= VAR_DECAY;
+    }
+
+    private void heapInsert(int v) {
+        heapIndex[v] = heapSize;
+        heap[heapSize++] = v;
+        siftUp(heapSize - 1);
+    }
+
+    private int heapRemoveMax() {
+        int top = heap[0];
+        heapIndex[top] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapIndex[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (activity[heap[parent]] >= activity[v]) break;
+            heap[i] = heap[parent];
+            heapIndex[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) ++child;
+            if (activity[heap[child]] <= activity[v]) break;
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    /**
+     * @return the ith element of the Luby sequence 1,1,2,1,1,2,4,1,...
+     */
+    static long luby(long i) {
+        long size = 1;
+        int seq = 0;
+        while (size < i + 1) {
+            ++seq;
+            size = 2 * size + 1;
+        }
+        long x = i;
+        while (size - 1 != x) {
+            size = (size - 1) >> 1;
+            --seq;
+            x = x % size;
+        }
+        return 1L << seq;
+    }
+
+    /**
+     * @return environment binding each variable of the formula to its value
+     */
+    private Environment model() {
+        Environment env = new Environment();
+        for (int v = 0; v < numVars; ++v) {
+            if (!used[v]) continue;
+            Variable var = Literal.fromCode(2 * v).getVariable();
+            env = value[2 * v] == TRUE ? env.putTrue(var) : env.putFalse(var);
+        }
+        return env;
+    }
+}
@@ -0,0 +1,91 @@
+package sat.search;
+
+/**
+ * Limits on one solve: wall-clock time, conflicts, decisions and heap in
+ * use, and a CancellationToken. A solve that reaches a limit stops with
+ * SolveResult.Status.UNKNOWN. By default there are no limits.
+ * This datatype is mutable; the setters return this so that options can be
+ * built in one expression. Do not change options while a solve uses them.
+ */
+public class SolveOptions {
+    /**
+     * Value of a limit that is not set
+     */
+    public static final long UNLIMITED = -1;
+
+    private long timeoutMillis = UNLIMITED;
+    private long conflictLimit = UNLIMITED;
+    private long decisionLimit = UNLIMITED;
+    private long memoryLimitBytes = UNLIMITED;
+    private CancellationToken cancellation = null;
+
+    /**
+     * Limit the wall-clock time of search, or remove the limit if millis is
+     * UNLIMITED.
+     * Requires: millis >= 0 or millis == UNLIMITED
+     */
+    public SolveOptions setTimeoutMillis(long millis) {
+        this.timeoutMillis = millis;
+        return this;
+    }
+
+    /**
+     * Limit the number of conflicts, or remove the limit if conflicts is
+     * UNLIMITED.
+     * Requires: conflicts >= 0 or conflicts == UNLIMITED
+     */
+    public SolveOptions setConflictLimit(long conflicts) {
+        this.conflictLimit = conflicts;
+        return this;
+    }
+
+    /**
+     * Limit the number of decisions, or remove the limit if decisions is
+     * UNLIMITED.
+     * Requires: decisions >= 0 or decisions == UNLIMITED
+     */
+    public SolveOptions setDecisionLimit(long decisions) {
+        this.decisionLimit = decisions;
+        return this;
+    }
+
+    /**
+     * Stop when the JVM heap in use exceeds bytes, or remove the limit if
+     * bytes is UNLIMITED. The heap is shared, so this also counts objects
+     * of other threads and garbage not yet collected; it is a ceiling that
+     * keeps one runaway solve from exhausting memory, not an exact budget.
+     * Requires: bytes >= 0 or bytes == UNLIMITED
+     */
+    public SolveOptions setMemoryLimitBytes(long bytes) {
+        this.memoryLimitBytes = bytes;
+        return this;
+    }
+
+    /**
+     * Stop when token is cancelled, or never if token is null
+     */
+    public SolveOptions setCancellation(CancellationToken token) {
+        this.cancellation = token;
+        return this;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public long getConflictLimit() {
+        return conflictLimit;
+    }
+
+    public long getDecisionLimit() {
+        return decisionLimit;
+    }
+
+    public long getMemoryLimitBytes() {
+        return memoryLimitBytes;
+    }
+
+    public CancellationToken getCancellation() {
+        return cancellation;
+    }
+}
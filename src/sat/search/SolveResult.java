@@ -0,0 +1,96 @@
+package sat.search;
+
+import sat.env.Environment;
+
+/**
+ * The outcome of a solve under SolveOptions: SAT with a model, UNSAT, or
+ * UNKNOWN with the Reason the search stopped. The statistics hold the
+ * counters reached in either case.
+ * This datatype is immutable, except that the statistics object it refers
+ * to belongs to the caller.
+ */
+public class SolveResult {
+    public enum Status {
+        SAT, UNSAT, UNKNOWN
+    }
+
+    /**
+     * Why a solve stopped without an answer
+     */
+    public enum Reason {
+        TIMEOUT, CONFLICT_LIMIT, DECISION_LIMIT, MEMORY_LIMIT, CANCELLED
+    }
+
+    private final Status status;
+    private final Environment environment;
+    private final Reason reason;
+    private final SolverStatistics statistics;
+
+    /*
+     * Rep invariant:
+     *     environment != null iff status == SAT
+     *     reason != null iff status == UNKNOWN
+     *     statistics != null
+     */
+
+    private SolveResult(Status status, Environment environment, Reason reason,
+            SolverStatistics statistics) {
+        this.status = status;
+        this.environment = environment;
+        this.reason = reason;
+        this.statistics = statistics;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert (environment != null) == (status == Status.SAT) : "SolveResult, Rep invariant: environment";
+        assert (reason != null) == (status == Status.UNKNOWN) : "SolveResult, Rep invariant: reason";
+        assert statistics != null : "SolveResult, Rep invariant: statistics";
+    }
+
+    /**
+     * Requires: environment is non-null
+     */
+    public static SolveResult sat(Environment environment, SolverStatistics statistics) {
+        return new SolveResult(Status.SAT, environment, null, statistics);
+    }
+
+    public static SolveResult unsat(SolverStatistics statistics) {
+        return new SolveResult(Status.UNSAT, null, null, statistics);
+    }
+
+    /**
+     * Requires: reason is non-null
+     */
+    public static SolveResult unknown(Reason reason, SolverStatistics statistics) {
+        return new SolveResult(Status.UNKNOWN, null, reason, statistics);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the satisfying environment if SAT, else null
+     */
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * @return why the solve stopped if UNKNOWN, else null
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    public SolverStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public String toString() {
+        if (status == Status.UNKNOWN) return status + " (" + reason + ")";
+        return status.toString();
+    }
+}
@@ -0,0 +1,28 @@
+package sat.search;
+
+/**
+ * Receives notifications of solver activity, for tracing and monitoring.
+ * A listener is attached with SolverStatistics.setListener; when none is
+ * attached, the solver makes no calls and pays only a null check.
+ *
+ * Implementations are called on the solving thread and should return
+ * quickly. For example, an implementation may commit Java Flight Recorder
+ * events on JDKs that provide jdk.jfr.
+ */
+public interface SolverListener {
+    /**
+     * Called when phase begins
+     */
+    public void phaseStarted(Phase phase);
+
+    /**
+     * Called when phase ends, with the time it took
+     */
+    public void phaseFinished(Phase phase, long nanos);
+
+    /**
+     * Called periodically during search, every
+     * SolverStatistics.PROGRESS_INTERVAL conflicts, with the counters so far
+     */
+    public void searchProgress(SolverStatistics statistics);
+}
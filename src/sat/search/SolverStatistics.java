@@ -0,0 +1,172 @@
+package sat.search;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counters and timings for one solve: search counters, clause counts
+ * before and after preprocessing, bytes allocated, and time per Phase.
+ * This datatype is mutable; it is filled in by the solver and its callers
+ * (see SATSolver.solveWithPreprocessing), and read by clients afterwards.
+ */
+public class SolverStatistics {
+    /**
+     * Number of conflicts between calls to SolverListener.searchProgress
+     */
+    public static final long PROGRESS_INTERVAL = 1024;
+
+    long decisions;
+    long propagations;
+    long conflicts;
+    long restarts;
+    int maxDepth;
+    int clausesBeforePreprocessing = -1;
+    int clausesAfterPreprocessing = -1;
+    private long bytesAllocated = 0;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private SolverListener listener = null;
+
+    /**
+     * Attach a listener to be notified of phases and search progress,
+     * or detach the current one if listener is null
+     */
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
+
+    SolverListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Mark the start of phase, notifying the listener.
+     * @return a timestamp to pass to endPhase
+     */
+    public long beginPhase(Phase phase) {
+        if (listener != null) listener.phaseStarted(phase);
+        return System.nanoTime();
+    }
+
+    /**
+     * Mark the end of phase, adding the time since started to it and
+     * notifying the listener.
+     * Requires: started was returned by beginPhase(phase)
+     */
+    public void endPhase(Phase phase, long started) {
+        long nanos = System.nanoTime() - started;
+        phaseNanos[phase.ordinal()] += nanos;
+        if (listener != null) listener.phaseFinished(phase, nanos);
+    }
+
+    /**
+     * Add the search counters of other to these, keeping the deeper
+     * maximum depth; for a solve split over several engines.
+     */
+    void addCounters(SolverStatistics other) {
+        decisions += other.decisions;
+        propagations += other.propagations;
+        conflicts += other.conflicts;
+        restarts += other.restarts;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+    }
+
+    /**
+     * Record the number of clauses before and after preprocessing
+     */
+    public void setPreprocessedClauses(int before, int after) {
+        this.clausesBeforePreprocessing = before;
+        this.clausesAfterPreprocessing = after;
+    }
+
+    /**
+     * Add to the count of bytes allocated
+     */
+    public void addBytesAllocated(long bytes) {
+        this.bytesAllocated += bytes;
+    }
+
+    /**
+     * @return total bytes allocated so far by the current thread, or -1 if
+     *         the JVM cannot report it
+     */
+    public static long threadAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    public long getPropagations() {
+        return propagations;
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * @return the deepest decision level reached in search
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return number of clauses given to the preprocessor, or -1 if the
+     *         formula was not preprocessed
+     */
+    public int getClausesBeforePreprocessing() {
+        return clausesBeforePreprocessing;
+    }
+
+    /**
+     * @return number of clauses left by the preprocessor, or -1 if the
+     *         formula was not preprocessed
+     */
+    public int getClausesAfterPreprocessing() {
+        return clausesAfterPreprocessing;
+    }
+
+    /**
+     * @return bytes allocated by the solving thread during the measured phases
+     */
+    public long getBytesAllocated() {
+        return bytesAllocated;
+    }
+
+    /**
+     * @return total time spent in phase, in nanoseconds
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("Statistics:");
+        result.append(" decisions=").append(decisions);
+        result.append(" propagations=").append(propagations);
+        result.append(" conflicts=").append(conflicts);
+        result.append(" restarts=").append(restarts);
+        result.append(" maxDepth=").append(maxDepth);
+        if (clausesBeforePreprocessing >= 0)
+            result.append(" clauses=").append(clausesBeforePreprocessing)
+                  .append("->").append(clausesAfterPreprocessing);
+        result.append(" allocated=").append(bytesAllocated / 1024).append("KB");
+        for (Phase phase : Phase.values())
+            result.append(" ").append(phase.name().toLowerCase()).append("=")
+                  .append(phaseNanos[phase.ordinal()] / 1000000).append("ms");
+        return result.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package sudoku;
+
+import java.util.Arrays;
+
+/**
+ * The symbols used for the digits of a grid written one character per
+ * square: the kth symbol stands for digit k, counting from 1. A period is
+ * always a blank, and so is '0' when it is not a symbol. This datatype is
+ * immutable.
+ */
+public final class Alphabet {
+    /**
+     * '1'-'9', then 'A'-'Z', then 'a'-'z': grids up to 49x49
+     */
+    public static final Alphabet STANDARD = new Alphabet(
+            "123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz");
+    /**
+     * '0'-'9', then 'A'-'F', as usual for 16x16 grids
+     */
+    public static final Alphabet HEXADECIMAL = new Alphabet("0123456789ABCDEF");
+
+    private final String symbols;
+    // digits[c]: the digit of character c, 0 for a blank, -1 for neither
+    private final int[] digits = new int[128];
+
+    /**
+     * Make an alphabet whose kth character stands for digit k.
+     * Requires: symbols holds distinct ASCII characters other than '.',
+     *           whitespace and ','
+     */
+    public Alphabet(String symbols) {
+        this.symbols = symbols;
+        Arrays.fill(digits, -1);
+        digits['.'] = 0;
+        if (symbols.indexOf('0') < 0) digits['0'] = 0;
+        for (int k = 0; k < symbols.length(); ++k)
+            digits[symbols.charAt(k)] = k + 1;
+    }
+
+    /**
+     * @return number of digits this alphabet can write
+     */
+    public int size() {
+        return symbols.length();
+    }
+
+    /**
+     * @return the digit of c, from 1 to size(); 0 if c is a blank; -1 if c
+     *         is neither
+     */
+    public int digit(char c) {
+        return c < digits.length ? digits[c] : -1;
+    }
+
+    /**
+     * Requires: 0 <= d <= size()
+     * @return the symbol of digit d, '.' for 0
+     */
+    public char symbol(int d) {
+        return d == 0 ? '.' : symbols.charAt(d - 1);
+    }
+
+    @Override
+    public String toString() {
+        return symbols;
+    }
+}
@@ -0,0 +1,67 @@
+package sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import sudoku.Sudoku.ParseException;
+
+public class BatchSolverTest {
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    // check that solution solves puzzle
+    private static void assertSolves(Sudoku puzzle, Sudoku solution) {
+        assertTrue(CompactEncodingTest.isSolution(solution));
+        for (int i = 0; i < 9; ++i)
+            for (int j = 0; j < 9; ++j)
+                assertTrue(puzzle.getSquare(i, j) == 0 || puzzle.getSquare(i, j) == solution.getSquare(i, j));
+    }
+
+    @Test
+    public void generatedTest() {
+        // more than one group, the last one partly filled
+        Sudoku[] puzzles = new Generator(3, 26, Generator.Pattern.NONE).generate(1, 2 * BatchSolver.LANES + 5, 1)
+                .toArray(new Sudoku[0]);
+        BatchSolver solver = new BatchSolver();
+        Sudoku[] solutions = solver.solve(puzzles);
+        Sudoku[] scalar = solver.solveEach(puzzles);
+        for (int k = 0; k < puzzles.length; ++k) {
+            assertSolves(puzzles[k], solutions[k]);
+            // the puzzles have one solution each
+            assertEquals(scalar[k].toString(), solutions[k].toString());
+        }
+        assertEquals(puzzles.length, solver.getPropagated() + solver.getSearched());
+    }
+
+    @Test
+    public void samplesTest() throws IOException, ParseException {
+        String[] names = { "easy", "easy2", "hard", "hard2", "evil" };
+        Sudoku[] puzzles = new Sudoku[names.length + 2];
+        for (int k = 0; k < names.length; ++k)
+            puzzles[k] = Sudoku.fromFile(3, "samples/sudoku_" + names[k] + ".txt");
+        // a blank grid needs search; two 1s in the top row have no solution
+        puzzles[names.length] = new Sudoku(3);
+        int[] clash = new int[81];
+        clash[0] = clash[8] = 1;
+        puzzles[names.length + 1] = new Sudoku(3, clash);
+        BatchSolver solver = new BatchSolver();
+        Sudoku[] solutions = solver.solve(puzzles);
+        for (int k = 0; k <= names.length; ++k)
+            assertSolves(puzzles[k], solutions[k]);
+        assertNull(solutions[names.length + 1]);
+        assertTrue(solver.getSearched() >= 1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void nonClassicRejectedTest() {
+        new BatchSolver().solve(new Sudoku[] { new Sudoku(3), new Sudoku(Regions.diagonal(3), new int[81]) });
+    }
+}
@@ -0,0 +1,184 @@
+package sudoku;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The binary framing spoken between a SolveCoordinator and its
+ * SolveWorkers over a socket.
+ *
+ * Every frame is an int length of the rest of the frame, a type byte and
+ * an int id, then a body; ints are big-endian. A worker opens with HELLO,
+ * whose id is the protocol VERSION, and no body. The coordinator sends
+ * BATCH frames, whose id names the batch and whose body is a dim byte, an
+ * int count and count grids packed as in PackedPuzzles; the worker answers
+ * each with a RESULT frame of the same id, whose body is an int count, one
+ * status byte per puzzle, and then the packed solution of each SOLVED
+ * puzzle in order. A worker may have several batches outstanding and
+ * answers them in the order sent. BYE, with no body, asks the worker to
+ * exit. A 9x9 puzzle takes 41 bytes out and 42 back.
+ */
+final class ClusterProtocol {
+    static final int VERSION = 1;
+
+    // frame types
+    static final byte HELLO = 1;
+    static final byte BATCH = 2;
+    static final byte RESULT = 3;
+    static final byte BYE = 4;
+
+    // status of a puzzle in a RESULT
+    static final byte SOLVED = 0;
+    static final byte UNSOLVABLE = 1;
+    static final byte ERROR = 2;
+    // the worker's search reached its node limit
+    static final byte LIMIT = 3;
+
+    // type and id
+    private static final int FRAME_HEADER = 5;
+    // longest frame accepted, so a corrupt length cannot exhaust the heap
+    static final int MAX_FRAME = 1 << 26;
+
+    private ClusterProtocol() {
+    }
+
+    /**
+     * A frame read from a stream
+     */
+    static final class Frame {
+        final byte type;
+        final int id;
+        final ByteBuffer body;
+
+        Frame(byte type, int id, ByteBuffer body) {
+            this.type = type;
+            this.id = id;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Write the frame of type and id with the first length bytes of body,
+     * and flush.
+     */
+    static void write(DataOutputStream out, byte type, int id, byte[] body, int length) throws IOException {
+        out.writeInt(FRAME_HEADER + length);
+        out.writeByte(type);
+        out.writeInt(id);
+        out.write(body, 0, length);
+        out.flush();
+    }
+
+    /**
+     * Read the next frame.
+     * @return the frame, or null if the stream ends before one starts
+     * @throws IOException if the stream fails, ends inside a frame, or
+     *         holds a frame too short or too long
+     */
+    static Frame read(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < FRAME_HEADER || length > MAX_FRAME)
+            throw new IOException("bad frame length " + length);
+        byte type = in.readByte();
+        int id = in.readInt();
+        byte[] body = new byte[length - FRAME_HEADER];
+        in.readFully(body);
+        return new Frame(type, id, ByteBuffer.wrap(body));
+    }
+
+    /**
+     * @return number of bytes of the body of a BATCH of count puzzles of
+     *         dim dim
+     */
+    static int batchBytes(int dim, int count) {
+        return 5 + count * PackedPuzzles.gridBytes(dim);
+    }
+
+    /**
+     * Pack a BATCH body of the grids of dim dim into body.
+     * Requires: body.length >= batchBytes(dim, grids.length)
+     * @return number of bytes written
+     */
+    static int packBatch(int dim, int[][] grids, byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        buffer.put(0, (byte) dim);
+        buffer.putInt(1, grids.length);
+        int squares = dim * dim * dim * dim, bits = PackedPuzzles.bitsPerSquare(dim);
+        int gridBytes = PackedPuzzles.gridBytes(dim);
+        for (int k = 0; k < grids.length; ++k)
+            PackedPuzzles.pack(buffer, 5 + k * gridBytes, grids[k], squares, bits);
+        return batchBytes(dim, grids.length);
+    }
+
+    /**
+     * @return the grids of a BATCH body, row-major, 0 for a blank
+     * @throws IOException if the body is malformed
+     */
+    static int[][] unpackBatch(ByteBuffer body) throws IOException {
+        if (body.remaining() < 5) throw new IOException("short batch");
+        int dim = body.get(0), count = body.getInt(1);
+        if (dim < 1 || dim > SolutionCounter.MAX_DIM || count < 0 || body.remaining() != batchBytes(dim, count))
+            throw new IOException("malformed batch");
+        int squares = dim * dim * dim * dim, bits = PackedPuzzles.bitsPerSquare(dim);
+        int gridBytes = PackedPuzzles.gridBytes(dim);
+        int[][] grids = new int[count][squares];
+        for (int k = 0; k < count; ++k)
+            PackedPuzzles.unpack(body, 5 + k * gridBytes, grids[k], squares, bits);
+        return grids;
+    }
+
+    /**
+     * Pack a RESULT body into a new array: the status of each puzzle and
+     * the grids of those SOLVED.
+     * Requires: grids[k] is a solution of dim dim wherever status[k] == SOLVED
+     */
+    static byte[] packResult(int dim, byte[] status, int[][] grids) {
+        int solved = 0;
+        for (byte b : status)
+            if (b == SOLVED) ++solved;
+        int gridBytes = PackedPuzzles.gridBytes(dim);
+        int squares = dim * dim * dim * dim, bits = PackedPuzzles.bitsPerSquare(dim);
+        byte[] body = new byte[4 + status.length + solved * gridBytes];
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        buffer.putInt(0, status.length);
+        int offset = 4 + status.length;
+        for (int k = 0; k < status.length; ++k) {
+            body[4 + k] = status[k];
+            if (status[k] != SOLVED) continue;
+            PackedPuzzles.pack(buffer, offset, grids[k], squares, bits);
+            offset += gridBytes;
+        }
+        return body;
+    }
+
+    /**
+     * Unpack a RESULT body for a batch of count puzzles of dim dim into
+     * status and the grids of those SOLVED.
+     * Requires: status.length == grids.length == count
+     * @throws IOException if the body is malformed
+     */
+    static void unpackResult(ByteBuffer body, int dim, byte[] status, int[][] grids) throws IOException {
+        int count = status.length;
+        if (body.remaining() < 4 + count || body.getInt(0) != count) throw new IOException("malformed result");
+        int gridBytes = PackedPuzzles.gridBytes(dim);
+        int squares = dim * dim * dim * dim, bits = PackedPuzzles.bitsPerSquare(dim);
+        int offset = 4 + count;
+        for (int k = 0; k < count; ++k) {
+            status[k] = body.get(4 + k);
+            if (status[k] != SOLVED) continue;
+            if (offset + gridBytes > body.remaining()) throw new IOException("malformed result");
+            grids[k] = new int[squares];
+            PackedPuzzles.unpack(body, offset, grids[k], squares, bits);
+            offset += gridBytes;
+        }
+        if (offset != body.remaining()) throw new IOException("malformed result");
+    }
+}
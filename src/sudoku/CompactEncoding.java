@@ -0,0 +1,220 @@
+package sudoku;
+
+import java.util.Arrays;
+
+import sat.search.ClauseArena;
+import sat.search.ClauseList;
+import sat.search.SearchEngine;
+import sat.search.SolveOptions;
+import sat.search.SolveResult;
+
+/**
+ * A SAT encoding of a puzzle whose size grows with (dim*dim)^3, for grids
+ * up to 64x64, where getProblem's pairwise encoding (which grows with
+ * (dim*dim)^4) and its Formula of Clause objects no longer fit in memory.
+ *
+ * Givens are not variables: a blank square has a variable for each digit
+ * not given in its row, column or block. Each square has at least one of
+ * its digits, and each digit not given in a unit appears in at least one
+ * of the unit's blank squares; "at most one" over n literals is written
+ * pairwise for n <= PAIRWISE_LIMIT and otherwise with the sequential
+ * counter encoding (Sinz 2005), which takes 3n clauses and n auxiliary
+ * variables instead of n^2/2 clauses. The clauses go straight into a
+ * ClauseList for a SearchEngine.
+ *
+ * The units are those of the puzzle's Regions, so diagonal and jigsaw
+ * puzzles encode like classic ones. A killer cage adds "at most one" per
+ * digit and a choice among the sets of digits that fill it and add up to
+ * its sum; a cage digit that is in none of those sets gets no variable.
+ *
+ * A CompactEncoding is immutable once made.
+ */
+public class CompactEncoding {
+    // at-most-one groups up to this size are encoded pairwise
+    static final int PAIRWISE_LIMIT = 5;
+
+    private final Regions regions;
+    private final int size;
+    private final int[] squares;
+    // variable[p * size + d - 1]: variable for digit d at square p, or -1
+    private final int[] variable;
+    private final ClauseList clauses = new ClauseList();
+
+    /**
+     * Encode puzzle, under the houses and cages of its Regions.
+     * Requires: puzzle has dim <= 8
+     */
+    public CompactEncoding(Sudoku puzzle) {
+        this.regions = puzzle.getRegions();
+        this.size = regions.size;
+        this.squares = new int[size * size];
+        puzzle.getSquares(squares);
+        this.variable = new int[size * size * size];
+        int[] unitSquares = regions.unitSquares, unitStart = regions.unitStart;
+        int[] squareUnits = regions.squareUnits, squareUnitStart = regions.squareUnitStart;
+
+        // used[u]: digits given in unit u
+        long[] used = new long[regions.units];
+        boolean clash = false;
+        for (int p = 0; p < squares.length; ++p) {
+            if (squares[p] == 0) continue;
+            long bit = 1L << (squares[p] - 1);
+            for (int k = squareUnitStart[p]; k < squareUnitStart[p + 1]; ++k) {
+                int u = squareUnits[k];
+                if ((used[u] & bit) != 0) clash = true;
+                used[u] |= bit;
+            }
+        }
+        // allowed[u]: digits a cage can hold, those of its sets of digits
+        // that add up to its sum and include its givens; all for a house
+        long[] allowed = new long[regions.units];
+        long[][] combinations = new long[regions.units][];
+        for (int u = 0; u < regions.units; ++u) {
+            allowed[u] = -1L;
+            if (u < regions.houses) continue;
+            long[] all = regions.cageCombinations(u - regions.houses);
+            int n = 0;
+            for (long m : all)
+                if ((m & used[u]) == used[u]) all[n++] = m;
+            combinations[u] = Arrays.copyOf(all, n);
+            allowed[u] = 0;
+            for (long m : combinations[u])
+                allowed[u] |= m;
+            if (n == 0) clash = true;
+        }
+        if (clash) clauses.add(new int[0], 0);
+
+        for (int p = 0; p < squares.length; ++p) {
+            long given = 0, possible = -1L;
+            for (int k = squareUnitStart[p]; k < squareUnitStart[p + 1]; ++k) {
+                given |= used[squareUnits[k]];
+                possible &= allowed[squareUnits[k]];
+            }
+            for (int d = 1; d <= size; ++d) {
+                int k = p * size + d - 1;
+                long bit = 1L << (d - 1);
+                variable[k] = -1;
+                if (squares[p] == 0 && (given & bit) == 0 && (possible & bit) != 0)
+                    variable[k] = clauses.newVariable();
+            }
+        }
+
+        int[] group = new int[size];
+        // each blank square holds exactly one digit
+        for (int p = 0; p < squares.length; ++p) {
+            if (squares[p] != 0) continue;
+            int n = 0;
+            for (int d = 1; d <= size; ++d)
+                if (variable[p * size + d - 1] >= 0) group[n++] = 2 * variable[p * size + d - 1];
+            exactlyOne(group, n);
+        }
+        // each digit not given in a house is in exactly one of its squares,
+        // and in at most one square of a cage
+        for (int u = 0; u < regions.units; ++u) {
+            for (int d = 1; d <= size; ++d) {
+                if ((used[u] & (1L << (d - 1))) != 0) continue;
+                int n = 0;
+                for (int k = unitStart[u]; k < unitStart[u + 1]; ++k) {
+                    int v = variable[unitSquares[k] * size + d - 1];
+                    if (v >= 0) group[n++] = 2 * v;
+                }
+                if (u < regions.houses) exactlyOne(group, n);
+                else atMostOne(group, n);
+            }
+        }
+        // a cage holds one of its sets of digits: has_d when a square of the
+        // cage holds d, and a chosen set excludes the digits it lacks
+        int[] choice = new int[1];
+        for (int u = regions.houses; u < regions.units; ++u) {
+            int[] has = new int[size + 1];
+            for (int d = 1; d <= size; ++d) {
+                has[d] = -1;
+                for (int k = unitStart[u]; k < unitStart[u + 1]; ++k) {
+                    int v = variable[unitSquares[k] * size + d - 1];
+                    if (v < 0) continue;
+                    if (has[d] < 0) has[d] = clauses.newVariable();
+                    clauses.add(2 * v + 1, 2 * has[d]);
+                }
+            }
+            if (choice.length < combinations[u].length) choice = new int[combinations[u].length];
+            int n = 0;
+            for (long m : combinations[u]) {
+                int chosen = clauses.newVariable();
+                choice[n++] = 2 * chosen;
+                for (int d = 1; d <= size; ++d)
+                    if (has[d] >= 0 && (m & (1L << (d - 1))) == 0) clauses.add(2 * chosen + 1, 2 * has[d] + 1);
+            }
+            if (n > 0) clauses.add(choice, n);
+        }
+    }
+
+    // clauses for exactly one of the first n literals of lits
+    private void exactlyOne(int[] lits, int n) {
+        clauses.add(lits, n);
+        atMostOne(lits, n);
+    }
+
+    // clauses for at most one of the first n literals of lits
+    private void atMostOne(int[] lits, int n) {
+        if (n <= PAIRWISE_LIMIT) {
+            for (int a = 0; a < n; ++a)
+                for (int b = a + 1; b < n; ++b)
+                    clauses.add(lits[a] ^ 1, lits[b] ^ 1);
+            return;
+        }
+        // s_i: one of the first i+1 literals is true
+        int previous = clauses.newVariable();
+        clauses.add(lits[0] ^ 1, 2 * previous);
+        for (int i = 1; i < n - 1; ++i) {
+            int s = clauses.newVariable();
+            clauses.add(lits[i] ^ 1, 2 * s);
+            clauses.add(2 * previous + 1, 2 * s);
+            clauses.add(lits[i] ^ 1, 2 * previous + 1);
+            previous = s;
+        }
+        clauses.add(lits[n - 1] ^ 1, 2 * previous + 1);
+    }
+
+    /**
+     * @return the clauses of the encoding; not to be changed
+     */
+    public ClauseList getClauses() {
+        return clauses;
+    }
+
+    /**
+     * Requires: engine was made from getClauses() and its solve returned SAT
+     * @return the solution the engine found
+     */
+    public Sudoku interpret(SearchEngine engine) {
+        int[] solution = squares.clone();
+        for (int p = 0; p < solution.length; ++p) {
+            if (solution[p] != 0) continue;
+            for (int d = 1; d <= size; ++d) {
+                int v = variable[p * size + d - 1];
+                if (v >= 0 && engine.isTrue(v)) solution[p] = d;
+            }
+        }
+        return new Sudoku(regions, solution);
+    }
+
+    /**
+     * Solve the puzzle without limits.
+     * @return the solution, or null if the puzzle has none
+     */
+    public Sudoku solve() {
+        return solve(null);
+    }
+
+    /**
+     * Solve the puzzle without limits, keeping the engine's clauses in
+     * arena, off the heap, if it is not null.
+     * @return the solution, or null if the puzzle has none
+     */
+    public Sudoku solve(ClauseArena arena) {
+        SearchEngine engine = new SearchEngine(clauses);
+        if (arena != null) engine.setClauseArena(arena);
+        SolveResult result = engine.solve(new SolveOptions());
+        return result.getStatus() == SolveResult.Status.SAT ? interpret(engine) : null;
+    }
+}
@@ -0,0 +1,107 @@
+package sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import sat.search.ClauseArena;
+import sudoku.Sudoku.ParseException;
+
+public class CompactEncodingTest {
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    // true iff grid is full and no unit holds a digit twice
+    static boolean isSolution(Sudoku grid) {
+        int dim = grid.getDim(), size = dim * dim;
+        for (int a = 0; a < size; ++a) {
+            boolean[] row = new boolean[size + 1], column = new boolean[size + 1], block = new boolean[size + 1];
+            for (int b = 0; b < size; ++b) {
+                int r = grid.getSquare(a, b), c = grid.getSquare(b, a);
+                int k = grid.getSquare((a / dim) * dim + b / dim, (a % dim) * dim + b % dim);
+                if (r == 0 || row[r] || column[c] || block[k]) return false;
+                row[r] = column[c] = block[k] = true;
+            }
+        }
+        return true;
+    }
+
+    // a solved grid of dim dim, with digits relabelled by random
+    static int[] patternSolution(int dim, Random random) {
+        int size = dim * dim;
+        int[] label = new int[size];
+        for (int d = 0; d < size; ++d)
+            label[d] = d;
+        for (int d = size - 1; d > 0; --d) {
+            int e = random.nextInt(d + 1);
+            int t = label[d];
+            label[d] = label[e];
+            label[e] = t;
+        }
+        int[] squares = new int[size * size];
+        for (int i = 0; i < size; ++i)
+            for (int j = 0; j < size; ++j)
+                squares[i * size + j] = label[((i % dim) * dim + i / dim + j) % size] + 1;
+        return squares;
+    }
+
+    @Test
+    public void samplesTest() throws IOException, ParseException {
+        for (String name : new String[] { "easy", "hard", "evil" }) {
+            Sudoku puzzle = Sudoku.fromFile(3, "samples/sudoku_" + name + ".txt");
+            Sudoku solution = new CompactEncoding(puzzle).solve();
+            assertTrue(isSolution(solution));
+            for (int i = 0; i < 9; ++i)
+                for (int j = 0; j < 9; ++j)
+                    assertTrue(puzzle.getSquare(i, j) == 0 || puzzle.getSquare(i, j) == solution.getSquare(i, j));
+        }
+    }
+
+    @Test
+    public void unsolvableTest() {
+        Sudoku clash = new Sudoku(2, new int[][] {
+                { 1, 1, 0, 0 }, { 0, 0, 0, 0 }, { 0, 0, 0, 0 }, { 0, 0, 0, 0 } });
+        assertNull(new CompactEncoding(clash).solve());
+        // no digit is left for the first square
+        Sudoku stuck = new Sudoku(2, new int[][] {
+                { 0, 1, 4, 0 }, { 2, 0, 0, 0 }, { 0, 0, 0, 0 }, { 3, 0, 0, 0 } });
+        assertNull(new CompactEncoding(stuck).solve());
+    }
+
+    @Test
+    public void largeGridsTest() {
+        Random random = new Random(1);
+        for (int dim = 4; dim <= 8; dim += 2) {
+            int[] squares = patternSolution(dim, random);
+            for (int p = 0; p < squares.length; ++p)
+                if (random.nextInt(10) < 3) squares[p] = 0;
+            Sudoku puzzle = new Sudoku(dim, squares);
+            assertTrue(isSolution(new CompactEncoding(puzzle).solve()));
+        }
+    }
+
+    @Test
+    public void clauseArenaTest() throws IOException, ParseException {
+        // one small arena for every solve, so that it grows and is reset
+        ClauseArena arena = new ClauseArena(16);
+        Random random = new Random(2);
+        for (int dim = 3; dim <= 5; ++dim) {
+            int[] squares = patternSolution(dim, random);
+            for (int p = 0; p < squares.length; ++p)
+                if (random.nextInt(10) < 5) squares[p] = 0;
+            assertTrue(isSolution(new CompactEncoding(new Sudoku(dim, squares)).solve(arena)));
+        }
+        Sudoku evil = Sudoku.fromFile(3, "samples/sudoku_evil.txt");
+        assertTrue(isSolution(new CompactEncoding(evil).solve(arena)));
+        Sudoku unsolvable = new Sudoku(2, new int[][] { { 0, 1, 4, 0 }, { 2, 0, 0, 0 }, { 0, 0, 0, 0 }, { 3, 0, 0, 0 } });
+        assertNull(new CompactEncoding(unsolvable).solve(arena));
+    }
+}
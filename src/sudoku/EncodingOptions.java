@@ -0,0 +1,84 @@
+package sudoku;
+
+/**
+ * Optional clauses for Sudoku.getProblem, which by default writes only the
+ * basic constraints: the givens, at most one digit per square, and every
+ * digit exactly once in every house (and cage constraints for variants).
+ * None of the options change which grids are solutions of the puzzle;
+ * they help the solver on blank and sparse grids, the workload of
+ * generation and enumeration.
+ *
+ * Symmetry breaking, for classic grids only: digits that no given uses
+ * are interchangeable, so they must first appear in the top row in
+ * increasing order; on a blank grid this fixes the top row to 1..size,
+ * and the rows of each band below the first and the bands themselves are
+ * interchangeable too, so the left column must increase down each of them
+ * and from band to band. The solver then finds one solution of a class of
+ * equivalent ones instead of searching the whole class. The problem still
+ * has a solution iff the puzzle does, but the number of solutions drops,
+ * so do not count solutions with this option.
+ *
+ * Cell clauses: every blank square holds at least one digit, which houses
+ * already imply.
+ *
+ * Intersection clauses, for classic grids only: a variable for each digit
+ * and each segment where a row or column crosses a block, true iff the
+ * digit is in the segment, exactly one segment per digit in each row,
+ * column and block. Unit propagation then makes the "pointing" and
+ * "claiming" deductions of a human solver.
+ *
+ * Which options pay off depends on the search: when any solution will do,
+ * the solver rarely meets the symmetric branches, and cell clauses help
+ * most; symmetry breaking pays off when the whole space must be searched,
+ * as for a puzzle that has no solution. The sudoku.optionsSolve benchmarks
+ * compare the options.
+ *
+ * This datatype is mutable; the setters return this so that options can
+ * be built in one expression.
+ */
+public class EncodingOptions {
+    private boolean symmetryBreaking = false;
+    private boolean cellClauses = false;
+    private boolean intersectionClauses = false;
+
+    /**
+     * @return options with every optional clause turned on
+     */
+    public static EncodingOptions all() {
+        return new EncodingOptions().setSymmetryBreaking(true).setCellClauses(true)
+                .setIntersectionClauses(true);
+    }
+
+    public EncodingOptions setSymmetryBreaking(boolean on) {
+        this.symmetryBreaking = on;
+        return this;
+    }
+
+    public EncodingOptions setCellClauses(boolean on) {
+        this.cellClauses = on;
+        return this;
+    }
+
+    public EncodingOptions setIntersectionClauses(boolean on) {
+        this.intersectionClauses = on;
+        return this;
+    }
+
+    public boolean getSymmetryBreaking() {
+        return symmetryBreaking;
+    }
+
+    public boolean getCellClauses() {
+        return cellClauses;
+    }
+
+    public boolean getIntersectionClauses() {
+        return intersectionClauses;
+    }
+
+    @Override
+    public String toString() {
+        return "EncodingOptions: symmetryBreaking=" + symmetryBreaking + " cellClauses=" + cellClauses
+                + " intersectionClauses=" + intersectionClauses;
+    }
+}
@@ -0,0 +1,200 @@
+package sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates Sudoku puzzles with a unique solution.
+ *
+ * A puzzle is made from a seed: a random full grid is found by a solver
+ * that tries digits in seeded random order, restarted with the next
+ * random order whenever it takes more than FILL_NODE_LIMIT nodes, as a
+ * bad early choice on a 25x25 grid can cost minutes; then givens are
+ * removed in seeded random order, an orbit of the symmetry Pattern at a
+ * time, keeping each removal only if the puzzle still has exactly one
+ * solution. Removal stops once the number of givens is at most the
+ * target; if no further orbit can be removed first, the puzzle has more
+ * givens than the target.
+ *
+ * Each uniqueness check is a SolutionCounter search stopped after
+ * nodeLimit nodes; a check that reaches it could not prove the puzzle
+ * unique, so the orbit is kept. Without the limit a sparse 16x16 or 25x25
+ * grid can take hours per check.
+ *
+ * The same dim, target, pattern and seed always give the same puzzle, on
+ * any number of threads.
+ */
+public class Generator {
+    public static final long DEFAULT_NODE_LIMIT = 1 << 16;
+    // nodes a random fill may take before it starts again
+    private static final long FILL_NODE_LIMIT = 1 << 15;
+
+    /**
+     * Which squares are removed together, so that the givens of the puzzle
+     * have the symmetry
+     */
+    public enum Pattern {
+        // each square alone
+        NONE,
+        // a square and its image under rotation by 180 degrees
+        ROTATIONAL,
+        // a square and its mirror image across the vertical centre line
+        MIRROR,
+        // a square and its image across the main diagonal
+        DIAGONAL
+    }
+
+    private final int dim;
+    private final int size;
+    private final int targetGivens;
+    private final Pattern pattern;
+    private long nodeLimit = DEFAULT_NODE_LIMIT;
+
+    /**
+     * Make a generator of puzzles of dimension dim with at most targetGivens
+     * givens where possible, symmetric under pattern.
+     * Requires: 1 <= dim <= 5, targetGivens >= 0
+     */
+    public Generator(int dim, int targetGivens, Pattern pattern) {
+        this.dim = dim;
+        this.size = dim * dim;
+        this.targetGivens = targetGivens;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Set the number of search nodes each uniqueness check may take before
+     * its orbit is kept as not provably removable.
+     * Requires: nodes >= 1
+     */
+    public void setNodeLimit(long nodes) {
+        this.nodeLimit = nodes;
+    }
+
+    /**
+     * @return the puzzle for seed, which has exactly one solution
+     */
+    public Sudoku generate(long seed) {
+        return SolutionCache.fromCells(dim, generateCells(seed, new SolutionCounter(dim)));
+    }
+
+    /**
+     * Generate the puzzles for seeds firstSeed, firstSeed+1, ... on threads
+     * threads.
+     * Requires: count >= 0, threads >= 1
+     * @return the puzzles, in seed order; the same as generate(seed) for each
+     */
+    public List<Sudoku> generate(long firstSeed, int count, int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // one task per thread, each taking every threads-th seed, so that
+            // each thread reuses one counter
+            List<Future<List<int[]>>> parts = new ArrayList<Future<List<int[]>>>();
+            for (int t = 0; t < threads; ++t) {
+                final long first = firstSeed + t;
+                final int n = count / threads + (t < count % threads ? 1 : 0);
+                final int stride = threads;
+                parts.add(pool.submit(new Callable<List<int[]>>() {
+                    public List<int[]> call() {
+                        SolutionCounter counter = new SolutionCounter(dim);
+                        List<int[]> result = new ArrayList<int[]>(n);
+                        for (int i = 0; i < n; ++i)
+                            result.add(generateCells(first + (long) i * stride, counter));
+                        return result;
+                    }
+                }));
+            }
+            List<List<int[]>> done = new ArrayList<List<int[]>>();
+            for (Future<List<int[]>> part : parts)
+                done.add(part.get());
+            List<Sudoku> result = new ArrayList<Sudoku>(count);
+            for (int i = 0; i < count; ++i)
+                result.add(SolutionCache.fromCells(dim, done.get(i % threads).get(i / threads)));
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("puzzle generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("puzzle generation failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return the squares of the puzzle for seed, row-major, 0 for a blank
+     */
+    int[] generateCells(long seed, SolutionCounter counter) {
+        Random random = new Random(seed);
+        int[] grid = new int[size * size];
+        counter.setNodeLimit(FILL_NODE_LIMIT);
+        while (!counter.fill(grid, random))
+            assert counter.limitReached() : "Generator: a blank grid has a solution";
+
+        counter.setNodeLimit(nodeLimit);
+
+        int givens = grid.length;
+        for (int p : shuffledSquares(random)) {
+            if (givens <= targetGivens) break;
+            int[] orbit = orbit(p);
+            boolean allGiven = true;
+            for (int q : orbit)
+                allGiven &= grid[q] != 0;
+            if (!allGiven) continue;
+            int[] saved = new int[orbit.length];
+            for (int k = 0; k < orbit.length; ++k) {
+                saved[k] = grid[orbit[k]];
+                grid[orbit[k]] = 0;
+            }
+            if (counter.count(grid, 2) == 1 && !counter.limitReached()) {
+                givens -= orbit.length;
+            } else {
+                for (int k = 0; k < orbit.length; ++k)
+                    grid[orbit[k]] = saved[k];
+            }
+        }
+        counter.setNodeLimit(SolutionCounter.UNLIMITED);
+        return grid;
+    }
+
+    private int[] shuffledSquares(Random random) {
+        int[] squares = new int[size * size];
+        for (int p = 0; p < squares.length; ++p)
+            squares[p] = p;
+        for (int p = squares.length - 1; p > 0; --p) {
+            int q = random.nextInt(p + 1);
+            int t = squares[p];
+            squares[p] = squares[q];
+            squares[q] = t;
+        }
+        return squares;
+    }
+
+    /**
+     * @return the distinct squares removed together with square p
+     */
+    int[] orbit(int p) {
+        int r = p / size, c = p % size;
+        int q;
+        switch (pattern) {
+        case ROTATIONAL:
+            q = (size - 1 - r) * size + (size - 1 - c);
+            break;
+        case MIRROR:
+            q = r * size + (size - 1 - c);
+            break;
+        case DIAGONAL:
+            q = c * size + r;
+            break;
+        default:
+            q = p;
+        }
+        return q == p ? new int[] { p } : new int[] { p, q };
+    }
+}
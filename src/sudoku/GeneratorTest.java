@@ -0,0 +1,68 @@
+package sudoku;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class GeneratorTest {
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void counterTest() {
+        SolutionCounter counter = new SolutionCounter(2);
+        // a blank 4x4 grid has 288 solutions
+        assertEquals(288, counter.count(new int[16], 1000));
+        assertEquals(2, counter.count(new int[16], 2));
+        int[] clash = new int[16];
+        clash[0] = clash[1] = 1;
+        assertEquals(0, counter.count(clash, 2));
+    }
+
+    @Test
+    public void uniqueAndSymmetricTest() {
+        for (Generator.Pattern pattern : Generator.Pattern.values()) {
+            Generator generator = new Generator(3, 30, pattern);
+            SolutionCounter counter = new SolutionCounter(3);
+            for (long seed = 0; seed < 5; ++seed) {
+                int[] cells = generator.generateCells(seed, counter);
+                assertEquals(1, counter.count(cells, 2));
+                for (int p = 0; p < cells.length; ++p)
+                    for (int q : generator.orbit(p))
+                        assertEquals(cells[p] == 0, cells[q] == 0);
+            }
+        }
+    }
+
+    @Test
+    public void sparseLargeGridTest() {
+        // a 16x16 blank-as-possible puzzle, which took hours without the node limit
+        Generator generator = new Generator(4, 0, Generator.Pattern.NONE);
+        SolutionCounter counter = new SolutionCounter(4);
+        long started = System.nanoTime();
+        int[] cells = generator.generateCells(0, counter);
+        assertTrue((System.nanoTime() - started) / 1000000 < 60000);
+        assertEquals(1, counter.count(cells, 2));
+        assertFalse(counter.limitReached());
+    }
+
+    @Test
+    public void deterministicTest() {
+        Generator generator = new Generator(3, 25, Generator.Pattern.ROTATIONAL);
+        List<Sudoku> serial = generator.generate(100, 7, 1);
+        List<Sudoku> parallel = generator.generate(100, 7, 3);
+        assertEquals(7, parallel.size());
+        for (int i = 0; i < 7; ++i) {
+            assertEquals(serial.get(i).toString(), parallel.get(i).toString());
+            assertEquals(generator.generate(100 + i).toString(), parallel.get(i).toString());
+        }
+        assertFalse(serial.get(0).toString().equals(serial.get(1).toString()));
+    }
+}
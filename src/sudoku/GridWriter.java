@@ -0,0 +1,158 @@
+package sudoku;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes Sudoku grids to a channel through a reusable buffer, in the
+ * format of Sudoku.toString (squares as decimal numbers separated by
+ * spaces, 0 for a blank, one row per line) or in a compact one-line
+ * form: a symbol of an Alphabet per square, '.' for a blank, one grid per
+ * line. In Alphabet.STANDARD this is the line format of SolveServer.
+ *
+ * Grids are rendered byte by byte into the buffer, which is written to the
+ * channel only when the next grid would not fit, so writing a grid creates
+ * no garbage. The static render methods do the same into any ByteBuffer,
+ * and the append methods into any Appendable. A GridWriter is mutable and
+ * not safe for use by several threads at once.
+ */
+public final class GridWriter {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Make a writer to channel with a buffer of DEFAULT_BUFFER_SIZE bytes.
+     */
+    public GridWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Make a writer to channel with a direct buffer of bufferSize bytes.
+     * Requires: bufferSize >= gridBytes(dim) for each dim written
+     */
+    public GridWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Write grid in the format of Sudoku.toString.
+     * @throws IOException if the channel cannot be written
+     */
+    public void write(Sudoku grid) throws IOException {
+        ensure(gridBytes(grid.getDim()));
+        render(grid, buffer);
+    }
+
+    /**
+     * Write grid on one line in the compact form in Alphabet.STANDARD,
+     * followed by a newline.
+     * Requires: grid has dim <= 7
+     * @throws IOException if the channel cannot be written
+     */
+    public void writeLine(Sudoku grid) throws IOException {
+        ensure(lineBytes(grid.getDim()));
+        renderLine(grid, Alphabet.STANDARD, buffer);
+    }
+
+    /**
+     * Write out everything buffered so far.
+     * @throws IOException if the channel cannot be written
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
+        if (buffer.remaining() < bytes)
+            throw new IllegalArgumentException("grid of " + bytes + " bytes is larger than the buffer");
+    }
+
+    /**
+     * @return the largest number of bytes of a grid of dim dim in the format
+     *         of Sudoku.toString
+     */
+    public static int gridBytes(int dim) {
+        int size = dim * dim;
+        return size * size * (String.valueOf(size).length() + 1);
+    }
+
+    /**
+     * @return number of bytes of a grid of dim dim in the compact form,
+     *         with its newline
+     */
+    public static int lineBytes(int dim) {
+        return dim * dim * dim * dim + 1;
+    }
+
+    /**
+     * Render grid into out, from its position, in the format of
+     * Sudoku.toString.
+     * Requires: out has gridBytes(dim) bytes remaining
+     */
+    public static void render(Sudoku grid, ByteBuffer out) {
+        int size = grid.getDim() * grid.getDim();
+        for (int i = 0; i < size; ++i) {
+            for (int j = 0; j < size; ++j) {
+                int d = grid.getSquare(i, j);
+                if (d >= 100) out.put((byte) ('0' + d / 100));
+                if (d >= 10) out.put((byte) ('0' + d / 10 % 10));
+                out.put((byte) ('0' + d % 10));
+                out.put((byte) (j == size - 1 ? '\n' : ' '));
+            }
+        }
+    }
+
+    /**
+     * Render grid into out, from its position, on one line in the compact
+     * form in alphabet, followed by a newline.
+     * Requires: dim*dim <= alphabet.size(), out has lineBytes(dim) bytes
+     *           remaining
+     */
+    public static void renderLine(Sudoku grid, Alphabet alphabet, ByteBuffer out) {
+        int size = grid.getDim() * grid.getDim();
+        for (int i = 0; i < size; ++i)
+            for (int j = 0; j < size; ++j)
+                out.put((byte) alphabet.symbol(grid.getSquare(i, j)));
+        out.put((byte) '\n');
+    }
+
+    /**
+     * Append grid to out in the format of Sudoku.toString.
+     * @throws IOException if out cannot be appended to
+     */
+    public static void append(Sudoku grid, Appendable out) throws IOException {
+        int size = grid.getDim() * grid.getDim();
+        for (int i = 0; i < size; ++i) {
+            for (int j = 0; j < size; ++j) {
+                int d = grid.getSquare(i, j);
+                if (d >= 100) out.append((char) ('0' + d / 100));
+                if (d >= 10) out.append((char) ('0' + d / 10 % 10));
+                out.append((char) ('0' + d % 10));
+                out.append(j == size - 1 ? '\n' : ' ');
+            }
+        }
+    }
+
+    /**
+     * Append grid to out on one line in the compact form in alphabet,
+     * followed by a newline.
+     * Requires: dim*dim <= alphabet.size()
+     * @throws IOException if out cannot be appended to
+     */
+    public static void appendLine(Sudoku grid, Alphabet alphabet, Appendable out) throws IOException {
+        int size = grid.getDim() * grid.getDim();
+        for (int i = 0; i < size; ++i)
+            for (int j = 0; j < size; ++j)
+                out.append(alphabet.symbol(grid.getSquare(i, j)));
+        out.append('\n');
+    }
+}
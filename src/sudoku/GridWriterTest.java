@@ -0,0 +1,68 @@
+package sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import org.junit.Test;
+
+import sudoku.Sudoku.ParseException;
+
+public class GridWriterTest {
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void formatsTest() throws IOException {
+        Sudoku grid = new Sudoku(2, new int[][] {
+                { 0, 1, 0, 4 }, { 0, 0, 0, 0 }, { 2, 0, 3, 0 }, { 0, 0, 0, 0 } });
+        assertEquals("0 1 0 4\n0 0 0 0\n2 0 3 0\n0 0 0 0\n", grid.toString());
+        StringBuilder line = new StringBuilder();
+        GridWriter.appendLine(grid, Alphabet.STANDARD, line);
+        assertEquals(".1.4....2.3.....\n", line.toString());
+
+        ByteBuffer buffer = ByteBuffer.allocate(GridWriter.gridBytes(2));
+        GridWriter.render(grid, buffer);
+        assertEquals(grid.toString(), new String(buffer.array(), 0, buffer.position(), "US-ASCII"));
+    }
+
+    @Test
+    public void largeGridTest() {
+        int[] squares = new int[256];
+        for (int k = 0; k < squares.length; ++k)
+            squares[k] = (k * 7 + k / 16) % 17;
+        Sudoku grid = new Sudoku(4, squares);
+        StringBuilder text = new StringBuilder();
+        for (int k = 0; k < squares.length; ++k)
+            text.append(squares[k]).append(k % 16 == 15 ? "\n" : " ");
+        assertEquals(text.toString(), grid.toString());
+        int[] copy = new int[256];
+        grid.getSquares(copy);
+        assertArrayEquals(squares, copy);
+    }
+
+    @Test
+    public void channelTest() throws IOException, ParseException {
+        Sudoku puzzle = Sudoku.fromFile(3, "samples/sudoku_evil.txt");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // room for two grids, so that writing flushes several times
+        GridWriter writer = new GridWriter(Channels.newChannel(bytes), 2 * GridWriter.gridBytes(3));
+        StringBuilder expected = new StringBuilder();
+        for (int n = 0; n < 5; ++n) {
+            writer.write(puzzle);
+            writer.writeLine(puzzle);
+            expected.append(puzzle.toString());
+            GridWriter.appendLine(puzzle, Alphabet.STANDARD, expected);
+        }
+        writer.flush();
+        assertEquals(expected.toString(), bytes.toString("US-ASCII"));
+    }
+}
@@ -0,0 +1,55 @@
+package sudoku;
+
+/**
+ * A placement that follows logically from a grid, with the technique that
+ * justifies it. This datatype is immutable.
+ */
+public class Hint {
+    private final int row;
+    private final int column;
+    private final int digit;
+    private final Technique technique;
+    private final String reason;
+
+    Hint(int row, int column, int digit, Technique technique, String reason) {
+        this.row = row;
+        this.column = column;
+        this.digit = digit;
+        this.technique = technique;
+        this.reason = reason;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * @return the digit to place, from 1
+     */
+    public int getDigit() {
+        return digit;
+    }
+
+    /**
+     * @return the hardest technique needed to reach the placement
+     */
+    public Technique getTechnique() {
+        return technique;
+    }
+
+    /**
+     * @return a sentence explaining the placement
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return reason;
+    }
+}
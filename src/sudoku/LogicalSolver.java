@@ -0,0 +1,585 @@
+package sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Solves Sudoku puzzles the way a person does, with the techniques of
+ * Technique, and grades them by the hardest technique needed.
+ *
+ * The state is a bit set of candidate digits per square. Placing a digit
+ * removes it from the candidates of the square's peers at once, so each
+ * technique only reads the current sets. After every step the solver
+ * starts again from the easiest technique. Singles are applied wherever
+ * they are found; every other technique makes one deduction per step.
+ *
+ * A LogicalSolver is mutable and reuses its arrays between puzzles; use one
+ * per thread.
+ */
+public class LogicalSolver {
+    /**
+     * Rating of a puzzle that the techniques cannot finish
+     */
+    public static final double BEYOND_LOGIC = 10.0;
+
+    private final int dim;
+    private final int size;
+    private final int all;
+    // units[u]: squares of row u, column u - size, or block u - 2*size
+    private final int[][] units;
+    private final int[] rowOf;
+    private final int[] colOf;
+    private final int[] blockOf;
+    // peers[p]: squares sharing a unit with p, excluding p
+    private final int[][] peers;
+
+    private final int[] candidates;
+    private final int[] value;
+    private int unsolved;
+    private boolean broken;
+    // while hinting: the first square placed by a single, and the unit
+    // that made it a hidden single (-1 for a naked single)
+    private boolean hinting = false;
+    private int firstPlaced;
+    private int firstUnit;
+    private final int[] counts = new int[Technique.values().length];
+
+    // scratch space for subsets, fish and chains
+    private final int[] members;
+    private final int[] masks;
+    private final int[] combination;
+    private final int[] queue;
+    private final int[] forced;
+    private final int[] visited;
+    private int stamp = 0;
+
+    /**
+     * The outcome of grading one puzzle
+     */
+    public static class Result {
+        private final boolean solved;
+        private final double rating;
+        private final int[] counts;
+        private final int size;
+        private final int[] grid;
+
+        Result(boolean solved, double rating, int[] counts, int size, int[] grid) {
+            this.solved = solved;
+            this.rating = rating;
+            this.counts = counts;
+            this.size = size;
+            this.grid = grid;
+        }
+
+        /**
+         * @return true iff the techniques solved the puzzle
+         */
+        public boolean isSolved() {
+            return solved;
+        }
+
+        /**
+         * @return the rating of the hardest technique used, or BEYOND_LOGIC
+         *         if the puzzle was not solved
+         */
+        public double getRating() {
+            return rating;
+        }
+
+        /**
+         * @return the number of steps that used technique
+         */
+        public int getCount(Technique technique) {
+            return counts[technique.ordinal()];
+        }
+
+        /**
+         * @return the hardest technique used, or null if none was needed
+         */
+        public Technique getHardest() {
+            for (int t = counts.length - 1; t >= 0; --t)
+                if (counts[t] > 0) return Technique.values()[t];
+            return null;
+        }
+
+        /**
+         * @return the digit of square (i, j) when the solver stopped, or 0
+         *         if it was left blank
+         */
+        public int getSquare(int i, int j) {
+            return grid[i * size + j];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder(solved ? "solved" : "stuck");
+            result.append(" rating=").append(rating);
+            for (Technique t : Technique.values())
+                if (counts[t.ordinal()] > 0)
+                    result.append(" ").append(t.name().toLowerCase()).append("=").append(counts[t.ordinal()]);
+            return result.toString();
+        }
+    }
+
+    /**
+     * Make a solver for puzzles of dimension dim.
+     * Requires: 1 <= dim <= 5
+     */
+    public LogicalSolver(int dim) {
+        this.dim = dim;
+        this.size = dim * dim;
+        this.all = (1 << size) - 1;
+        int squares = size * size;
+        rowOf = new int[squares];
+        colOf = new int[squares];
+        blockOf = new int[squares];
+        units = new int[3 * size][size];
+        int[] filled = new int[3 * size];
+        for (int p = 0; p < squares; ++p) {
+            rowOf[p] = p / size;
+            colOf[p] = p % size;
+            blockOf[p] = (rowOf[p] / dim) * dim + colOf[p] / dim;
+            units[rowOf[p]][filled[rowOf[p]]++] = p;
+            units[size + colOf[p]][filled[size + colOf[p]]++] = p;
+            units[2 * size + blockOf[p]][filled[2 * size + blockOf[p]]++] = p;
+        }
+        peers = new int[squares][];
+        for (int p = 0; p < squares; ++p) {
+            int n = 0;
+            int[] list = new int[3 * size];
+            for (int q = 0; q < squares; ++q)
+                if (q != p && sees(p, q)) list[n++] = q;
+            peers[p] = Arrays.copyOf(list, n);
+        }
+        candidates = new int[squares];
+        value = new int[squares];
+        members = new int[size];
+        masks = new int[size];
+        combination = new int[size];
+        queue = new int[squares];
+        forced = new int[squares];
+        visited = new int[squares];
+    }
+
+    /**
+     * Solve puzzle with the techniques, easiest first.
+     * Requires: puzzle.getDim() is the dim of this solver
+     * @return the grade of puzzle and the grid reached
+     * @throws IllegalArgumentException if puzzle's regions are not classic,
+     *         as the techniques only know rows, columns and blocks
+     */
+    public Result grade(Sudoku puzzle) {
+        if (!puzzle.getRegions().isClassic())
+            throw new IllegalArgumentException("the techniques grade classic puzzles only");
+        load(SolutionCache.cells(puzzle));
+        while (unsolved > 0 && !broken && step())
+            ;
+        boolean solved = unsolved == 0 && !broken;
+        double rating = 0;
+        for (Technique t : Technique.values())
+            if (counts[t.ordinal()] > 0) rating = t.getRating();
+        return new Result(solved, solved ? rating : BEYOND_LOGIC, counts.clone(), size, value.clone());
+    }
+
+    /**
+     * Find the first placement the techniques reach from grid.
+     * Requires: grid holds (dim*dim)^2 squares, row-major, 0 for a blank
+     * @return the placement, or null if the grid is full, contradictory, or
+     *         beyond the techniques
+     */
+    Hint hint(int[] grid) {
+        load(grid);
+        hinting = true;
+        firstPlaced = -1;
+        try {
+            while (firstPlaced < 0 && unsolved > 0 && !broken && step())
+                ;
+        } finally {
+            hinting = false;
+        }
+        if (firstPlaced < 0 || broken) return null;
+        int row = rowOf[firstPlaced], col = colOf[firstPlaced], digit = value[firstPlaced];
+        Technique hardest = Technique.NAKED_SINGLE;
+        String reason = digit + " is the only candidate left at row " + (row + 1) + ", column " + (col + 1);
+        if (firstUnit >= 0) {
+            hardest = Technique.HIDDEN_SINGLE;
+            String unit = firstUnit < size ? "row " + (row + 1)
+                    : firstUnit < 2 * size ? "column " + (col + 1) : "block " + (blockOf[firstPlaced] + 1);
+            reason = "row " + (row + 1) + ", column " + (col + 1) + " is the only place for "
+                    + digit + " in " + unit;
+        }
+        StringBuilder before = new StringBuilder();
+        for (Technique t : Technique.values()) {
+            if (t == Technique.HIDDEN_SINGLE || t == Technique.NAKED_SINGLE || counts[t.ordinal()] == 0)
+                continue;
+            before.append(before.length() == 0 ? "" : ", ").append(t.name().toLowerCase().replace('_', ' '));
+            if (t.getRating() > hardest.getRating()) hardest = t;
+        }
+        if (before.length() > 0) reason += ", after eliminating candidates by " + before;
+        return new Hint(row, col, digit, hardest, reason);
+    }
+
+    private void load(int[] grid) {
+        Arrays.fill(candidates, all);
+        Arrays.fill(value, 0);
+        Arrays.fill(counts, 0);
+        unsolved = size * size;
+        broken = false;
+        for (int p = 0; p < grid.length; ++p) {
+            int d = grid[p];
+            if (d == 0) continue;
+            if ((candidates[p] & (1 << (d - 1))) == 0) broken = true;
+            else place(p, d - 1);
+        }
+    }
+
+    /**
+     * Apply the easiest technique that makes progress.
+     * @return false iff no technique applies
+     */
+    private boolean step() {
+        return record(Technique.HIDDEN_SINGLE, hiddenSingles())
+                || record(Technique.NAKED_SINGLE, nakedSingles())
+                || record(Technique.LOCKED_CANDIDATES, lockedCandidates())
+                || record(Technique.NAKED_PAIR, nakedSubset(2))
+                || record(Technique.X_WING, fish(2))
+                || record(Technique.HIDDEN_PAIR, hiddenSubset(2))
+                || record(Technique.NAKED_TRIPLE, nakedSubset(3))
+                || record(Technique.SWORDFISH, fish(3))
+                || record(Technique.HIDDEN_TRIPLE, hiddenSubset(3))
+                || record(Technique.XY_WING, xyWing())
+                || record(Technique.XY_CHAIN, xyChain());
+    }
+
+    private boolean record(Technique technique, boolean progress) {
+        if (progress) ++counts[technique.ordinal()];
+        return progress;
+    }
+
+    private boolean sees(int p, int q) {
+        return rowOf[p] == rowOf[q] || colOf[p] == colOf[q] || blockOf[p] == blockOf[q];
+    }
+
+    // put digit d (from 0) in square p and remove it from p's peers
+    private void place(int p, int d) {
+        int bit = 1 << d;
+        if (hinting && firstPlaced < 0) firstPlaced = p;
+        value[p] = d + 1;
+        candidates[p] = 0;
+        --unsolved;
+        for (int q : peers[p]) {
+            if (value[q] == d + 1) broken = true;
+            candidates[q] &= ~bit;
+        }
+    }
+
+    // remove the digits of mask from the candidates of p; true iff any were there
+    private boolean eliminate(int p, int mask) {
+        if ((candidates[p] & mask) == 0) return false;
+        candidates[p] &= ~mask;
+        if (candidates[p] == 0) broken = true;
+        return true;
+    }
+
+    private boolean hiddenSingles() {
+        boolean progress = false;
+        for (int u = 0; u < units.length; ++u) {
+            int[] unit = units[u];
+            int once = 0, more = 0, placed = 0;
+            for (int p : unit) {
+                int c = candidates[p];
+                more |= once & c;
+                once |= c;
+                if (value[p] != 0) placed |= 1 << (value[p] - 1);
+            }
+            if ((once | placed) != all) {
+                broken = true;
+                return false;
+            }
+            for (int singles = once & ~more; singles != 0; singles &= singles - 1) {
+                int bit = singles & -singles;
+                for (int p : unit) {
+                    if ((candidates[p] & bit) != 0) {
+                        if (hinting && firstPlaced < 0) firstUnit = u;
+                        place(p, Integer.numberOfTrailingZeros(bit));
+                        progress = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return progress;
+    }
+
+    private boolean nakedSingles() {
+        boolean progress = false;
+        for (int p = 0; p < candidates.length; ++p) {
+            int c = candidates[p];
+            if (value[p] != 0) continue;
+            if (c == 0) {
+                broken = true;
+                return false;
+            }
+            if ((c & (c - 1)) == 0) {
+                if (hinting && firstPlaced < 0) firstUnit = -1;
+                place(p, Integer.numberOfTrailingZeros(c));
+                progress = true;
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Pointing: a digit of a block confined to one row or column is removed
+     * from the rest of that line. Claiming: a digit of a line confined to
+     * one block is removed from the rest of that block.
+     */
+    private boolean lockedCandidates() {
+        for (int d = 0; d < size; ++d) {
+            int bit = 1 << d;
+            for (int u = 0; u < 3 * size; ++u) {
+                int[] unit = units[u];
+                int rows = 0, cols = 0, blocks = 0;
+                for (int p : unit) {
+                    if ((candidates[p] & bit) == 0) continue;
+                    rows |= 1 << rowOf[p];
+                    cols |= 1 << colOf[p];
+                    blocks |= 1 << blockOf[p];
+                }
+                if (rows == 0) continue;
+                boolean progress = false;
+                if (u >= 2 * size) {
+                    if (Integer.bitCount(rows) == 1)
+                        progress |= eliminateOutside(units[Integer.numberOfTrailingZeros(rows)], u, bit);
+                    if (Integer.bitCount(cols) == 1)
+                        progress |= eliminateOutside(units[size + Integer.numberOfTrailingZeros(cols)], u, bit);
+                } else if (Integer.bitCount(blocks) == 1) {
+                    progress |= eliminateOutside(units[2 * size + Integer.numberOfTrailingZeros(blocks)], u, bit);
+                }
+                if (progress) return true;
+            }
+        }
+        return false;
+    }
+
+    // remove bit from the squares of target that are not in unit u
+    private boolean eliminateOutside(int[] target, int u, int bit) {
+        boolean progress = false;
+        for (int p : target)
+            if (!inUnit(p, u)) progress |= eliminate(p, bit);
+        return progress;
+    }
+
+    private boolean inUnit(int p, int u) {
+        if (u < size) return rowOf[p] == u;
+        if (u < 2 * size) return colOf[p] == u - size;
+        return blockOf[p] == u - 2 * size;
+    }
+
+    /**
+     * k squares of a unit whose candidates together are k digits: those
+     * digits are removed from the other squares of the unit.
+     */
+    private boolean nakedSubset(int k) {
+        for (int[] unit : units) {
+            int n = 0;
+            for (int p : unit) {
+                int count = Integer.bitCount(candidates[p]);
+                if (count >= 2 && count <= k) {
+                    members[n] = p;
+                    masks[n++] = candidates[p];
+                }
+            }
+            if (n < k) continue;
+            firstCombination(k);
+            do {
+                int union = 0, chosen = 0;
+                for (int i = 0; i < k; ++i) {
+                    union |= masks[combination[i]];
+                    chosen |= 1 << combination[i];
+                }
+                if (Integer.bitCount(union) != k) continue;
+                boolean progress = false;
+                for (int p : unit) {
+                    if (value[p] != 0 || isMember(p, n, chosen)) continue;
+                    progress |= eliminate(p, union);
+                }
+                if (progress) return true;
+            } while (nextCombination(k, n));
+        }
+        return false;
+    }
+
+    private boolean isMember(int p, int n, int chosen) {
+        for (int i = 0; i < n; ++i)
+            if (members[i] == p) return (chosen & (1 << i)) != 0;
+        return false;
+    }
+
+    /**
+     * k digits of a unit confined together to k squares: the other
+     * candidates of those squares are removed.
+     */
+    private boolean hiddenSubset(int k) {
+        for (int[] unit : units) {
+            // masks[i]: positions in the unit of the ith digit with 2..k places
+            int n = 0;
+            for (int d = 0; d < size; ++d) {
+                int bit = 1 << d, positions = 0;
+                for (int i = 0; i < size; ++i)
+                    if ((candidates[unit[i]] & bit) != 0) positions |= 1 << i;
+                int count = Integer.bitCount(positions);
+                if (count >= 2 && count <= k) {
+                    members[n] = d;
+                    masks[n++] = positions;
+                }
+            }
+            if (n < k) continue;
+            firstCombination(k);
+            do {
+                int union = 0, digits = 0;
+                for (int i = 0; i < k; ++i) {
+                    union |= masks[combination[i]];
+                    digits |= 1 << members[combination[i]];
+                }
+                if (Integer.bitCount(union) != k) continue;
+                boolean progress = false;
+                for (int i = 0; i < size; ++i)
+                    if ((union & (1 << i)) != 0) progress |= eliminate(unit[i], ~digits & all);
+                if (progress) return true;
+            } while (nextCombination(k, n));
+        }
+        return false;
+    }
+
+    /**
+     * Basic fish of size k (X-wing for 2, swordfish for 3): a digit whose
+     * places in k rows lie in k columns is removed from the rest of those
+     * columns; likewise with rows and columns exchanged.
+     */
+    private boolean fish(int k) {
+        for (int d = 0; d < size; ++d) {
+            int bit = 1 << d;
+            for (int orientation = 0; orientation < 2; ++orientation) {
+                int base = orientation * size;
+                int cover = size - base;
+                int n = 0;
+                for (int line = 0; line < size; ++line) {
+                    int[] unit = units[base + line];
+                    int positions = 0;
+                    for (int i = 0; i < size; ++i)
+                        if ((candidates[unit[i]] & bit) != 0) positions |= 1 << i;
+                    int count = Integer.bitCount(positions);
+                    if (count >= 2 && count <= k) {
+                        members[n] = line;
+                        masks[n++] = positions;
+                    }
+                }
+                if (n < k) continue;
+                firstCombination(k);
+                do {
+                    int union = 0, lines = 0;
+                    for (int i = 0; i < k; ++i) {
+                        union |= masks[combination[i]];
+                        lines |= 1 << members[combination[i]];
+                    }
+                    if (Integer.bitCount(union) != k) continue;
+                    boolean progress = false;
+                    for (int c = 0; c < size; ++c) {
+                        if ((union & (1 << c)) == 0) continue;
+                        int[] coverLine = units[cover + c];
+                        for (int i = 0; i < size; ++i)
+                            if ((lines & (1 << i)) == 0) progress |= eliminate(coverLine[i], bit);
+                    }
+                    if (progress) return true;
+                } while (nextCombination(k, n));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A pivot with candidates {a, b} and two pincers it sees, with {a, c}
+     * and {b, c}: whichever the pivot holds, one pincer is c, so c is
+     * removed from every square seeing both pincers.
+     */
+    private boolean xyWing() {
+        for (int pivot = 0; pivot < candidates.length; ++pivot) {
+            int pc = candidates[pivot];
+            if (Integer.bitCount(pc) != 2) continue;
+            for (int x : peers[pivot]) {
+                int xc = candidates[x];
+                if (Integer.bitCount(xc) != 2 || Integer.bitCount(xc & pc) != 1) continue;
+                int c = xc & ~pc;
+                // the other pincer holds c and the pivot digit x lacks
+                int yc = c | (pc & ~xc);
+                for (int y : peers[pivot]) {
+                    if (y == x || candidates[y] != yc) continue;
+                    boolean progress = false;
+                    for (int q : peers[x])
+                        if (q != y && sees(q, y)) progress |= eliminate(q, c);
+                    if (progress) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A chain of two-candidate squares, each seeing the next and sharing a
+     * digit with it: if the first square is not z, each following square is
+     * forced in turn, and if that forces the last square to z, then one end
+     * is z, so z is removed from every square seeing both ends.
+     */
+    private boolean xyChain() {
+        for (int start = 0; start < candidates.length; ++start) {
+            int sc = candidates[start];
+            if (Integer.bitCount(sc) != 2) continue;
+            for (int zs = sc; zs != 0; zs &= zs - 1) {
+                int z = zs & -zs;
+                // breadth-first over (square, digit forced there), with the
+                // start forced to its other digit
+                ++stamp;
+                int head = 0, tail = 0;
+                queue[tail] = start;
+                forced[tail++] = sc & ~z;
+                visited[start] = stamp;
+                while (head < tail) {
+                    int p = queue[head];
+                    int digit = forced[head++];
+                    for (int q : peers[p]) {
+                        int qc = candidates[q];
+                        if (visited[q] == stamp || Integer.bitCount(qc) != 2 || (qc & digit) == 0) continue;
+                        int next = qc & ~digit;
+                        if (next == z) {
+                            boolean progress = false;
+                            for (int r : peers[start])
+                                if (r != q && sees(r, q)) progress |= eliminate(r, z);
+                            if (progress) return true;
+                        }
+                        visited[q] = stamp;
+                        queue[tail] = q;
+                        forced[tail++] = next;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void firstCombination(int k) {
+        for (int i = 0; i < k; ++i)
+            combination[i] = i;
+    }
+
+    // advance combination[0..k) to the next k-subset of 0..n-1 in order
+    private boolean nextCombination(int k, int n) {
+        int i = k - 1;
+        while (i >= 0 && combination[i] == n - k + i)
+            --i;
+        if (i < 0) return false;
+        ++combination[i];
+        for (int j = i + 1; j < k; ++j)
+            combination[j] = combination[j - 1] + 1;
+        return true;
+    }
+}
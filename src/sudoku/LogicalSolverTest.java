@@ -0,0 +1,70 @@
+package sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import sudoku.Sudoku.ParseException;
+
+public class LogicalSolverTest {
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void samplesTest() throws IOException, ParseException {
+        LogicalSolver solver = new LogicalSolver(3);
+        LogicalSolver.Result easy = solver.grade(Sudoku.fromFile(3, "samples/sudoku_easy.txt"));
+        assertTrue(easy.isSolved());
+        assertEquals(Technique.HIDDEN_SINGLE, easy.getHardest());
+        assertEquals(1.5, easy.getRating(), 1e-9);
+
+        LogicalSolver.Result evil = solver.grade(Sudoku.fromFile(3, "samples/sudoku_evil.txt"));
+        assertTrue(evil.isSolved());
+        assertTrue(evil.getCount(Technique.LOCKED_CANDIDATES) > 0);
+        assertTrue(evil.getRating() > easy.getRating());
+    }
+
+    @Test
+    public void soundOnGeneratedPuzzlesTest() {
+        LogicalSolver solver = new LogicalSolver(3);
+        SolutionCounter counter = new SolutionCounter(3);
+        Generator generator = new Generator(3, 0, Generator.Pattern.NONE);
+        int stuck = 0;
+        for (long seed = 0; seed < 200; ++seed) {
+            Sudoku puzzle = generator.generate(seed);
+            int[] solution = SolutionCache.cells(puzzle);
+            assertTrue(counter.fill(solution, new Random(0)));
+            LogicalSolver.Result result = solver.grade(puzzle);
+            for (int p = 0; p < solution.length; ++p) {
+                int digit = result.getSquare(p / 9, p % 9);
+                assertTrue(digit == 0 || digit == solution[p]);
+                if (result.isSolved()) assertEquals(solution[p], digit);
+            }
+            if (!result.isSolved()) {
+                ++stuck;
+                assertEquals(LogicalSolver.BEYOND_LOGIC, result.getRating(), 0);
+            }
+        }
+        assertTrue(stuck < 200);
+    }
+
+    @Test
+    public void contradictionTest() {
+        Sudoku clash = new Sudoku(2, new int[][] {
+                { 1, 1, 0, 0 }, { 0, 0, 0, 0 }, { 0, 0, 0, 0 }, { 0, 0, 0, 0 } });
+        assertFalse(new LogicalSolver(2).grade(clash).isSolved());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void nonClassicRejectedTest() {
+        new LogicalSolver(2).grade(new Sudoku(Regions.diagonal(2), new int[16]));
+    }
+}
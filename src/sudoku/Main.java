@@ -1,10 +1,13 @@
 package sudoku;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 
 import sat.SATSolver;
 import sat.env.Environment;
 import sat.formula.Formula;
+import sat.search.Phase;
+import sat.search.SolverStatistics;
 import sudoku.Sudoku.ParseException;
 
 public class Main {
@@ -14,6 +17,10 @@ public class Main {
      * Uncomment line(s) below to test your implementation! 
      */
     public static void main (String[] args) {
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+            return;
+        }
         timedSolve (new Sudoku(2, new int[][] { 
                     new int[] { 0, 1, 0, 4 }, 
                     new int[] { 0, 0, 0, 0 }, 
@@ -24,26 +31,55 @@ public class Main {
     }
 
     /**
-     * Solve a puzzle and display the solution and the time it took.
+     * Solve a puzzle and display the solution, the time it took, and the
+     * solver statistics for each phase.
      * @param sudoku
      */
     private static void timedSolve (Sudoku sudoku) {
+        SolverStatistics statistics = new SolverStatistics();
         long started = System.nanoTime();
+        long allocatedBefore = SolverStatistics.threadAllocatedBytes();
 
         System.out.println ("Creating SAT formula...");
+        long phase = statistics.beginPhase(Phase.ENCODE);
         Formula f = sudoku.getProblem();
+        statistics.endPhase(Phase.ENCODE, phase);
         
         System.out.println ("Solving...");
-        Environment e = SATSolver.solve(f);
+        Environment e = SATSolver.solveWithPreprocessing(f, statistics);
         
         System.out.println ("Interpreting solution...");
+        phase = statistics.beginPhase(Phase.INTERPRET);
         Sudoku solution = sudoku.interpretSolution(e);
+        statistics.endPhase(Phase.INTERPRET, phase);
         
         System.out.println ("Solution is: \n" + solution);    
 
         long time = System.nanoTime();
         long timeTaken = (time - started);
+        long allocatedAfter = SolverStatistics.threadAllocatedBytes();
+        // solveWithPreprocessing counted its own allocation; add the rest
+        if (allocatedBefore >= 0 && allocatedAfter >= 0)
+            statistics.addBytesAllocated(allocatedAfter - allocatedBefore - statistics.getBytesAllocated());
         System.out.println ("Time:" + timeTaken/1000000 + "ms");
+        System.out.println (statistics);
+    }
+
+    /**
+     * Run a SolveServer on port with one worker per processor, until the
+     * process is killed.
+     * @param port  port to listen on
+     */
+    private static void serve(int port) {
+        try {
+            SolveServer server = new SolveServer(new InetSocketAddress(port),
+                    Runtime.getRuntime().availableProcessors());
+            server.start();
+            System.out.println ("Serving on port " + server.getPort()
+                    + ": POST puzzle lines to /solve, GET /metrics");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
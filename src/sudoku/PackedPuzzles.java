@@ -0,0 +1,338 @@
+package sudoku;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary format for archives of puzzles of one dim, with their
+ * solutions optionally alongside, read and written directly on a
+ * ByteBuffer (heap, direct or memory-mapped).
+ *
+ * Each square takes bitsPerSquare(dim) bits, enough for 0..dim*dim: 4 bits
+ * for a standard puzzle, 5 for 16x16 and 25x25, 6 for 36x36. A record is
+ * the packed puzzle, followed by the packed solution if the archive has
+ * solutions (all blanks if the puzzle has none), each padded to whole
+ * bytes; a 9x9 puzzle takes 41 bytes where a line of text takes 82.
+ *
+ * Layout:
+ *     int MAGIC, byte VERSION, byte dim, byte flags, byte bits per square,
+ *     int count, int records per block,
+ *     blocks of up to that many records, each followed by an int crc32 of
+ *     its records
+ * Records have a fixed size and every block but the last is full, so
+ * record r is found in constant time. Reading a record decodes it from the
+ * buffer into the caller's array and allocates nothing; checksums are
+ * checked by verify, not on every read. A ByteBuffer is limited to 2GB, so
+ * larger archives are kept as several files.
+ */
+public final class PackedPuzzles {
+    public static final int MAGIC = 0x53554450; // "SUDP"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int BLOCK_RECORDS = 4096;
+    // flags
+    static final int HAS_SOLUTIONS = 1;
+    // offset in the header of the record count
+    private static final int COUNT_OFFSET = 8;
+
+    private PackedPuzzles() {
+    }
+
+    /**
+     * @return number of bits for one square of a puzzle of dim dim
+     */
+    public static int bitsPerSquare(int dim) {
+        return 32 - Integer.numberOfLeadingZeros(dim * dim);
+    }
+
+    /**
+     * @return number of bytes of one packed grid of dim dim
+     */
+    static int gridBytes(int dim) {
+        int squares = dim * dim * dim * dim;
+        return (squares * bitsPerSquare(dim) + 7) / 8;
+    }
+
+    /**
+     * @return number of bytes of an archive of count puzzles of dim dim
+     */
+    public static long sizeOf(int dim, int count, boolean solutions) {
+        int record = (solutions ? 2 : 1) * gridBytes(dim);
+        int blocks = (count + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        return HEADER_SIZE + (long) count * record + 4L * blocks;
+    }
+
+    // offset from the start of the archive of record r
+    private static int offsetOf(int r, int recordBytes) {
+        int block = r / BLOCK_RECORDS;
+        return HEADER_SIZE + block * (BLOCK_RECORDS * recordBytes + 4) + (r % BLOCK_RECORDS) * recordBytes;
+    }
+
+    // pack the squares of grid, row-major, into buffer from offset
+    static void pack(ByteBuffer buffer, int offset, int[] grid, int squares, int bits) {
+        int acc = 0, held = 0;
+        for (int k = 0; k < squares; ++k) {
+            acc |= grid[k] << held;
+            held += bits;
+            while (held >= 8) {
+                buffer.put(offset++, (byte) acc);
+                acc >>>= 8;
+                held -= 8;
+            }
+        }
+        if (held > 0) buffer.put(offset, (byte) acc);
+    }
+
+    // unpack squares squares from buffer at offset into grid
+    static void unpack(ByteBuffer buffer, int offset, int[] grid, int squares, int bits) {
+        int mask = (1 << bits) - 1;
+        int acc = 0, held = 0;
+        for (int k = 0; k < squares; ++k) {
+            while (held < bits) {
+                acc |= (buffer.get(offset++) & 0xff) << held;
+                held += 8;
+            }
+            grid[k] = acc & mask;
+            acc >>>= bits;
+            held -= bits;
+        }
+    }
+
+    /**
+     * Appends puzzles to an archive in a ByteBuffer. A Writer is mutable and
+     * not safe for use by several threads at once.
+     */
+    public static final class Writer {
+        private final ByteBuffer buffer;
+        private final int dim;
+        private final int squares;
+        private final int bits;
+        private final int gridBytes;
+        private final boolean solutions;
+        private final int recordBytes;
+        private final int[] grid;
+        private final CRC32 crc = new CRC32();
+        private final byte[] scratch;
+        private int count = 0;
+        private boolean finished = false;
+
+        /**
+         * Start an archive of puzzles of dim dim at out's position; with
+         * solutions, each puzzle is stored with its solution.
+         * Requires: out has room for sizeOf(dim, n, solutions) bytes from
+         *           its position, for the number n of puzzles added
+         */
+        public Writer(ByteBuffer out, int dim, boolean solutions) {
+            this.buffer = out.slice();
+            this.dim = dim;
+            this.squares = dim * dim * dim * dim;
+            this.bits = bitsPerSquare(dim);
+            this.gridBytes = gridBytes(dim);
+            this.solutions = solutions;
+            this.recordBytes = (solutions ? 2 : 1) * gridBytes;
+            this.grid = new int[squares];
+            this.scratch = new byte[recordBytes];
+            buffer.putInt(0, MAGIC);
+            buffer.put(4, (byte) VERSION);
+            buffer.put(5, (byte) dim);
+            buffer.put(6, (byte) (solutions ? HAS_SOLUTIONS : 0));
+            buffer.put(7, (byte) bits);
+            buffer.putInt(COUNT_OFFSET, 0);
+            buffer.putInt(12, BLOCK_RECORDS);
+        }
+
+        /**
+         * Append puzzle and, if the archive has solutions, its solution
+         * (null if it has none).
+         * Requires: puzzle and solution have the archive's dim
+         */
+        public void add(Sudoku puzzle, Sudoku solution) {
+            puzzle.getSquares(grid);
+            if (!solutions) {
+                add(grid, null);
+                return;
+            }
+            int offset = start();
+            pack(buffer, offset, grid, squares, bits);
+            if (solution == null) {
+                Arrays.fill(grid, 0);
+            } else {
+                solution.getSquares(grid);
+            }
+            pack(buffer, offset + gridBytes, grid, squares, bits);
+            end(offset);
+        }
+
+        /**
+         * Append the puzzle with squares puzzle and, if the archive has
+         * solutions, the solution with squares solution (null if it has
+         * none); squares are row-major, 0 for a blank. Allocates nothing.
+         */
+        public void add(int[] puzzle, int[] solution) {
+            int offset = start();
+            pack(buffer, offset, puzzle, squares, bits);
+            if (solutions) {
+                if (solution == null) {
+                    for (int k = 0; k < gridBytes; ++k)
+                        buffer.put(offset + gridBytes + k, (byte) 0);
+                } else {
+                    pack(buffer, offset + gridBytes, solution, squares, bits);
+                }
+            }
+            end(offset);
+        }
+
+        private int start() {
+            if (finished) throw new IllegalStateException("archive is finished");
+            return offsetOf(count, recordBytes);
+        }
+
+        // checksum the record at offset, closing its block if it is full
+        private void end(int offset) {
+            for (int k = 0; k < recordBytes; ++k)
+                scratch[k] = buffer.get(offset + k);
+            crc.update(scratch, 0, recordBytes);
+            ++count;
+            if (count % BLOCK_RECORDS == 0) closeBlock(offset + recordBytes);
+        }
+
+        private void closeBlock(int offset) {
+            buffer.putInt(offset, (int) crc.getValue());
+            crc.reset();
+        }
+
+        /**
+         * Close the last block and write the count, and move out's position
+         * past the archive. No puzzle may be added afterwards.
+         * @return number of bytes of the archive
+         */
+        public int finish(ByteBuffer out) {
+            if (!finished) {
+                finished = true;
+                if (count % BLOCK_RECORDS != 0) closeBlock(offsetOf(count, recordBytes));
+                buffer.putInt(COUNT_OFFSET, count);
+            }
+            int size = (int) sizeOf(dim, count, solutions);
+            out.position(out.position() + size);
+            return size;
+        }
+    }
+
+    /**
+     * Reads an archive in a ByteBuffer. Reads use absolute offsets, so a
+     * Reader may be shared by any number of threads.
+     */
+    public static final class Reader {
+        private final ByteBuffer buffer;
+        private final int dim;
+        private final int squares;
+        private final int bits;
+        private final int gridBytes;
+        private final boolean solutions;
+        private final int recordBytes;
+        private final int count;
+
+        /**
+         * Read the archive at in's position; in is not copied, and its
+         * position is left unchanged.
+         * @throws IOException if the bytes there are not an archive of this
+         *         version or are cut short
+         */
+        public Reader(ByteBuffer in) throws IOException {
+            this.buffer = in.slice();
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION)
+                throw new IOException("not a packed puzzle archive");
+            this.dim = buffer.get(5);
+            this.solutions = (buffer.get(6) & HAS_SOLUTIONS) != 0;
+            this.bits = buffer.get(7);
+            this.count = buffer.getInt(COUNT_OFFSET);
+            if (dim < 1 || bits != bitsPerSquare(dim) || count < 0 || buffer.getInt(12) != BLOCK_RECORDS)
+                throw new IOException("bad packed puzzle archive header");
+            this.squares = dim * dim * dim * dim;
+            this.gridBytes = gridBytes(dim);
+            this.recordBytes = (solutions ? 2 : 1) * gridBytes;
+            if (buffer.remaining() < sizeOf(dim, count, solutions))
+                throw new IOException("packed puzzle archive is truncated");
+        }
+
+        public int getDim() {
+            return dim;
+        }
+
+        /**
+         * @return number of puzzles in the archive
+         */
+        public int size() {
+            return count;
+        }
+
+        public boolean hasSolutions() {
+            return solutions;
+        }
+
+        /**
+         * Decode the squares of puzzle r into grid, row-major, 0 for a
+         * blank. Allocates nothing.
+         * Requires: 0 <= r < size(), grid.length >= (dim*dim)^2
+         */
+        public void readPuzzle(int r, int[] grid) {
+            unpack(buffer, offsetOf(r, recordBytes), grid, squares, bits);
+        }
+
+        /**
+         * Decode the solution of puzzle r into grid. Allocates nothing.
+         * Requires: hasSolutions(), 0 <= r < size(),
+         *           grid.length >= (dim*dim)^2
+         * @return false iff puzzle r was stored without a solution
+         */
+        public boolean readSolution(int r, int[] grid) {
+            unpack(buffer, offsetOf(r, recordBytes) + gridBytes, grid, squares, bits);
+            // a missing solution is stored as all blanks
+            for (int k = 0; k < squares; ++k)
+                if (grid[k] != 0) return true;
+            return false;
+        }
+
+        /**
+         * @return puzzle r
+         */
+        public Sudoku getPuzzle(int r) {
+            int[] grid = new int[squares];
+            readPuzzle(r, grid);
+            return SolutionCache.fromCells(dim, grid);
+        }
+
+        /**
+         * Requires: hasSolutions()
+         * @return the solution of puzzle r, or null if it has none
+         */
+        public Sudoku getSolution(int r) {
+            int[] grid = new int[squares];
+            return readSolution(r, grid) ? SolutionCache.fromCells(dim, grid) : null;
+        }
+
+        /**
+         * Check the checksum of every block.
+         * @return the index of the first record of the first block whose
+         *         checksum fails, or -1 if all hold
+         */
+        public int verify() {
+            CRC32 crc = new CRC32();
+            byte[] scratch = new byte[BLOCK_RECORDS * recordBytes];
+            ByteBuffer view = buffer.duplicate();
+            for (int first = 0; first < count; first += BLOCK_RECORDS) {
+                int records = Math.min(BLOCK_RECORDS, count - first);
+                int offset = offsetOf(first, recordBytes);
+                int length = records * recordBytes;
+                view.position(offset);
+                view.get(scratch, 0, length);
+                crc.reset();
+                crc.update(scratch, 0, length);
+                if ((int) crc.getValue() != buffer.getInt(offset + length)) return first;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PackedPuzzlesTest {
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void sizesTest() {
+        assertEquals(4, PackedPuzzles.bitsPerSquare(3));
+        assertEquals(5, PackedPuzzles.bitsPerSquare(4));
+        assertEquals(5, PackedPuzzles.bitsPerSquare(5));
+        assertEquals(6, PackedPuzzles.bitsPerSquare(6));
+        assertEquals(41, PackedPuzzles.gridBytes(3));
+        assertEquals(160, PackedPuzzles.gridBytes(4));
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        for (int dim = 2; dim <= 5; ++dim) {
+            int count = dim == 5 ? 3 : PackedPuzzles.BLOCK_RECORDS + 5;
+            int squares = dim * dim * dim * dim;
+            int[][] puzzles = new int[count][squares];
+            Random random = new Random(dim);
+            for (int[] puzzle : puzzles)
+                for (int k = 0; k < squares; ++k)
+                    puzzle[k] = random.nextInt(dim * dim + 1);
+            for (boolean solutions : new boolean[] { false, true }) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect((int) PackedPuzzles.sizeOf(dim, count, solutions) + 3);
+                buffer.position(3);
+                PackedPuzzles.Writer writer = new PackedPuzzles.Writer(buffer, dim, solutions);
+                for (int r = 0; r < count; ++r)
+                    writer.add(puzzles[r], r % 2 == 0 ? null : puzzles[r - 1]);
+                assertEquals(PackedPuzzles.sizeOf(dim, count, solutions), writer.finish(buffer));
+                assertEquals(buffer.capacity(), buffer.position());
+
+                buffer.position(3);
+                PackedPuzzles.Reader reader = new PackedPuzzles.Reader(buffer);
+                assertEquals(dim, reader.getDim());
+                assertEquals(count, reader.size());
+                assertEquals(solutions, reader.hasSolutions());
+                assertEquals(-1, reader.verify());
+                int[] grid = new int[squares];
+                for (int r = 0; r < count; ++r) {
+                    reader.readPuzzle(r, grid);
+                    assertArrayEquals(puzzles[r], grid);
+                    if (solutions) {
+                        assertEquals(r % 2 != 0, reader.readSolution(r, grid));
+                        if (r % 2 != 0) assertArrayEquals(puzzles[r - 1], grid);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mappedFileTest() throws IOException {
+        Generator generator = new Generator(3, 0, Generator.Pattern.NONE);
+        SolutionCounter counter = new SolutionCounter(3);
+        Sudoku[] puzzles = new Sudoku[20];
+        File file = File.createTempFile("puzzles", ".packed");
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    PackedPuzzles.sizeOf(3, puzzles.length, true));
+            PackedPuzzles.Writer writer = new PackedPuzzles.Writer(buffer, 3, true);
+            for (int r = 0; r < puzzles.length; ++r) {
+                puzzles[r] = generator.generate(r);
+                int[] solution = SolutionCache.cells(puzzles[r]);
+                assertTrue(counter.fill(solution, new Random(0)));
+                writer.add(puzzles[r], SolutionCache.fromCells(3, solution));
+            }
+            writer.finish(buffer);
+            buffer.force();
+            channel.close();
+
+            raf = new RandomAccessFile(file, "r");
+            channel = raf.getChannel();
+            PackedPuzzles.Reader reader = new PackedPuzzles.Reader(
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            assertEquals(puzzles.length, reader.size());
+            for (int r = 0; r < puzzles.length; ++r) {
+                assertEquals(puzzles[r].toString(), reader.getPuzzle(r).toString());
+                Sudoku solution = reader.getSolution(r);
+                assertEquals(0, new SolutionCounter(3).count(SolutionCache.cells(solution), 2) - 1);
+            }
+            channel.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void corruptionTest() throws IOException {
+        int count = 2 * PackedPuzzles.BLOCK_RECORDS + 1;
+        ByteBuffer buffer = ByteBuffer.allocate((int) PackedPuzzles.sizeOf(2, count, false));
+        PackedPuzzles.Writer writer = new PackedPuzzles.Writer(buffer, 2, false);
+        int[] grid = new int[16];
+        for (int r = 0; r < count; ++r) {
+            grid[r % 16] = r % 5;
+            writer.add(grid, null);
+        }
+        writer.finish(buffer);
+        buffer.flip();
+        PackedPuzzles.Reader reader = new PackedPuzzles.Reader(buffer);
+        assertEquals(-1, reader.verify());
+        int offset = PackedPuzzles.HEADER_SIZE + PackedPuzzles.BLOCK_RECORDS * PackedPuzzles.gridBytes(2) + 4 + 10;
+        buffer.put(offset, (byte) (buffer.get(offset) ^ 1));
+        assertEquals(PackedPuzzles.BLOCK_RECORDS, reader.verify());
+    }
+
+    @Test(expected=IOException.class)
+    public void notAnArchiveTest() throws IOException {
+        new PackedPuzzles.Reader(ByteBuffer.wrap("1.3.\n....\n".getBytes("UTF-8")));
+    }
+}
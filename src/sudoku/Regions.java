@@ -0,0 +1,319 @@
+package sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The constraints of a Sudoku variant on a grid of size x size squares,
+ * size = dim*dim: a set of houses, each a set of size squares that hold
+ * every digit once, and optional cages, each a set of squares whose digits
+ * differ and add up to the cage's sum.
+ *
+ * Classic puzzles have rows, columns and blocks as houses; diagonal
+ * puzzles add the two main diagonals; jigsaw puzzles replace the blocks by
+ * irregular shapes; killer puzzles add cages to classic houses.
+ *
+ * A Regions is compiled once into primitive tables shared by the encoders
+ * (Sudoku.getProblem, CompactEncoding) and by SolutionCounter: the squares
+ * of each unit, the units of each square, and the peers of each square
+ * (the squares sharing a unit with it), so that a variant costs an engine
+ * no more than the classic rules do. Units are the houses, numbered from
+ * 0, followed by the cages. The classic Regions of each dim is made once
+ * and shared. This datatype is immutable.
+ */
+public final class Regions {
+    private static final Regions[] CLASSIC = new Regions[12];
+
+    final int dim;
+    final int size;
+    final boolean classic;
+    // number of houses and of units (houses, then cages)
+    final int houses;
+    final int units;
+    // unitSquares[unitStart[u] .. unitStart[u+1]): squares of unit u
+    final int[] unitSquares;
+    final int[] unitStart;
+    // cageSum[c]: sum of cage c, which is unit houses + c
+    final int[] cageSum;
+    // squareUnits[squareUnitStart[p] .. squareUnitStart[p+1]): units of square p
+    final int[] squareUnits;
+    final int[] squareUnitStart;
+    // peers[peerStart[p] .. peerStart[p+1]): other squares sharing a unit with p
+    final int[] peers;
+    final int[] peerStart;
+
+    /*
+     * Rep invariant:
+     *     every unit lists distinct squares in [0, size*size)
+     *     units [0, houses) have size squares each
+     *     squareUnits and peers are the inverse and closure of unitSquares
+     */
+
+    private Regions(int dim, boolean classic, List<int[]> houseList, List<int[]> cageList, int[] cageSum) {
+        this.dim = dim;
+        this.size = dim * dim;
+        this.classic = classic;
+        this.houses = houseList.size();
+        this.units = houses + cageList.size();
+        this.cageSum = cageSum;
+        List<int[]> all = new ArrayList<int[]>(houseList);
+        all.addAll(cageList);
+
+        unitStart = new int[units + 1];
+        for (int u = 0; u < units; ++u)
+            unitStart[u + 1] = unitStart[u] + all.get(u).length;
+        unitSquares = new int[unitStart[units]];
+        int squares = size * size;
+        squareUnitStart = new int[squares + 1];
+        for (int u = 0; u < units; ++u) {
+            int[] unit = all.get(u);
+            System.arraycopy(unit, 0, unitSquares, unitStart[u], unit.length);
+            for (int p : unit) {
+                if (p < 0 || p >= squares) throw new IllegalArgumentException("square " + p + " is off the grid");
+                ++squareUnitStart[p + 1];
+            }
+        }
+        for (int p = 0; p < squares; ++p)
+            squareUnitStart[p + 1] += squareUnitStart[p];
+        squareUnits = new int[squareUnitStart[squares]];
+        int[] filled = Arrays.copyOf(squareUnitStart, squares);
+        for (int u = 0; u < units; ++u)
+            for (int k = unitStart[u]; k < unitStart[u + 1]; ++k)
+                squareUnits[filled[unitSquares[k]]++] = u;
+
+        // peers: union of the units of p, without p, deduplicated by a mark
+        int[] mark = new int[squares];
+        Arrays.fill(mark, -1);
+        peerStart = new int[squares + 1];
+        int[] buffer = new int[16 * size + 16];
+        int count = 0;
+        for (int p = 0; p < squares; ++p) {
+            mark[p] = p;
+            for (int k = squareUnitStart[p]; k < squareUnitStart[p + 1]; ++k) {
+                int u = squareUnits[k];
+                for (int i = unitStart[u]; i < unitStart[u + 1]; ++i) {
+                    int q = unitSquares[i];
+                    if (mark[q] == p) continue;
+                    mark[q] = p;
+                    if (count == buffer.length) buffer = Arrays.copyOf(buffer, 2 * count);
+                    buffer[count++] = q;
+                }
+            }
+            peerStart[p + 1] = count;
+        }
+        peers = Arrays.copyOf(buffer, count);
+        checkRep();
+    }
+
+    private void checkRep() {
+        for (int u = 0; u < houses; ++u)
+            assert unitStart[u + 1] - unitStart[u] == size : "Regions, Rep invariant: houses have size squares";
+        for (int u = 0; u < units; ++u) {
+            boolean[] seen = new boolean[size * size];
+            for (int k = unitStart[u]; k < unitStart[u + 1]; ++k) {
+                assert !seen[unitSquares[k]] : "Regions, Rep invariant: distinct squares in a unit";
+                seen[unitSquares[k]] = true;
+            }
+        }
+    }
+
+    /**
+     * @return rows, columns and dim x dim blocks of dim dim
+     */
+    public static Regions classic(int dim) {
+        synchronized (CLASSIC) {
+            if (dim < CLASSIC.length && CLASSIC[dim] != null) return CLASSIC[dim];
+            Regions result = new Regions(dim, true, classicHouses(dim, true), new ArrayList<int[]>(), new int[0]);
+            if (dim < CLASSIC.length) CLASSIC[dim] = result;
+            return result;
+        }
+    }
+
+    /**
+     * @return the classic houses of dim dim and the two main diagonals
+     */
+    public static Regions diagonal(int dim) {
+        int size = dim * dim;
+        List<int[]> houses = classicHouses(dim, true);
+        int[] down = new int[size], up = new int[size];
+        for (int k = 0; k < size; ++k) {
+            down[k] = k * size + k;
+            up[k] = k * size + size - 1 - k;
+        }
+        houses.add(down);
+        houses.add(up);
+        return new Regions(dim, false, houses, new ArrayList<int[]>(), new int[0]);
+    }
+
+    /**
+     * @param shape
+     *            shape[i*size + j] is the number, from 0 to size-1, of the
+     *            irregular region holding the square in row i, column j
+     * @return rows, columns, and the regions of shape in place of blocks
+     * @throws IllegalArgumentException if shape does not cut the grid into
+     *         size regions of size squares
+     */
+    public static Regions jigsaw(int dim, int[] shape) {
+        int size = dim * dim;
+        if (shape.length != size * size) throw new IllegalArgumentException("shape needs " + size * size + " squares");
+        int[][] regions = new int[size][size];
+        int[] count = new int[size];
+        for (int p = 0; p < shape.length; ++p) {
+            int r = shape[p];
+            if (r < 0 || r >= size || count[r] == size)
+                throw new IllegalArgumentException("region " + r + " is not one of " + size + " regions of " + size + " squares");
+            regions[r][count[r]++] = p;
+        }
+        List<int[]> houses = classicHouses(dim, false);
+        houses.addAll(Arrays.asList(regions));
+        return new Regions(dim, false, houses, new ArrayList<int[]>(), new int[0]);
+    }
+
+    /**
+     * @return classic houses of dim dim with the cages of a killer puzzle
+     * @see #withCages(int[][], int[])
+     */
+    public static Regions killer(int dim, int[][] cages, int[] sums) {
+        return classic(dim).withCages(cages, sums);
+    }
+
+    /**
+     * @param cages
+     *            cages[c] lists the squares (i*size + j) of cage c
+     * @param sums
+     *            sums[c] is the sum of the digits of cage c
+     * @return these regions with cages added
+     * @throws IllegalArgumentException if a cage lists a square twice or
+     *         off the grid, or has more than size squares
+     */
+    public Regions withCages(int[][] cages, int[] sums) {
+        if (cages.length != sums.length) throw new IllegalArgumentException("one sum per cage");
+        List<int[]> houseList = new ArrayList<int[]>();
+        for (int u = 0; u < houses; ++u)
+            houseList.add(Arrays.copyOfRange(unitSquares, unitStart[u], unitStart[u + 1]));
+        List<int[]> cageList = new ArrayList<int[]>();
+        for (int u = houses; u < units; ++u)
+            cageList.add(Arrays.copyOfRange(unitSquares, unitStart[u], unitStart[u + 1]));
+        for (int[] cage : cages) {
+            if (cage.length > size) throw new IllegalArgumentException("cage of " + cage.length + " squares");
+            for (int a = 0; a < cage.length; ++a)
+                for (int b = a + 1; b < cage.length; ++b)
+                    if (cage[a] == cage[b]) throw new IllegalArgumentException("cage lists square " + cage[a] + " twice");
+            cageList.add(cage.clone());
+        }
+        int[] allSums = Arrays.copyOf(cageSum, cageSum.length + sums.length);
+        System.arraycopy(sums, 0, allSums, cageSum.length, sums.length);
+        return new Regions(dim, false, houseList, cageList, allSums);
+    }
+
+    // rows, columns and (if blocks) blocks of dim dim
+    private static List<int[]> classicHouses(int dim, boolean blocks) {
+        int size = dim * dim;
+        List<int[]> result = new ArrayList<int[]>();
+        for (int i = 0; i < size; ++i) {
+            int[] row = new int[size];
+            for (int j = 0; j < size; ++j)
+                row[j] = i * size + j;
+            result.add(row);
+        }
+        for (int j = 0; j < size; ++j) {
+            int[] column = new int[size];
+            for (int i = 0; i < size; ++i)
+                column[i] = i * size + j;
+            result.add(column);
+        }
+        if (blocks) {
+            for (int b = 0; b < size; ++b) {
+                int[] block = new int[size];
+                for (int k = 0; k < size; ++k)
+                    block[k] = ((b / dim) * dim + k / dim) * size + (b % dim) * dim + k % dim;
+                result.add(block);
+            }
+        }
+        return result;
+    }
+
+    public int getDim() {
+        return dim;
+    }
+
+    /**
+     * @return true iff these are the classic rows, columns and blocks only
+     */
+    public boolean isClassic() {
+        return classic;
+    }
+
+    /**
+     * @return number of houses
+     */
+    public int getHouses() {
+        return houses;
+    }
+
+    /**
+     * @return number of cages
+     */
+    public int getCages() {
+        return units - houses;
+    }
+
+    /**
+     * @return the squares (i*size + j) of unit u: house u for u < getHouses(),
+     *         else cage u - getHouses()
+     */
+    public int[] getUnit(int u) {
+        return Arrays.copyOfRange(unitSquares, unitStart[u], unitStart[u + 1]);
+    }
+
+    /**
+     * @return the sum of cage c
+     */
+    public int getCageSum(int c) {
+        return cageSum[c];
+    }
+
+    /**
+     * @return the squares other than p that share a house or cage with p
+     */
+    public int[] getPeers(int p) {
+        return Arrays.copyOfRange(peers, peerStart[p], peerStart[p + 1]);
+    }
+
+    /**
+     * @return the sets of distinct digits, as bit masks with bit d-1 for
+     *         digit d, that can fill cage c: as many digits as the cage has
+     *         squares, adding up to its sum
+     */
+    long[] cageCombinations(int c) {
+        int u = houses + c;
+        int n = unitStart[u + 1] - unitStart[u];
+        List<Long> result = new ArrayList<Long>();
+        combinations(1, n, cageSum[c], 0L, result);
+        long[] masks = new long[result.size()];
+        for (int k = 0; k < masks.length; ++k)
+            masks[k] = result.get(k);
+        return masks;
+    }
+
+    // add to result each set of n digits from from..size adding up to sum, with chosen
+    private void combinations(int from, int n, int sum, long chosen, List<Long> result) {
+        if (n == 0) {
+            if (sum == 0) result.add(chosen);
+            return;
+        }
+        for (int d = from; d <= size; ++d) {
+            // the n smallest digits from d on already exceed sum
+            if (n * d + n * (n - 1) / 2 > sum) break;
+            // the n largest digits are too small
+            if (n * size - n * (n - 1) / 2 < sum) break;
+            combinations(d + 1, n - 1, sum - d, chosen | (1L << (d - 1)), result);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (classic ? "classic" : "variant") + " dim " + dim + ": " + houses + " houses, " + getCages() + " cages";
+    }
+}
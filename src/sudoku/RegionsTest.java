@@ -0,0 +1,154 @@
+package sudoku;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import sat.SATSolver;
+
+public class RegionsTest {
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    // 4x4 irregular regions
+    private static final int[] SHAPE = {
+        0, 0, 1, 1,
+        0, 0, 1, 1,
+        2, 3, 3, 3,
+        2, 2, 2, 3 };
+
+    // true iff grid is full, no unit holds a digit twice and cages add up
+    static boolean satisfies(Regions regions, int[] grid) {
+        int size = regions.getDim() * regions.getDim();
+        for (int d : grid)
+            if (d < 1 || d > size) return false;
+        for (int u = 0; u < regions.getHouses() + regions.getCages(); ++u) {
+            boolean[] seen = new boolean[size + 1];
+            int sum = 0;
+            for (int p : regions.getUnit(u)) {
+                if (seen[grid[p]]) return false;
+                seen[grid[p]] = true;
+                sum += grid[p];
+            }
+            if (u >= regions.getHouses() && sum != regions.getCageSum(u - regions.getHouses())) return false;
+        }
+        return true;
+    }
+
+    // solve puzzle with getProblem, CompactEncoding and SolutionCounter, and
+    // check that each finds a solution keeping its givens
+    private static void assertSolves(Sudoku puzzle) {
+        Regions regions = puzzle.getRegions();
+        int[] givens = SolutionCache.cells(puzzle);
+        Sudoku[] solutions = {
+            puzzle.interpretSolution(SATSolver.solve(puzzle.getProblem())),
+            new CompactEncoding(puzzle).solve() };
+        for (Sudoku solution : solutions) {
+            assertEquals(regions, solution.getRegions());
+            int[] grid = SolutionCache.cells(solution);
+            assertTrue(satisfies(regions, grid));
+            for (int p = 0; p < grid.length; ++p)
+                assertTrue(givens[p] == 0 || givens[p] == grid[p]);
+        }
+        int[] grid = givens.clone();
+        assertTrue(new SolutionCounter(regions).fill(grid, new Random(3)));
+        assertTrue(satisfies(regions, grid));
+    }
+
+    // a solution under regions with every third square blanked
+    private static Sudoku puzzle(Regions regions, long seed) {
+        int size = regions.getDim() * regions.getDim();
+        int[] grid = new int[size * size];
+        assertTrue(new SolutionCounter(regions).fill(grid, new Random(seed)));
+        assertTrue(satisfies(regions, grid));
+        for (int p = 0; p < grid.length; p += 3)
+            grid[p] = 0;
+        return new Sudoku(regions, grid);
+    }
+
+    @Test
+    public void classicTablesTest() {
+        Regions classic = Regions.classic(3);
+        assertSame(classic, Regions.classic(3));
+        assertSame(classic, new Sudoku(3).getRegions());
+        assertTrue(classic.isClassic());
+        assertEquals(27, classic.getHouses());
+        assertEquals(0, classic.getCages());
+        for (int p = 0; p < 81; ++p)
+            assertEquals(20, classic.getPeers(p).length);
+        assertArrayEquals(new int[] { 30, 31, 32, 39, 40, 41, 48, 49, 50 }, classic.getUnit(2 * 9 + 4));
+    }
+
+    @Test
+    public void diagonalTest() {
+        Regions diagonal = Regions.diagonal(3);
+        assertFalse(diagonal.isClassic());
+        assertEquals(29, diagonal.getHouses());
+        // the centre is on both diagonals
+        assertEquals(20 + 6 + 6, diagonal.getPeers(40).length);
+        assertSolves(puzzle(diagonal, 1));
+    }
+
+    @Test
+    public void jigsawTest() {
+        Regions jigsaw = Regions.jigsaw(2, SHAPE);
+        assertArrayEquals(new int[] { 8, 12, 13, 14 }, jigsaw.getUnit(10));
+        assertSolves(puzzle(jigsaw, 2));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void badJigsawTest() {
+        int[] shape = SHAPE.clone();
+        shape[3] = 0;
+        Regions.jigsaw(2, shape);
+    }
+
+    @Test
+    public void killerTest() {
+        // cages of two squares side by side along each row, from a solution
+        int[] solution = CompactEncodingTest.patternSolution(3, new Random(4));
+        int[][] cages = new int[36][];
+        int[] sums = new int[36];
+        for (int i = 0; i < 9; ++i) {
+            for (int k = 0; k < 4; ++k) {
+                int p = i * 9 + 2 * k;
+                cages[i * 4 + k] = new int[] { p, p + 1 };
+                sums[i * 4 + k] = solution[p] + solution[p + 1];
+            }
+        }
+        Regions killer = Regions.killer(3, cages, sums);
+        assertEquals(27, killer.getHouses());
+        assertEquals(36, killer.getCages());
+        assertTrue(satisfies(killer, solution));
+        int[] grid = solution.clone();
+        for (int p = 0; p < grid.length; p += 2)
+            grid[p] = 0;
+        assertSolves(new Sudoku(killer, grid));
+        assertSolves(new Sudoku(killer, new int[81]));
+    }
+
+    @Test
+    public void killerUnsolvableTest() {
+        // two different digits cannot add up to 2
+        Regions killer = Regions.killer(2, new int[][] { { 0, 1 } }, new int[] { 2 });
+        Sudoku puzzle = new Sudoku(killer, new int[16]);
+        assertNull(new CompactEncoding(puzzle).solve());
+        assertNull(puzzle.interpretSolution(SATSolver.solve(puzzle.getProblem())));
+        assertEquals(0, new SolutionCounter(killer).count(new int[16], 1));
+    }
+
+    @Test
+    public void variantsBypassCacheTest() {
+        SolutionCache cache = new SolutionCache();
+        Sudoku puzzle = puzzle(Regions.diagonal(2), 5);
+        assertTrue(satisfies(puzzle.getRegions(), SolutionCache.cells(cache.solve(puzzle))));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,70 @@
+package sudoku;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Counters and latency percentiles of a SolveServer. Latencies are kept
+ * for the most recent WINDOW requests, and percentiles are computed over
+ * them when the metrics are read. This datatype is mutable and
+ * thread-safe.
+ */
+final class ServerMetrics {
+    // number of recent request latencies kept for percentiles
+    static final int WINDOW = 8192;
+
+    private final long started = System.nanoTime();
+    private long requests = 0;
+    private long puzzles = 0;
+    private long unsolvable = 0;
+    private long errors = 0;
+    private long batches = 0;
+    // latencies[k % WINDOW]: latency of request k, for the last WINDOW requests
+    private final long[] latencies = new long[WINDOW];
+
+    synchronized void recordRequest(long nanos) {
+        latencies[(int) (requests++ % WINDOW)] = nanos;
+    }
+
+    synchronized void recordBatch(int size, int unsolvableInBatch, int errorsInBatch) {
+        ++batches;
+        puzzles += size;
+        unsolvable += unsolvableInBatch;
+        errors += errorsInBatch;
+    }
+
+    /**
+     * @return the metrics as lines of "name value"; latencies in
+     *         microseconds
+     */
+    synchronized String format() {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        int n = (int) Math.min(requests, WINDOW);
+        long[] sorted = Arrays.copyOf(latencies, n);
+        Arrays.sort(sorted);
+        StringBuilder result = new StringBuilder();
+        line(result, "requests_total", requests);
+        line(result, "puzzles_total", puzzles);
+        line(result, "unsolvable_total", unsolvable);
+        line(result, "errors_total", errors);
+        line(result, "batches_total", batches);
+        result.append("batch_size_mean ").append(String.format(Locale.ROOT, "%.2f", batches == 0 ? 0.0 : (double) puzzles / batches)).append("\n");
+        result.append("puzzles_per_second ").append(String.format(Locale.ROOT, "%.1f", puzzles / seconds)).append("\n");
+        line(result, "latency_p50_us", percentile(sorted, 0.50));
+        line(result, "latency_p90_us", percentile(sorted, 0.90));
+        line(result, "latency_p99_us", percentile(sorted, 0.99));
+        line(result, "latency_max_us", n == 0 ? 0 : sorted[n - 1] / 1000);
+        return result.toString();
+    }
+
+    private static void line(StringBuilder result, String name, long value) {
+        result.append(name).append(" ").append(value).append("\n");
+    }
+
+    // nearest-rank percentile of sorted nanosecond latencies, in microseconds
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(rank, 0)] / 1000;
+    }
+}
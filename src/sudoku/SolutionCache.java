@@ -0,0 +1,162 @@
+package sudoku;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import sat.SATSolver;
+
+/**
+ * A bounded cache of Sudoku solutions keyed by the canonical form of the
+ * puzzle under the symmetry group of the grid (see Symmetry): puzzles that
+ * differ by relabelling digits, permuting bands, stacks, or rows and
+ * columns within them, or transposing share one entry. A hit maps the
+ * cached solution back through the inverse of the puzzle's transformation.
+ *
+ * Entries are evicted least recently used first. Unsolvable puzzles are
+ * cached too. This datatype is mutable and safe for use by several
+ * threads; puzzles are solved outside the lock, so two threads missing on
+ * the same puzzle at once may both solve it. Variant puzzles (see
+ * Regions) are not symmetric under that group, so they are solved without
+ * the cache.
+ */
+public class SolutionCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // cached value of a puzzle with no solution
+    private static final int[] UNSOLVABLE = new int[0];
+
+    private final int capacity;
+    // canonical puzzle -> canonical solution, or UNSOLVABLE; in access order
+    private final LinkedHashMap<Key, int[]> entries;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public SolutionCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty cache holding at most capacity puzzles.
+     * Requires: capacity > 0
+     */
+    public SolutionCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, int[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+                if (size() <= SolutionCache.this.capacity) return false;
+                ++evictions;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Solve puzzle, from the cache if an equivalent puzzle was solved before.
+     * @return a solution of puzzle with no blank squares, or null if it has
+     *         none
+     */
+    public Sudoku solve(Sudoku puzzle) {
+        if (!puzzle.getRegions().isClassic())
+            return puzzle.interpretSolution(SATSolver.solve(puzzle.getProblem()));
+        int dim = puzzle.getDim();
+        int[] grid = cells(puzzle);
+        Symmetry symmetry = Symmetry.canonical(dim, grid);
+        Key key = new Key(dim, symmetry.apply(grid));
+        int[] cached;
+        synchronized (this) {
+            cached = entries.get(key);
+            if (cached != null) ++hits;
+            else ++misses;
+        }
+        if (cached == null) {
+            Sudoku solution = puzzle.interpretSolution(SATSolver.solve(puzzle.getProblem()));
+            cached = solution == null ? UNSOLVABLE : symmetry.apply(cells(solution));
+            synchronized (this) {
+                entries.put(key, cached);
+            }
+            return solution;
+        }
+        if (cached == UNSOLVABLE) return null;
+        return fromCells(dim, symmetry.invert(cached));
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the fraction of lookups that hit, or 0 if there were none
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return number of puzzles in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SolutionCache: size=" + entries.size() + "/" + capacity + " hits=" + hits
+                + " misses=" + misses + " evictions=" + evictions
+                + " hitRate=" + String.format("%.3f", getHitRate());
+    }
+
+    /**
+     * @return the squares of s in row-major order, 0 for a blank
+     */
+    static int[] cells(Sudoku s) {
+        int size = s.getDim() * s.getDim();
+        int[] result = new int[size * size];
+        s.getSquares(result);
+        return result;
+    }
+
+    static Sudoku fromCells(int dim, int[] cells) {
+        return new Sudoku(dim, cells);
+    }
+
+    /**
+     * A canonical puzzle, compared by value
+     */
+    private static final class Key {
+        private final int dim;
+        private final int[] cells;
+        private final int hash;
+
+        Key(int dim, int[] cells) {
+            this.dim = dim;
+            this.cells = cells;
+            this.hash = 31 * dim + Arrays.hashCode(cells);
+        }
+
+        @Override
+        public boolean equals(Object that) {
+            if (!(that instanceof Key)) return false;
+            Key other = (Key) that;
+            return dim == other.dim && Arrays.equals(cells, other.cells);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
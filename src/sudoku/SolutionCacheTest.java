@@ -0,0 +1,148 @@
+package sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import sudoku.Sudoku.ParseException;
+
+public class SolutionCacheTest {
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void canonicalFormIsInvariantTest() throws IOException, ParseException {
+        int[] grid = SolutionCache.cells(Sudoku.fromFile(3, "samples/sudoku_hard.txt"));
+        int[] canonical = Symmetry.canonical(3, grid).apply(grid);
+        Random random = new Random(5);
+        for (int round = 0; round < 20; ++round) {
+            int[] shuffled = shuffle(3, grid, random);
+            Symmetry symmetry = Symmetry.canonical(3, shuffled);
+            assertArrayEquals(canonical, symmetry.apply(shuffled));
+            assertArrayEquals(shuffled, symmetry.invert(symmetry.apply(shuffled)));
+        }
+    }
+
+    @Test
+    public void canonicalFormWithEqualRowsInTwoBandsTest() {
+        // blank rows in bands 0 and 1 are equal, but the rest of their bands
+        // are not, so swapping the bands must not change the canonical form
+        Generator generator = new Generator(3, 30, Generator.Pattern.NONE);
+        SolutionCache cache = new SolutionCache(4);
+        for (long seed = 0; seed < 20; ++seed) {
+            int[] grid = SolutionCache.cells(generator.generate(seed));
+            for (int c = 0; c < 9; ++c)
+                grid[0 * 9 + c] = grid[4 * 9 + c] = 0;
+            int[] swapped = new int[81];
+            for (int r = 0; r < 9; ++r)
+                System.arraycopy(grid, r * 9, swapped, (r < 3 ? r + 3 : r < 6 ? r - 3 : r) * 9, 9);
+            assertArrayEquals(Symmetry.canonical(3, grid).apply(grid),
+                    Symmetry.canonical(3, swapped).apply(swapped));
+            if (seed < 2) {
+                long hits = cache.getHits();
+                assertValidSolution(SolutionCache.fromCells(3, grid), cache.solve(SolutionCache.fromCells(3, grid)));
+                assertValidSolution(SolutionCache.fromCells(3, swapped),
+                        cache.solve(SolutionCache.fromCells(3, swapped)));
+                assertEquals(hits + 1, cache.getHits());
+            }
+        }
+    }
+
+    @Test
+    public void cacheHitsEquivalentPuzzlesTest() throws IOException, ParseException {
+        SolutionCache cache = new SolutionCache(4);
+        Sudoku puzzle = Sudoku.fromFile(3, "samples/sudoku_easy.txt");
+        assertValidSolution(puzzle, cache.solve(puzzle));
+        assertEquals(1, cache.getMisses());
+
+        Random random = new Random(11);
+        for (int round = 0; round < 3; ++round) {
+            Sudoku shuffled = SolutionCache.fromCells(3, shuffle(3, SolutionCache.cells(puzzle), random));
+            assertValidSolution(shuffled, cache.solve(shuffled));
+        }
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.size());
+        assertEquals(0.75, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void evictionTest() {
+        SolutionCache cache = new SolutionCache(1);
+        Sudoku first = new Sudoku(2, new int[][] {
+                { 0, 1, 0, 4 }, { 0, 0, 0, 0 }, { 2, 0, 3, 0 }, { 0, 0, 0, 0 } });
+        Sudoku second = new Sudoku(2);
+        Sudoku unsolvable = new Sudoku(2, new int[][] {
+                { 1, 1, 0, 0 }, { 0, 0, 0, 0 }, { 0, 0, 0, 0 }, { 0, 0, 0, 0 } });
+        assertNotNull(cache.solve(first));
+        assertNotNull(cache.solve(second));
+        assertNull(cache.solve(unsolvable));
+        assertNull(cache.solve(unsolvable));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getEvictions());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * @return grid under a random transformation of the Sudoku symmetry group
+     */
+    private static int[] shuffle(int dim, int[] grid, Random random) {
+        int size = dim * dim;
+        int[] rows = lineOrder(dim, random);
+        int[] cols = lineOrder(dim, random);
+        List<int[]> digitOrders = Symmetry.permutations(size);
+        int[] digits = digitOrders.get(random.nextInt(digitOrders.size()));
+        boolean transpose = random.nextBoolean();
+        int[] result = new int[grid.length];
+        for (int r = 0; r < size; ++r) {
+            for (int c = 0; c < size; ++c) {
+                int d = transpose ? grid[cols[c] * size + rows[r]] : grid[rows[r] * size + cols[c]];
+                result[r * size + c] = d == 0 ? 0 : digits[d - 1] + 1;
+            }
+        }
+        return result;
+    }
+
+    // a random order of the rows (or columns) that keeps the bands together
+    private static int[] lineOrder(int dim, Random random) {
+        List<int[]> orders = Symmetry.permutations(dim);
+        int[] bands = orders.get(random.nextInt(orders.size()));
+        int[] result = new int[dim * dim];
+        for (int b = 0; b < dim; ++b) {
+            int[] within = orders.get(random.nextInt(orders.size()));
+            for (int k = 0; k < dim; ++k)
+                result[b * dim + k] = bands[b] * dim + within[k];
+        }
+        return result;
+    }
+
+    private static void assertValidSolution(Sudoku puzzle, Sudoku solution) {
+        int dim = puzzle.getDim();
+        int size = dim * dim;
+        for (int i = 0; i < size; ++i) {
+            for (int j = 0; j < size; ++j) {
+                int given = puzzle.getSquare(i, j);
+                if (given != 0) assertEquals(given, solution.getSquare(i, j));
+            }
+        }
+        for (int unit = 0; unit < size; ++unit) {
+            boolean[] row = new boolean[size + 1], col = new boolean[size + 1], box = new boolean[size + 1];
+            for (int k = 0; k < size; ++k) {
+                row[solution.getSquare(unit, k)] = true;
+                col[solution.getSquare(k, unit)] = true;
+                box[solution.getSquare(unit / dim * dim + k / dim, unit % dim * dim + k % dim)] = true;
+            }
+            assertFalse(row[0] || col[0] || box[0]);
+            for (int d = 1; d <= size; ++d)
+                assertTrue(row[d] && col[d] && box[d]);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package sudoku;
+
+import java.util.Random;
+
+/**
+ * Counts and finds solutions of Sudoku grids by backtracking over bit sets
+ * of the digits used in each unit (row, column and block, or the houses and
+ * cages of a variant's Regions), always branching on the blank square with
+ * the fewest candidates. A cage also tracks the sum still to be made by its
+ * blank squares: its last blank square may only take the missing digit, and
+ * a digit is not tried if the blanks left could not make up the rest.
+ *
+ * This is much faster than encoding and solving with sat.SATSolver, which
+ * matters when a generator checks uniqueness after every removal; it does
+ * not replace the SAT path for solving. Grids are row-major arrays of
+ * squares holding 0 for a blank and 1..size for a digit.
+ *
+ * A SolutionCounter is mutable and reuses its arrays between calls; use
+ * one per thread.
+ */
+final class SolutionCounter {
+    // largest dim whose digits fit the bits of an int
+    static final int MAX_DIM = 5;
+    // value of a node limit that is not set
+    static final long UNLIMITED = -1;
+
+    private final int size;
+    private final int all;
+    private final int houses;
+    // false for classic and other cageless regions, to skip the sum checks
+    private final boolean cages;
+    private final int[] squareUnits;
+    private final int[] squareUnitStart;
+    private final int[] cageSum;
+    private final int[] cells;
+    // used[u]: digits in unit u
+    private final int[] used;
+    // for a cage u: left[u] is its sum less its digits, blanks[u] its blank squares
+    private final int[] left;
+    private final int[] blanks;
+    // order[depth]: digits to try at that search depth when filling
+    private final int[][] order;
+    private long nodeLimit = UNLIMITED;
+    private long nodes;
+    // true iff the last count or fill stopped at the node limit
+    private boolean stopped;
+
+    private int limit;
+    private int found;
+    // when non-null, fill: try digits in random order and stop at the first solution
+    private Random random;
+
+    /**
+     * Make a counter for classic grids of dim dim.
+     * Requires: 1 <= dim <= MAX_DIM
+     */
+    SolutionCounter(int dim) {
+        this(Regions.classic(dim));
+    }
+
+    /**
+     * Make a counter for grids under regions.
+     * Requires: 1 <= regions.getDim() <= MAX_DIM
+     */
+    SolutionCounter(Regions regions) {
+        this.size = regions.size;
+        this.all = (1 << size) - 1;
+        this.houses = regions.houses;
+        this.cages = regions.units > houses;
+        this.squareUnits = regions.squareUnits;
+        this.squareUnitStart = regions.squareUnitStart;
+        this.cageSum = regions.cageSum;
+        this.cells = new int[size * size];
+        this.used = new int[regions.units];
+        this.left = new int[regions.units];
+        this.blanks = new int[regions.units];
+        this.order = new int[size * size][size];
+    }
+
+    /**
+     * Stop each count or fill after visiting nodes search nodes, or never
+     * if nodes is UNLIMITED.
+     * Requires: nodes >= 0 or nodes == UNLIMITED
+     */
+    void setNodeLimit(long nodes) {
+        this.nodeLimit = nodes;
+    }
+
+    /**
+     * @return true iff the last count or fill stopped at the node limit,
+     *         so that its answer is not final
+     */
+    boolean limitReached() {
+        return stopped;
+    }
+
+    /**
+     * @return the number of solutions of grid, counting at most limit, or
+     *         the number found so far if the node limit is reached.
+     *         Requires: grid.length == size*size, limit >= 1
+     */
+    int count(int[] grid, int limit) {
+        this.random = null;
+        this.limit = limit;
+        this.found = 0;
+        this.nodes = 0;
+        this.stopped = false;
+        if (load(grid)) search(0);
+        return found;
+    }
+
+    /**
+     * Fill the blanks of grid with a solution, trying digits in an order
+     * drawn from random, so that a given seed always gives the same grid;
+     * in increasing order if random is null.
+     * @return true iff grid has a solution, now written into it; if false,
+     *         grid is unchanged and either has no solution or the node
+     *         limit was reached
+     */
+    boolean fill(int[] grid, Random random) {
+        this.random = random;
+        this.limit = 1;
+        this.found = 0;
+        this.nodes = 0;
+        this.stopped = false;
+        if (!load(grid) || !search(0) || stopped) return false;
+        System.arraycopy(cells, 0, grid, 0, cells.length);
+        return true;
+    }
+
+    // set up the bit sets for grid; false if two givens clash or a cage
+    // cannot make its sum
+    private boolean load(int[] grid) {
+        System.arraycopy(grid, 0, cells, 0, cells.length);
+        for (int u = 0; u < used.length; ++u) {
+            used[u] = blanks[u] = 0;
+            left[u] = u < houses ? 0 : cageSum[u - houses];
+        }
+        for (int p = 0; p < cells.length; ++p) {
+            int d = cells[p];
+            for (int k = squareUnitStart[p]; k < squareUnitStart[p + 1]; ++k) {
+                int u = squareUnits[k];
+                if (d == 0) {
+                    ++blanks[u];
+                    continue;
+                }
+                int bit = 1 << (d - 1);
+                if ((used[u] & bit) != 0) return false;
+                used[u] |= bit;
+                left[u] -= d;
+            }
+        }
+        for (int u = houses; u < used.length; ++u)
+            if (!feasible(left[u], blanks[u])) return false;
+        return true;
+    }
+
+    // true iff n distinct digits could add up to sum, ignoring which are used
+    private boolean feasible(int sum, int n) {
+        return sum >= n * (n + 1) / 2 && sum <= n * size - n * (n - 1) / 2;
+    }
+
+    /**
+     * @return true iff the search should stop: limit solutions were found,
+     *         or the node limit was reached. When filling, cells then holds
+     *         the solution unless stopped.
+     */
+    private boolean search(int depth) {
+        if (nodeLimit != UNLIMITED && ++nodes > nodeLimit) {
+            stopped = true;
+            return true;
+        }
+        int best = -1;
+        int bestCandidates = 0;
+        int bestCount = Integer.MAX_VALUE;
+        for (int p = 0; p < cells.length; ++p) {
+            if (cells[p] != 0) continue;
+            int taken = 0;
+            for (int k = squareUnitStart[p]; k < squareUnitStart[p + 1]; ++k)
+                taken |= used[squareUnits[k]];
+            int candidates = all & ~taken;
+            for (int k = squareUnitStart[p]; cages && k < squareUnitStart[p + 1]; ++k) {
+                int u = squareUnits[k];
+                if (u >= houses && blanks[u] == 1)
+                    candidates &= left[u] >= 1 && left[u] <= size ? 1 << (left[u] - 1) : 0;
+            }
+            int n = Integer.bitCount(candidates);
+            if (n < bestCount) {
+                if (n == 0) return false;
+                best = p;
+                bestCandidates = candidates;
+                bestCount = n;
+                if (n == 1) break;
+            }
+        }
+        if (best < 0) return ++found >= limit;
+        int first = squareUnitStart[best], last = squareUnitStart[best + 1];
+        int[] digits = order[depth];
+        for (int k = 0; k < size; ++k)
+            digits[k] = k;
+        if (random != null) {
+            for (int k = size - 1; k > 0; --k) {
+                int j = random.nextInt(k + 1);
+                int t = digits[k];
+                digits[k] = digits[j];
+                digits[j] = t;
+            }
+        }
+        next: for (int k = 0; k < size; ++k) {
+            int d = digits[k];
+            int bit = 1 << d;
+            if ((bestCandidates & bit) == 0) continue;
+            for (int i = first; cages && i < last; ++i) {
+                int u = squareUnits[i];
+                if (u >= houses && !feasible(left[u] - d - 1, blanks[u] - 1)) continue next;
+            }
+            cells[best] = d + 1;
+            for (int i = first; i < last; ++i) {
+                int u = squareUnits[i];
+                used[u] |= bit;
+                left[u] -= d + 1;
+                --blanks[u];
+            }
+            boolean done = search(depth + 1);
+            for (int i = first; i < last; ++i) {
+                int u = squareUnits[i];
+                used[u] &= ~bit;
+                left[u] += d + 1;
+                ++blanks[u];
+            }
+            if (done) return true;
+            cells[best] = 0;
+        }
+        return false;
+    }
+}
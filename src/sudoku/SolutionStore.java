@@ -0,0 +1,429 @@
+package sudoku;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent store of solved puzzles: an append-only, memory-mapped file
+ * of records, each holding a puzzle and its solution (or the fact that it
+ * has none), with an open-addressing hash index keyed by the puzzle's
+ * squares.
+ *
+ * Lookups are lock-free and may run in any number of threads; they read
+ * the puzzle straight from the Sudoku and compare it with the mapped bytes,
+ * so a lookup allocates nothing. Writes (put, compact) are serialized: the
+ * store has a single writer at a time.
+ *
+ * File layout: a header of MAGIC, VERSION and the committed end offset,
+ * followed by records of
+ *     int length, int crc32 of the rest, byte dim, byte status,
+ *     puzzle squares, solution squares (if status is SOLVED)
+ * with one byte per square in row-major order, 0 for a blank. A record is
+ * written in full before the committed end is moved past it, and on
+ * opening, records are replayed only while their checksums hold, so a
+ * record torn by a crash is dropped rather than read.
+ *
+ * A later put of the same puzzle supersedes the earlier record; compact
+ * rewrites the file with only the current records.
+ */
+public class SolutionStore {
+    public static final int MAGIC = 0x53554453; // "SUDS"
+    public static final int VERSION = 1;
+
+    /**
+     * Result of lookup: the puzzle is not in the store
+     */
+    public static final int ABSENT = -1;
+    /**
+     * Result of lookup, and record status: the puzzle has no solution
+     */
+    public static final int UNSOLVABLE = 0;
+    /**
+     * Result of lookup, and record status: the puzzle is solved
+     */
+    public static final int SOLVED = 1;
+
+    static final int HEADER_SIZE = 16;
+    // offset in the header of the committed end
+    private static final int END_OFFSET = 8;
+    // offset in a record of dim, status and the squares
+    private static final int RECORD_HEADER_SIZE = 10;
+    private static final int INITIAL_MAPPING = 1 << 20;
+    private static final int INITIAL_INDEX = 1 << 10;
+
+    private final File file;
+    private boolean forceOnAppend = true;
+    private volatile State state;
+
+    /**
+     * The mapping and index of one version of the file. Readers take the
+     * current State once and use only it; compaction replaces it.
+     */
+    private static final class State {
+        final FileChannel channel;
+        volatile MappedByteBuffer buffer;
+        // slot: (upper 32 bits of the key hash) << 32 | record offset; 0 if empty
+        volatile AtomicLongArray index;
+        // records lie in [HEADER_SIZE, end)
+        volatile int end;
+        // written only under the writer lock
+        int records = 0;
+        int live = 0;
+
+        State(FileChannel channel, MappedByteBuffer buffer, int indexSize) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.index = new AtomicLongArray(indexSize);
+            this.end = HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Open the store in file, creating it if it does not exist.
+     * @throws IOException if the file cannot be read or mapped, or is not
+     *         a solution store
+     */
+    public SolutionStore(File file) throws IOException {
+        this.file = file;
+        this.state = open(file);
+    }
+
+    /**
+     * Choose whether each put forces its record to the device before
+     * returning (the default). Turning this off speeds up bulk loading; a
+     * crash then loses the records not yet written back, but never
+     * corrupts the store.
+     */
+    public void setForceOnAppend(boolean force) {
+        this.forceOnAppend = force;
+    }
+
+    private static State open(File file) throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        boolean opened = false;
+        try {
+            boolean fresh = channel.size() == 0;
+            // check the header before mapping, which would grow the file
+            if (!fresh && !hasHeader(channel)) throw new IOException("not a solution store: " + file);
+            long size = Math.max(channel.size(), INITIAL_MAPPING);
+            State s = new State(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), INITIAL_INDEX);
+            MappedByteBuffer buffer = s.buffer;
+            if (fresh) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(END_OFFSET, HEADER_SIZE);
+                buffer.force();
+            } else {
+                long committed = buffer.getLong(END_OFFSET);
+                int offset = HEADER_SIZE;
+                while (offset < committed && validRecord(buffer, offset, committed)) {
+                    index(s, offset);
+                    offset += buffer.getInt(offset);
+                }
+                s.end = offset;
+            }
+            opened = true;
+            return s;
+        } finally {
+            if (!opened) channel.close();
+        }
+    }
+
+    // true iff channel starts with a whole header of MAGIC and VERSION
+    private static boolean hasHeader(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) return false;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining())
+            if (channel.read(header, header.position()) < 0) return false;
+        return header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+    }
+
+    // true iff a whole record with a matching checksum starts at offset
+    private static boolean validRecord(MappedByteBuffer buffer, int offset, long limit) {
+        if (offset + RECORD_HEADER_SIZE > limit) return false;
+        int length = buffer.getInt(offset);
+        if (length < RECORD_HEADER_SIZE || offset + (long) length > limit) return false;
+        return checksum(buffer, offset, length) == buffer.getInt(offset + 4);
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        for (int i = offset + 8; i < offset + length; ++i)
+            crc.update(buffer.get(i));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Look puzzle up, copying its solution into solution if it is solved.
+     * Requires: solution.length >= (dim*dim)^2 for the puzzle's dim
+     * @return SOLVED, with solution holding the squares of the solution in
+     *         row-major order; UNSOLVABLE; or ABSENT
+     */
+    public int lookup(Sudoku puzzle, int[] solution) {
+        State s = state;
+        int offset = find(s, puzzle);
+        if (offset < 0) return ABSENT;
+        MappedByteBuffer buffer = s.buffer;
+        int status = buffer.get(offset + 9);
+        if (status == SOLVED) {
+            int squares = squares(puzzle.getDim());
+            int from = offset + RECORD_HEADER_SIZE + squares;
+            for (int k = 0; k < squares; ++k)
+                solution[k] = buffer.get(from + k);
+        }
+        return status;
+    }
+
+    /**
+     * @return the stored solution of puzzle, or null if the puzzle is
+     *         absent or unsolvable
+     */
+    public Sudoku get(Sudoku puzzle) {
+        int dim = puzzle.getDim();
+        int[] solution = new int[squares(dim)];
+        if (lookup(puzzle, solution) != SOLVED) return null;
+        return SolutionCache.fromCells(dim, solution);
+    }
+
+    /**
+     * @return true iff puzzle is in the store
+     */
+    public boolean contains(Sudoku puzzle) {
+        return find(state, puzzle) >= 0;
+    }
+
+    /**
+     * Record the solution of puzzle, or that it has none if solution is
+     * null, superseding any earlier record of puzzle.
+     * Requires: puzzle is classic (records are keyed by squares alone, not
+     *           Regions), solution is null or has the same dim as puzzle,
+     *           and dim*dim < 128
+     * @throws IOException if the file cannot be extended
+     */
+    public synchronized void put(Sudoku puzzle, Sudoku solution) throws IOException {
+        State s = state;
+        int dim = puzzle.getDim();
+        int squares = squares(dim);
+        int length = RECORD_HEADER_SIZE + (solution == null ? squares : 2 * squares);
+        int offset = s.end;
+        MappedByteBuffer buffer = ensureCapacity(s, offset + length);
+        buffer.putInt(offset, length);
+        buffer.put(offset + 8, (byte) dim);
+        buffer.put(offset + 9, (byte) (solution == null ? UNSOLVABLE : SOLVED));
+        write(buffer, offset + RECORD_HEADER_SIZE, puzzle);
+        if (solution != null) write(buffer, offset + RECORD_HEADER_SIZE + squares, solution);
+        buffer.putInt(offset + 4, checksum(buffer, offset, length));
+        if (forceOnAppend) buffer.force();
+        buffer.putLong(END_OFFSET, offset + length);
+        if (forceOnAppend) buffer.force();
+        // publish the end before the index slot, so that a reader that
+        // finds the slot also sees the whole record
+        s.end = offset + length;
+        index(s, offset);
+    }
+
+    /**
+     * Rewrite the file keeping only the current record of each puzzle.
+     * Lookups already running finish on the old mapping.
+     * @throws IOException if the new file cannot be written or renamed
+     */
+    public synchronized void compact() throws IOException {
+        State old = state;
+        File temporary = new File(file.getPath() + ".compact");
+        if (temporary.exists() && !temporary.delete())
+            throw new IOException("cannot delete " + temporary);
+        State s = open(temporary);
+        MappedByteBuffer from = old.buffer;
+        AtomicLongArray index = old.index;
+        for (int slot = 0; slot < index.length(); ++slot) {
+            long entry = index.get(slot);
+            if (entry == 0) continue;
+            int offset = (int) entry;
+            int length = from.getInt(offset);
+            MappedByteBuffer to = ensureCapacity(s, s.end + length);
+            for (int i = 0; i < length; ++i)
+                to.put(s.end + i, from.get(offset + i));
+            int copied = s.end;
+            s.end += length;
+            index(s, copied);
+        }
+        s.buffer.putLong(END_OFFSET, s.end);
+        s.buffer.force();
+        old.channel.close();
+        // rename replaces the file where the platform allows it
+        if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file)))
+            throw new IOException("cannot replace " + file + " with " + temporary);
+        state = s;
+    }
+
+    /**
+     * Release the file. The store must not be used afterwards.
+     * @throws IOException if the file cannot be closed
+     */
+    public synchronized void close() throws IOException {
+        state.buffer.force();
+        state.channel.close();
+    }
+
+    /**
+     * @return number of distinct puzzles in the store
+     */
+    public synchronized int size() {
+        return state.live;
+    }
+
+    /**
+     * @return number of records in the file, including superseded ones
+     */
+    public synchronized int getRecords() {
+        return state.records;
+    }
+
+    /**
+     * @return bytes of the file in use by the header and records
+     */
+    public long getBytesUsed() {
+        return state.end;
+    }
+
+    private static int squares(int dim) {
+        return dim * dim * dim * dim;
+    }
+
+    private static void write(MappedByteBuffer buffer, int at, Sudoku s) {
+        int size = s.getDim() * s.getDim();
+        for (int i = 0; i < size; ++i)
+            for (int j = 0; j < size; ++j)
+                buffer.put(at + i * size + j, (byte) s.getSquare(i, j));
+    }
+
+    /**
+     * Grow the mapping of s to cover limit bytes, doubling it.
+     * @return the mapping
+     */
+    private static MappedByteBuffer ensureCapacity(State s, long limit) throws IOException {
+        MappedByteBuffer buffer = s.buffer;
+        if (limit <= buffer.capacity()) return buffer;
+        long size = buffer.capacity();
+        while (size < limit)
+            size *= 2;
+        if (size > Integer.MAX_VALUE) throw new IOException("solution store is full");
+        buffer = s.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        s.buffer = buffer;
+        return buffer;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the dim and squares of puzzle
+     */
+    private static long hash(Sudoku puzzle) {
+        int size = puzzle.getDim() * puzzle.getDim();
+        long h = 0xcbf29ce484222325L;
+        h = (h ^ puzzle.getDim()) * 0x100000001b3L;
+        for (int i = 0; i < size; ++i)
+            for (int j = 0; j < size; ++j)
+                h = (h ^ puzzle.getSquare(i, j)) * 0x100000001b3L;
+        return h;
+    }
+
+    // the same hash, of the puzzle in the record at offset
+    private static long hash(MappedByteBuffer buffer, int offset) {
+        int dim = buffer.get(offset + 8);
+        int squares = squares(dim);
+        long h = 0xcbf29ce484222325L;
+        h = (h ^ dim) * 0x100000001b3L;
+        for (int k = 0; k < squares; ++k)
+            h = (h ^ buffer.get(offset + RECORD_HEADER_SIZE + k)) * 0x100000001b3L;
+        return h;
+    }
+
+    /**
+     * @return offset of the record of puzzle in s, or -1 if there is none
+     */
+    private static int find(State s, Sudoku puzzle) {
+        // read end first: the writer grows the mapping before moving end,
+        // so the mapping read next covers every record before end
+        int end = s.end;
+        MappedByteBuffer buffer = s.buffer;
+        AtomicLongArray index = s.index;
+        int key = (int) (hash(puzzle) >>> 32);
+        int mask = index.length() - 1;
+        for (int slot = key & mask; ; slot = (slot + 1) & mask) {
+            long entry = index.get(slot);
+            if (entry == 0) return -1;
+            int offset = (int) entry;
+            if ((int) (entry >>> 32) == key && offset < end && matches(buffer, offset, puzzle))
+                return offset;
+        }
+    }
+
+    // true iff the record at offset holds puzzle
+    private static boolean matches(MappedByteBuffer buffer, int offset, Sudoku puzzle) {
+        int dim = puzzle.getDim();
+        if (buffer.get(offset + 8) != dim) return false;
+        int size = dim * dim;
+        int at = offset + RECORD_HEADER_SIZE;
+        for (int i = 0; i < size; ++i)
+            for (int j = 0; j < size; ++j)
+                if (buffer.get(at++) != puzzle.getSquare(i, j)) return false;
+        return true;
+    }
+
+    // true iff the records at offsets a and b hold the same puzzle
+    private static boolean samePuzzle(MappedByteBuffer buffer, int a, int b) {
+        int dim = buffer.get(a + 8);
+        if (buffer.get(b + 8) != dim) return false;
+        for (int k = 0; k < squares(dim); ++k)
+            if (buffer.get(a + RECORD_HEADER_SIZE + k) != buffer.get(b + RECORD_HEADER_SIZE + k))
+                return false;
+        return true;
+    }
+
+    /**
+     * Point the index of s at the record at offset, replacing the slot of
+     * an earlier record of the same puzzle. Called by the writer only.
+     */
+    private static void index(State s, int offset) {
+        MappedByteBuffer buffer = s.buffer;
+        ++s.records;
+        if (2 * (s.live + 1) > s.index.length()) grow(s);
+        AtomicLongArray index = s.index;
+        int key = (int) (hash(buffer, offset) >>> 32);
+        long entry = ((long) key << 32) | offset;
+        int mask = index.length() - 1;
+        for (int slot = key & mask; ; slot = (slot + 1) & mask) {
+            long current = index.get(slot);
+            if (current == 0) {
+                ++s.live;
+                index.set(slot, entry);
+                return;
+            }
+            if ((int) (current >>> 32) == key && samePuzzle(buffer, (int) current, offset)) {
+                index.set(slot, entry);
+                return;
+            }
+        }
+    }
+
+    // double the index of s and publish the new one
+    private static void grow(State s) {
+        AtomicLongArray old = s.index;
+        AtomicLongArray index = new AtomicLongArray(2 * old.length());
+        int mask = index.length() - 1;
+        for (int i = 0; i < old.length(); ++i) {
+            long entry = old.get(i);
+            if (entry == 0) continue;
+            int slot = (int) (entry >>> 32) & mask;
+            while (index.get(slot) != 0)
+                slot = (slot + 1) & mask;
+            index.set(slot, entry);
+        }
+        s.index = index;
+    }
+}
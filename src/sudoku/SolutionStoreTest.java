@@ -0,0 +1,140 @@
+package sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sudoku.Sudoku.ParseException;
+
+public class SolutionStoreTest {
+    private File file;
+
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("solutions", ".store");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+        new File(file.getPath() + ".compact").delete();
+    }
+
+    @Test
+    public void putAndReopenTest() throws IOException, ParseException {
+        Sudoku puzzle = Sudoku.fromFile(3, "samples/sudoku_easy.txt");
+        Sudoku solution = new SolutionCache().solve(puzzle);
+        Sudoku unsolvable = new Sudoku(2, new int[][] {
+                { 1, 1, 0, 0 }, { 0, 0, 0, 0 }, { 0, 0, 0, 0 }, { 0, 0, 0, 0 } });
+
+        SolutionStore store = new SolutionStore(file);
+        int[] squares = new int[81];
+        assertEquals(SolutionStore.ABSENT, store.lookup(puzzle, squares));
+        store.put(puzzle, solution);
+        store.put(unsolvable, null);
+        assertEquals(SolutionStore.SOLVED, store.lookup(puzzle, squares));
+        assertArrayEquals(SolutionCache.cells(solution), squares);
+        store.close();
+
+        store = new SolutionStore(file);
+        assertEquals(2, store.size());
+        assertEquals(SolutionStore.UNSOLVABLE, store.lookup(unsolvable, squares));
+        assertEquals(solution.toString(), store.get(puzzle).toString());
+        assertFalse(store.contains(new Sudoku(2)));
+        store.close();
+    }
+
+    @Test
+    public void foreignFileIsLeftAloneTest() throws IOException {
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.writeBytes("not a store, but somebody's notes\n");
+        raw.close();
+        long length = file.length();
+        try {
+            new SolutionStore(file).close();
+            fail("opened a file that is not a store");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(length, file.length());
+    }
+
+    @Test
+    public void tornRecordIsDroppedTest() throws IOException {
+        SolutionStore store = new SolutionStore(file);
+        Sudoku first = grid(new Random(1));
+        Sudoku second = grid(new Random(2));
+        store.put(first, null);
+        long firstEnd = store.getBytesUsed();
+        store.put(second, null);
+        store.close();
+
+        // corrupt a square of the second record, as a torn write would
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.seek(firstEnd + 12);
+        raw.write(99);
+        raw.close();
+
+        store = new SolutionStore(file);
+        assertTrue(store.contains(first));
+        assertFalse(store.contains(second));
+        assertEquals(firstEnd, store.getBytesUsed());
+        store.close();
+    }
+
+    @Test
+    public void supersedeAndCompactTest() throws IOException {
+        SolutionStore store = new SolutionStore(file);
+        store.setForceOnAppend(false);
+        Random random = new Random(3);
+        Sudoku[] puzzles = new Sudoku[3000];
+        for (int i = 0; i < puzzles.length; ++i) {
+            puzzles[i] = grid(random);
+            store.put(puzzles[i], null);
+        }
+        int distinct = store.size();
+        Sudoku solution = new SolutionCache().solve(new Sudoku(2));
+        store.put(puzzles[0], solution);
+        assertEquals(distinct, store.size());
+        assertEquals(puzzles.length + 1, store.getRecords());
+        long before = store.getBytesUsed();
+
+        store.compact();
+        assertEquals(distinct, store.size());
+        assertEquals(distinct, store.getRecords());
+        assertTrue(store.getBytesUsed() < before);
+        for (Sudoku p : puzzles)
+            assertTrue(store.contains(p));
+        assertEquals(solution.toString(), store.get(puzzles[0]).toString());
+        store.close();
+
+        store = new SolutionStore(file);
+        assertEquals(distinct, store.size());
+        store.close();
+    }
+
+    // a 4x4 grid with random givens; not necessarily consistent
+    private static Sudoku grid(Random random) {
+        int[][] square = new int[4][4];
+        for (int i = 0; i < 4; ++i)
+            for (int j = 0; j < 4; ++j)
+                square[i][j] = random.nextInt(5);
+        return new Sudoku(2, square);
+    }
+}
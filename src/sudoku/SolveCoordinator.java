@@ -0,0 +1,549 @@
+package sudoku;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shards puzzles across worker processes over local sockets, so that
+ * batch throughput is not capped by one JVM and its collector.
+ *
+ * The coordinator listens on a socket; each SolveWorker connects to it and
+ * says HELLO (see ClusterProtocol). solve cuts its puzzles into batches of
+ * up to batchSize puzzles of one dim and puts them on a shared queue.
+ * Every worker connection has a sender thread that takes the next batch
+ * when the worker has fewer than maxInFlight batches unanswered, so a slow
+ * worker is sent less and a fast one more, and no worker holds more than
+ * maxInFlight * batchSize puzzles at once; and a receiver thread that
+ * writes the results of each answered batch into the caller's array at
+ * the batch's place, so results come back in input order whichever worker
+ * solved them.
+ *
+ * If a worker's connection fails or closes, because its process crashed
+ * or was killed, the batches it had not answered go back to the front of
+ * the queue for the other workers. A batch that has been lost with
+ * maxAttempts workers is taken to crash its workers and fails its solve
+ * with an IOException rather than going on to the rest. A worker that
+ * holds batches but answers none for batchTimeoutMillis is taken to be
+ * hung and is dropped the same way; workers also bound their own search
+ * (see SolveWorker), so a hard puzzle fails its solve instead of holding
+ * a worker forever.
+ *
+ * Start workers with launchWorker, or run "java sudoku.SolveWorker host
+ * port" by hand; everything can run on one machine on localhost.
+ */
+public final class SolveCoordinator {
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 2;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final int DEFAULT_BATCH_TIMEOUT_MILLIS = 60000;
+    // how long a new connection has to say HELLO
+    private static final int HELLO_TIMEOUT_MILLIS = 10000;
+    // how often an idle sender checks whether it should stop
+    private static final long POLL_MILLIS = 100;
+
+    private final ServerSocket listener;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private int batchTimeoutMillis = DEFAULT_BATCH_TIMEOUT_MILLIS;
+    private final LinkedBlockingDeque<Batch> pending = new LinkedBlockingDeque<Batch>();
+    // guarded by itself
+    private final List<Connection> connections = new ArrayList<Connection>();
+    private final AtomicInteger nextBatchId = new AtomicInteger();
+    private final AtomicInteger nextConnectionId = new AtomicInteger();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong lostWorkers = new AtomicLong();
+    private Thread acceptor;
+    private volatile boolean running = false;
+
+    /**
+     * One call of solve: where its results go, and how many batches are left
+     */
+    private static final class Run {
+        final Sudoku[] solutions;
+        // guarded by this
+        int remaining;
+        String failure = null;
+
+        Run(int puzzles, int batches) {
+            this.solutions = new Sudoku[puzzles];
+            this.remaining = batches;
+        }
+
+        synchronized void batchDone() {
+            --remaining;
+            notifyAll();
+        }
+
+        synchronized void fail(String message) {
+            if (failure == null) failure = message;
+            notifyAll();
+        }
+
+        synchronized boolean failed() {
+            return failure != null;
+        }
+    }
+
+    /**
+     * Puzzles first .. first+count-1 of a run, all of one dim, packed once
+     * as a BATCH body so that a retry sends the same bytes
+     */
+    private static final class Batch {
+        final int id;
+        final Run run;
+        final int first;
+        final int dim;
+        final int count;
+        final byte[] body;
+        // number of workers lost while holding this batch; guarded by the
+        // connection holding it
+        int attempts = 0;
+
+        Batch(int id, Run run, int first, int dim, int[][] grids) {
+            this.id = id;
+            this.run = run;
+            this.first = first;
+            this.dim = dim;
+            this.count = grids.length;
+            this.body = new byte[ClusterProtocol.batchBytes(dim, count)];
+            ClusterProtocol.packBatch(dim, grids, body);
+        }
+    }
+
+    /**
+     * Make a coordinator listening on address (port 0 for any free port).
+     * @throws IOException if the address cannot be bound
+     */
+    public SolveCoordinator(InetSocketAddress address) throws IOException {
+        this.listener = new ServerSocket();
+        listener.bind(address);
+    }
+
+    /**
+     * Set the largest number of puzzles sent to a worker in one frame.
+     * Requires: batchSize >= 1
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set the number of batches a worker may hold unanswered.
+     * Requires: maxInFlight >= 1, start not yet called
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Set the number of workers a batch may be lost with before its solve
+     * fails.
+     * Requires: maxAttempts >= 1
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Set how long a worker holding batches may go without answering one
+     * before it is dropped and its batches are sent to others.
+     * Requires: millis >= 1; no worker has connected yet
+     */
+    public void setBatchTimeoutMillis(int millis) {
+        this.batchTimeoutMillis = millis;
+    }
+
+    /**
+     * @return the port the coordinator listens on
+     */
+    public int getPort() {
+        return listener.getLocalPort();
+    }
+
+    /**
+     * @return number of workers connected
+     */
+    public int getWorkers() {
+        synchronized (connections) {
+            return connections.size();
+        }
+    }
+
+    /**
+     * @return number of batches sent again after a worker was lost
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * @return number of worker connections that failed or closed while
+     *         the coordinator was running
+     */
+    public long getLostWorkers() {
+        return lostWorkers.get();
+    }
+
+    /**
+     * Start accepting workers.
+     */
+    public synchronized void start() {
+        running = true;
+        acceptor = new Thread(new Runnable() {
+            public void run() {
+                acceptLoop();
+            }
+        }, "cluster-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Stop: tell every worker BYE, close the connections, and fail the
+     * solves still waiting.
+     */
+    public synchronized void stop() {
+        running = false;
+        try {
+            listener.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+        List<Connection> open;
+        synchronized (connections) {
+            open = new ArrayList<Connection>(connections);
+        }
+        for (Connection connection : open)
+            connection.close();
+        for (Batch batch; (batch = pending.poll()) != null;)
+            batch.run.fail("coordinator stopped");
+    }
+
+    /**
+     * Start a worker process on this machine, running SolveWorker with the
+     * class path and java of this process, its output copied to this
+     * process's standard output by a daemon thread, so that the pipe never
+     * fills and blocks the worker.
+     * @return the process
+     * @throws IOException if it cannot be started
+     */
+    public Process launchWorker() throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                SolveWorker.class.getName(), "127.0.0.1", Integer.toString(getPort()));
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        final InputStream output = process.getInputStream();
+        Thread drain = new Thread(new Runnable() {
+            public void run() {
+                byte[] buffer = new byte[4096];
+                try {
+                    for (int n; (n = output.read(buffer)) >= 0;) {
+                        System.out.write(buffer, 0, n);
+                        System.out.flush();
+                    }
+                } catch (IOException e) {
+                    // the worker is gone
+                }
+            }
+        }, "cluster-worker-output");
+        drain.setDaemon(true);
+        drain.start();
+        return process;
+    }
+
+    /**
+     * Wait until at least n workers are connected.
+     * @return true iff they are, false if timeoutMillis passed first
+     */
+    public boolean awaitWorkers(int n, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (connections) {
+            while (connections.size() < n) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) return false;
+                connections.wait(wait);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solve puzzles on the workers, with no time limit: if no worker ever
+     * connects, this waits until the coordinator is stopped.
+     * Requires: start has been called; every puzzle is a classic puzzle of
+     *           dim at most 5
+     * @return as solve(puzzles, timeoutMillis)
+     * @throws IOException as solve(puzzles, timeoutMillis), except for the
+     *         timeout
+     * @throws IllegalArgumentException if a puzzle is not classic or its
+     *         dim is too large
+     */
+    public Sudoku[] solve(Sudoku[] puzzles) throws IOException {
+        return solve(puzzles, 0);
+    }
+
+    /**
+     * Solve puzzles on the workers, waiting for them to connect if there
+     * are none yet, for at most timeoutMillis, or with no limit if
+     * timeoutMillis is 0.
+     * Requires: start has been called; every puzzle is a classic puzzle of
+     *           dim at most 5; timeoutMillis >= 0
+     * @return solutions[k] is the solution of puzzles[k], or null if it has
+     *         none; a puzzle with several solutions gets one of them
+     * @throws IOException if the time ran out, a batch was lost with
+     *         maxAttempts workers, a worker could not solve a puzzle within
+     *         its node limit, or the coordinator stopped
+     * @throws IllegalArgumentException if a puzzle is not classic or its
+     *         dim is too large
+     */
+    public Sudoku[] solve(Sudoku[] puzzles, long timeoutMillis) throws IOException {
+        for (Sudoku puzzle : puzzles)
+            if (!puzzle.getRegions().isClassic() || puzzle.getDim() > SolutionCounter.MAX_DIM)
+                throw new IllegalArgumentException("workers solve classic puzzles of dim <= "
+                        + SolutionCounter.MAX_DIM);
+        List<int[]> starts = new ArrayList<int[]>();
+        for (int first = 0; first < puzzles.length;) {
+            int dim = puzzles[first].getDim(), last = first + 1;
+            while (last < puzzles.length && last - first < batchSize && puzzles[last].getDim() == dim)
+                ++last;
+            starts.add(new int[] { first, last });
+            first = last;
+        }
+        Run run = new Run(puzzles.length, starts.size());
+        for (int[] range : starts) {
+            int dim = puzzles[range[0]].getDim();
+            int[][] grids = new int[range[1] - range[0]][];
+            for (int k = 0; k < grids.length; ++k)
+                grids[k] = SolutionCache.cells(puzzles[range[0] + k]);
+            pending.add(new Batch(nextBatchId.getAndIncrement(), run, range[0], dim, grids));
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (run) {
+            try {
+                while (run.remaining > 0 && run.failure == null) {
+                    if (timeoutMillis == 0) {
+                        run.wait();
+                        continue;
+                    }
+                    long wait = deadline - System.currentTimeMillis();
+                    // batches of a failed run are dropped by the senders
+                    if (wait <= 0) run.failure = "timed out after " + timeoutMillis + "ms";
+                    else run.wait(wait);
+                }
+            } catch (InterruptedException e) {
+                run.failure = "interrupted";
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while solving");
+            }
+            if (run.failure != null) throw new IOException(run.failure);
+        }
+        return run.solutions;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = listener.accept();
+            } catch (IOException e) {
+                // closed by stop, or failed; either way no more workers
+                return;
+            }
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(HELLO_TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                ClusterProtocol.Frame hello = ClusterProtocol.read(in);
+                if (hello == null || hello.type != ClusterProtocol.HELLO || hello.id != ClusterProtocol.VERSION)
+                    throw new IOException("bad hello");
+                // a receive that times out with batches held means a hung worker
+                socket.setSoTimeout(batchTimeoutMillis);
+                new Connection(socket, in).start();
+            } catch (IOException e) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // dropping it
+                }
+            }
+        }
+    }
+
+    /**
+     * One worker's connection, with a thread sending it batches and a
+     * thread reading its results.
+     */
+    private final class Connection {
+        private final int id = nextConnectionId.getAndIncrement();
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        // one permit per batch the worker may still be sent
+        private final Semaphore slots = new Semaphore(maxInFlight);
+        // batches sent and not yet answered, in the order sent
+        private final ConcurrentLinkedQueue<Batch> inFlight = new ConcurrentLinkedQueue<Batch>();
+        // guarded by this
+        private boolean alive = true;
+
+        Connection(Socket socket, DataInputStream in) throws IOException {
+            this.socket = socket;
+            this.in = in;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void start() {
+            synchronized (connections) {
+                connections.add(this);
+                connections.notifyAll();
+            }
+            Thread sender = new Thread(new Runnable() {
+                public void run() {
+                    sendLoop();
+                }
+            }, "cluster-sender-" + id);
+            Thread receiver = new Thread(new Runnable() {
+                public void run() {
+                    receiveLoop();
+                }
+            }, "cluster-receiver-" + id);
+            sender.setDaemon(true);
+            receiver.setDaemon(true);
+            sender.start();
+            receiver.start();
+        }
+
+        private void sendLoop() {
+            try {
+                while (running && isAlive()) {
+                    if (!slots.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) continue;
+                    Batch batch = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (batch == null || batch.run.failed()) {
+                        slots.release();
+                        if (batch != null) batch.run.batchDone();
+                        continue;
+                    }
+                    synchronized (this) {
+                        if (!alive) {
+                            pending.addFirst(batch);
+                            return;
+                        }
+                        inFlight.add(batch);
+                    }
+                    synchronized (out) {
+                        ClusterProtocol.write(out, ClusterProtocol.BATCH, batch.id, batch.body, batch.body.length);
+                    }
+                }
+            } catch (InterruptedException e) {
+                lose();
+            } catch (IOException e) {
+                lose();
+            }
+        }
+
+        private void receiveLoop() {
+            try {
+                while (true) {
+                    ClusterProtocol.Frame frame;
+                    try {
+                        frame = ClusterProtocol.read(in);
+                    } catch (SocketTimeoutException e) {
+                        // idle with nothing to answer is fine; holding batches is not
+                        if (inFlight.isEmpty()) continue;
+                        break;
+                    }
+                    if (frame == null) break;
+                    Batch batch = inFlight.peek();
+                    if (frame.type != ClusterProtocol.RESULT || batch == null || frame.id != batch.id)
+                        throw new IOException("unexpected frame from worker");
+                    byte[] status = new byte[batch.count];
+                    int[][] grids = new int[batch.count][];
+                    ClusterProtocol.unpackResult(frame.body, batch.dim, status, grids);
+                    for (int k = 0; k < batch.count; ++k) {
+                        if (status[k] == ClusterProtocol.SOLVED)
+                            batch.run.solutions[batch.first + k] = new Sudoku(batch.dim, grids[k]);
+                        else if (status[k] == ClusterProtocol.LIMIT)
+                            batch.run.fail("puzzle " + (batch.first + k) + " reached the worker's node limit");
+                        else if (status[k] == ClusterProtocol.ERROR)
+                            batch.run.fail("a worker could not solve puzzle " + (batch.first + k));
+                    }
+                    inFlight.poll();
+                    batch.run.batchDone();
+                    slots.release();
+                }
+            } catch (IOException e) {
+                // lost below
+            }
+            lose();
+        }
+
+        private synchronized boolean isAlive() {
+            return alive;
+        }
+
+        /**
+         * Drop the connection and requeue the batches it held, if not done
+         * already.
+         */
+        private void lose() {
+            synchronized (this) {
+                if (!alive) return;
+                alive = false;
+            }
+            synchronized (connections) {
+                connections.remove(this);
+            }
+            if (running) lostWorkers.incrementAndGet();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // lost anyway
+            }
+            // wake the sender if it waits for a slot
+            slots.release(maxInFlight);
+            for (Batch batch; (batch = inFlight.poll()) != null;) {
+                if (++batch.attempts >= maxAttempts) {
+                    batch.run.fail("a batch was lost with " + batch.attempts + " workers");
+                } else if (!running) {
+                    batch.run.fail("coordinator stopped");
+                } else {
+                    retries.incrementAndGet();
+                    pending.addFirst(batch);
+                }
+            }
+        }
+
+        /**
+         * Say BYE and drop the connection.
+         */
+        void close() {
+            try {
+                synchronized (out) {
+                    ClusterProtocol.write(out, ClusterProtocol.BYE, 0, new byte[0], 0);
+                }
+            } catch (IOException e) {
+                // closing anyway
+            }
+            lose();
+        }
+    }
+}
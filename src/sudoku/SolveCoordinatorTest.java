@@ -0,0 +1,252 @@
+package sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SolveCoordinatorTest {
+    private SolveCoordinator coordinator;
+    private final List<Thread> workers = new ArrayList<Thread>();
+
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Before
+    public void startCoordinator() throws IOException {
+        coordinator = new SolveCoordinator(new InetSocketAddress("127.0.0.1", 0));
+        coordinator.setBatchSize(8);
+        coordinator.start();
+    }
+
+    @After
+    public void stopCoordinator() throws InterruptedException {
+        coordinator.stop();
+        for (Thread worker : workers)
+            worker.join(10000);
+    }
+
+    // a SolveWorker on a thread of this process
+    private void startWorker() {
+        startWorker(SolveWorker.DEFAULT_NODE_LIMIT);
+    }
+
+    private void startWorker(long nodeLimit) {
+        final SolveWorker worker = new SolveWorker("127.0.0.1", coordinator.getPort());
+        worker.setNodeLimit(nodeLimit);
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    worker.run();
+                } catch (IOException e) {
+                    // stopped
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        workers.add(thread);
+    }
+
+    // a worker that says HELLO, takes one batch and drops the connection
+    // without answering, as if its process had crashed
+    private void startCrashingWorker() {
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Socket socket = new Socket("127.0.0.1", coordinator.getPort());
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    ClusterProtocol.write(out, ClusterProtocol.HELLO, ClusterProtocol.VERSION, new byte[0], 0);
+                    ClusterProtocol.read(new DataInputStream(socket.getInputStream()));
+                    socket.close();
+                } catch (IOException e) {
+                    // crashed anyway
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        workers.add(thread);
+    }
+
+    // a worker that says HELLO, takes one batch and never answers, as if
+    // its process had hung
+    private void startHungWorker() {
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Socket socket = new Socket("127.0.0.1", coordinator.getPort());
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    ClusterProtocol.write(out, ClusterProtocol.HELLO, ClusterProtocol.VERSION, new byte[0], 0);
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    ClusterProtocol.read(in);
+                    // hold the batch until the coordinator drops us
+                    while (ClusterProtocol.read(in) != null)
+                        ;
+                    socket.close();
+                } catch (IOException e) {
+                    // dropped
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        workers.add(thread);
+    }
+
+    private static Sudoku[] puzzles(int n) {
+        Generator generator = new Generator(3, 30, Generator.Pattern.NONE);
+        Sudoku[] result = new Sudoku[n];
+        for (int k = 0; k < n; ++k)
+            result[k] = generator.generate(k);
+        return result;
+    }
+
+    private static void assertSolves(Sudoku[] puzzles, Sudoku[] solutions) {
+        assertEquals(puzzles.length, solutions.length);
+        for (int k = 0; k < puzzles.length; ++k) {
+            int[] givens = SolutionCache.cells(puzzles[k]);
+            int[] grid = SolutionCache.cells(solutions[k]);
+            assertTrue(RegionsTest.satisfies(puzzles[k].getRegions(), grid));
+            for (int p = 0; p < grid.length; ++p)
+                assertTrue(givens[p] == 0 || givens[p] == grid[p]);
+        }
+    }
+
+    @Test
+    public void solveTest() throws Exception {
+        startWorker();
+        startWorker();
+        assertTrue(coordinator.awaitWorkers(2, 10000));
+        Sudoku[] puzzles = puzzles(40);
+        assertSolves(puzzles, coordinator.solve(puzzles));
+
+        // mixed dims, and a puzzle with no solution, keep their places
+        Sudoku small = new Sudoku(2, new int[] { 1, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+        Sudoku clash = new Sudoku(2, new int[] { 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+        Sudoku[] mixed = { puzzles[0], small, clash, puzzles[1] };
+        Sudoku[] solutions = coordinator.solve(mixed);
+        assertSolves(new Sudoku[] { puzzles[0], small, puzzles[1] },
+                new Sudoku[] { solutions[0], solutions[1], solutions[3] });
+        assertNull(solutions[2]);
+        assertEquals(0, coordinator.solve(new Sudoku[0]).length);
+        assertEquals(0, coordinator.getRetries());
+    }
+
+    @Test
+    public void crashRetryTest() throws Exception {
+        startCrashingWorker();
+        assertTrue(coordinator.awaitWorkers(1, 10000));
+        final Sudoku[] puzzles = puzzles(30);
+        final Sudoku[][] solutions = new Sudoku[1][];
+        Thread caller = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    solutions[0] = coordinator.solve(puzzles);
+                } catch (IOException e) {
+                    // solutions stay null
+                }
+            }
+        });
+        caller.start();
+        // the only worker crashes with a batch, which waits for the next
+        while (coordinator.getLostWorkers() == 0)
+            Thread.sleep(10);
+        startWorker();
+        caller.join(30000);
+        assertSolves(puzzles, solutions[0]);
+        assertEquals(1, coordinator.getLostWorkers());
+        assertTrue(coordinator.getRetries() >= 1);
+    }
+
+    @Test(expected=IOException.class)
+    public void attemptsExhaustedTest() throws Exception {
+        coordinator.setMaxAttempts(2);
+        coordinator.setBatchSize(100);
+        startCrashingWorker();
+        startCrashingWorker();
+        coordinator.solve(puzzles(4));
+    }
+
+    @Test
+    public void hungWorkerTest() throws Exception {
+        coordinator.setBatchTimeoutMillis(300);
+        startHungWorker();
+        assertTrue(coordinator.awaitWorkers(1, 10000));
+        final Sudoku[] puzzles = puzzles(30);
+        final Sudoku[][] solutions = new Sudoku[1][];
+        Thread caller = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    solutions[0] = coordinator.solve(puzzles, 30000);
+                } catch (IOException e) {
+                    // solutions stay null
+                }
+            }
+        });
+        caller.start();
+        // the only worker is dropped after the timeout, and its batches wait
+        while (coordinator.getLostWorkers() == 0)
+            Thread.sleep(10);
+        startWorker();
+        caller.join(30000);
+        assertSolves(puzzles, solutions[0]);
+        assertEquals(1, coordinator.getLostWorkers());
+        assertTrue(coordinator.getRetries() >= 1);
+    }
+
+    @Test(expected=IOException.class)
+    public void noWorkersTimeoutTest() throws Exception {
+        coordinator.solve(puzzles(4), 200);
+    }
+
+    @Test
+    public void nodeLimitTest() throws Exception {
+        startWorker(5);
+        assertTrue(coordinator.awaitWorkers(1, 10000));
+        try {
+            coordinator.solve(new Sudoku[] { new Sudoku(2, new int[16]) }, 30000);
+            fail("expected the node limit");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("node limit"));
+        }
+        // a clash is found well within the limit
+        Sudoku clash = new Sudoku(2, new int[] { 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+        assertNull(coordinator.solve(new Sudoku[] { clash }, 30000)[0]);
+    }
+
+    @Test
+    public void processWorkersTest() throws Exception {
+        List<Process> processes = new ArrayList<Process>();
+        for (int i = 0; i < 2; ++i)
+            processes.add(coordinator.launchWorker());
+        try {
+            assertTrue(coordinator.awaitWorkers(2, 60000));
+            Sudoku[] puzzles = puzzles(100);
+            assertSolves(puzzles, coordinator.solve(puzzles));
+            // a killed worker's batches go to the other
+            processes.get(0).destroy();
+            processes.get(0).waitFor();
+            assertSolves(puzzles, coordinator.solve(puzzles));
+        } finally {
+            coordinator.stop();
+            for (Process process : processes)
+                process.waitFor();
+        }
+        assertEquals(0, processes.get(1).exitValue());
+    }
+}
@@ -0,0 +1,354 @@
+package sudoku;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP/1.1 service that solves puzzles.
+ *
+ * POST /solve with a body of one puzzle per line streams back one line per
+ * puzzle, in order, as each is solved: the solution, "unsolvable", or
+ * "error: " and a message. A puzzle line holds the n*n squares of an n x n
+ * grid row by row, '.' or '0' for a blank, '1'-'9' and then 'A'-'Z' for
+ * digits, so a standard puzzle is 81 characters.
+ *
+ * GET /metrics returns counters, throughput and request latency
+ * percentiles as lines of "name value".
+ *
+ * Puzzles from all requests go into one queue. A batcher thread takes up
+ * to maxBatch of them, waiting at most maxDelay for a batch to fill, and
+ * hands each batch to a worker pool, so that concurrent small requests
+ * share the cost of a hand-off. Workers solve with SolutionCounter's
+ * backtracking search, which takes microseconds for dim <= 3; puzzles of
+ * dim > 5 are rejected. The search of one puzzle stops after nodeLimit
+ * nodes and answers "error: limit", so that a hard or sparse large grid
+ * cannot hold a worker forever. Puzzles still waiting when the server
+ * stops are answered "error: server stopped".
+ */
+public class SolveServer {
+    public static final int DEFAULT_MAX_BATCH = 64;
+    public static final long DEFAULT_MAX_DELAY_MICROS = 200;
+    public static final long DEFAULT_NODE_LIMIT = 1 << 20;
+
+    private final HttpServer server;
+    private final int workers;
+    private int maxBatch = DEFAULT_MAX_BATCH;
+    private long maxDelayMicros = DEFAULT_MAX_DELAY_MICROS;
+    private long nodeLimit = DEFAULT_NODE_LIMIT;
+    private final BlockingQueue<Job> queue = new LinkedBlockingQueue<Job>();
+    private final ServerMetrics metrics = new ServerMetrics();
+    private ExecutorService pool;
+    private ExecutorService handlers;
+    private Thread batcher;
+    private volatile boolean running = false;
+
+    /**
+     * One puzzle to solve, and its result line once solved
+     */
+    private static final class Job {
+        final String line;
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile String result;
+
+        Job(String line) {
+            this.line = line;
+        }
+    }
+
+    /**
+     * Make a server on address (port 0 for any free port) that solves on
+     * workers threads.
+     * Requires: workers >= 1
+     * @throws IOException if the address cannot be bound
+     */
+    public SolveServer(InetSocketAddress address, int workers) throws IOException {
+        this.server = HttpServer.create(address, 0);
+        this.workers = workers;
+        server.createContext("/solve", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                handleSolve(exchange);
+            }
+        });
+        server.createContext("/metrics", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = metrics.format().getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+    }
+
+    /**
+     * Set the largest number of puzzles solved as one batch.
+     * Requires: maxBatch >= 1, start not yet called
+     */
+    public void setMaxBatch(int maxBatch) {
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Set how long the batcher waits for more puzzles to fill a batch; 0
+     * hands off whatever is queued at once.
+     * Requires: micros >= 0, start not yet called
+     */
+    public void setMaxDelayMicros(long micros) {
+        this.maxDelayMicros = micros;
+    }
+
+    /**
+     * Set the number of search nodes a puzzle may take before it is
+     * answered "error: limit".
+     * Requires: nodes >= 0, start not yet called
+     */
+    public void setNodeLimit(long nodes) {
+        this.nodeLimit = nodes;
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the text served at /metrics
+     */
+    public String getMetrics() {
+        return metrics.format();
+    }
+
+    /**
+     * Start serving. Connections are handled on a cached thread pool, since
+     * a handler mostly waits for its puzzles.
+     */
+    public synchronized void start() {
+        running = true;
+        pool = Executors.newFixedThreadPool(workers);
+        handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        batcher = new Thread(new Runnable() {
+            public void run() {
+                batchLoop();
+            }
+        }, "solve-batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+        server.start();
+    }
+
+    /**
+     * Stop serving, waiting up to delaySeconds for exchanges in progress.
+     * Puzzles not yet handed to a worker are answered "error: server
+     * stopped"; those being solved finish.
+     */
+    public synchronized void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        running = false;
+        batcher.interrupt();
+        pool.shutdown();
+        handlers.shutdown();
+        abandonQueued();
+    }
+
+    // answer every queued puzzle "error: server stopped"
+    private void abandonQueued() {
+        List<Job> left = new ArrayList<Job>();
+        queue.drainTo(left);
+        abandon(left);
+    }
+
+    private static void abandon(List<Job> jobs) {
+        for (Job job : jobs) {
+            job.result = "error: server stopped";
+            job.done.countDown();
+        }
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        long started = System.nanoTime();
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        List<Job> jobs = new ArrayList<Job>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.length() == 0) continue;
+            Job job = new Job(line);
+            jobs.add(job);
+            queue.add(job);
+        }
+        // stopped while reading: nobody will take these
+        if (!running) abandonQueued();
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        // length 0: chunked, so each line goes out as soon as it is solved
+        exchange.sendResponseHeaders(200, 0);
+        Writer out = new OutputStreamWriter(exchange.getResponseBody(), "UTF-8");
+        try {
+            for (Job job : jobs) {
+                job.done.await();
+                out.write(job.result);
+                out.write("\n");
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            out.close();
+            metrics.recordRequest(System.nanoTime() - started);
+        }
+    }
+
+    private void batchLoop() {
+        try {
+            while (running) {
+                final List<Job> batch = new ArrayList<Job>(maxBatch);
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatch - 1);
+                long deadline = System.nanoTime() + maxDelayMicros * 1000;
+                while (batch.size() < maxBatch) {
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0) break;
+                    Job next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+                try {
+                    pool.execute(new Runnable() {
+                        public void run() {
+                            solveBatch(batch);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // the pool was shut down by stop
+                    abandon(batch);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    // one counter per worker thread and dim, reused across batches
+    private static final ThreadLocal<SolutionCounter[]> COUNTERS = new ThreadLocal<SolutionCounter[]>() {
+        @Override
+        protected SolutionCounter[] initialValue() {
+            return new SolutionCounter[SolutionCounter.MAX_DIM + 1];
+        }
+    };
+
+    private void solveBatch(List<Job> batch) {
+        int unsolvable = 0, errors = 0;
+        try {
+            for (Job job : batch) {
+                try {
+                    int[] cells = parseLine(job.line);
+                    int dim = dimOf(cells.length);
+                    if (dim > SolutionCounter.MAX_DIM)
+                        throw new IllegalArgumentException("dim " + dim + " is too large");
+                    SolutionCounter[] counters = COUNTERS.get();
+                    if (counters[dim] == null) counters[dim] = new SolutionCounter(dim);
+                    SolutionCounter counter = counters[dim];
+                    counter.setNodeLimit(nodeLimit);
+                    if (counter.fill(cells, new Random(0))) {
+                        job.result = formatLine(cells);
+                    } else if (counter.limitReached()) {
+                        job.result = "error: limit";
+                        ++errors;
+                    } else {
+                        job.result = "unsolvable";
+                        ++unsolvable;
+                    }
+                } catch (IllegalArgumentException e) {
+                    job.result = "error: " + e.getMessage();
+                    ++errors;
+                }
+            }
+        } finally {
+            // release every job even if solving threw, so no request waits
+            // forever; count the batch first, so a client that reads
+            // /metrics after its response sees its puzzles
+            for (Job job : batch) {
+                if (job.result == null) {
+                    job.result = "error: internal error";
+                    ++errors;
+                }
+            }
+            metrics.recordBatch(batch.size(), unsolvable, errors);
+            for (Job job : batch)
+                job.done.countDown();
+        }
+    }
+
+    /**
+     * @return the dim of a grid of squares squares
+     * @throws IllegalArgumentException if squares is not the fourth power
+     *         of an integer
+     */
+    static int dimOf(int squares) {
+        int dim = (int) Math.round(Math.sqrt(Math.sqrt(squares)));
+        if (dim < 1 || dim * dim * dim * dim != squares)
+            throw new IllegalArgumentException("a puzzle line needs n^4 squares, not " + squares);
+        return dim;
+    }
+
+    /**
+     * @return the squares of a puzzle line, 0 for a blank
+     * @throws IllegalArgumentException if the line has a bad character or
+     *         length
+     */
+    static int[] parseLine(String line) {
+        int[] cells = new int[line.length()];
+        int size = (int) Math.round(Math.sqrt(line.length()));
+        for (int k = 0; k < cells.length; ++k) {
+            char ch = line.charAt(k);
+            int d;
+            if (ch == '.' || ch == '0') d = 0;
+            else if (ch >= '1' && ch <= '9') d = ch - '0';
+            else if (ch >= 'A' && ch <= 'Z') d = ch - 'A' + 10;
+            else throw new IllegalArgumentException("bad square '" + ch + "'");
+            if (d > size) throw new IllegalArgumentException("digit '" + ch + "' too large");
+            cells[k] = d;
+        }
+        dimOf(cells.length);
+        return cells;
+    }
+
+    /**
+     * @return the puzzle line of cells
+     */
+    static String formatLine(int[] cells) {
+        StringBuilder result = new StringBuilder(cells.length);
+        for (int d : cells)
+            result.append(d == 0 ? '.' : d <= 9 ? (char) ('0' + d) : (char) ('A' + d - 10));
+        return result.toString();
+    }
+}
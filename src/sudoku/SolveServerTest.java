@@ -0,0 +1,121 @@
+package sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SolveServerTest {
+    private SolveServer server;
+
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        server = new SolveServer(new InetSocketAddress("127.0.0.1", 0), 2);
+        server.setMaxBatch(4);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void batchTest() throws IOException {
+        Generator generator = new Generator(3, 30, Generator.Pattern.NONE);
+        StringBuilder body = new StringBuilder();
+        List<int[]> puzzles = new ArrayList<int[]>();
+        for (long seed = 0; seed < 10; ++seed) {
+            int[] cells = SolutionCache.cells(generator.generate(seed));
+            puzzles.add(cells);
+            body.append(SolveServer.formatLine(cells)).append("\n");
+        }
+        body.append("11..\n");
+        body.append("12x4341221434321\n");
+
+        List<String> lines = post(body.toString());
+        assertEquals(12, lines.size());
+        for (int i = 0; i < 10; ++i) {
+            int[] solution = SolveServer.parseLine(lines.get(i));
+            for (int k = 0; k < solution.length; ++k) {
+                assertTrue(solution[k] != 0);
+                if (puzzles.get(i)[k] != 0) assertEquals(puzzles.get(i)[k], solution[k]);
+            }
+            assertEquals(1, new SolutionCounter(3).count(solution, 2));
+        }
+        assertTrue(lines.get(10).startsWith("error:"));
+        assertTrue(lines.get(11).startsWith("error:"));
+
+        String metrics = get("/metrics");
+        assertTrue(metrics, metrics.contains("puzzles_total 12"));
+        assertTrue(metrics, metrics.contains("errors_total 2"));
+        assertTrue(metrics, metrics.contains("latency_p99_us"));
+    }
+
+    @Test
+    public void unsolvableTest() throws IOException {
+        List<String> lines = post("11..............\n");
+        assertEquals(1, lines.size());
+        assertEquals("unsolvable", lines.get(0));
+    }
+
+    @Test
+    public void nodeLimitTest() throws IOException {
+        server.stop(0);
+        server = new SolveServer(new InetSocketAddress("127.0.0.1", 0), 1);
+        // a blank 4x4 grid takes a node per square
+        server.setNodeLimit(5);
+        server.start();
+        List<String> lines = post("................\n11..............\n");
+        assertEquals("error: limit", lines.get(0));
+        assertEquals("unsolvable", lines.get(1));
+    }
+
+    private List<String> post(String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://127.0.0.1:" + server.getPort() + "/solve").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        OutputStream out = connection.getOutputStream();
+        out.write(body.getBytes("UTF-8"));
+        out.close();
+        List<String> result = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null)
+            result.add(line);
+        reader.close();
+        return result;
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://127.0.0.1:" + server.getPort() + path).openConnection();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
+        StringBuilder result = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null)
+            result.append(line).append("\n");
+        reader.close();
+        return result.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package sudoku;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * A worker of a SolveCoordinator: connects to the coordinator, solves the
+ * batches of puzzles it sends and sends back their solutions, until the
+ * coordinator says BYE or the connection closes. See ClusterProtocol for
+ * the framing.
+ *
+ * Batches of 9x9 puzzles are solved by a BatchSolver, others by
+ * SolutionCounter's backtracking search, which stops after nodeLimit nodes
+ * and answers LIMIT, so that a hard or sparse large grid cannot hold the
+ * worker forever; a puzzle with several solutions gets one of them. Run
+ * one worker per process, with
+ *     java sudoku.SolveWorker host port
+ * so that each has its own heap and collector, or several in one process
+ * for testing. A SolveWorker is mutable and used by one thread.
+ */
+public final class SolveWorker {
+    public static final long DEFAULT_NODE_LIMIT = 1 << 20;
+
+    private final String host;
+    private final int port;
+    private final BatchSolver batchSolver = new BatchSolver();
+    private final SolutionCounter[] counters = new SolutionCounter[SolutionCounter.MAX_DIM + 1];
+    private long nodeLimit = DEFAULT_NODE_LIMIT;
+    private long solved = 0;
+
+    /**
+     * Make a worker for the coordinator listening on host and port.
+     */
+    public SolveWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Set the number of search nodes a puzzle of dim other than 3 may take
+     * before it is answered LIMIT.
+     * Requires: nodes >= 0, run not yet called
+     */
+    public void setNodeLimit(long nodes) {
+        this.nodeLimit = nodes;
+    }
+
+    /**
+     * Connect and serve the coordinator until it says BYE or closes the
+     * connection.
+     * @throws IOException if the connection cannot be made or fails, or
+     *         the coordinator breaks the protocol
+     */
+    public void run() throws IOException {
+        Socket socket = new Socket(host, port);
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            ClusterProtocol.write(out, ClusterProtocol.HELLO, ClusterProtocol.VERSION, new byte[0], 0);
+            while (true) {
+                ClusterProtocol.Frame frame = ClusterProtocol.read(in);
+                if (frame == null || frame.type == ClusterProtocol.BYE) return;
+                if (frame.type != ClusterProtocol.BATCH)
+                    throw new IOException("unexpected frame type " + frame.type);
+                int dim = frame.body.get(0);
+                byte[] result = solve(dim, ClusterProtocol.unpackBatch(frame.body));
+                ClusterProtocol.write(out, ClusterProtocol.RESULT, frame.id, result, result.length);
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * @return number of puzzles this worker has answered
+     */
+    public long getSolved() {
+        return solved;
+    }
+
+    // solve grids in place and pack the RESULT body
+    private byte[] solve(int dim, int[][] grids) {
+        int size = dim * dim;
+        byte[] status = new byte[grids.length];
+        boolean[] valid = new boolean[grids.length];
+        for (int k = 0; k < grids.length; ++k) {
+            valid[k] = true;
+            for (int d : grids[k])
+                if (d > size) valid[k] = false;
+            if (!valid[k]) status[k] = ClusterProtocol.ERROR;
+        }
+        if (dim == 3) {
+            Sudoku[] puzzles = new Sudoku[grids.length];
+            for (int k = 0; k < grids.length; ++k)
+                puzzles[k] = new Sudoku(dim, valid[k] ? grids[k] : new int[grids[k].length]);
+            Sudoku[] solutions = batchSolver.solve(puzzles);
+            for (int k = 0; k < grids.length; ++k) {
+                if (!valid[k]) continue;
+                if (solutions[k] == null) status[k] = ClusterProtocol.UNSOLVABLE;
+                else solutions[k].getSquares(grids[k]);
+            }
+        } else {
+            if (counters[dim] == null) counters[dim] = new SolutionCounter(dim);
+            SolutionCounter counter = counters[dim];
+            counter.setNodeLimit(nodeLimit);
+            for (int k = 0; k < grids.length; ++k) {
+                if (!valid[k] || counter.fill(grids[k], null)) continue;
+                status[k] = counter.limitReached() ? ClusterProtocol.LIMIT : ClusterProtocol.UNSOLVABLE;
+            }
+        }
+        solved += grids.length;
+        return ClusterProtocol.packResult(dim, status, grids);
+    }
+
+    /**
+     * Run a worker for the coordinator at args[0] (host) and args[1]
+     * (port), exiting with status 1 if the connection fails.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("usage: SolveWorker host port");
+            System.exit(2);
+        }
+        try {
+            new SolveWorker(args[0], Integer.parseInt(args[1])).run();
+        } catch (IOException e) {
+            System.err.println("worker: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package sudoku;
+
+import java.util.Arrays;
+
+/**
+ * An interactive solving session on a puzzle: the player places and clears
+ * digits, can undo moves, and can ask for the pencil marks (candidates) of
+ * each square and for a hint.
+ *
+ * Each row, column and block keeps a count of each digit placed in it, so
+ * a move updates the candidates of its peers in constant time and reading
+ * the candidates of a square costs three lookups. Hints come from a
+ * LogicalSolver run on the current grid; nothing is encoded as a formula.
+ *
+ * Placements that clash with other digits are allowed, as a player may make
+ * them; they show up in isConsistent, and no hint is given until they are
+ * cleared. A SolvingSession is mutable and not safe for use by several
+ * threads at once.
+ */
+public class SolvingSession {
+    private final int dim;
+    private final int size;
+    private final int[] grid;
+    private final boolean[] given;
+    // placed[u * size + d]: number of squares of unit u holding digit d + 1,
+    // for units numbered as rows, then columns, then blocks
+    private final int[] placed;
+    // used[u]: bit d set iff placed[u * size + d] > 0
+    private final int[] used;
+    private int clashes = 0;
+    // undo stack of moves, each packed as (square * (size+1) + old) * (size+1) + new
+    private int[] moves = new int[16];
+    private int moveCount = 0;
+    private final LogicalSolver solver;
+
+    /**
+     * Start a session on puzzle; its digits are givens and cannot be changed.
+     * Requires: puzzle's dim <= 5
+     * @throws IllegalArgumentException if puzzle's regions are not classic,
+     *         as units are taken to be rows, columns and blocks
+     */
+    public SolvingSession(Sudoku puzzle) {
+        if (!puzzle.getRegions().isClassic())
+            throw new IllegalArgumentException("sessions play classic puzzles only");
+        this.dim = puzzle.getDim();
+        this.size = dim * dim;
+        this.grid = new int[size * size];
+        this.given = new boolean[size * size];
+        this.placed = new int[3 * size * size];
+        this.used = new int[3 * size];
+        this.solver = new LogicalSolver(dim);
+        for (int i = 0; i < size; ++i) {
+            for (int j = 0; j < size; ++j) {
+                int d = puzzle.getSquare(i, j);
+                if (d == 0) continue;
+                given[i * size + j] = true;
+                set(i * size + j, d);
+            }
+        }
+    }
+
+    /**
+     * @return the digit at row i, column j, or 0 if it is blank
+     */
+    public int getSquare(int i, int j) {
+        return grid[i * size + j];
+    }
+
+    /**
+     * @return true iff the square at row i, column j is a given
+     */
+    public boolean isGiven(int i, int j) {
+        return given[i * size + j];
+    }
+
+    /**
+     * @return the candidates of the blank square at row i, column j: bit
+     *         d-1 is set iff digit d is not yet placed in its row, column or
+     *         block; 0 if the square is not blank
+     */
+    public int getCandidates(int i, int j) {
+        if (grid[i * size + j] != 0) return 0;
+        return ((1 << size) - 1) & ~(used[i] | used[size + j] | used[2 * size + block(i, j)]);
+    }
+
+    /**
+     * @return true iff digit d may go at row i, column j
+     */
+    public boolean isCandidate(int i, int j, int d) {
+        return (getCandidates(i, j) & (1 << (d - 1))) != 0;
+    }
+
+    /**
+     * @return true iff no row, column or block holds a digit twice
+     */
+    public boolean isConsistent() {
+        return clashes == 0;
+    }
+
+    /**
+     * @return true iff every square is filled and the grid is consistent
+     */
+    public boolean isSolved() {
+        if (clashes != 0) return false;
+        for (int d : grid)
+            if (d == 0) return false;
+        return true;
+    }
+
+    /**
+     * Place digit d at row i, column j, replacing any digit there.
+     * Requires: 1 <= d <= dim*dim
+     * @throws IllegalArgumentException if the square is a given
+     */
+    public void place(int i, int j, int d) {
+        move(i * size + j, d);
+    }
+
+    /**
+     * Clear the square at row i, column j.
+     * @throws IllegalArgumentException if the square is a given
+     */
+    public void clear(int i, int j) {
+        move(i * size + j, 0);
+    }
+
+    /**
+     * Undo the last place or clear not yet undone.
+     * @return false iff there was no move to undo
+     */
+    public boolean undo() {
+        if (moveCount == 0) return false;
+        int move = moves[--moveCount];
+        int now = move % (size + 1);
+        move /= size + 1;
+        int old = move % (size + 1);
+        int p = move / (size + 1);
+        assert grid[p] == now : "SolvingSession: undo stack matches grid";
+        set(p, old);
+        return true;
+    }
+
+    /**
+     * @return the next placement that follows logically from the grid, or
+     *         null if the grid is full, inconsistent, or beyond the
+     *         techniques of LogicalSolver
+     */
+    public Hint hint() {
+        if (clashes != 0) return null;
+        return solver.hint(grid);
+    }
+
+    /**
+     * @return the grid as a Sudoku, blanks as 0
+     */
+    public Sudoku toSudoku() {
+        return SolutionCache.fromCells(dim, Arrays.copyOf(grid, grid.length));
+    }
+
+    /**
+     * Readable grid with a period for each blank, one row per line
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < size; ++i) {
+            for (int j = 0; j < size; ++j)
+                result.append(grid[i * size + j] == 0 ? "." : String.valueOf(grid[i * size + j]));
+            result.append("\n");
+        }
+        return result.toString();
+    }
+
+    private void move(int p, int d) {
+        if (given[p]) throw new IllegalArgumentException("square is a given");
+        if (moveCount == moves.length) moves = Arrays.copyOf(moves, 2 * moveCount);
+        moves[moveCount++] = (p * (size + 1) + grid[p]) * (size + 1) + d;
+        set(p, d);
+    }
+
+    private int block(int i, int j) {
+        return (i / dim) * dim + j / dim;
+    }
+
+    // put d (0 to clear) at square p, updating the unit counts
+    private void set(int p, int d) {
+        int i = p / size, j = p % size;
+        int[] unitsOfP = { i, size + j, 2 * size + block(i, j) };
+        if (grid[p] != 0) {
+            for (int u : unitsOfP)
+                count(u, grid[p] - 1, -1);
+        }
+        grid[p] = d;
+        if (d != 0) {
+            for (int u : unitsOfP)
+                count(u, d - 1, +1);
+        }
+    }
+
+    private void count(int u, int d, int delta) {
+        int k = u * size + d;
+        // a unit holding a digit n > 1 times contributes n - 1 clashes
+        if (delta > 0 && placed[k] > 0) ++clashes;
+        if (delta < 0 && placed[k] > 1) --clashes;
+        placed[k] += delta;
+        if (placed[k] > 0) used[u] |= 1 << d;
+        else used[u] &= ~(1 << d);
+    }
+}
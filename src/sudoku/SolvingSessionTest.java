@@ -0,0 +1,84 @@
+package sudoku;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import sudoku.Sudoku.ParseException;
+
+public class SolvingSessionTest {
+    // make sure assertions are turned on!
+    // we don't want to run test cases without assertions too.
+    // see the handout to find out how to turn them on.
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void candidatesAndUndoTest() {
+        SolvingSession session = new SolvingSession(new Sudoku(2, new int[][] {
+                { 0, 1, 0, 4 }, { 0, 0, 0, 0 }, { 2, 0, 3, 0 }, { 0, 0, 0, 0 } }));
+        // row 0 holds 1 and 4, column 0 holds 2
+        assertEquals(1 << 2, session.getCandidates(0, 0));
+        assertTrue(session.isCandidate(0, 2, 2));
+        assertFalse(session.isCandidate(0, 2, 3));
+
+        session.place(0, 0, 3);
+        assertEquals(0, session.getCandidates(0, 0));
+        assertFalse(session.isCandidate(1, 1, 3));
+        session.place(0, 2, 3);
+        assertFalse(session.isConsistent());
+        session.clear(0, 2);
+        assertTrue(session.isConsistent());
+
+        assertTrue(session.undo());
+        assertFalse(session.isConsistent());
+        assertTrue(session.undo());
+        assertTrue(session.undo());
+        assertEquals(0, session.getSquare(0, 0));
+        assertEquals(1 << 2, session.getCandidates(0, 0));
+        assertFalse(session.undo());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void givenCannotChangeTest() {
+        SolvingSession session = new SolvingSession(new Sudoku(2, new int[][] {
+                { 0, 1, 0, 4 }, { 0, 0, 0, 0 }, { 2, 0, 3, 0 }, { 0, 0, 0, 0 } }));
+        session.clear(0, 1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void nonClassicRejectedTest() {
+        new SolvingSession(new Sudoku(Regions.diagonal(2), new int[16]));
+    }
+
+    @Test
+    public void hintsSolveTest() throws IOException, ParseException {
+        SolvingSession session = new SolvingSession(Sudoku.fromFile(3, "samples/sudoku_evil.txt"));
+        Hint hint;
+        while ((hint = session.hint()) != null) {
+            assertTrue(hint.getReason(), session.isCandidate(hint.getRow(), hint.getColumn(), hint.getDigit()));
+            session.place(hint.getRow(), hint.getColumn(), hint.getDigit());
+        }
+        assertTrue(session.isSolved());
+    }
+
+    @Test
+    public void noHintWhenInconsistentTest() throws IOException, ParseException {
+        SolvingSession session = new SolvingSession(Sudoku.fromFile(3, "samples/sudoku_easy.txt"));
+        Hint hint = session.hint();
+        assertNotNull(hint);
+        int i = hint.getRow(), j = hint.getColumn();
+        // put a digit that clashes with one of the square's peers
+        int clash = 1;
+        while (session.isCandidate(i, j, clash))
+            ++clash;
+        session.place(i, j, clash);
+        assertNull(session.hint());
+        session.undo();
+        assertEquals(hint.getReason(), session.hint().getReason());
+    }
+}
@@ -10,6 +10,7 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
 
 import sat.env.Bool;
 import sat.env.Environment;
@@ -27,30 +28,29 @@ import sat.formula.PosLiteral;
 public class Sudoku {
     // dimension: standard puzzle has dim 3
     private final int dim;
+    // houses and cages the digits must satisfy: Regions.classic(dim) unless
+    // the puzzle is a variant
+    private final Regions regions;
     // number of rows and columns: standard puzzle has size 9
     private final int size;
-    // known values: square[i][j] represents the square in the ith row and jth
-    // column,
-    // contains -1 if the digit is not present, else i>=0 to represent the digit
-    // i+1
-    // (digits are indexed from 0 and not 1 so that we can take the number k
-    // from square[i][j] and
-    // use it to index into occupies[i][j][k])
-    private final int[][] square;
-    // occupies [i,j,k] means that kth symbol occupies entry in row i, column j
-    private final Variable[][][] occupies;
+    // known values, row by row in one array: square[i*size + j] is the digit
+    // in the ith row and jth column, from 1 to size, or 0 if it is blank
+    private final byte[] square;
+    // occupies [i,j,k] means that kth symbol occupies entry in row i, column j;
+    // made on first use, since most grids are never encoded as a formula
+    private Variable[][][] occupies;
 
     // Rep invariant
-    // square and occupies != null
-    // no element of square has value less than -1 or greater than or equal to size
+    // square != null, square.length == size*size
+    // regions != null, regions.getDim() == dim
+    // no element of square has value less than 0 or greater than size
 	private void checkRep() {
         assert this.square != null : "Sudoku, Rep invariant: square non-null";
-        assert this.occupies != null : "Sudoku, Rep invariant: occupies non-null";
-        for (int i = 0; i<size; ++i) {
-        	for (int j = 0; j<size; ++j) {
-        		assert this.square[i][j] >= -1 : "Sudoku, Rep invariant: square value greater than or equal to -1";
-        		assert this.square[i][j] < size : "Sudoku, Rep invariant: square value less than size";
-        	}
+        assert this.square.length == size * size : "Sudoku, Rep invariant: size*size squares";
+        assert this.regions != null && this.regions.getDim() == dim : "Sudoku, Rep invariant: regions of dim";
+        for (int k = 0; k<square.length; ++k) {
+        	assert this.square[k] >= 0 : "Sudoku, Rep invariant: square value greater than or equal to 0";
+        	assert this.square[k] <= size : "Sudoku, Rep invariant: square value at most size";
         }
     }
 
@@ -64,24 +64,9 @@ public class Sudoku {
     public Sudoku(int dim) {
     	this.dim = dim;
     	this.size = dim * dim;
-    	this.square = new int[size][size];
-    	
+    	this.regions = Regions.classic(dim);
     	// Create a board in which each square is unoccupied
-    	for (int i =0; i<size; ++i) {
-    		for (int j = 0; j<size; ++j) {
-    			this.square[i][j] = -1;
-    		}
-    	}
-    	
-    	// Create new variable objects corresponding to each square on the Sudoku board
-    	this.occupies = new Variable[size][size][size];
-    	for (int i = 0; i<size; ++i) {
-    		for (int j = 0; j<size; ++j) {
-    			for (int k = 0; k<size; ++k) {
-    				this.occupies[i][j][k] = new Variable(i + "," + j + "," + k); 
-    			}
-    		}
-    	}
+    	this.square = new byte[size * size];
     	checkRep();
     }
 
@@ -107,50 +92,87 @@ public class Sudoku {
     public Sudoku(int dim, int[][] square) {
     	this.dim = dim;
     	this.size = dim * dim;
-    	this.square = new int[size][size];
+    	this.regions = Regions.classic(dim);
+    	this.square = new byte[size * size];
     	
     	// Create a board in which squares are occupied as given in input parameter square
     	for (int i = 0; i<size; ++i) {
     		for (int j = 0; j<size; ++j) {
-    			this.square[i][j] = square[i][j] - 1;
+    			this.square[i * size + j] = (byte) square[i][j];
     		}
     	}
-    	
-    	// Create new variable objects corresponding to each square on the Sudoku board
-    	this.occupies = new Variable[size][size][size];
-    	for (int i = 0; i<size; ++i) {
-    		for (int j = 0; j<size; ++j) {
-    			for (int k = 0; k<size; ++k) {
-    				this.occupies[i][j][k] = new Variable(i + "," + j + "," + k); 
-    			}
-    		}
+    	checkRep();
+    }
+
+    /**
+     * create Sudoku puzzle from its squares in one array
+     * 
+     * @param dim
+     *            dimension of puzzle. Requires: dim*dim < 128
+     * @param squares
+     *            digits or blanks of the grid row by row: squares[i*dim*dim + j]
+     *            is the square in the ith row and jth column, 0 for a blank.
+     *            Requires: squares.length == (dim*dim)^2
+     */
+    public Sudoku(int dim, int[] squares) {
+    	this(Regions.classic(dim), squares);
+    }
+
+    /**
+     * create a variant Sudoku puzzle, such as a diagonal, jigsaw or killer
+     * puzzle, from its squares in one array
+     * 
+     * @param regions
+     *            houses and cages of the puzzle, of its dim
+     * @param squares
+     *            digits or blanks of the grid row by row, as in
+     *            Sudoku(int, int[])
+     */
+    public Sudoku(Regions regions, int[] squares) {
+    	this.dim = regions.getDim();
+    	this.size = dim * dim;
+    	this.regions = regions;
+    	this.square = new byte[size * size];
+    	for (int k = 0; k<square.length; ++k) {
+    		this.square[k] = (byte) squares[k];
     	}
     	checkRep();
     }
 
+    /**
+     * Reads in a file containing a Sudoku puzzle, with digits written in
+     * Alphabet.STANDARD: '1'-'9', then 'A'-'Z' and 'a'-'z' for larger grids.
+     * 
+     * @see #fromFile(int, String, Alphabet)
+     */
+    public static Sudoku fromFile(int dim, String filename) throws IOException,
+            ParseException {
+        return fromFile(dim, filename, Alphabet.STANDARD);
+    }
+
     /**
      * Reads in a file containing a Sudoku puzzle.
      * 
      * @param dim
-     *            Dimension of puzzle. Requires: at most dim of 3, because
-     *            otherwise need different file format
+     *            Dimension of puzzle. Requires: dim*dim < 128
      * @param filename
      *            of file containing puzzle. The file should contain one line
-     *            per row, with each square in the row represented by a digit,
-     *            if known, and a period otherwise. With dimension dim, the file
-     *            should contain dim*dim rows, and each row should contain
-     *            dim*dim characters.
+     *            per row. A row is either dim*dim characters, each a symbol of
+     *            alphabet for a known square and a period otherwise; or
+     *            dim*dim decimal numbers separated by spaces, tabs or commas,
+     *            0 or a period for a blank, as written by toString. With
+     *            dimension dim, the file should contain dim*dim rows; empty
+     *            lines are skipped.
+     * @param alphabet
+     *            symbols of the digits in rows of one character per square
      * @return Sudoku object corresponding to file contents
      * @throws IOException
      *             if file reading encounters an error
      * @throws ParseException
      *             if file has error in its format
      */
-    public static Sudoku fromFile(int dim, String filename) throws IOException,
+    public static Sudoku fromFile(int dim, String filename, Alphabet alphabet) throws IOException,
             ParseException {
-    	int size = dim * dim;
-    	int[][] newSquare = new int[size][size];
-    	
     	FileReader fileReader;
 		
     	// Creates a new fileReader object to read the given file 
@@ -162,37 +184,126 @@ public class Sudoku {
 		}
 		
 		BufferedReader reader = new BufferedReader(fileReader);
-		String line = "";
-		
-		int rowCount = 0;
 		try {
-			while ((line = reader.readLine()) != null) {
-				if (rowCount >= size) {
-					throw new ParseException("Too many rows");
-				}
-				int[] newRow = new int[size];
-				char[] arrayCopy = line.toCharArray();
-				int lineLength = line.length();
-				if (lineLength != (dim * dim)) {
-					throw new ParseException("Too many columns");
-				}
-				for (int i=0; i<size; i++) {
-					if (arrayCopy[i] == '.') 
-						newRow[i] = 0;
-					else
-						newRow[i] = arrayCopy[i] - 48; //Converting ASCII code to normal integer
-				}
-				newSquare[rowCount] = newRow; // Add the new row to the double dimensional square array
-				rowCount++;
-			}
-			
-			return new Sudoku(dim, newSquare);
+			return parse(dim, reader, alphabet);
 		} finally {
 			//Close all the readers
 			fileReader.close();
 			reader.close();
 		}
+    }
 
+    /**
+     * Parse a puzzle from text in the format of fromFile.
+     * 
+     * @throws ParseException
+     *             if text has error in its format
+     */
+    public static Sudoku parse(int dim, String text, Alphabet alphabet) throws ParseException {
+    	try {
+    		return parse(dim, new BufferedReader(new StringReader(text)), alphabet);
+    	} catch (IOException e) {
+    		throw new AssertionError(e); // a StringReader does not fail
+    	}
+    }
+
+    private static Sudoku parse(int dim, BufferedReader reader, Alphabet alphabet) throws IOException,
+            ParseException {
+    	int size = dim * dim;
+    	int[] newSquares = new int[size * size];
+		String line;
+		int rowCount = 0;
+		while ((line = reader.readLine()) != null) {
+			if (line.trim().length() == 0) continue;
+			if (rowCount >= size) {
+				throw new ParseException("Too many rows");
+			}
+			if (isNumericRow(line)) {
+				parseNumericRow(line, size, newSquares, rowCount * size);
+			} else {
+				if (line.length() != size) {
+					throw new ParseException("Row " + (rowCount + 1) + " has " + line.length()
+							+ " columns, not " + size);
+				}
+				for (int j = 0; j<size; j++) {
+					int d = alphabet.digit(line.charAt(j));
+					if (d < 0 || d > size) {
+						throw new ParseException("Bad symbol '" + line.charAt(j) + "' in row " + (rowCount + 1));
+					}
+					newSquares[rowCount * size + j] = d;
+				}
+			}
+			rowCount++;
+		}
+		return new Sudoku(dim, newSquares);
+    }
+
+    // true iff line has a separator, so holds numbers rather than symbols
+    private static boolean isNumericRow(String line) {
+    	String trimmed = line.trim();
+    	for (int k = 0; k < trimmed.length(); ++k) {
+    		char c = trimmed.charAt(k);
+    		if (c == ' ' || c == '\t' || c == ',') return true;
+    	}
+    	return false;
+    }
+
+    // parse the size numbers of line into squares from offset
+    private static void parseNumericRow(String line, int size, int[] squares, int offset) throws ParseException {
+    	String[] fields = line.trim().split("[\\s,]+");
+    	if (fields.length != size) {
+    		throw new ParseException("Row has " + fields.length + " numbers, not " + size);
+    	}
+    	for (int j = 0; j < size; ++j) {
+    		int d;
+    		if (fields[j].equals(".")) {
+    			d = 0;
+    		} else {
+    			try {
+    				d = Integer.parseInt(fields[j]);
+    			} catch (NumberFormatException e) {
+    				throw new ParseException("Bad number '" + fields[j] + "'");
+    			}
+    		}
+    		if (d < 0 || d > size) {
+    			throw new ParseException("Number " + d + " out of range");
+    		}
+    		squares[offset + j] = d;
+    	}
+    }
+
+    /**
+     * @return the dimension of this puzzle: 3 for a standard 9x9 grid
+     */
+    public int getDim() {
+        return dim;
+    }
+
+    /**
+     * @return the houses and cages of this puzzle; Regions.classic(getDim())
+     *         for a classic puzzle
+     */
+    public Regions getRegions() {
+        return regions;
+    }
+
+    /**
+     * @return the digit in row i, column j, from 1 to dim*dim, or 0 if the
+     *         square is blank.
+     *         Requires: 0 <= i, j < dim*dim
+     */
+    public int getSquare(int i, int j) {
+        return square[i * size + j];
+    }
+
+    /**
+     * Copy the squares of this grid, row by row, into squares: the square in
+     * row i, column j goes to squares[i*dim*dim + j], 0 for a blank.
+     * Requires: squares.length >= (dim*dim)^2
+     */
+    public void getSquares(int[] squares) {
+        for (int k = 0; k < square.length; ++k)
+            squares[k] = square[k];
     }
 
     /**
@@ -216,35 +327,54 @@ public class Sudoku {
      * @return a string corresponding to this grid
      */
     public String toString() {
-    	StringBuilder stringRep = new StringBuilder();
-    	for (int i = 0; i < size; ++i ) {
-    		String tempString = "";
-			for (int j = 0; j < size; ++j) {
-				if (j==0) 
-					tempString += (square[i][j] + 1);
-				else 
-					tempString += (" " + (square[i][j] + 1));
-			}
-			tempString += "\n";
-			stringRep.append(tempString);
-		}
-    	
+    	StringBuilder stringRep = new StringBuilder(GridWriter.gridBytes(dim));
+    	for (int k = 0; k < square.length; ++k) {
+    		stringRep.append((int) square[k]);
+    		stringRep.append(k % size == size - 1 ? '\n' : ' ');
+    	}
     	return stringRep.toString();
     }
 
+    // the variables of the formula, made once on first use
+    private synchronized Variable[][][] occupies() {
+    	if (occupies == null) {
+    		// Create new variable objects corresponding to each square on the Sudoku board
+    		Variable[][][] variables = new Variable[size][size][size];
+    		for (int i = 0; i<size; ++i) {
+    			for (int j = 0; j<size; ++j) {
+    				for (int k = 0; k<size; ++k) {
+    					variables[i][j][k] = new Variable(i + "," + j + "," + k); 
+    				}
+    			}
+    		}
+    		occupies = variables;
+    	}
+    	return occupies;
+    }
+
     /**
      * @return a SAT problem corresponding to the puzzle, using variables with
      *         names of the form occupies(i,j,k) to indicate that the kth symbol
      *         occupies the entry in row i, column j
      */
     public Formula getProblem() {
+    	return getProblem(new EncodingOptions());
+    }
+
+    /**
+     * @return a SAT problem corresponding to the puzzle, as getProblem(),
+     *         with the optional clauses chosen by options. The variables
+     *         of those clauses are ignored by interpretSolution.
+     */
+    public Formula getProblem(EncodingOptions options) {
     	Formula formula = new Formula();
+    	Variable[][][] occupies = occupies();
 
     	// Takes into account the initial board state
     	for (int i = 0; i< size; ++i) {
     		for (int j = 0; j<size; ++j) {
-    			if (square[i][j] >= 0) {
-    				Literal literal = PosLiteral.make(occupies[i][j][square[i][j]]);
+    			if (square[i * size + j] > 0) {
+    				Literal literal = PosLiteral.make(occupies[i][j][square[i * size + j] - 1]);
     				Clause clause = new Clause(literal);
     				formula = formula.addClause(clause);
     			}
@@ -266,96 +396,206 @@ public class Sudoku {
     		}
     	}
     	
-    	//Row condition; ensures that every row is some permutation of the set {1,2,...,size}
-    	for (int i = 0; i<size; ++i) {
+    	// House condition; ensures that every row, column and block (or other
+    	// house of a variant) is some permutation of the set {1,2,...,size}
+    	int[] unitSquares = regions.unitSquares, unitStart = regions.unitStart;
+    	for (int u = 0; u < regions.houses; ++u) {
     		for (int k = 0; k<size; ++k) {
     			Clause clause = new Clause();
-    			for (int j = 0; j<size; ++j) {
-    				Literal literal = PosLiteral.make(occupies[i][j][k]);
-    				clause = clause.add(literal);
+    			for (int a = unitStart[u]; a < unitStart[u + 1]; ++a) {
+    				clause = clause.add(PosLiteral.make(occupies(occupies, unitSquares[a], k)));
     			}
-    			// Ensures that every row contains at least one k, for all k in {1,2,...,size}
+    			// Ensures that every house contains at least one k
     			formula = formula.addClause(clause);
     		}
     	}
     	
-    	for (int i = 0; i<size; ++i) {
+    	// Every house and cage contains at most one k
+    	for (int u = 0; u < regions.units; ++u) {
     		for (int k = 0; k<size; ++k) {
-    			for (int j = 0; j<size; ++j) {
-    				for (int jp = j+1; jp<size; ++jp) {
-    					Literal negLiteral1 = NegLiteral.make(occupies[i][j][k]);
-    					Literal negLiteral2 = NegLiteral.make(occupies[i][jp][k]);
+    			for (int a = unitStart[u]; a < unitStart[u + 1]; ++a) {
+    				for (int b = a + 1; b < unitStart[u + 1]; ++b) {
+    					Literal negLiteral1 = NegLiteral.make(occupies(occupies, unitSquares[a], k));
+    					Literal negLiteral2 = NegLiteral.make(occupies(occupies, unitSquares[b], k));
     					Clause clause = new Clause(negLiteral1);
     					clause = clause.add(negLiteral2);
-    					// Ensures that every row contains at most one k, for all k in {1,2,...,size}
     					formula = formula.addClause(clause);
     				}
     			}
     		}
     	}
     	
-    	//Column condition; ensures that every column is some permutation of the set {1,2,...,size}
-    	for (int j = 0; j<size; ++j) {
+    	// Cage sums; digit variables "cage c has k" and one selector per set
+    	// of digits adding up to the sum, at least one of which is chosen
+    	for (int c = 0; c < regions.getCages(); ++c) {
+    		int u = regions.houses + c;
+    		Variable[] has = new Variable[size];
     		for (int k = 0; k<size; ++k) {
-    			Clause clause = new Clause();
-    			for (int i = 0; i<size; ++i) {
-    				Literal literal = PosLiteral.make(occupies[i][j][k]);
-    				clause = clause.add(literal);
+    			has[k] = new Variable("cage" + c + "," + k);
+    			for (int a = unitStart[u]; a < unitStart[u + 1]; ++a) {
+    				Clause clause = new Clause(NegLiteral.make(occupies(occupies, unitSquares[a], k)));
+    				formula = formula.addClause(clause.add(PosLiteral.make(has[k])));
+    			}
+    		}
+    		long[] combinations = regions.cageCombinations(c);
+    		Clause some = new Clause();
+    		for (int m = 0; m < combinations.length; ++m) {
+    			Variable chosen = new Variable("cage" + c + "#" + m);
+    			some = some.add(PosLiteral.make(chosen));
+    			for (int k = 0; k<size; ++k) {
+    				if ((combinations[m] & (1L << k)) != 0) continue;
+    				Clause clause = new Clause(NegLiteral.make(chosen));
+    				formula = formula.addClause(clause.add(NegLiteral.make(has[k])));
     			}
-    			formula = formula.addClause(clause);
     		}
+    		formula = formula.addClause(some);
     	}
     	
-    	for (int j = 0; j<size; ++j) {
+    	if (options.getCellClauses()) {
+    		formula = addCellClauses(formula);
+    	}
+    	if (options.getIntersectionClauses() && regions.isClassic()) {
+    		formula = addIntersectionClauses(formula);
+    	}
+    	if (options.getSymmetryBreaking() && regions.isClassic()) {
+    		formula = addSymmetryBreaking(formula);
+    	}
+    	return formula;
+    }
+
+    // each blank square holds at least one digit
+    private Formula addCellClauses(Formula formula) {
+    	Variable[][][] occupies = occupies();
+    	for (int p = 0; p < square.length; ++p) {
+    		if (square[p] != 0) continue;
+    		Clause clause = new Clause();
     		for (int k = 0; k<size; ++k) {
-    			for (int i = 0; i<size; ++i) {
-    				for (int ip = i+1; ip<size; ++ip) {
-    					Literal negLiteral1 = NegLiteral.make(occupies[i][j][k]);
-    					Literal negLiteral2 = NegLiteral.make(occupies[ip][j][k]);
-    					Clause clause = new Clause(negLiteral1);
-    					clause = clause.add(negLiteral2);
-    					formula = formula.addClause(clause);
+    			clause = clause.add(PosLiteral.make(occupies(occupies, p, k)));
+    		}
+    		formula = formula.addClause(clause);
+    	}
+    	return formula;
+    }
+
+    // a variable per digit and per segment where a row or column crosses a
+    // block, defined as the disjunction of the segment's squares, and
+    // exactly one segment per digit in each line and each block
+    private Formula addIntersectionClauses(Formula formula) {
+    	Variable[][][] occupies = occupies();
+    	for (int across = 0; across < 2; ++across) {
+    		String kind = across == 0 ? "rowseg" : "colseg";
+    		// segment[line][b][k]: digit k in line (row or column) within its bth block
+    		Variable[][][] segment = new Variable[size][dim][size];
+    		for (int line = 0; line<size; ++line) {
+    			for (int b = 0; b<dim; ++b) {
+    				for (int k = 0; k<size; ++k) {
+    					Variable y = new Variable(kind + line + "," + b + "," + k);
+    					segment[line][b][k] = y;
+    					Clause definition = new Clause(NegLiteral.make(y));
+    					for (int t = 0; t<dim; ++t) {
+    						int i = across == 0 ? line : b * dim + t;
+    						int j = across == 0 ? b * dim + t : line;
+    						definition = definition.add(PosLiteral.make(occupies[i][j][k]));
+    						Clause clause = new Clause(NegLiteral.make(occupies[i][j][k]));
+    						formula = formula.addClause(clause.add(PosLiteral.make(y)));
+    					}
+    					formula = formula.addClause(definition);
     				}
     			}
     		}
-    	}
-    	
-    	//Block condition; ensures that every block contains exactly one k for all k in {1,2,...,size}
-    	for (int xBlock = 0; xBlock < dim; ++xBlock) {
-    		for (int yBlock = 0; yBlock < dim; ++yBlock) {
-    			for (int k = 0; k<size; ++k) {
-    				Clause clause = new Clause();
-    				for (int i = 0; i < dim; ++i) {
-    					for (int j = 0; j < dim; ++j) {
-    						Literal literal = PosLiteral.make(occupies[(xBlock * dim) + i][(yBlock * dim) + j][k]);
-    						clause = clause.add(literal);
+    		Variable[] group = new Variable[dim];
+    		for (int k = 0; k<size; ++k) {
+    			// in each line, digit k is in exactly one of its dim segments
+    			for (int line = 0; line<size; ++line) {
+    				for (int b = 0; b<dim; ++b) {
+    					group[b] = segment[line][b][k];
+    				}
+    				formula = addExactlyOne(formula, group);
+    			}
+    			// in each block, digit k is in exactly one of its dim lines
+    			for (int band = 0; band<dim; ++band) {
+    				for (int b = 0; b<dim; ++b) {
+    					for (int t = 0; t<dim; ++t) {
+    						group[t] = segment[band * dim + t][b][k];
     					}
+    					formula = addExactlyOne(formula, group);
     				}
-    				formula = formula.addClause(clause);
     			}
     		}
     	}
-    	
-    	for (int k = 0; k < size; ++k) {
-    		for (int xBlock = 0; xBlock < dim; ++xBlock) {
-    			for (int yBlock = 0; yBlock < dim; ++yBlock) {
-    				for (int i = 0; i < dim; ++i) {
-    					for (int j = 0; j < dim; ++j) {
-    						for (int ip = i; ip < dim; ++ip) {
-    							for (int jp = j + 1; jp < dim; ++jp) {
-    								Literal literal1 = NegLiteral.make(occupies[(xBlock * dim) + i][(yBlock * dim) + j][k]);
-    								Literal literal2 = NegLiteral.make(occupies[(xBlock * dim) + ip][(yBlock * dim) + jp][k]);
-    								Clause clause = new Clause(literal1);
-    								clause = clause.add(literal2);
-    								formula = formula.addClause(clause);
-    							}
-    						}
+    	return formula;
+    }
+
+    private static Formula addExactlyOne(Formula formula, Variable[] group) {
+    	Clause some = new Clause();
+    	for (int a = 0; a < group.length; ++a) {
+    		some = some.add(PosLiteral.make(group[a]));
+    		for (int b = a + 1; b < group.length; ++b) {
+    			Clause clause = new Clause(NegLiteral.make(group[a]));
+    			formula = formula.addClause(clause.add(NegLiteral.make(group[b])));
+    		}
+    	}
+    	return formula.addClause(some);
+    }
+
+    // break the symmetries described in EncodingOptions
+    private Formula addSymmetryBreaking(Formula formula) {
+    	Variable[][][] occupies = occupies();
+    	boolean[] given = new boolean[size];
+    	boolean blank = true;
+    	for (int p = 0; p < square.length; ++p) {
+    		if (square[p] != 0) {
+    			given[square[p] - 1] = true;
+    			blank = false;
+    		}
+    	}
+    	if (!blank) {
+    		// free digits first appear in the top row in increasing order:
+    		// the next free digit after f may only be at column j if f is
+    		// at a column before j
+    		int previous = -1;
+    		for (int k = 0; k<size; ++k) {
+    			if (given[k]) continue;
+    			if (previous >= 0) {
+    				for (int j = 0; j<size; ++j) {
+    					Clause clause = new Clause(NegLiteral.make(occupies[0][j][k]));
+    					for (int jp = 0; jp<j; ++jp) {
+    						clause = clause.add(PosLiteral.make(occupies[0][jp][previous]));
     					}
+    					formula = formula.addClause(clause);
     				}
     			}
+    			previous = k;
+    		}
+    		return formula;
+    	}
+    	// the top row is 1..size
+    	for (int j = 0; j<size; ++j) {
+    		formula = formula.addClause(new Clause(PosLiteral.make(occupies[0][j][j])));
+    	}
+    	// the left column increases down the rows of the first band below
+    	// the top row, down the rows of every other band, and from the top
+    	// of one of those bands to the next
+    	for (int band = 0; band<dim; ++band) {
+    		for (int t = band == 0 ? 1 : 0; t + 1<dim; ++t) {
+    			formula = addIncreasing(formula, band * dim + t, band * dim + t + 1);
+    		}
+    		if (band > 0 && band + 1 < dim) {
+    			formula = addIncreasing(formula, band * dim, (band + 1) * dim);
+    		}
+    	}
+    	return formula;
+    }
+
+    // the left column holds a smaller digit in row i than in row ip
+    private Formula addIncreasing(Formula formula, int i, int ip) {
+    	Variable[][][] occupies = occupies();
+    	for (int k = 0; k<size; ++k) {
+    		for (int kp = 0; kp<=k; ++kp) {
+    			Clause clause = new Clause(NegLiteral.make(occupies[i][0][k]));
+    			formula = formula.addClause(clause.add(NegLiteral.make(occupies[ip][0][kp])));
     		}
     	}
-    	
     	return formula;
     }
 
@@ -369,21 +609,27 @@ public class Sudoku {
      *         blank entries.
      */
     public Sudoku interpretSolution(Environment e) {
-    	int[][] newSquares = new int[size][size];
+    	int[] newSquares = new int[size * size];
     	if (e == null) {
     		return null; // Returns null if the Sudoku is unsolvable
     	}
+    	Variable[][][] occupies = occupies();
     	for (int i=0; i<size; ++i) {
     		for (int j = 0; j<size; ++j) {
     			for (int k = 0; k<size; ++k) {
     				Bool value = e.get(occupies[i][j][k]);
     				if (value.equals(Bool.TRUE)) {
-    					newSquares[i][j] = k + 1;
+    					newSquares[i * size + j] = k + 1;
     				}
     			}
     		}
     	}
-    	return new Sudoku(dim, newSquares);
+    	return new Sudoku(regions, newSquares);
+    }
+
+    // the variable for the kth symbol at square p (i*size + j)
+    private Variable occupies(Variable[][][] occupies, int p, int k) {
+    	return occupies[p / size][p % size][k];
     }
 
 }
@@ -1,9 +1,12 @@
 package sudoku;
 
+import static org.junit.Assert.*;
+
 import java.io.IOException;
 
 import org.junit.Test;
 
+import sat.SATSolver;
 import sudoku.Sudoku.ParseException;
 
 
@@ -23,5 +26,90 @@ public class SudokuTest {
     	Sudoku testSudoku = Sudoku.fromFile(3, "samples/sudoku_easy.txt");
     	System.out.println(testSudoku);
     }
-    
-}
\ No newline at end of file
+
+    @Test
+    public void testParseAlphabets() throws ParseException {
+    	Sudoku hex = Sudoku.parse(2, "0..3\n....\n1.2.\n....\n", new Alphabet("0123"));
+    	assertEquals(1, hex.getSquare(0, 0));
+    	assertEquals(4, hex.getSquare(0, 3));
+    	assertEquals(3, hex.getSquare(2, 2));
+    	assertEquals(0, hex.getSquare(1, 1));
+
+    	StringBuilder text = new StringBuilder();
+    	for (int i = 0; i < 16; ++i)
+    		text.append("G.A..........F.1".substring(i) + "G.A..........F.1".substring(0, i)).append("\n");
+    	Sudoku sixteen = Sudoku.parse(4, text.toString(), Alphabet.STANDARD);
+    	assertEquals(16, sixteen.getSquare(0, 0));
+    	assertEquals(10, sixteen.getSquare(0, 2));
+    	assertEquals(1, sixteen.getSquare(1, 14));
+    	// in hexadecimal '0' is the first digit, and 'F' the last
+    	Sudoku hex16 = Sudoku.parse(4, "F.A............0\n", Alphabet.HEXADECIMAL);
+    	assertEquals(16, hex16.getSquare(0, 0));
+    	assertEquals(11, hex16.getSquare(0, 2));
+    	assertEquals(1, hex16.getSquare(0, 15));
+    }
+
+    @Test
+    public void testParseNumeric() throws ParseException {
+    	int[] squares = new int[625];
+    	for (int k = 0; k < squares.length; ++k)
+    		squares[k] = k % 26;
+    	Sudoku grid = new Sudoku(5, squares);
+    	Sudoku parsed = Sudoku.parse(5, grid.toString(), Alphabet.STANDARD);
+    	assertEquals(grid.toString(), parsed.toString());
+    	Sudoku commas = Sudoku.parse(2, "1,2,3,4\n3, 4, ., 2\n0 0 0 0\n4\t3\t2\t1\n", Alphabet.STANDARD);
+    	assertEquals(0, commas.getSquare(1, 2));
+    	assertEquals(2, commas.getSquare(3, 2));
+    }
+
+    @Test(expected=ParseException.class)
+    public void testParseBadSymbol() throws ParseException {
+    	Sudoku.parse(2, "1.5.\n", Alphabet.STANDARD);
+    }
+
+    @Test
+    public void testEncodingOptionsBlank() {
+    	for (int dim = 2; dim <= 3; ++dim) {
+    		int size = dim * dim;
+    		Sudoku blank = new Sudoku(dim);
+    		Sudoku solution = blank.interpretSolution(SATSolver.solve(blank.getProblem(EncodingOptions.all())));
+    		assertTrue(CompactEncodingTest.isSolution(solution));
+    		for (int j = 0; j < size; ++j)
+    			assertEquals(j + 1, solution.getSquare(0, j));
+    		for (int i = 2; i < size; ++i)
+    			if (i % dim != 0 || i > dim)
+    				assertTrue(solution.getSquare(i - (i % dim == 0 ? dim : 1), 0) < solution.getSquare(i, 0));
+    	}
+    }
+
+    @Test
+    public void testEncodingOptionsSamples() throws IOException, ParseException {
+    	EncodingOptions[] choices = {
+    		new EncodingOptions().setSymmetryBreaking(true),
+    		new EncodingOptions().setCellClauses(true),
+    		new EncodingOptions().setIntersectionClauses(true),
+    		EncodingOptions.all() };
+    	for (String name : new String[] { "easy", "hard" }) {
+    		Sudoku puzzle = Sudoku.fromFile(3, "samples/sudoku_" + name + ".txt");
+    		for (EncodingOptions options : choices) {
+    			Sudoku solution = puzzle.interpretSolution(SATSolver.solve(puzzle.getProblem(options)));
+    			assertTrue(CompactEncodingTest.isSolution(solution));
+    			for (int i = 0; i < 9; ++i)
+    				for (int j = 0; j < 9; ++j)
+    					assertTrue(puzzle.getSquare(i, j) == 0 || puzzle.getSquare(i, j) == solution.getSquare(i, j));
+    		}
+    	}
+    	// a sparse grid: only digits 1 and 2 are given, so 3 and 4 are free
+    	Sudoku sparse = new Sudoku(2, new int[][] { { 0, 0, 0, 0 }, { 0, 0, 1, 0 }, { 0, 2, 0, 0 }, { 0, 0, 0, 0 } });
+    	Sudoku solution = sparse.interpretSolution(SATSolver.solve(sparse.getProblem(EncodingOptions.all())));
+    	assertTrue(CompactEncodingTest.isSolution(solution));
+    	assertEquals(1, solution.getSquare(1, 2));
+    	assertEquals(2, solution.getSquare(2, 1));
+    }
+
+    @Test
+    public void testEncodingOptionsUnsolvable() {
+    	Sudoku puzzle = new Sudoku(2, new int[][] { { 0, 1, 4, 0 }, { 2, 0, 0, 0 }, { 0, 0, 0, 0 }, { 3, 0, 0, 0 } });
+    	assertNull(puzzle.interpretSolution(SATSolver.solve(puzzle.getProblem(EncodingOptions.all()))));
+    }
+}
@@ -0,0 +1,352 @@
+package sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A validity-preserving transformation of a Sudoku grid: optional
+ * transposition, a permutation of the rows that keeps each band together,
+ * a permutation of the columns that keeps each stack together, and a
+ * relabelling of the digits. Grids are row-major arrays of size*size
+ * squares holding 0 for a blank and 1..size for a digit.
+ *
+ * canonical() finds, for a grid, the transformation giving the
+ * lexicographically least image, so two grids are equivalent under the
+ * group exactly when their canonical images are equal. Digits in the image
+ * are numbered in order of first appearance, so the relabelling costs
+ * nothing to search; rows are chosen greedily with backtracking on ties;
+ * column arrangements are enumerated. When there are more than
+ * MAX_COLUMN_ARRANGEMENTS of them (dim > 3), columns are left in place:
+ * equal images still mean equivalent grids, but only grids that differ by
+ * row permutations and relabelling are sure to get equal images.
+ *
+ * This datatype is immutable.
+ */
+final class Symmetry {
+    // most column arrangements enumerated by canonical(); dim 3 has 2592
+    static final int MAX_COLUMN_ARRANGEMENTS = 100000;
+
+    private final int size;
+    private final boolean transpose;
+    // rows[r]: source row of image row r (after transposition, if any)
+    private final int[] rows;
+    // cols[c]: source column of image column c
+    private final int[] cols;
+    // digits[d]: image of digit d; digits[0] == 0
+    private final int[] digits;
+
+    /*
+     * Rep invariant:
+     *     rows and cols are permutations of 0..size-1
+     *     digits[0] == 0 and digits[1..size] is a permutation of 1..size
+     */
+
+    private Symmetry(int size, boolean transpose, int[] rows, int[] cols, int[] digits) {
+        this.size = size;
+        this.transpose = transpose;
+        this.rows = rows;
+        this.cols = cols;
+        this.digits = digits;
+    }
+
+    /**
+     * @return the image of grid under this transformation.
+     *         Requires: grid.length == size*size
+     */
+    int[] apply(int[] grid) {
+        int[] result = new int[grid.length];
+        for (int r = 0; r < size; ++r)
+            for (int c = 0; c < size; ++c)
+                result[r * size + c] = digits[grid[source(r, c)]];
+        return result;
+    }
+
+    /**
+     * @return the grid whose image under this transformation is image
+     *         Requires: image.length == size*size
+     */
+    int[] invert(int[] image) {
+        int[] inverse = new int[size + 1];
+        for (int d = 1; d <= size; ++d)
+            inverse[digits[d]] = d;
+        int[] result = new int[image.length];
+        for (int r = 0; r < size; ++r)
+            for (int c = 0; c < size; ++c)
+                result[source(r, c)] = inverse[image[r * size + c]];
+        return result;
+    }
+
+    // index in the source grid of image square (r, c)
+    private int source(int r, int c) {
+        return transpose ? cols[c] * size + rows[r] : rows[r] * size + cols[c];
+    }
+
+    /**
+     * @return a transformation giving the least image of grid; grids
+     *         equivalent under the group have equal least images.
+     *         Requires: grid.length == (dim*dim)^2, squares in 0..dim*dim
+     */
+    static Symmetry canonical(int dim, int[] grid) {
+        return new Search(dim, grid).run();
+    }
+
+    /**
+     * @return every permutation of 0..n-1
+     */
+    static List<int[]> permutations(int n) {
+        List<int[]> result = new ArrayList<int[]>();
+        permute(new int[n], new boolean[n], 0, result);
+        return result;
+    }
+
+    private static void permute(int[] prefix, boolean[] used, int k, List<int[]> result) {
+        if (k == prefix.length) {
+            result.add(prefix.clone());
+            return;
+        }
+        for (int i = 0; i < prefix.length; ++i) {
+            if (used[i]) continue;
+            used[i] = true;
+            prefix[k] = i;
+            permute(prefix, used, k + 1, result);
+            used[i] = false;
+        }
+    }
+
+    /**
+     * Branch-and-bound search for the least image of one grid.
+     */
+    private static final class Search {
+        private final int dim;
+        private final int size;
+        private final int[] grid;
+        // view[i*size + c]: square (i, cols[c]) of the current orientation
+        private final int[] view;
+        private boolean transpose;
+        private int[] cols;
+
+        private int[] best = null;
+        private boolean bestTranspose;
+        private int[] bestCols;
+        private final int[] bestRows;
+        private final int[] bestLabels;
+
+        // per search level: chosen row, labels so far, next free label
+        private final int[] chosen;
+        private final int[][] labels;
+        private final int[] nextLabel;
+        private final boolean[] usedRow;
+        private final boolean[] usedBand;
+        private final int[] image;
+        private final int[][] candidates;
+
+        Search(int dim, int[] grid) {
+            this.dim = dim;
+            this.size = dim * dim;
+            this.grid = grid;
+            this.view = new int[grid.length];
+            this.bestRows = new int[size];
+            this.bestLabels = new int[size + 1];
+            this.chosen = new int[size];
+            this.labels = new int[size + 1][size + 1];
+            this.nextLabel = new int[size + 1];
+            this.usedRow = new boolean[size];
+            this.usedBand = new boolean[dim];
+            this.image = new int[grid.length];
+            this.candidates = new int[size][size];
+        }
+
+        Symmetry run() {
+            for (int[] arrangement : columnArrangements()) {
+                for (int t = 0; t < 2; ++t) {
+                    transpose = t == 1;
+                    cols = arrangement;
+                    for (int i = 0; i < size; ++i)
+                        for (int c = 0; c < size; ++c)
+                            view[i * size + c] = transpose
+                                    ? grid[cols[c] * size + i] : grid[i * size + cols[c]];
+                    nextLabel[0] = 1;
+                    search(0, best == null ? -1 : 0);
+                }
+            }
+            // digits absent from the grid take the remaining labels in order
+            int[] digits = bestLabels.clone();
+            int next = 1;
+            for (int d = 1; d <= size; ++d)
+                if (digits[d] != 0) next = Math.max(next, digits[d] + 1);
+            for (int d = 1; d <= size; ++d)
+                if (digits[d] == 0) digits[d] = next++;
+            return new Symmetry(size, bestTranspose, bestRows.clone(), bestCols, digits);
+        }
+
+        /**
+         * @return the column permutations to try: every one that keeps the
+         *         stacks together, or only the identity if there are too many
+         */
+        private List<int[]> columnArrangements() {
+            List<int[]> within = permutations(dim);
+            List<int[]> result = new ArrayList<int[]>();
+            long count = 1;
+            for (int k = 0; k <= dim && count <= MAX_COLUMN_ARRANGEMENTS; ++k)
+                count *= within.size();
+            if (count > MAX_COLUMN_ARRANGEMENTS) {
+                int[] identity = new int[size];
+                for (int c = 0; c < size; ++c)
+                    identity[c] = c;
+                result.add(identity);
+                return result;
+            }
+            // choice[0] orders the stacks, choice[1 + s] the columns of stack s
+            int[] choice = new int[dim + 1];
+            while (true) {
+                int[] arrangement = new int[size];
+                int[] stacks = within.get(choice[0]);
+                for (int s = 0; s < dim; ++s) {
+                    int[] inStack = within.get(choice[1 + s]);
+                    for (int k = 0; k < dim; ++k)
+                        arrangement[s * dim + k] = stacks[s] * dim + inStack[k];
+                }
+                result.add(arrangement);
+                int k = 0;
+                while (k <= dim && ++choice[k] == within.size())
+                    choice[k++] = 0;
+                if (k > dim) return result;
+            }
+        }
+
+        /**
+         * Choose image row pos and the rows after it.
+         * @param order 0 if the image so far equals best's prefix, -1 if it
+         *        is already less (or there is no best yet)
+         */
+        private void search(int pos, int order) {
+            if (pos == size) {
+                if (order < 0) record();
+                return;
+            }
+            // candidate source rows: any row of an unused band at a band
+            // boundary, else an unused row of the current band
+            int count = 0;
+            int[] candidate = candidates[pos];
+            if (pos % dim == 0) {
+                for (int i = 0; i < size; ++i)
+                    if (!usedBand[i / dim]) candidate[count++] = i;
+            } else {
+                int band = chosen[pos - 1] / dim;
+                for (int i = band * dim; i < band * dim + dim; ++i)
+                    if (!usedRow[i]) candidate[count++] = i;
+            }
+            // keep the candidates whose relabelled row is least
+            int least = 0;
+            for (int k = 1; k < count; ++k) {
+                int cmp = compareRows(pos, candidate[k], candidate[least]);
+                if (cmp < 0) {
+                    least = k;
+                } else if (cmp > 0) {
+                    candidate[k] = -1;
+                }
+            }
+            int leastRow = candidate[least];
+            if (order == 0) {
+                int cmp = compareToBest(pos, leastRow);
+                if (cmp > 0) return;
+                if (cmp < 0) order = -1;
+            }
+            for (int k = 0; k < count; ++k) {
+                int row = candidate[k];
+                if (row < 0 || compareRows(pos, row, leastRow) != 0) continue;
+                if (duplicateOfEarlier(candidate, k)) continue;
+                place(pos, row);
+                boolean newBand = pos % dim == 0;
+                if (newBand) usedBand[row / dim] = true;
+                usedRow[row] = true;
+                search(pos + 1, order);
+                usedRow[row] = false;
+                if (newBand) usedBand[row / dim] = false;
+                // a better image found below tightens the bound for the
+                // remaining ties, whose prefix now may equal it
+                if (order < 0 && best != null && prefixEqualsBest(pos)) order = 0;
+            }
+        }
+
+        // true iff an earlier surviving candidate of the same band has the
+        // same source squares; equal rows of one band lead to the same
+        // images, but equal rows of different bands bring different bands
+        private boolean duplicateOfEarlier(int[] candidate, int k) {
+            for (int e = 0; e < k; ++e) {
+                if (candidate[e] < 0 || candidate[e] / dim != candidate[k] / dim) continue;
+                boolean same = true;
+                for (int c = 0; c < size && same; ++c)
+                    same = view[candidate[e] * size + c] == view[candidate[k] * size + c];
+                if (same) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Write the relabelled source row into image row pos, extending the
+         * labels of level pos into level pos + 1.
+         */
+        private void place(int pos, int row) {
+            int[] from = labels[pos];
+            int[] to = labels[pos + 1];
+            System.arraycopy(from, 0, to, 0, size + 1);
+            int next = nextLabel[pos];
+            for (int c = 0; c < size; ++c) {
+                int d = view[row * size + c];
+                if (d != 0 && to[d] == 0) to[d] = next++;
+                image[pos * size + c] = to[d];
+            }
+            nextLabel[pos + 1] = next;
+            chosen[pos] = row;
+        }
+
+        // compare the relabelled images of source rows a and b at level pos
+        private int compareRows(int pos, int a, int b) {
+            int[] known = labels[pos];
+            int next = nextLabel[pos];
+            // digits new to this level are numbered in order of appearance,
+            // so the images agree where the two rows repeat digits alike
+            int[] seenA = new int[size + 1];
+            int[] seenB = new int[size + 1];
+            int nextA = next, nextB = next;
+            for (int c = 0; c < size; ++c) {
+                int da = view[a * size + c];
+                int db = view[b * size + c];
+                int la = da == 0 ? 0 : known[da] != 0 ? known[da] : seenA[da] != 0 ? seenA[da] : (seenA[da] = nextA++);
+                int lb = db == 0 ? 0 : known[db] != 0 ? known[db] : seenB[db] != 0 ? seenB[db] : (seenB[db] = nextB++);
+                if (la != lb) return la < lb ? -1 : 1;
+            }
+            return 0;
+        }
+
+        // compare the relabelled image of source row at level pos to best
+        private int compareToBest(int pos, int row) {
+            int[] known = labels[pos];
+            int[] seen = new int[size + 1];
+            int next = nextLabel[pos];
+            for (int c = 0; c < size; ++c) {
+                int d = view[row * size + c];
+                int l = d == 0 ? 0 : known[d] != 0 ? known[d] : seen[d] != 0 ? seen[d] : (seen[d] = next++);
+                int b = best[pos * size + c];
+                if (l != b) return l < b ? -1 : 1;
+            }
+            return 0;
+        }
+
+        // true iff image rows 0..pos-1 equal those of best
+        private boolean prefixEqualsBest(int pos) {
+            for (int i = 0; i < pos * size; ++i)
+                if (image[i] != best[i]) return false;
+            return true;
+        }
+
+        private void record() {
+            best = image.clone();
+            bestTranspose = transpose;
+            bestCols = cols;
+            System.arraycopy(chosen, 0, bestRows, 0, size);
+            System.arraycopy(labels[size], 0, bestLabels, 0, size + 1);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package sudoku;
+
+/**
+ * The human solving techniques of LogicalSolver, in the order it tries
+ * them, each with a difficulty rating on the scale of Sudoku Explainer
+ * (easiest about 1, hardest logical steps about 10).
+ */
+public enum Technique {
+    // the only square of a row, column or block that can hold a digit
+    HIDDEN_SINGLE(1.5),
+    // a square with one candidate left
+    NAKED_SINGLE(2.3),
+    // a digit confined to one line of a block, or one block of a line
+    LOCKED_CANDIDATES(2.8),
+    // two squares of a unit with the same two candidates
+    NAKED_PAIR(3.0),
+    // a digit in two rows confined to the same two columns, or vice versa
+    X_WING(3.2),
+    // two digits confined to the same two squares of a unit
+    HIDDEN_PAIR(3.4),
+    // three squares of a unit with three candidates between them
+    NAKED_TRIPLE(3.6),
+    // X_WING over three rows or columns
+    SWORDFISH(3.8),
+    // three digits confined to the same three squares of a unit
+    HIDDEN_TRIPLE(4.0),
+    // a two-candidate pivot and two pincers seeing it
+    XY_WING(4.2),
+    // a chain of two-candidate squares, each seeing the next
+    XY_CHAIN(4.6);
+
+    private final double rating;
+
+    private Technique(double rating) {
+        this.rating = rating;
+    }
+
+    /**
+     * @return the difficulty of a puzzle whose hardest step uses this
+     */
+    public double getRating() {
+        return rating;
+    }
+}